@@ -0,0 +1,100 @@
+package org.renjin.benchmarks;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Runs the JMH benchmarks in {@code org.renjin.benchmarks.jmh}, saves the results
+ * to the history directory, and compares them to those of the previous run.
+ *
+ * <pre>
+ * java -jar renjin-benchmarks-jar-with-dependencies.jar [options] [pattern...]
+ *
+ *   -history dir     the directory in which to keep results (default: history)
+ *   -label name      a label for this run, such as a revision number
+ *   -threshold n     the relative change to report, such as 0.05 (default: 0.1)
+ *   -quick           a single fork with fewer iterations, for a rough comparison
+ * </pre>
+ *
+ * <p>Patterns are regular expressions matched against the names of the benchmarks,
+ * for example {@code VectorBenchmarks} or {@code RBenchmark25}. The benchmarks
+ * should be run from the {@code benchmarks} directory, so that the parser benchmarks
+ * can find their scripts. The process exits with status 2 if any benchmark
+ * regressed.
+ */
+public class BenchmarkHarness {
+
+  public static void main(String[] args) throws Exception {
+    File historyDir = new File("history");
+    String label = null;
+    double threshold = 0.1;
+    boolean quick = false;
+    List<String> patterns = Lists.newArrayList();
+
+    for(int i = 0; i < args.length; ++i) {
+      if(args[i].equals("-history")) {
+        historyDir = new File(args[++i]);
+      } else if(args[i].equals("-label")) {
+        label = args[++i];
+      } else if(args[i].equals("-threshold")) {
+        threshold = Double.parseDouble(args[++i]);
+      } else if(args[i].equals("-quick")) {
+        quick = true;
+      } else {
+        patterns.add(args[i]);
+      }
+    }
+
+    BenchmarkHistory history = new BenchmarkHistory(historyDir);
+    File resultFile = history.newRunFile(label);
+
+    run(patterns, quick, resultFile);
+
+    System.out.println();
+    System.out.println("Results saved to " + resultFile.getPath());
+
+    File previousFile = history.previousRun(resultFile);
+    if(previousFile == null) {
+      System.out.println("No previous run to compare with.");
+      return;
+    }
+    System.out.println("Comparing with " + previousFile.getPath());
+    System.out.println();
+
+    Map<String, BenchmarkHistory.Score> previous = BenchmarkHistory.readRun(previousFile);
+    Map<String, BenchmarkHistory.Score> current = BenchmarkHistory.readRun(resultFile);
+    int regressions = BenchmarkHistory.compare(previous, current, threshold, System.out);
+    if(regressions > 0) {
+      System.exit(2);
+    }
+  }
+
+  private static void run(List<String> patterns, boolean quick, File resultFile) throws RunnerException {
+    ChainedOptionsBuilder options = new OptionsBuilder()
+        .result(resultFile.getPath())
+        .resultFormat(ResultFormatType.JSON)
+        .shouldFailOnError(true);
+
+    if(patterns.isEmpty()) {
+      options.include("org\\.renjin\\.benchmarks\\.jmh\\..*");
+    } else {
+      for(String pattern : patterns) {
+        options.include(pattern);
+      }
+    }
+    if(quick) {
+      options.forks(1).warmupIterations(2).measurementIterations(3);
+    }
+
+    new Runner(options.build()).run();
+  }
+}
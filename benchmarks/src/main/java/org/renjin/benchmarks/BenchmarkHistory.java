@@ -0,0 +1,191 @@
+package org.renjin.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+
+/**
+ * A directory of JMH result files, one per run, named after the time of the run
+ * so that they sort in the order in which they were run.
+ */
+public class BenchmarkHistory {
+
+  private final File directory;
+
+  public BenchmarkHistory(File directory) {
+    this.directory = directory;
+  }
+
+  /**
+   * @param label an optional label, such as a revision number, to include in the name
+   * @return a new file in the history directory to which JMH can write the results of a run
+   */
+  public File newRunFile(String label) {
+    if(!directory.exists() && !directory.mkdirs()) {
+      throw new IllegalStateException("Could not create " + directory.getAbsolutePath());
+    }
+    String name = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+    if(label != null) {
+      name += "-" + label.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+    return new File(directory, name + ".json");
+  }
+
+  /**
+   * @return the most recent run before {@code run}, or {@code null} if there is none
+   */
+  public File previousRun(File run) {
+    File[] files = directory.listFiles();
+    if(files == null) {
+      return null;
+    }
+    Arrays.sort(files);
+    File previous = null;
+    for(File file : files) {
+      if(file.getName().endsWith(".json") && file.getName().compareTo(run.getName()) < 0) {
+        previous = file;
+      }
+    }
+    return previous;
+  }
+
+  /**
+   * Reads the scores of a run, keyed by the name of the benchmark and its parameters
+   */
+  public static Map<String, Score> readRun(File file) throws IOException {
+    Map<String, Score> scores = Maps.newLinkedHashMap();
+    Object json = JsonReader.parse(Files.toString(file, Charsets.UTF_8));
+    if(!(json instanceof List)) {
+      throw new IOException(file + " is not a JMH result file");
+    }
+    for(Object element : (List) json) {
+      Map result = (Map) element;
+      Map metric = (Map) result.get("primaryMetric");
+      Score score = new Score(
+          (String) result.get("mode"),
+          toDouble(metric.get("score")),
+          toDouble(metric.get("scoreError")),
+          (String) metric.get("scoreUnit"));
+      scores.put(key((String) result.get("benchmark"), (Map) result.get("params")), score);
+    }
+    return scores;
+  }
+
+  private static String key(String benchmark, Map params) {
+    StringBuilder key = new StringBuilder(benchmark.replaceFirst("^org\\.renjin\\.benchmarks\\.jmh\\.", ""));
+    if(params != null && !params.isEmpty()) {
+      List<String> names = Lists.newArrayList();
+      for(Object name : params.keySet()) {
+        names.add((String) name);
+      }
+      Collections.sort(names);
+      key.append(" (");
+      for(int i = 0; i != names.size(); ++i) {
+        if(i > 0) {
+          key.append(", ");
+        }
+        key.append(names.get(i)).append("=").append(params.get(names.get(i)));
+      }
+      key.append(")");
+    }
+    return key.toString();
+  }
+
+  private static double toDouble(Object value) {
+    if(value instanceof Number) {
+      return ((Number) value).doubleValue();
+    } else if(value instanceof String) {
+      return Double.parseDouble((String) value);
+    } else {
+      return Double.NaN;
+    }
+  }
+
+  /**
+   * Prints the change in each score between two runs, flagging the changes which are
+   * larger than both {@code threshold} and the combined error of the two scores.
+   *
+   * @param threshold the smallest relative change to report, such as 0.1 for 10%
+   * @return the number of regressions
+   */
+  public static int compare(Map<String, Score> previous, Map<String, Score> current,
+                            double threshold, PrintStream out) {
+    int regressions = 0;
+    int improvements = 0;
+    out.println(String.format("%-60s %14s %14s %9s", "Benchmark", "Previous", "Current", "Change"));
+    for(Map.Entry<String, Score> entry : current.entrySet()) {
+      Score before = previous.get(entry.getKey());
+      Score after = entry.getValue();
+      if(before == null || !before.unit.equals(after.unit)) {
+        out.println(String.format("%-60s %14s %14.3f %9s", entry.getKey(), "-", after.score, "new"));
+        continue;
+      }
+      double change = (after.score - before.score) / before.score;
+      String flag = "";
+      if(Math.abs(change) > threshold &&
+         Math.abs(after.score - before.score) > combinedError(before, after)) {
+        if(after.isWorseThan(before)) {
+          flag = "REGRESSION";
+          regressions++;
+        } else {
+          flag = "improved";
+          improvements++;
+        }
+      }
+      out.println(String.format("%-60s %14.3f %14.3f %+8.1f%% %s", entry.getKey(),
+          before.score, after.score, change * 100, flag));
+    }
+    out.println();
+    out.println(String.format("%d regressions, %d improvements of more than %.0f%%",
+        regressions, improvements, threshold * 100));
+    return regressions;
+  }
+
+  private static double combinedError(Score a, Score b) {
+    double error = 0;
+    if(!Double.isNaN(a.error)) {
+      error += a.error;
+    }
+    if(!Double.isNaN(b.error)) {
+      error += b.error;
+    }
+    return error;
+  }
+
+  public static class Score {
+    private final String mode;
+    private final double score;
+    private final double error;
+    private final String unit;
+
+    public Score(String mode, double score, double error, String unit) {
+      this.mode = mode;
+      this.score = score;
+      this.error = error;
+      this.unit = unit;
+    }
+
+    /**
+     * Throughput is better when higher; the other modes measure time, which
+     * is better when lower
+     */
+    public boolean isWorseThan(Score other) {
+      if("thrpt".equals(mode)) {
+        return score < other.score;
+      } else {
+        return score > other.score;
+      }
+    }
+  }
+}
@@ -0,0 +1,176 @@
+package org.renjin.benchmarks;
+
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Reads the JSON written by JMH into maps, lists, strings, doubles, booleans
+ * and nulls. Just enough of a parser to read back the results of earlier runs.
+ */
+class JsonReader {
+
+  private final String json;
+  private int pos;
+
+  private JsonReader(String json) {
+    this.json = json;
+  }
+
+  public static Object parse(String json) {
+    JsonReader reader = new JsonReader(json);
+    Object value = reader.readValue();
+    reader.skipWhitespace();
+    if(reader.pos != json.length()) {
+      throw reader.error("trailing characters");
+    }
+    return value;
+  }
+
+  private Object readValue() {
+    skipWhitespace();
+    if(pos >= json.length()) {
+      throw error("unexpected end of input");
+    }
+    char c = json.charAt(pos);
+    switch(c) {
+    case '{':
+      return readObject();
+    case '[':
+      return readArray();
+    case '"':
+      return readString();
+    case 't':
+      expect("true");
+      return Boolean.TRUE;
+    case 'f':
+      expect("false");
+      return Boolean.FALSE;
+    case 'n':
+      expect("null");
+      return null;
+    default:
+      return readNumber();
+    }
+  }
+
+  private Map<String, Object> readObject() {
+    Map<String, Object> object = Maps.newLinkedHashMap();
+    pos++;
+    skipWhitespace();
+    if(peek() == '}') {
+      pos++;
+      return object;
+    }
+    while(true) {
+      skipWhitespace();
+      String key = readString();
+      skipWhitespace();
+      expect(":");
+      object.put(key, readValue());
+      skipWhitespace();
+      char c = next();
+      if(c == '}') {
+        return object;
+      } else if(c != ',') {
+        throw error("expected ',' or '}'");
+      }
+    }
+  }
+
+  private List<Object> readArray() {
+    List<Object> array = Lists.newArrayList();
+    pos++;
+    skipWhitespace();
+    if(peek() == ']') {
+      pos++;
+      return array;
+    }
+    while(true) {
+      array.add(readValue());
+      skipWhitespace();
+      char c = next();
+      if(c == ']') {
+        return array;
+      } else if(c != ',') {
+        throw error("expected ',' or ']'");
+      }
+    }
+  }
+
+  private String readString() {
+    if(next() != '"') {
+      throw error("expected a string");
+    }
+    StringBuilder s = new StringBuilder();
+    while(true) {
+      char c = next();
+      if(c == '"') {
+        return s.toString();
+      } else if(c == '\\') {
+        char escaped = next();
+        switch(escaped) {
+        case 'b': s.append('\b'); break;
+        case 'f': s.append('\f'); break;
+        case 'n': s.append('\n'); break;
+        case 'r': s.append('\r'); break;
+        case 't': s.append('\t'); break;
+        case 'u':
+          if(pos + 4 > json.length()) {
+            throw error("truncated escape");
+          }
+          s.append((char) Integer.parseInt(json.substring(pos, pos + 4), 16));
+          pos += 4;
+          break;
+        default:
+          s.append(escaped);
+        }
+      } else {
+        s.append(c);
+      }
+    }
+  }
+
+  private Double readNumber() {
+    int start = pos;
+    while(pos < json.length() && "+-0123456789.eE".indexOf(json.charAt(pos)) != -1) {
+      pos++;
+    }
+    if(start == pos) {
+      throw error("unexpected character '" + json.charAt(pos) + "'");
+    }
+    return Double.valueOf(json.substring(start, pos));
+  }
+
+  private void expect(String token) {
+    if(!json.startsWith(token, pos)) {
+      throw error("expected '" + token + "'");
+    }
+    pos += token.length();
+  }
+
+  private char peek() {
+    if(pos >= json.length()) {
+      throw error("unexpected end of input");
+    }
+    return json.charAt(pos);
+  }
+
+  private char next() {
+    char c = peek();
+    pos++;
+    return c;
+  }
+
+  private void skipWhitespace() {
+    while(pos < json.length() && Character.isWhitespace(json.charAt(pos))) {
+      pos++;
+    }
+  }
+
+  private IllegalArgumentException error(String message) {
+    return new IllegalArgumentException("Malformed JSON at offset " + pos + ": " + message);
+  }
+}
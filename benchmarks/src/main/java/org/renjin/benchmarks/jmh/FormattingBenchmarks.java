@@ -0,0 +1,89 @@
+package org.renjin.benchmarks.jmh;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.renjin.primitives.text.DoubleFormatter;
+
+/**
+ * Formats doubles as {@code as.character()} does, one at a time, and as {@code print()}
+ * and {@code format()} do, with a layout common to the whole vector.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class FormattingBenchmarks {
+
+  @Param({"uniform", "integral", "prices", "wide"})
+  public String distribution;
+
+  private double[] values;
+  private StringBuilder buffer;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    Random random = new Random(42);
+    values = new double[10000];
+    for(int i = 0; i != values.length; ++i) {
+      if(distribution.equals("uniform")) {
+        values[i] = random.nextDouble();
+      } else if(distribution.equals("integral")) {
+        values[i] = random.nextInt(1000000);
+      } else if(distribution.equals("prices")) {
+        values[i] = random.nextInt(100000) / 100d;
+      } else {
+        values[i] = random.nextGaussian() * Math.pow(10, random.nextInt(40) - 20);
+      }
+    }
+    buffer = new StringBuilder(32);
+  }
+
+  @Benchmark
+  public int asCharacter() {
+    int length = 0;
+    for(int i = 0; i != values.length; ++i) {
+      buffer.setLength(0);
+      length += DoubleFormatter.appendCharacter(buffer, values[i]).length();
+    }
+    return length;
+  }
+
+  @Benchmark
+  public int printLayout() {
+    DoubleFormatter formatter = new DoubleFormatter(DoubleFormatter.DEFAULT_DIGITS);
+    for(int i = 0; i != values.length; ++i) {
+      formatter.accept(values[i]);
+    }
+    formatter.layout(0);
+    int length = 0;
+    for(int i = 0; i != values.length; ++i) {
+      buffer.setLength(0);
+      length += formatter.append(buffer, values[i]).length();
+    }
+    return length;
+  }
+
+  @Benchmark
+  public int doubleToString() {
+    int length = 0;
+    for(int i = 0; i != values.length; ++i) {
+      length += Double.toString(values[i]).length();
+    }
+    return length;
+  }
+}
@@ -0,0 +1,110 @@
+package org.renjin.benchmarks.jmh;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.renjin.eval.Calls;
+import org.renjin.eval.Context;
+import org.renjin.sexp.Closure;
+import org.renjin.sexp.DoubleArrayVector;
+import org.renjin.sexp.Environment;
+import org.renjin.sexp.LogicalVector;
+import org.renjin.sexp.PairList;
+import org.renjin.sexp.Promise;
+import org.renjin.sexp.SEXP;
+import org.renjin.sexp.Symbol;
+
+/**
+ * The hot paths of the interpreter: evaluating symbols and calls, matching
+ * arguments to formals, looking up variables and forcing promises.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class InterpreterBenchmarks {
+
+  private Context context;
+  private Environment global;
+
+  private SEXP localSymbol;
+  private SEXP baseSymbol;
+  private SEXP builtinCall;
+  private SEXP closureCall;
+  private SEXP promisedExpression;
+
+  private PairList formals;
+  private PairList actuals;
+
+  @Setup(Level.Trial)
+  public void setup(RSession session) throws IOException {
+    context = session.context;
+    global = context.getGlobalEnvironment();
+
+    session.eval("x <- 41");
+    session.eval("f <- function(a, b) a + b");
+    session.eval("g <- function(x, y, ..., na.rm = FALSE) NULL");
+
+    localSymbol = Symbol.get("x");
+    baseSymbol = Symbol.get("pi");
+    builtinCall = RSession.parse("x + 1");
+    closureCall = RSession.parse("f(x, 1)");
+    promisedExpression = RSession.parse("x * 2");
+
+    formals = ((Closure) session.eval("g")).getFormals();
+    actuals = new PairList.Builder()
+        .add(new DoubleArrayVector(1))
+        .add("na.rm", LogicalVector.TRUE)
+        .add(new DoubleArrayVector(2))
+        .add(new DoubleArrayVector(3))
+        .build();
+  }
+
+  @Benchmark
+  public SEXP evaluateLocalSymbol() {
+    return context.evaluate(localSymbol, global);
+  }
+
+  @Benchmark
+  public SEXP evaluateBaseSymbol() {
+    return context.evaluate(baseSymbol, global);
+  }
+
+  @Benchmark
+  public SEXP evaluateBuiltinCall() {
+    return context.evaluate(builtinCall, global);
+  }
+
+  @Benchmark
+  public SEXP evaluateClosureCall() {
+    return context.evaluate(closureCall, global);
+  }
+
+  @Benchmark
+  public PairList matchArguments() {
+    return Calls.matchArguments(formals, actuals);
+  }
+
+  @Benchmark
+  public SEXP findVariable() {
+    return global.findVariable((Symbol) baseSymbol);
+  }
+
+  @Benchmark
+  public SEXP forcePromise() {
+    return Promise.repromise(context, global, promisedExpression).force();
+  }
+}
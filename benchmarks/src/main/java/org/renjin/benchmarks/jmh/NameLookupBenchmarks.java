@@ -0,0 +1,74 @@
+package org.renjin.benchmarks.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.renjin.eval.Context;
+import org.renjin.sexp.Environment;
+import org.renjin.sexp.SEXP;
+
+/**
+ * Looks up elements of named vectors and lists by name, with {@code $},
+ * {@code [[} and character subscripts.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class NameLookupBenchmarks {
+
+  @Param({"100", "10000", "1000000"})
+  public int length;
+
+  private Context context;
+  private Environment global;
+
+  private SEXP namedSubset;
+  private SEXP dollarInLoop;
+  private SEXP doubleBracketInLoop;
+
+  @Setup(Level.Trial)
+  public void setup(RSession session) {
+    context = session.context;
+    global = context.getGlobalEnvironment();
+
+    session.eval("set.seed(42)");
+    session.eval("x <- runif(" + length + ")");
+    session.eval("names(x) <- paste('n', 1:" + length + ", sep = '')");
+    session.eval("wanted <- sample(names(x), min(" + length + ", 10000))");
+    session.eval("l <- as.list(x)");
+    session.eval("last <- names(x)[" + length + "]");
+
+    namedSubset = RSession.parse("x[wanted]");
+    dollarInLoop = RSession.parse("for(k in 1:100) l$n1");
+    doubleBracketInLoop = RSession.parse("for(k in 1:100) l[[last]]");
+  }
+
+  @Benchmark
+  public SEXP namedSubset() {
+    return context.evaluate(namedSubset, global);
+  }
+
+  @Benchmark
+  public SEXP dollarInLoop() {
+    return context.evaluate(dollarInLoop, global);
+  }
+
+  @Benchmark
+  public SEXP doubleBracketInLoop() {
+    return context.evaluate(doubleBracketInLoop, global);
+  }
+}
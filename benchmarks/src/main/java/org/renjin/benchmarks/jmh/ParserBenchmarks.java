@@ -0,0 +1,52 @@
+package org.renjin.benchmarks.jmh;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.renjin.parser.RParser;
+import org.renjin.sexp.ExpressionVector;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+/**
+ * Parses R scripts of the benchmark suite itself, relative to the
+ * {@code benchmarks} directory from which the suite is run.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class ParserBenchmarks {
+
+  @Param({"src/main/R/runner.R", "src/main/R/R-benchmark-25.R"})
+  public String script;
+
+  private String source;
+
+  @Setup(Level.Trial)
+  public void readScript() throws IOException {
+    source = Files.toString(new File(script), Charsets.ISO_8859_1);
+  }
+
+  @Benchmark
+  public ExpressionVector parseSource() throws IOException {
+    return RParser.parseSource(new StringReader(source));
+  }
+}
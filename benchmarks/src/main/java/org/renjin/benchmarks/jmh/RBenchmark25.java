@@ -0,0 +1,111 @@
+package org.renjin.benchmarks.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.renjin.eval.Context;
+import org.renjin.sexp.SEXP;
+
+/**
+ * The tests of R Benchmark 2.5 (src/main/R/R-benchmark-25.R), scaled down by
+ * about a factor of ten so that a single test takes well under a second.
+ *
+ * <p>The tests which depend on the Matrix package are run on ordinary
+ * matrices, and the eigenvalue and Escoufier tests, which need functions
+ * that are not yet implemented, are left out.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Thread)
+public class RBenchmark25 {
+
+  /**
+   * The name of each test, followed by the code which sets up its input
+   * and the code which is timed
+   */
+  private static final String[][] TESTS = {
+      { "matrix-creation",
+          "",
+          "a <- matrix(rnorm(800*800)/10, ncol=800, nrow=800); b <- t(a); dim(b) <- c(400, 1600); a <- t(b)" },
+      { "matrix-power",
+          "a <- abs(matrix(rnorm(800*800)/2, ncol=800, nrow=800))",
+          "b <- a^1000" },
+      { "sort",
+          "a <- rnorm(700000)",
+          "b <- sort(a, method='quick')" },
+      { "crossprod",
+          "a <- rnorm(300*300); dim(a) <- c(300, 300)",
+          "b <- crossprod(a)" },
+      { "linear-regression",
+          "a <- matrix(rnorm(200*200), 200, 200); b <- as.double(1:200)",
+          "c <- solve(crossprod(a), crossprod(a, b))" },
+      { "fft",
+          "a <- rnorm(240000)",
+          "b <- fft(a)" },
+      { "determinant",
+          "a <- rnorm(250*250); dim(a) <- c(250, 250)",
+          "b <- det(a)" },
+      { "cholesky",
+          "a <- crossprod(matrix(rnorm(300*300), 300, 300))",
+          "b <- chol(a)" },
+      { "inverse",
+          "a <- matrix(rnorm(160*160), 160, 160)",
+          "b <- solve(a)" },
+      { "fibonacci",
+          "phi <- 1.6180339887498949; a <- floor(runif(350000)*1000)",
+          "b <- (phi^a - (-phi)^(-a))/sqrt(5)" },
+      { "hilbert",
+          "a <- 1000",
+          "b <- rep(1:a, a); dim(b) <- c(a, a); b <- 1 / (t(b) + 0:(a-1))" },
+      { "gcd",
+          "gcd2 <- function(x, y) {if (sum(y > 1.0E-4) == 0) x else {y[y == 0] <- x[y == 0]; Recall(y, x %% y)}}; " +
+          "a <- ceiling(runif(40000)*1000); b <- ceiling(runif(40000)*1000)",
+          "c <- gcd2(a, b)" },
+      { "toeplitz",
+          "b <- rep(0, 150*150); dim(b) <- c(150, 150)",
+          "for (j in 1:150) { for (k in 1:150) { b[k,j] <- abs(j - k) + 1 } }" }
+  };
+
+  @Param({"matrix-creation", "matrix-power", "sort", "crossprod", "linear-regression",
+          "fft", "determinant", "cholesky", "inverse",
+          "fibonacci", "hilbert", "gcd", "toeplitz"})
+  public String test;
+
+  private Context context;
+  private SEXP run;
+
+  @Setup(Level.Trial)
+  public void setup(RSession session) {
+    context = session.context;
+    session.eval("set.seed(42)");
+    for(String[] definition : TESTS) {
+      if(definition[0].equals(test)) {
+        if(!definition[1].isEmpty()) {
+          session.eval("{" + definition[1] + "}");
+        }
+        run = RSession.parse("{" + definition[2] + "}");
+        return;
+      }
+    }
+    throw new IllegalArgumentException("No such test: " + test);
+  }
+
+  @Benchmark
+  public SEXP run() {
+    return context.evaluate(run, context.getGlobalEnvironment());
+  }
+}
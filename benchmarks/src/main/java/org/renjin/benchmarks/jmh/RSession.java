@@ -0,0 +1,50 @@
+package org.renjin.benchmarks.jmh;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.renjin.eval.Context;
+import org.renjin.parser.RParser;
+import org.renjin.sexp.SEXP;
+
+/**
+ * A top level context with the base package loaded, shared by the
+ * iterations of a benchmark run by a single thread.
+ *
+ * <p>Loading the base package takes several seconds, so it is done once
+ * per trial, outside the measured code.
+ */
+@State(Scope.Thread)
+public class RSession {
+
+  public Context context;
+
+  @Setup(Level.Trial)
+  public void init() throws IOException {
+    context = Context.newTopLevelContext();
+    context.init();
+  }
+
+  @TearDown(Level.Trial)
+  public void close() {
+    context.getGlobals().close();
+  }
+
+  /**
+   * Parses and evaluates {@code source} in the global environment
+   */
+  public SEXP eval(String source) {
+    return context.evaluate(parse(source));
+  }
+
+  /**
+   * @return the single expression in {@code source}
+   */
+  public static SEXP parse(String source) {
+    return RParser.parseSource(source + "\n").getElementAsSEXP(0);
+  }
+}
@@ -0,0 +1,73 @@
+package org.renjin.benchmarks.jmh;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.renjin.eval.Context;
+import org.renjin.primitives.io.serialization.RDataReader;
+import org.renjin.primitives.io.serialization.RDataWriter;
+import org.renjin.sexp.SEXP;
+
+/**
+ * Writes and reads objects in the XDR serialization format used by
+ * {@code serialize()}, {@code save()} and {@code saveRDS()}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class SerializationBenchmarks {
+
+  /**
+   * The object to serialize: a numeric vector, a character vector, or a
+   * data frame combining both with a factor
+   */
+  @Param({"numeric", "character", "data.frame"})
+  public String object;
+
+  private Context context;
+  private SEXP value;
+  private byte[] serialized;
+
+  @Setup(Level.Trial)
+  public void setup(RSession session) throws IOException {
+    context = session.context;
+    session.eval("set.seed(42)");
+    session.eval("numeric <- runif(100000)");
+    session.eval("character <- as.character(sample.int(1000, 100000, replace = TRUE))");
+    session.eval("data.frame <- data.frame(x = numeric, key = character, group = factor(character))");
+
+    value = session.eval(object);
+    serialized = write();
+  }
+
+  @Benchmark
+  public byte[] write() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    RDataWriter writer = new RDataWriter(context, out);
+    writer.writeFile(value);
+    return out.toByteArray();
+  }
+
+  @Benchmark
+  public SEXP read() throws IOException {
+    RDataReader reader = new RDataReader(context, new ByteArrayInputStream(serialized));
+    return reader.readFile();
+  }
+}
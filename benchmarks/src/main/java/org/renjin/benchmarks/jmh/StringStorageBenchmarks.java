@@ -0,0 +1,108 @@
+package org.renjin.benchmarks.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.renjin.eval.Context;
+import org.renjin.sexp.Environment;
+import org.renjin.sexp.SEXP;
+import org.renjin.sexp.StringDictionaryVector;
+import org.renjin.sexp.StringVector;
+
+/**
+ * A character column of 50 million rows with 1,000 distinct values, held as an array of
+ * distinct {@code String}s, as an array of deduplicated {@code String}s, or dictionary-encoded.
+ * The heap retained by the column is printed when it is built; the benchmarks time
+ * {@code match()}, {@code unique()} and {@code ==} on the column.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgs = "-Xmx12g")
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+public class StringStorageBenchmarks {
+
+  @Param({"50000000"})
+  public int rows;
+
+  @Param({"1000"})
+  public int distinct;
+
+  @Param({"plain", "dedup", "dictionary"})
+  public String storage;
+
+  private Context context;
+  private Environment global;
+
+  private SEXP match;
+  private SEXP unique;
+  private SEXP equal;
+
+  @Setup(Level.Trial)
+  public void setup(RSession session) {
+    context = session.context;
+    global = context.getGlobalEnvironment();
+
+    long before = usedHeap();
+    StringVector column = buildColumn();
+    long retained = usedHeap() - before;
+    java.lang.System.out.println(String.format("%n%s column of %d rows retains %d MB",
+        storage, column.length(), retained / (1024 * 1024)));
+
+    global.setVariable("column", column);
+    session.eval("levels <- paste('value', 1:" + distinct + ", sep = '')");
+
+    match = RSession.parse("match(column, levels)");
+    unique = RSession.parse("unique(column)");
+    equal = RSession.parse("column == 'value500'");
+  }
+
+  private StringVector buildColumn() {
+    String[] values = new String[rows];
+    for(int i = 0; i != rows; ++i) {
+      // a new String for each row, as a reader which does not deduplicate produces
+      String value = new String("value" + (1 + (i * 7919) % distinct));
+      values[i] = storage.equals("plain") ? value : StringVector.dedup(value);
+    }
+    StringVector column = StringVector.unsafe(values);
+    if(storage.equals("dictionary")) {
+      return StringDictionaryVector.encode(column);
+    }
+    return column;
+  }
+
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for(int i = 0; i != 3; ++i) {
+      java.lang.System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  @Benchmark
+  public SEXP match() {
+    return context.evaluate(match, global);
+  }
+
+  @Benchmark
+  public SEXP unique() {
+    return context.evaluate(unique, global);
+  }
+
+  @Benchmark
+  public SEXP equal() {
+    return context.evaluate(equal, global);
+  }
+}
@@ -0,0 +1,110 @@
+package org.renjin.benchmarks.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.renjin.eval.Context;
+import org.renjin.sexp.Environment;
+import org.renjin.sexp.SEXP;
+
+/**
+ * Vector primitives applied to vectors of increasing length. Each benchmark
+ * evaluates a single call, so for short vectors the cost of the call itself
+ * dominates.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class VectorBenchmarks {
+
+  @Param({"100", "10000", "1000000"})
+  public int length;
+
+  private Context context;
+  private Environment global;
+
+  private SEXP arithmetic;
+  private SEXP comparison;
+  private SEXP sum;
+  private SEXP range;
+  private SEXP logicalSubset;
+  private SEXP indexSubset;
+  private SEXP match;
+  private SEXP order;
+
+  @Setup(Level.Trial)
+  public void setup(RSession session) {
+    context = session.context;
+    global = context.getGlobalEnvironment();
+
+    session.eval("set.seed(42)");
+    session.eval("x <- runif(" + length + ")");
+    session.eval("y <- runif(" + length + ")");
+    session.eval("i <- sample.int(" + length + ")");
+    session.eval("keys <- as.character(sample.int(1000, " + length + ", replace = TRUE))");
+    session.eval("table <- as.character(1:1000)");
+
+    arithmetic = RSession.parse("x * y + 1");
+    comparison = RSession.parse("x > y");
+    sum = RSession.parse("sum(x)");
+    range = RSession.parse("range(x)");
+    logicalSubset = RSession.parse("x[x > 0.5]");
+    indexSubset = RSession.parse("x[i]");
+    match = RSession.parse("match(keys, table)");
+    order = RSession.parse("order(x)");
+  }
+
+  @Benchmark
+  public SEXP arithmetic() {
+    return context.evaluate(arithmetic, global);
+  }
+
+  @Benchmark
+  public SEXP comparison() {
+    return context.evaluate(comparison, global);
+  }
+
+  @Benchmark
+  public SEXP sum() {
+    return context.evaluate(sum, global);
+  }
+
+  @Benchmark
+  public SEXP range() {
+    return context.evaluate(range, global);
+  }
+
+  @Benchmark
+  public SEXP logicalSubset() {
+    return context.evaluate(logicalSubset, global);
+  }
+
+  @Benchmark
+  public SEXP indexSubset() {
+    return context.evaluate(indexSubset, global);
+  }
+
+  @Benchmark
+  public SEXP match() {
+    return context.evaluate(match, global);
+  }
+
+  @Benchmark
+  public SEXP order() {
+    return context.evaluate(order, global);
+  }
+}
@@ -0,0 +1,81 @@
+package org.renjin.benchmarks.jmh;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.renjin.sexp.SEXP;
+import org.renjin.sexp.StringVector;
+
+/**
+ * Exports a data frame of 20 columns, of doubles, integers, strings and factors, as
+ * CSV to a file or a gzip-compressed file, through the internal part of {@code write.table()}.
+ * The default of 10 million rows writes about 1.5 GB, so each measurement is a single shot.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgs = "-Xmx8g")
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class WriteTableBenchmarks {
+
+  @Param({"10000000"})
+  public int rows;
+
+  @Param({"file", "gzfile"})
+  public String connection;
+
+  private RSession session;
+  private File file;
+  private SEXP open;
+  private SEXP write;
+  private SEXP close;
+
+  @Setup(Level.Trial)
+  public void setup(RSession session) throws IOException {
+    this.session = session;
+    file = File.createTempFile("export", ".csv");
+    file.deleteOnExit();
+    session.context.getGlobalEnvironment().setVariable("path", new StringVector(file.getAbsolutePath()));
+
+    session.eval("set.seed(42)");
+    session.eval("n <- " + rows + "L");
+    session.eval("df <- list()");
+    session.eval("for(i in 1:8) df[[paste('d', i, sep = '')]] <- runif(n) * 1000");
+    session.eval("for(i in 1:6) df[[paste('i', i, sep = '')]] <- sample.int(100000L, n, replace = TRUE)");
+    session.eval("for(i in 1:4) df[[paste('s', i, sep = '')]] <- as.character(sample.int(5000L, n, replace = TRUE))");
+    session.eval("for(i in 1:2) df[[paste('f', i, sep = '')]] <- factor(sample(letters, n, replace = TRUE))");
+    session.eval("df <- structure(df, class = 'data.frame', row.names = c(NA_integer_, -n))");
+
+    open = RSession.parse("con <- " + connection + "(path, 'w')");
+    write = RSession.parse(".Internal(write.table(df, con, n, 20L, NULL, ',', '\\n', 'NA', '.', 15:20, TRUE))");
+    close = RSession.parse("close(con)");
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    file.delete();
+  }
+
+  @Benchmark
+  public long writeCsv() {
+    session.context.evaluate(open);
+    session.context.evaluate(write);
+    session.context.evaluate(close);
+    return file.length();
+  }
+}
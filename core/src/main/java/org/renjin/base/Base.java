@@ -27,12 +27,11 @@ import org.netlib.util.doubleW;
 import org.netlib.util.intW;
 import org.renjin.eval.Context;
 import org.renjin.eval.EvalException;
+import org.renjin.primitives.Aggregation;
 import org.renjin.primitives.ComplexGroup;
 import org.renjin.primitives.Types;
 import org.renjin.primitives.annotations.Current;
 import org.renjin.primitives.io.serialization.Serialization;
-import org.renjin.primitives.matrix.Matrix;
-import org.renjin.primitives.matrix.MatrixBuilder;
 import org.renjin.sexp.*;
 
 import java.util.ArrayList;
@@ -127,48 +126,9 @@ public class Base {
    * @return 
    */
   public static PairList R_tabulate(IntVector bin, int length, int nbins, SEXP ans) {
-    int counts[] = new int[nbins];
-    for(int i=0;i!=length;++i) {
-      if(!bin.isElementNA(i)) {
-        int value = bin.getElementAsInt(i);
-        if(value >= 1 && value <= nbins) {
-          counts[value-1]++;
-        }
-      }
-    }
-    return PairList.Node.singleton("ans", new IntArrayVector(counts));
+    return PairList.Node.singleton("ans", Aggregation.tabulate(bin, nbins));
   }
   
-  public static SEXP Rrowsum_df(ListVector x, int ncol, Vector group, SEXP ugroup, boolean naRm) {
-    throw new EvalException("nyi");
-  }
-
-  public static Vector Rrowsum_matrix(Vector x, int ncol, AtomicVector groups, AtomicVector ugroup, boolean naRm) {
-    
-    int numGroups = ugroup.length();
-    
-    Matrix source = new Matrix(x, ncol);
-    MatrixBuilder result = source.newBuilder(numGroups, ncol);
-    
-    for(int col=0;col!=ncol;++col) {
-      
-      // sum the rows in this column by group
-      
-      double groupSums[] = new double[numGroups];
-      for(int row=0;row!=source.getNumRows();++row) {
-        int group = ugroup.indexOf(groups, row, 0);
-        groupSums[group] += source.getElementAsDouble(row, col);
-      }
-      
-      // copy sums to matrix
-      for(int group=0;group!=ugroup.length();++group) {
-        result.setValue(group, col, groupSums[group]);
-      }
-      
-    }
-    return result.build();
-  }  
-    
   /**
    * Singular Value Decomposition implemented with Jlapack, a mechanical Fortran-to-java translation 
    * of the same lapack library that R uses.
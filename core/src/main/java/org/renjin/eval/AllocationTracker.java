@@ -0,0 +1,104 @@
+package org.renjin.eval;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the bytes of vector data built by the {@code Vector.Builder}s on behalf of
+ * a session, and enforces an optional soft limit on them.
+ *
+ * <p>Accounting is off by default, and costs a single read of a static field per
+ * vector built until the first tracker is created. Once it is on, the tracker of a
+ * session is bound to the evaluating thread when top level expressions are
+ * evaluated, and each vector built on that thread is counted against it.
+ *
+ * <p>The count is of bytes allocated, not of bytes live: memory which has since been
+ * collected remains counted until {@link #reset()} is called, for example through
+ * {@code gc(reset = TRUE)}. When the count exceeds the limit, the allocation which
+ * crossed it raises an R error and the count is reset, so that the session can
+ * carry on once the error has been handled.
+ */
+public class AllocationTracker {
+
+  private static volatile boolean enabled = false;
+
+  private static final ThreadLocal<AllocationTracker> CURRENT = new ThreadLocal<AllocationTracker>();
+
+  private final AtomicLong allocated = new AtomicLong(0);
+
+  /**
+   * The limit in bytes, or zero if there is none
+   */
+  private volatile long softLimit = 0;
+
+  public AllocationTracker() {
+    enabled = true;
+  }
+
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Counts subsequent allocations on the calling thread against {@code tracker},
+   * which may be {@code null} to stop counting them.
+   */
+  public static void bind(AllocationTracker tracker) {
+    if(CURRENT.get() != tracker) {
+      CURRENT.set(tracker);
+    }
+  }
+
+  /**
+   * Records the allocation of a vector of {@code length} elements of {@code elementSize}
+   * bytes each, against the tracker bound to the calling thread.
+   *
+   * @throws EvalException if the allocation takes the tracker over its limit
+   */
+  public static void recordVector(int length, int elementSize) {
+    if(enabled) {
+      AllocationTracker tracker = CURRENT.get();
+      if(tracker != null) {
+        tracker.record((long)length * elementSize);
+      }
+    }
+  }
+
+  private void record(long bytes) {
+    long total = allocated.addAndGet(bytes);
+    long limit = softLimit;
+    if(limit > 0 && total > limit) {
+      allocated.set(0);
+      throw new EvalException("vector memory allocated (%.1f Mb) exceeds the limit of %.1f Mb",
+          total / 1048576d, limit / 1048576d);
+    }
+  }
+
+  /**
+   * @return the number of bytes allocated since the tracker was created or last reset
+   */
+  public long getAllocatedBytes() {
+    return allocated.get();
+  }
+
+  public void reset() {
+    allocated.set(0);
+  }
+
+  /**
+   * @return the limit in bytes, or zero if there is none
+   */
+  public long getSoftLimit() {
+    return softLimit;
+  }
+
+  /**
+   * Sets the limit in bytes on the vector data allocated, or removes it if
+   * {@code bytes} is zero.
+   */
+  public void setSoftLimit(long bytes) {
+    if(bytes < 0) {
+      throw new IllegalArgumentException("limit must be >= 0");
+    }
+    this.softLimit = bytes;
+  }
+}
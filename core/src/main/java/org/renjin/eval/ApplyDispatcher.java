@@ -0,0 +1,191 @@
+package org.renjin.eval;
+
+import org.renjin.primitives.special.ReturnException;
+import org.renjin.sexp.*;
+
+/**
+ * Applies a function to each element of a vector in turn, evaluating
+ * {@code FUN(X[[i]], ...)} in the calling frame, as {@code lapply()}, {@code vapply()},
+ * {@code eapply()} and {@code rapply()} do.
+ *
+ * <p>Rather than evaluating a new call for each element, which would look up and
+ * dispatch {@code [[}, promise the arguments and match them against the formals all
+ * over again, the caller extracts each element itself and the dispatcher passes it to
+ * the function as an already-forced promise. For closures, the arguments are matched
+ * only on the first call, and the same matching is reused for every element. The
+ * function still sees the call {@code FUN(X[[i]], ...)} through {@code sys.call()}
+ * and {@code substitute()}.
+ *
+ * <p>Callers should only extract elements directly when {@code X} has no class
+ * attribute, since otherwise {@code [[} may dispatch to a method; for such vectors
+ * {@link #applyToCall(SEXP)} evaluates the extraction as before.
+ */
+public class ApplyDispatcher {
+
+  /**
+   * Stands in for the element while the arguments are matched
+   */
+  private static final Promise ELEMENT = new Promise(Null.INSTANCE, Null.INSTANCE);
+
+  private final Context context;
+  private final Environment rho;
+  private final Function function;
+
+  /**
+   * The promised extra arguments bound to {@code ...} in the calling frame
+   */
+  private final PairList extraArgs;
+
+  /**
+   * The formals of the closure, in the order in which they were matched, or
+   * {@code null} if the arguments have not yet been matched
+   */
+  private Symbol[] formalNames;
+
+  /**
+   * The value matched to each formal. This is {@link #ELEMENT} for the formal which
+   * receives the element, {@code Symbol.MISSING_ARG} for missing arguments without
+   * defaults, and the unevaluated default value for those with defaults.
+   */
+  private SEXP[] matchedValues;
+  private boolean[] isDefault;
+
+  /**
+   * True if the element is passed through the function's {@code ...}
+   */
+  private boolean[] containsElement;
+
+  public ApplyDispatcher(Context context, Environment rho, Function function) {
+    this.context = context;
+    this.rho = rho;
+    this.function = function;
+
+    SEXP ellipses = rho.findVariable(Symbols.ELLIPSES);
+    if(ellipses instanceof PairList) {
+      this.extraArgs = (PairList) ellipses;
+    } else {
+      this.extraArgs = Null.INSTANCE;
+    }
+  }
+
+  /**
+   * Applies the function to an element which has already been extracted.
+   *
+   * @param elementExpression the expression which evaluates to the element, normally
+   * {@code X[[i]]}, which is what {@code substitute()} returns for the first argument
+   * @param element the element itself
+   */
+  public SEXP apply(SEXP elementExpression, SEXP element) {
+    FunctionCall call = new FunctionCall(function, new PairList.Node(elementExpression,
+        new PairList.Node(Symbols.ELLIPSES, Null.INSTANCE)));
+    Promise elementPromise = new Promise(elementExpression, element);
+
+    if(function instanceof Closure) {
+      return applyClosure((Closure) function, call, elementPromise);
+
+    } else if(function instanceof SpecialFunction) {
+      return context.evaluate(call, rho);
+
+    } else {
+      context.clearInvisibleFlag();
+      return function.apply(context, rho, call, new PairList.Node(elementPromise,
+          new PairList.Node(Symbols.ELLIPSES, Null.INSTANCE)));
+    }
+  }
+
+  /**
+   * Applies the function by evaluating {@code FUN(elementExpression, ...)} in the
+   * calling frame, without any shortcuts.
+   */
+  public SEXP applyToCall(SEXP elementExpression) {
+    FunctionCall call = new FunctionCall(function, new PairList.Node(elementExpression,
+        new PairList.Node(Symbols.ELLIPSES, Null.INSTANCE)));
+    return context.evaluate(call, rho);
+  }
+
+  private SEXP applyClosure(Closure closure, FunctionCall call, Promise elementPromise) {
+    if(formalNames == null) {
+      matchArguments(closure);
+    }
+
+    PairList promisedArgs = new PairList.Node(elementPromise, extraArgs);
+    Context functionContext = context.beginFunction(call, closure, promisedArgs);
+    Environment functionEnvironment = functionContext.getEnvironment();
+
+    try {
+      for(int i=0;i!=formalNames.length;++i) {
+        SEXP value = matchedValues[i];
+        if(value == ELEMENT) {
+          value = elementPromise;
+        } else if(isDefault[i]) {
+          value = Promise.repromise(functionContext, functionEnvironment, value);
+        } else if(containsElement[i]) {
+          value = replaceElement((PairList) value, elementPromise);
+        }
+        functionEnvironment.setVariable(formalNames[i], value);
+      }
+
+      SEXP result = closure.doApply(functionContext);
+
+      functionContext.exit();
+
+      return result;
+    } catch(ReturnException e) {
+      if(e.getEnvironment() != functionEnvironment) {
+        throw e;
+      }
+      return e.getValue();
+    } catch(EvalException e) {
+      e.initContext(functionContext);
+      if(context.getGlobals().getInstrumentation() != null) {
+        context.getGlobals().getInstrumentation().evalExceptionRaised(e);
+      }
+      throw e;
+    }
+  }
+
+  private void matchArguments(Closure closure) {
+    PairList.Builder actuals = new PairList.Builder();
+    actuals.add(ELEMENT);
+    for(PairList.Node node : extraArgs.nodes()) {
+      actuals.add(node.getRawTag(), node.getValue());
+    }
+    PairList matched = ClosureDispatcher.matchArguments(closure.getFormals(), actuals.build());
+
+    int count = matched.length();
+    Symbol[] names = new Symbol[count];
+    matchedValues = new SEXP[count];
+    isDefault = new boolean[count];
+    containsElement = new boolean[count];
+
+    int i = 0;
+    for(PairList.Node node : matched.nodes()) {
+      names[i] = node.getTag();
+      SEXP value = node.getValue();
+      if(value == Symbol.MISSING_ARG) {
+        SEXP defaultValue = closure.getFormals().findByTag(node.getTag());
+        if(defaultValue != Symbol.MISSING_ARG) {
+          value = defaultValue;
+          isDefault[i] = true;
+        }
+      } else if(value instanceof PromisePairList) {
+        for(SEXP promise : ((PromisePairList) value).values()) {
+          if(promise == ELEMENT) {
+            containsElement[i] = true;
+          }
+        }
+      }
+      matchedValues[i] = value;
+      i++;
+    }
+    formalNames = names;
+  }
+
+  private static PromisePairList replaceElement(PairList promises, Promise elementPromise) {
+    PromisePairList.Builder replaced = new PromisePairList.Builder();
+    for(PairList.Node node : promises.nodes()) {
+      replaced.add(node.getRawTag(), node.getValue() == ELEMENT ? elementPromise : node.getValue());
+    }
+    return replaced.build();
+  }
+}
@@ -27,6 +27,7 @@ import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.PeekingIterator;
 import org.renjin.primitives.CollectionUtils;
+import org.renjin.primitives.Factors;
 import org.renjin.primitives.special.ReturnException;
 import org.renjin.sexp.*;
 
@@ -166,6 +167,15 @@ public class Calls {
       right.which = 0;
     }
 
+    /* compare factors on their codes, but only where Ops.factor or Ops.ordered
+       from base would have been dispatched, so that user-defined methods still apply */
+    if (isOps && dispatchesToSameBaseMethod(context, left.sxp, right.sxp)) {
+      SEXP factorResult = Factors.tryOps(opName, args);
+      if (factorResult != null) {
+        return factorResult;
+      }
+    }
+
 //    if (isFunction(rsxp) && IS_S4_OBJECT(CADR(args)) && rwhich > 0
 //        && isBasicClass(translateChar(STRING_ELT(rclass, rwhich)))) {
 //      value = CADR(args);
@@ -276,6 +286,9 @@ public class Calls {
       }
     }
 
+    if(context.getGlobals().getInstrumentation() != null) {
+      context.getGlobals().getInstrumentation().s3Dispatched();
+    }
     return applyClosure((Closure)left.sxp, context, newCall, promisedArgs, rho, newrho);
   }
 
@@ -354,6 +367,30 @@ public class Calls {
     return list.build();
   }
 
+  /**
+   * @return true if at least one of the methods found for the operands is a function, and
+   * those which are functions are the same closure, defined in the base namespace
+   */
+  private static boolean dispatchesToSameBaseMethod(Context context, SEXP left, SEXP right) {
+    SEXP method;
+    if (left instanceof Function) {
+      if (right instanceof Function && right != left) {
+        return false;
+      }
+      method = left;
+    } else if (right instanceof Function) {
+      method = right;
+    } else {
+      return false;
+    }
+    if (!(method instanceof Closure)) {
+      return false;
+    }
+    Environment definedIn = ((Closure) method).getEnclosingEnvironment();
+    return definedIn == context.getGlobals().baseNamespaceEnv ||
+        definedIn == context.getGlobals().baseEnvironment;
+  }
+
   /* gr needs to be protected on return from this function */
   static FindResult findmethod(Context context, Vector Class, String group,  String generic, Environment rho) {
     int len, whichclass;
@@ -88,6 +88,9 @@ public class ClosureDispatcher {
       return e.getValue();
     } catch(EvalException e) {
       e.initContext(functionContext);
+      if(callingContext.getGlobals().getInstrumentation() != null) {
+        callingContext.getGlobals().getInstrumentation().evalExceptionRaised(e);
+      }
       throw e;
     }
   }
@@ -23,6 +23,7 @@ package org.renjin.eval;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.io.CharStreams;
 import org.apache.commons.vfs.FileObject;
 import org.apache.commons.vfs.FileSystemException;
 import org.apache.commons.vfs.FileSystemManager;
@@ -32,7 +33,7 @@ import org.renjin.compiler.ir.tac.IRBodyBuilder;
 import org.renjin.compiler.ir.tac.IRFunctionTable;
 import org.renjin.graphics.ColorPalette;
 import org.renjin.graphics.GraphicsDevices;
-import org.renjin.parser.RParser;
+import org.renjin.parser.ParseCache;
 import org.renjin.primitives.io.connections.ConnectionTable;
 import org.renjin.primitives.random.RNG;
 import org.renjin.sexp.*;
@@ -108,6 +109,8 @@ public class Context {
       map.put("expressions" , new IntArrayVector(5000));
       map.put("width", new IntArrayVector(80));
       map.put("digits", new IntArrayVector(7));
+      map.put("scipen", new IntArrayVector(0));
+      map.put("max.print", new IntArrayVector(99999));
       map.put("echo", new LogicalArrayVector(false));
       map.put("verbose", new LogicalArrayVector(false));
       map.put("check.bounds", new LogicalArrayVector(false));
@@ -181,7 +184,7 @@ public class Context {
     private GraphicsDevices graphicsDevices = new GraphicsDevices();
     private ColorPalette colorPalette = new ColorPalette();
 
-    private final ConnectionTable connectionTable = new ConnectionTable();
+    private final ConnectionTable connectionTable;
     
     // can this be moved down to context so it's not global?
     public FileObject workingDirectory;
@@ -191,6 +194,41 @@ public class Context {
     public RNG rng = new RNG(this);
      
     private SessionController sessionController = new SessionController();
+
+    /**
+     * The warnings raised in a worker context, as a list of calls named by their
+     * messages, which are handed back to the parent when the worker finishes. This
+     * is {@code null} for contexts which store their warnings in {@code last.warning}.
+     */
+    private ListVector.NamedBuilder workerWarnings;
+
+    /**
+     * Counts the vector memory allocated by this session, or {@code null}
+     * if allocations are not being counted
+     */
+    private AllocationTracker allocationTracker;
+
+    /**
+     * Counts what the evaluator does on behalf of this session, or {@code null}
+     * if instrumentation is off
+     */
+    private Instrumentation instrumentation;
+
+    /**
+     * Whether {@code instrumentation} was turned on for this session, rather than
+     * shared with the session from which it was forked
+     */
+    private boolean ownsInstrumentation;
+
+    /**
+     * The limits on the time and memory which this session may spend on a computation
+     */
+    private EvaluationBudget budget;
+
+    /**
+     * The results of calls to memoised functions
+     */
+    private MemoCache memoCache;
     
     /**
      * Whether the result of the evaluation should be "invisible" in a
@@ -203,6 +241,7 @@ public class Context {
       this.fileSystemManager = fileSystemManager;
       this.homeDirectory = homeDirectory;
       this.workingDirectory = workingDirectory;
+      this.connectionTable = new ConnectionTable();
 
       systemEnvironment = Maps.newHashMap(System.getenv()); //load system environment variables
       systemEnvironment.put("R_LIBS", FileSystemUtils.defaultLibraryPaths());
@@ -214,6 +253,11 @@ public class Context {
       baseNamespaceEnv.setVariable(Symbol.get(".BaseNamespaceEnv"), baseNamespaceEnv);
       namespaceRegistry.setVariable(Symbol.get("base"), baseNamespaceEnv);
       securityManager = new SecurityManager();
+      budget = new EvaluationBudget(this);
+      memoCache = new MemoCache();
+      if(Boolean.getBoolean("renjin.instrumentation")) {
+        enableInstrumentation().registerMBean();
+      }
     }
 
     /** 
@@ -234,7 +278,14 @@ public class Context {
       this.baseEnvironment = toShare.baseEnvironment;
       this.namespaceRegistry = toShare.namespaceRegistry;
       this.baseNamespaceEnv = toShare.baseNamespaceEnv;
-      namespaceRegistry.setVariable(Symbol.get("base"), baseNamespaceEnv);
+      this.connectionTable = toShare.connectionTable;
+      this.securityManager = toShare.securityManager;
+      this.sessionController = toShare.sessionController;
+      this.commandLineArguments = toShare.commandLineArguments;
+      this.allocationTracker = toShare.allocationTracker;
+      this.instrumentation = toShare.instrumentation;
+      this.budget = new EvaluationBudget(this);
+      this.memoCache = toShare.memoCache;
       globalEnvironment.setVariable(Symbol.get(".BaseNamespaceEnv"), baseNamespaceEnv);
       workingDirectory = toShare.workingDirectory;
       options = toShare.options.clone();
@@ -287,6 +338,93 @@ public class Context {
     public PrintWriter getStdOut() throws IOException {
       return connectionTable.getStdout().getPrintWriter();
     }
+
+    /**
+     * @return the tracker counting the vector memory allocated by this session,
+     * or {@code null} if allocations are not being counted
+     */
+    public AllocationTracker getAllocationTracker() {
+      return allocationTracker;
+    }
+
+    /**
+     * Starts counting the vector memory allocated by this session, if it is not
+     * already being counted.
+     */
+    public AllocationTracker trackAllocations() {
+      if(allocationTracker == null) {
+        allocationTracker = new AllocationTracker();
+      }
+      return allocationTracker;
+    }
+
+    /**
+     * @return the counters of what the evaluator does on behalf of this
+     * session, or {@code null} if instrumentation is off
+     */
+    public Instrumentation getInstrumentation() {
+      return instrumentation;
+    }
+
+    /**
+     * Turns on instrumentation for this session, if it is not already on.
+     */
+    public Instrumentation enableInstrumentation() {
+      if(instrumentation == null) {
+        instrumentation = new Instrumentation();
+        ownsInstrumentation = true;
+      }
+      return instrumentation;
+    }
+
+    /**
+     * Releases what this session has registered outside of itself: its instrumentation
+     * MBean, if it registered one. Sessions forked from this one share its
+     * instrumentation, and leave it registered when they are closed.
+     */
+    public void close() {
+      if(ownsInstrumentation) {
+        instrumentation.unregisterMBean();
+      }
+    }
+
+    /**
+     * @return the limits on the time and memory which this session may spend
+     * on a computation
+     */
+    public EvaluationBudget getEvaluationBudget() {
+      return budget;
+    }
+
+    /**
+     * @return the cache of results of calls to memoised functions, which
+     * is shared with this session's workers
+     */
+    public MemoCache getMemoCache() {
+      return memoCache;
+    }
+
+    /**
+     * @return true if this is the {@code Globals} of a worker created by
+     * {@link Context#forkWorker()}, whose warnings are collected for its parent
+     */
+    public boolean isWorker() {
+      return workerWarnings != null;
+    }
+
+    public void addWorkerWarning(String message, SEXP call) {
+      workerWarnings.add(message, call);
+    }
+
+    /**
+     * Removes and returns the warnings collected so far by this worker. This must
+     * only be called once the worker's evaluation has completed.
+     */
+    public ListVector drainWorkerWarnings() {
+      ListVector warnings = workerWarnings.build();
+      workerWarnings = new ListVector.NamedBuilder();
+      return warnings;
+    }
   }
 
 
@@ -362,7 +500,33 @@ public class Context {
 
   }
 
+  /**
+   * Creates a new top level context for evaluating on another thread in parallel
+   * with this one, as a forked child process would in GNU R.
+   *
+   * <p>The worker shares the base environment, the namespace registry and the
+   * connections of this context, which it must treat as read-only, but has its own
+   * global environment, options and random number stream. Rather than being stored in
+   * {@code last.warning}, which is shared, its warnings are collected so that they can be
+   * re-signalled in the parent through {@link Globals#drainWorkerWarnings()}.
+   */
+  public Context forkWorker() {
+    Globals workerGlobals = new Globals(this.globals);
+    workerGlobals.rng = globals.rng.forkStream(workerGlobals);
+    workerGlobals.workerWarnings = new ListVector.NamedBuilder();
+    workerGlobals.budget = globals.budget.forWorker(workerGlobals);
+    Context context = new Context();
+    context.globals = workerGlobals;
+    context.type = Context.Type.TOP_LEVEL;
+    context.environment = workerGlobals.globalEnvironment;
+    return context;
+  }
+
   public Context beginFunction(FunctionCall call, Closure closure, PairList arguments) {
+    if(globals.instrumentation != null) {
+      globals.instrumentation.closureCalled(evaluationDepth+1);
+    }
+    globals.budget.step(this);
     Context context = new Context();
     context.type = Type.FUNCTION;
     context.parent = this;
@@ -390,6 +554,30 @@ public class Context {
   }
   
   public SEXP evaluate(SEXP expression, Environment rho) {
+    if(type == Type.TOP_LEVEL) {
+      if(AllocationTracker.isEnabled()) {
+        AllocationTracker.bind(globals.allocationTracker);
+      }
+      return evaluateComputation(expression, rho);
+    }
+    return evaluateUnchecked(expression, rho);
+  }
+
+  /**
+   * Evaluates an expression in a top level context, which begins a new computation,
+   * limited by the session's {@link EvaluationBudget}, unless one is underway
+   */
+  private SEXP evaluateComputation(SEXP expression, Environment rho) {
+    EvaluationBudget budget = globals.budget;
+    budget.enter();
+    try {
+      return evaluateUnchecked(expression, rho);
+    } finally {
+      budget.exit();
+    }
+  }
+
+  private SEXP evaluateUnchecked(SEXP expression, Environment rho) {
     if(USE_IR) {
       return evaluateIR(expression, rho);
     } else {
@@ -453,6 +641,9 @@ public class Context {
   private SEXP evaluateCall(FunctionCall call, Environment rho) {
     clearInvisibleFlag();
     Function functionExpr = evaluateFunction(call.getFunction(), rho);
+    if(globals.instrumentation != null && functionExpr instanceof PrimitiveFunction) {
+      return globals.instrumentation.applyPrimitive(this, rho, call, (PrimitiveFunction) functionExpr);
+    }
     return  functionExpr.apply(this, rho, call, call.getArguments());
   }
 
@@ -660,7 +851,7 @@ public class Context {
     Context evalContext = this.beginEvalContext(globals.baseNamespaceEnv);
     Reader reader = new InputStreamReader(getClass().getResourceAsStream(resourceName));
     try {
-      evalContext.evaluate(RParser.parseSource(reader));
+      evalContext.evaluate(ParseCache.getDefault().parse(CharStreams.toString(reader)));
     } finally {
       reader.close();
     }
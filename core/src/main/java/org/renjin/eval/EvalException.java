@@ -30,6 +30,11 @@ public class EvalException extends RuntimeException {
   private SEXP exp;
   private Context context;
 
+  /**
+   * True once the error has been counted by {@link Instrumentation}
+   */
+  boolean counted;
+
   public EvalException(String message, Object... args) {
     super(args.length == 0 ? message : String.format(message, args));
   }
@@ -58,6 +63,14 @@ public class EvalException extends RuntimeException {
     }
   }
 
+  /**
+   * @return the error message, without the R stack trace which
+   * {@link #getMessage()} appends once the context is known
+   */
+  public String getErrorMessage() {
+    return super.getMessage();
+  }
+
   @Override
   public String getMessage() {
     if(context == null) {
@@ -0,0 +1,368 @@
+package org.renjin.eval;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.renjin.primitives.Conditions;
+import org.renjin.sexp.ListVector;
+import org.renjin.sexp.Null;
+import org.renjin.sexp.StringVector;
+import org.renjin.sexp.Symbols;
+
+/**
+ * Limits the resources which a session may spend on a computation: elapsed time, CPU
+ * time, evaluation steps and bytes of vector data allocated.
+ *
+ * <p>The evaluator counts a step each time a closure is called and each time a loop
+ * goes round, and every {@value #CHECK_INTERVAL} steps it checks the clocks against
+ * the limits, and whether the evaluating thread has been interrupted. A computation
+ * which reaches a limit, or whose thread is interrupted, is stopped by an R error,
+ * which is signalled to the condition handlers before it is raised, so that
+ * {@code tryCatch()} and {@code try()} can handle it. A single call to a builtin,
+ * such as {@code sort()} on a very long vector, is not interrupted.
+ *
+ * <p>As in GNU R, {@code setTimeLimit()} sets limits which apply to each top level
+ * computation, starting with the current one, unless they are transient, in which
+ * case they only apply to the current one. {@code setSessionTimeLimit()} sets limits
+ * on the rest of the session. Once a limit has been reached it is lifted for the rest
+ * of the computation, so that its error handlers can run, but limits which are not
+ * transient apply again from the next top level computation.
+ *
+ * <p>CPU time is that of the thread which set the limit, as measured by the JVM's
+ * {@link ThreadMXBean}, and is not checked on other threads. The workers created by
+ * {@code mclapply()} and the like stop at the elapsed time limits of the computation
+ * which started them, and when they are interrupted.
+ */
+public class EvaluationBudget {
+
+  /**
+   * The number of steps between checks of the clocks and of the interrupt flag
+   */
+  public static final int CHECK_INTERVAL = 256;
+
+  private static final long NO_LIMIT = Long.MAX_VALUE;
+
+  private final Context.Globals globals;
+
+  /**
+   * True if this is the budget of a worker, whose limits are fixed by the
+   * computation which started it
+   */
+  private final boolean worker;
+
+  // The limits on each top level computation
+
+  private long elapsedLimit = NO_LIMIT;
+  private long cpuLimit = NO_LIMIT;
+  private long stepLimit = NO_LIMIT;
+  private long allocationLimit = NO_LIMIT;
+  private boolean transientLimits;
+
+  // The limits on the current computation, and on the session, as
+  // deadlines in terms of System.nanoTime(), thread CPU time, steps taken
+  // and bytes allocated
+
+  private long elapsedDeadline = NO_LIMIT;
+  private long cpuDeadline = NO_LIMIT;
+  private long stepDeadline = NO_LIMIT;
+  private long allocationDeadline = NO_LIMIT;
+  private long sessionElapsedDeadline = NO_LIMIT;
+  private long sessionCpuDeadline = NO_LIMIT;
+
+  /**
+   * The thread whose CPU time is measured
+   */
+  private Thread cpuThread;
+
+  private boolean limited;
+  private int depth;
+
+  private long steps;
+  private long nextCheck = CHECK_INTERVAL;
+
+  private final AtomicLong elapsedLimitsReached = new AtomicLong();
+  private final AtomicLong cpuLimitsReached = new AtomicLong();
+  private final AtomicLong stepLimitsReached = new AtomicLong();
+  private final AtomicLong allocationLimitsReached = new AtomicLong();
+  private final AtomicLong interrupts = new AtomicLong();
+
+  EvaluationBudget(Context.Globals globals) {
+    this.globals = globals;
+    this.worker = false;
+  }
+
+  private EvaluationBudget(Context.Globals workerGlobals, EvaluationBudget parent) {
+    this.globals = workerGlobals;
+    this.worker = true;
+    this.elapsedDeadline = parent.elapsedDeadline;
+    this.sessionElapsedDeadline = parent.sessionElapsedDeadline;
+    this.limited = elapsedDeadline != NO_LIMIT || sessionElapsedDeadline != NO_LIMIT;
+  }
+
+  /**
+   * @return a budget for a worker evaluating on behalf of the current computation
+   */
+  EvaluationBudget forWorker(Context.Globals workerGlobals) {
+    return new EvaluationBudget(workerGlobals, this);
+  }
+
+  /**
+   * Counts an evaluation step, and periodically checks whether the computation has
+   * reached one of its limits or been interrupted.
+   */
+  public void step(Context context) {
+    if(++steps >= nextCheck) {
+      check(context);
+    }
+  }
+
+  /**
+   * Called at the start of each evaluation in a top level context, which starts a
+   * new computation unless one is already underway
+   */
+  void enter() {
+    if(depth++ == 0 && limited && !worker) {
+      arm();
+    }
+  }
+
+  void exit() {
+    if(--depth == 0 && !worker && transientLimits) {
+      clearComputationLimits();
+    }
+  }
+
+  /**
+   * Limits the elapsed and CPU time of each top level computation, starting with the
+   * current one, as {@code setTimeLimit()} does.
+   *
+   * @param cpu the CPU time in seconds, or {@code Inf} for no limit
+   * @param elapsed the elapsed time in seconds, or {@code Inf} for no limit
+   * @param transientLimits true if the limits only apply to the current computation
+   */
+  public void setTimeLimit(double cpu, double elapsed, boolean transientLimits) {
+    this.cpuLimit = nanos(cpu);
+    this.elapsedLimit = nanos(elapsed);
+    this.transientLimits = transientLimits;
+    arm();
+  }
+
+  /**
+   * Limits the elapsed and CPU time of the rest of the session, as
+   * {@code setSessionTimeLimit()} does.
+   */
+  public void setSessionTimeLimit(double cpu, double elapsed) {
+    long cpuNanos = nanos(cpu);
+    long elapsedNanos = nanos(elapsed);
+    sessionElapsedDeadline = deadline(System.nanoTime(), elapsedNanos);
+    sessionCpuDeadline = cpuNanos == NO_LIMIT ? NO_LIMIT : deadline(threadCpuTime(), cpuNanos);
+    cpuThread = Thread.currentThread();
+    updateLimited();
+  }
+
+  /**
+   * Limits the number of steps taken by each top level computation, starting with
+   * the current one, or removes the limit if {@code steps} is zero.
+   */
+  public void setStepLimit(long steps) {
+    this.stepLimit = steps > 0 ? steps : NO_LIMIT;
+    arm();
+  }
+
+  /**
+   * Limits the bytes of vector data allocated by each top level computation, starting
+   * with the current one, or removes the limit if {@code bytes} is zero. This turns on
+   * allocation accounting: see {@link AllocationTracker}.
+   */
+  public void setAllocationLimit(long bytes) {
+    if(bytes > 0) {
+      globals.trackAllocations();
+      this.allocationLimit = bytes;
+    } else {
+      this.allocationLimit = NO_LIMIT;
+    }
+    arm();
+  }
+
+  private void arm() {
+    if(worker) {
+      throw new IllegalStateException("the limits of a worker cannot be changed");
+    }
+    long now = System.nanoTime();
+    elapsedDeadline = deadline(now, elapsedLimit);
+    if(cpuLimit != NO_LIMIT) {
+      cpuDeadline = deadline(threadCpuTime(), cpuLimit);
+      cpuThread = Thread.currentThread();
+    } else {
+      cpuDeadline = NO_LIMIT;
+    }
+    stepDeadline = deadline(steps, stepLimit);
+    if(allocationLimit != NO_LIMIT) {
+      allocationDeadline = deadline(globals.getAllocationTracker().getAllocatedBytes(), allocationLimit);
+    } else {
+      allocationDeadline = NO_LIMIT;
+    }
+    nextCheck = Math.min(steps + CHECK_INTERVAL, stepDeadline);
+    updateLimited();
+  }
+
+  private void clearComputationLimits() {
+    elapsedLimit = cpuLimit = stepLimit = allocationLimit = NO_LIMIT;
+    elapsedDeadline = cpuDeadline = stepDeadline = allocationDeadline = NO_LIMIT;
+    updateLimited();
+  }
+
+  private void updateLimited() {
+    limited = elapsedLimit != NO_LIMIT || cpuLimit != NO_LIMIT || stepLimit != NO_LIMIT ||
+        allocationLimit != NO_LIMIT || sessionElapsedDeadline != NO_LIMIT ||
+        sessionCpuDeadline != NO_LIMIT;
+  }
+
+  private void check(Context context) {
+    nextCheck = Math.min(steps + CHECK_INTERVAL, stepDeadline);
+
+    if(Thread.interrupted()) {
+      interrupts.incrementAndGet();
+      throw stop(context, "interrupted", "interrupt", "condition");
+    }
+    if(!limited) {
+      return;
+    }
+
+    if(steps >= stepDeadline) {
+      stepDeadline = NO_LIMIT;
+      nextCheck = steps + CHECK_INTERVAL;
+      stepLimitsReached.incrementAndGet();
+      throw stop(context, "reached evaluation step limit");
+    }
+
+    long now = System.nanoTime();
+    if(sessionElapsedDeadline != NO_LIMIT && now - sessionElapsedDeadline > 0) {
+      clearTimeDeadlines();
+      sessionElapsedDeadline = NO_LIMIT;
+      updateLimited();
+      elapsedLimitsReached.incrementAndGet();
+      throw stop(context, "reached session elapsed time limit");
+    }
+    if(elapsedDeadline != NO_LIMIT && now - elapsedDeadline > 0) {
+      clearTimeDeadlines();
+      elapsedLimitsReached.incrementAndGet();
+      throw stop(context, "reached elapsed time limit");
+    }
+
+    if(allocationDeadline != NO_LIMIT &&
+        globals.getAllocationTracker().getAllocatedBytes() > allocationDeadline) {
+      allocationDeadline = NO_LIMIT;
+      allocationLimitsReached.incrementAndGet();
+      throw stop(context, "reached vector allocation limit");
+    }
+
+    if(Thread.currentThread() == cpuThread &&
+        (cpuDeadline != NO_LIMIT || sessionCpuDeadline != NO_LIMIT)) {
+      long cpu = threadCpuTime();
+      if(cpu > sessionCpuDeadline) {
+        clearTimeDeadlines();
+        sessionCpuDeadline = NO_LIMIT;
+        updateLimited();
+        cpuLimitsReached.incrementAndGet();
+        throw stop(context, "reached session CPU time limit");
+      }
+      if(cpu > cpuDeadline) {
+        clearTimeDeadlines();
+        cpuLimitsReached.incrementAndGet();
+        throw stop(context, "reached CPU time limit");
+      }
+    }
+  }
+
+  /**
+   * Lifts the time limits on the current computation once one has been reached, as
+   * GNU R does, so that its error handlers can run. A worker keeps its limits, so that
+   * the elements which remain to be evaluated fail quickly.
+   */
+  private void clearTimeDeadlines() {
+    if(!worker) {
+      elapsedDeadline = cpuDeadline = NO_LIMIT;
+    }
+  }
+
+  private EvalException stop(Context context, String message) {
+    return stop(context, message, "evaluationBudgetExceeded", "simpleError", "error", "condition");
+  }
+
+  /**
+   * Signals a condition to the handlers established by {@code tryCatch()} and
+   * {@code withCallingHandlers()}, and builds the error which stops the computation
+   */
+  private EvalException stop(Context context, String message, String... conditionClass) {
+    ListVector.NamedBuilder condition = new ListVector.NamedBuilder(0, 2);
+    condition.add("message", new StringVector(message));
+    condition.add("call", Null.INSTANCE);
+    condition.setAttribute(Symbols.CLASS, new StringVector(conditionClass));
+
+    Instrumentation instrumentation = globals.getInstrumentation();
+    if(instrumentation != null) {
+      instrumentation.budgetExceeded(conditionClass[0].equals("interrupt") ? "interrupt" : message);
+    }
+
+    Conditions.signalCondition(context, condition.build(), message, Null.INSTANCE);
+
+    EvalException e = new EvalException(message);
+    e.initContext(context);
+    return e;
+  }
+
+  /**
+   * Converts a limit in seconds to nanoseconds. As in GNU R, a limit which is
+   * not finite and positive means there is no limit.
+   */
+  private static long nanos(double seconds) {
+    if(Double.isNaN(seconds) || Double.isInfinite(seconds) || seconds <= 0 || seconds * 1e9 >= NO_LIMIT) {
+      return NO_LIMIT;
+    }
+    return (long)(seconds * 1e9);
+  }
+
+  private static long deadline(long start, long limit) {
+    if(limit == NO_LIMIT || start > NO_LIMIT - limit) {
+      return NO_LIMIT;
+    }
+    return start + limit;
+  }
+
+  private static long threadCpuTime() {
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    if(!threads.isCurrentThreadCpuTimeSupported()) {
+      throw new EvalException("CPU time limits are not supported on this platform");
+    }
+    return threads.getCurrentThreadCpuTime();
+  }
+
+  /**
+   * @return the number of steps counted since the session began
+   */
+  public long getSteps() {
+    return steps;
+  }
+
+  public long getElapsedLimitsReached() {
+    return elapsedLimitsReached.get();
+  }
+
+  public long getCpuLimitsReached() {
+    return cpuLimitsReached.get();
+  }
+
+  public long getStepLimitsReached() {
+    return stepLimitsReached.get();
+  }
+
+  public long getAllocationLimitsReached() {
+    return allocationLimitsReached.get();
+  }
+
+  public long getInterrupts() {
+    return interrupts.get();
+  }
+}
@@ -0,0 +1,359 @@
+package org.renjin.eval;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.renjin.sexp.Environment;
+import org.renjin.sexp.FunctionCall;
+import org.renjin.sexp.PrimitiveFunction;
+import org.renjin.sexp.SEXP;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Counts what the evaluator does on behalf of a session: closure calls and their depth,
+ * calls to each primitive and the time spent in them, promises forced, S3 dispatches,
+ * errors raised, computations stopped by their budget, and bytes read and written
+ * through binary connection functions such as {@code readBin()}, and characters read
+ * and written through text functions such as {@code readLines()}.
+ *
+ * <p>Instrumentation is off unless it has been turned on for the session with
+ * {@link Context.Globals#enableInstrumentation()}, or for all sessions with the
+ * {@code renjin.instrumentation} system property, and while it is off it costs a
+ * single null check at each point where it would count something. The counters can
+ * be read through the getters of this class, or through JMX once
+ * {@link #registerMBean()} has been called, until {@link Context.Globals#close()}
+ * unregisters it.
+ *
+ * <p>Timing every primitive call adds two calls to {@code System.nanoTime()} to each
+ * one, which is significant for cheap primitives such as arithmetic. With a sampling
+ * interval of n, only every nth call to each primitive is timed, and the total
+ * time is estimated from the average time of the calls which were timed. The interval
+ * defaults to the value of the {@code renjin.instrumentation.sampling} system property,
+ * or 1, to time every call. An interval of 0 turns timing off altogether.
+ *
+ * <p>Times are inclusive: the time spent in {@code lapply()} includes the time spent in
+ * the function it applies.
+ */
+public class Instrumentation implements InstrumentationMXBean {
+
+  public static final int DEFAULT_TOP_PRIMITIVES = 20;
+
+  private static final AtomicInteger SESSION_COUNT = new AtomicInteger(0);
+
+  private final AtomicLong closureCalls = new AtomicLong();
+  private final AtomicInteger maxClosureDepth = new AtomicInteger();
+  private final AtomicLong builtinCalls = new AtomicLong();
+  private final AtomicLong promisesForced = new AtomicLong();
+  private final AtomicLong s3Dispatches = new AtomicLong();
+  private final AtomicLong evalExceptions = new AtomicLong();
+  private final AtomicLong bytesRead = new AtomicLong();
+  private final AtomicLong bytesWritten = new AtomicLong();
+  private final AtomicLong charsRead = new AtomicLong();
+  private final AtomicLong charsWritten = new AtomicLong();
+
+  private final ConcurrentMap<String, AtomicLong> budgetsExceeded = new ConcurrentHashMap<String, AtomicLong>();
+
+  private final ConcurrentMap<String, PrimitiveCounter> primitives = new ConcurrentHashMap<String, PrimitiveCounter>();
+
+  private volatile int samplingInterval = Integer.getInteger("renjin.instrumentation.sampling", 1);
+
+  private ObjectName objectName;
+
+  Instrumentation() {
+  }
+
+  void closureCalled(int depth) {
+    closureCalls.incrementAndGet();
+    int max;
+    while(depth > (max = maxClosureDepth.get())) {
+      if(maxClosureDepth.compareAndSet(max, depth)) {
+        break;
+      }
+    }
+  }
+
+  /**
+   * Applies a builtin or special function, counting the call and, if it is
+   * sampled, timing it.
+   */
+  SEXP applyPrimitive(Context context, Environment rho, FunctionCall call, PrimitiveFunction function) {
+    PrimitiveCounter counter = counterFor(function.getName());
+    long calls = counter.calls.incrementAndGet();
+    builtinCalls.incrementAndGet();
+
+    int interval = samplingInterval;
+    if(interval <= 0 || calls % interval != 0) {
+      try {
+        return function.apply(context, rho, call, call.getArguments());
+      } catch(EvalException e) {
+        evalExceptionRaised(e);
+        throw e;
+      }
+    }
+
+    long start = System.nanoTime();
+    try {
+      return function.apply(context, rho, call, call.getArguments());
+    } catch(EvalException e) {
+      evalExceptionRaised(e);
+      throw e;
+    } finally {
+      counter.sampledNanos.addAndGet(System.nanoTime() - start);
+      counter.samples.incrementAndGet();
+    }
+  }
+
+  private PrimitiveCounter counterFor(String name) {
+    PrimitiveCounter counter = primitives.get(name);
+    if(counter == null) {
+      PrimitiveCounter newCounter = new PrimitiveCounter(name);
+      counter = primitives.putIfAbsent(name, newCounter);
+      if(counter == null) {
+        counter = newCounter;
+      }
+    }
+    return counter;
+  }
+
+  public void promiseForced() {
+    promisesForced.incrementAndGet();
+  }
+
+  public void s3Dispatched() {
+    s3Dispatches.incrementAndGet();
+  }
+
+  /**
+   * Counts an error, once only however many frames it passes through
+   */
+  public void evalExceptionRaised(EvalException e) {
+    if(!e.counted) {
+      e.counted = true;
+      evalExceptions.incrementAndGet();
+    }
+  }
+
+  /**
+   * Counts a computation stopped by its {@link EvaluationBudget}
+   *
+   * @param reason the limit which was reached, or "interrupt"
+   */
+  public void budgetExceeded(String reason) {
+    AtomicLong count = budgetsExceeded.get(reason);
+    if(count == null) {
+      AtomicLong newCount = new AtomicLong();
+      count = budgetsExceeded.putIfAbsent(reason, newCount);
+      if(count == null) {
+        count = newCount;
+      }
+    }
+    count.incrementAndGet();
+  }
+
+  public void bytesRead(long count) {
+    bytesRead.addAndGet(count);
+  }
+
+  public void bytesWritten(long count) {
+    bytesWritten.addAndGet(count);
+  }
+
+  public void charsRead(long count) {
+    charsRead.addAndGet(count);
+  }
+
+  public void charsWritten(long count) {
+    charsWritten.addAndGet(count);
+  }
+
+  @Override
+  public long getClosureCalls() {
+    return closureCalls.get();
+  }
+
+  @Override
+  public int getMaxClosureDepth() {
+    return maxClosureDepth.get();
+  }
+
+  @Override
+  public long getBuiltinCalls() {
+    return builtinCalls.get();
+  }
+
+  @Override
+  public long getPromisesForced() {
+    return promisesForced.get();
+  }
+
+  @Override
+  public long getS3Dispatches() {
+    return s3Dispatches.get();
+  }
+
+  @Override
+  public long getEvalExceptions() {
+    return evalExceptions.get();
+  }
+
+  @Override
+  public long getConnectionBytesRead() {
+    return bytesRead.get();
+  }
+
+  @Override
+  public long getConnectionBytesWritten() {
+    return bytesWritten.get();
+  }
+
+  @Override
+  public long getConnectionCharsRead() {
+    return charsRead.get();
+  }
+
+  @Override
+  public long getConnectionCharsWritten() {
+    return charsWritten.get();
+  }
+
+  @Override
+  public Map<String, Long> getCallsByPrimitive() {
+    Map<String, Long> calls = Maps.newTreeMap();
+    for(PrimitiveCounter counter : primitives.values()) {
+      calls.put(counter.name, counter.calls.get());
+    }
+    return calls;
+  }
+
+  @Override
+  public Map<String, Long> getBudgetsExceeded() {
+    Map<String, Long> counts = Maps.newTreeMap();
+    for(Map.Entry<String, AtomicLong> entry : budgetsExceeded.entrySet()) {
+      counts.put(entry.getKey(), entry.getValue().get());
+    }
+    return counts;
+  }
+
+  @Override
+  public Map<String, Double> getTopPrimitivesByTime() {
+    return getTopPrimitivesByTime(DEFAULT_TOP_PRIMITIVES);
+  }
+
+  /**
+   * @return the estimated total time in milliseconds spent in each of the {@code count}
+   * primitives in which the most time has been spent, in descending order of time
+   */
+  public Map<String, Double> getTopPrimitivesByTime(int count) {
+    List<PrimitiveCounter> counters = Lists.newArrayList(primitives.values());
+    Collections.sort(counters, new Comparator<PrimitiveCounter>() {
+      @Override
+      public int compare(PrimitiveCounter a, PrimitiveCounter b) {
+        return Double.compare(b.estimatedNanos(), a.estimatedNanos());
+      }
+    });
+    Map<String, Double> top = Maps.newLinkedHashMap();
+    for(PrimitiveCounter counter : counters) {
+      if(top.size() == count || counter.samples.get() == 0) {
+        break;
+      }
+      top.put(counter.name, counter.estimatedNanos() / 1e6);
+    }
+    return top;
+  }
+
+  @Override
+  public int getSamplingInterval() {
+    return samplingInterval;
+  }
+
+  /**
+   * Times every {@code interval}th call to each primitive, or none if {@code interval} is 0
+   */
+  @Override
+  public void setSamplingInterval(int interval) {
+    if(interval < 0) {
+      throw new IllegalArgumentException("interval must be >= 0");
+    }
+    this.samplingInterval = interval;
+  }
+
+  @Override
+  public void reset() {
+    closureCalls.set(0);
+    maxClosureDepth.set(0);
+    builtinCalls.set(0);
+    promisesForced.set(0);
+    s3Dispatches.set(0);
+    evalExceptions.set(0);
+    bytesRead.set(0);
+    bytesWritten.set(0);
+    charsRead.set(0);
+    charsWritten.set(0);
+    budgetsExceeded.clear();
+    primitives.clear();
+  }
+
+  /**
+   * Registers these counters with the platform MBean server, under the name
+   * {@code org.renjin:type=Session,name=session-N}
+   */
+  public synchronized ObjectName registerMBean() {
+    if(objectName == null) {
+      try {
+        ObjectName name = new ObjectName("org.renjin:type=Session,name=session-" + SESSION_COUNT.incrementAndGet());
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+        objectName = name;
+      } catch(JMException e) {
+        throw new IllegalStateException("Could not register instrumentation MBean", e);
+      }
+    }
+    return objectName;
+  }
+
+  public synchronized void unregisterMBean() {
+    if(objectName != null) {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      try {
+        server.unregisterMBean(objectName);
+      } catch(JMException e) {
+        // already gone
+      }
+      objectName = null;
+    }
+  }
+
+  private static class PrimitiveCounter {
+    private final String name;
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong samples = new AtomicLong();
+    private final AtomicLong sampledNanos = new AtomicLong();
+
+    public PrimitiveCounter(String name) {
+      this.name = name;
+    }
+
+    /**
+     * Estimates the total time spent from the average time of the sampled calls
+     */
+    public double estimatedNanos() {
+      long sampleCount = samples.get();
+      if(sampleCount == 0) {
+        return 0;
+      }
+      return (double) sampledNanos.get() / sampleCount * calls.get();
+    }
+  }
+}
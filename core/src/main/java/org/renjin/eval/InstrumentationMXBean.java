@@ -0,0 +1,59 @@
+package org.renjin.eval;
+
+import java.util.Map;
+
+/**
+ * The counters of an {@link Instrumentation}, as exposed through JMX
+ */
+public interface InstrumentationMXBean {
+
+  long getClosureCalls();
+
+  int getMaxClosureDepth();
+
+  long getBuiltinCalls();
+
+  long getPromisesForced();
+
+  long getS3Dispatches();
+
+  long getEvalExceptions();
+
+  /**
+   * @return the number of bytes read by binary functions such as {@code readBin()}
+   */
+  long getConnectionBytesRead();
+
+  long getConnectionBytesWritten();
+
+  /**
+   * @return the number of characters read by text functions such as {@code readLines()},
+   * which may differ from the number of bytes read from the underlying stream
+   */
+  long getConnectionCharsRead();
+
+  long getConnectionCharsWritten();
+
+  /**
+   * @return the number of calls to each builtin or special function
+   */
+  Map<String, Long> getCallsByPrimitive();
+
+  /**
+   * @return the number of computations stopped on reaching each kind of limit
+   * of their {@link EvaluationBudget}, or by an interrupt
+   */
+  Map<String, Long> getBudgetsExceeded();
+
+  /**
+   * @return the estimated total time in milliseconds spent in each of the
+   * primitives in which the most time has been spent
+   */
+  Map<String, Double> getTopPrimitivesByTime();
+
+  int getSamplingInterval();
+
+  void setSamplingInterval(int interval);
+
+  void reset();
+}
@@ -0,0 +1,326 @@
+package org.renjin.eval;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.math.complex.Complex;
+import org.renjin.primitives.SizeEstimator;
+import org.renjin.sexp.AtomicVector;
+import org.renjin.sexp.ComplexVector;
+import org.renjin.sexp.DoubleVector;
+import org.renjin.sexp.Function;
+import org.renjin.sexp.ListVector;
+import org.renjin.sexp.Null;
+import org.renjin.sexp.PairList;
+import org.renjin.sexp.RawVector;
+import org.renjin.sexp.SEXP;
+import org.renjin.sexp.StringVector;
+import org.renjin.sexp.Symbol;
+
+import com.google.common.collect.MapMaker;
+
+/**
+ * Caches the results of calls to memoised functions, as created by {@code memoise()},
+ * keyed by the function and the values of its arguments.
+ *
+ * <p>Arguments are looked up by a 64-bit hash of their contents, and then compared with
+ * {@code equals()}, which is what {@code identical()} uses, so that a collision cannot
+ * return the wrong result. Vectors are immutable, so the hash of a long vector is
+ * remembered for as long as the vector itself is reachable, and passing the same vector
+ * again costs an identity lookup rather than a pass over its elements. Environments,
+ * closures and other reference objects are hashed and compared by identity.
+ *
+ * <p>The cache is bounded by the estimated size in bytes of the results and arguments
+ * it holds, as computed by {@link SizeEstimator}, and evicts the least recently used
+ * entries once it is full. The bound defaults to the {@code renjin.memoise.limit}
+ * system property, or 64 MB.
+ */
+public class MemoCache {
+
+  public static final long DEFAULT_LIMIT = Long.getLong("renjin.memoise.limit", 64L * 1024 * 1024);
+
+  /**
+   * Vectors shorter than this are hashed each time, which is cheaper than
+   * looking up a remembered hash
+   */
+  private static final int REMEMBER_HASH_LENGTH = 64;
+
+  private static final ConcurrentMap<SEXP, Long> HASHES = new MapMaker().weakKeys().makeMap();
+
+  private static final long MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+  private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+
+  private long limit = DEFAULT_LIMIT;
+  private long bytes;
+
+  private long hits;
+  private long misses;
+  private long evictions;
+  private long rejections;
+
+  MemoCache() {
+  }
+
+  /**
+   * Builds the key under which the result of applying {@code function} to
+   * {@code arguments} is cached.
+   */
+  public static Key key(Function function, ListVector arguments) {
+    SEXP[] values = new SEXP[arguments.length()];
+    String[] names = new String[arguments.length()];
+    long hash = System.identityHashCode(function);
+    for(int i = 0; i != values.length; ++i) {
+      values[i] = arguments.getElementAsSEXP(i);
+      names[i] = arguments.getName(i);
+      hash = mix(hash, names[i].hashCode());
+      hash = mix(hash, contentHash(values[i]));
+    }
+    return new Key(function, names, values, hash);
+  }
+
+  /**
+   * @return the cached result for {@code key}, or {@code null} if there is none
+   */
+  public synchronized SEXP get(Key key) {
+    Entry entry = entries.get(key);
+    if(entry == null) {
+      misses++;
+      return null;
+    }
+    hits++;
+    return entry.value;
+  }
+
+  /**
+   * Caches {@code value} as the result for {@code key}, evicting the least recently
+   * used entries as needed to stay within the limit. Results which alone would
+   * exceed the limit are not cached.
+   */
+  public void put(Key key, SEXP value) {
+    long size = SizeEstimator.deepSize(value);
+    for(SEXP argument : key.values) {
+      size += SizeEstimator.deepSize(argument);
+    }
+    synchronized (this) {
+      if(size > limit) {
+        rejections++;
+        return;
+      }
+      Entry previous = entries.put(key, new Entry(value, size));
+      if(previous != null) {
+        bytes -= previous.size;
+      }
+      bytes += size;
+      evict();
+    }
+  }
+
+  private void evict() {
+    Iterator<Entry> it = entries.values().iterator();
+    while(bytes > limit && it.hasNext()) {
+      bytes -= it.next().size;
+      it.remove();
+      evictions++;
+    }
+  }
+
+  /**
+   * Removes the results cached for {@code function}, or all results
+   * if {@code function} is {@code null}
+   */
+  public synchronized void forget(Function function) {
+    Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+    while(it.hasNext()) {
+      Map.Entry<Key, Entry> entry = it.next();
+      if(function == null || entry.getKey().function == function) {
+        bytes -= entry.getValue().size;
+        it.remove();
+      }
+    }
+  }
+
+  public synchronized long getLimit() {
+    return limit;
+  }
+
+  /**
+   * Sets the limit on the estimated size in bytes of the cache,
+   * evicting entries as needed to meet it
+   */
+  public synchronized void setLimit(long limit) {
+    if(limit < 0) {
+      throw new IllegalArgumentException("limit must be >= 0");
+    }
+    this.limit = limit;
+    evict();
+  }
+
+  public synchronized int getEntryCount() {
+    return entries.size();
+  }
+
+  public synchronized long getBytes() {
+    return bytes;
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+
+  /**
+   * @return the number of results which were not cached because they
+   * alone would have exceeded the limit
+   */
+  public synchronized long getRejections() {
+    return rejections;
+  }
+
+  /**
+   * @return a 64-bit hash of the contents of {@code sexp}, consistent with
+   * {@code equals()}
+   */
+  static long contentHash(SEXP sexp) {
+    if(sexp instanceof AtomicVector && sexp.length() >= REMEMBER_HASH_LENGTH) {
+      Long hash = HASHES.get(sexp);
+      if(hash == null) {
+        hash = computeHash(sexp);
+        HASHES.put(sexp, hash);
+      }
+      return hash;
+    }
+    return computeHash(sexp);
+  }
+
+  private static long computeHash(SEXP sexp) {
+    if(sexp == Null.INSTANCE) {
+      return 0;
+    } else if(sexp instanceof Symbol) {
+      return ((Symbol) sexp).getPrintName().hashCode();
+    } else if(sexp instanceof AtomicVector) {
+      return mix(atomicHash((AtomicVector) sexp), attributesHash(sexp));
+    } else if(sexp instanceof ListVector) {
+      ListVector list = (ListVector) sexp;
+      long hash = mix(list.length(), attributesHash(sexp));
+      for(int i = 0; i != list.length(); ++i) {
+        hash = mix(hash, contentHash(list.getElementAsSEXP(i)));
+      }
+      return hash;
+    } else if(sexp instanceof PairList.Node) {
+      long hash = sexp.getClass().hashCode();
+      for(PairList.Node node : ((PairList) sexp).nodes()) {
+        hash = mix(hash, node.hasTag() ? node.getTag().getPrintName().hashCode() : 0);
+        hash = mix(hash, contentHash(node.getValue()));
+      }
+      return mix(hash, attributesHash(sexp));
+    } else {
+      return System.identityHashCode(sexp);
+    }
+  }
+
+  private static long atomicHash(AtomicVector vector) {
+    int length = vector.length();
+    long hash = mix(vector.getClass().getSuperclass().hashCode(), length);
+    if(vector instanceof DoubleVector) {
+      for(int i = 0; i != length; ++i) {
+        hash = mix(hash, Double.doubleToLongBits(vector.getElementAsDouble(i)));
+      }
+    } else if(vector instanceof StringVector) {
+      for(int i = 0; i != length; ++i) {
+        String element = vector.getElementAsString(i);
+        hash = mix(hash, element == null ? 1 : element.hashCode());
+      }
+    } else if(vector instanceof ComplexVector) {
+      for(int i = 0; i != length; ++i) {
+        Complex element = vector.getElementAsComplex(i);
+        hash = mix(hash, Double.doubleToLongBits(element.getReal()));
+        hash = mix(hash, Double.doubleToLongBits(element.getImaginary()));
+      }
+    } else if(vector instanceof RawVector) {
+      byte[] bytes = ((RawVector) vector).getAsByteArray();
+      hash = mix(hash, Arrays.hashCode(bytes));
+    } else {
+      for(int i = 0; i != length; ++i) {
+        hash = mix(hash, vector.getElementAsInt(i));
+      }
+    }
+    return hash;
+  }
+
+  private static long attributesHash(SEXP sexp) {
+    if(!sexp.hasAttributes()) {
+      return 0;
+    }
+    long hash = 0;
+    for(PairList.Node node : sexp.getAttributes().nodes()) {
+      // attributes compare as a set, so combine them independently of their order
+      hash += mix(node.getTag().getPrintName().hashCode(), contentHash(node.getValue()));
+    }
+    return hash;
+  }
+
+  private static long mix(long hash, long value) {
+    return (hash ^ value) * MULTIPLIER + (hash >>> 29);
+  }
+
+  /**
+   * A call to a memoised function, by the function and the names and values
+   * of its arguments
+   */
+  public static class Key {
+    private final Function function;
+    private final String[] names;
+    private final SEXP[] values;
+    private final long hash;
+
+    private Key(Function function, String[] names, SEXP[] values, long hash) {
+      this.function = function;
+      this.names = names;
+      this.values = values;
+      this.hash = hash;
+    }
+
+    @Override
+    public int hashCode() {
+      return (int)(hash ^ (hash >>> 32));
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if(!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      if(hash != other.hash || function != other.function || !Arrays.equals(names, other.names)) {
+        return false;
+      }
+      for(int i = 0; i != values.length; ++i) {
+        if(values[i] != other.values[i] && !values[i].equals(other.values[i])) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  private static class Entry {
+    private final SEXP value;
+    private final long size;
+
+    public Entry(SEXP value, long size) {
+      this.value = value;
+      this.size = size;
+    }
+  }
+}
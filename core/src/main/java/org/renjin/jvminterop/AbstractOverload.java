@@ -102,6 +102,21 @@ public abstract class AbstractOverload {
   public boolean isVarArgs() {
     return varArgs;
   }
+
+  /**
+   * @return true if the first parameter is the {@code @Current Context}, 
+   * which is not matched to an argument
+   */
+  protected final boolean hasContextArgument() {
+    return context;
+  }
+
+  /**
+   * @return the converters for each of the non-varArgs arguments
+   */
+  protected final Converter[] getArgumentConverters() {
+    return argumentConverters;
+  }
   
   public boolean accept(List<SEXP> args) {
     if(args.size() < baseArgCount) {
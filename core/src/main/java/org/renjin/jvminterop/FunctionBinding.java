@@ -6,6 +6,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 
 import org.renjin.eval.Context;
 import org.renjin.eval.EvalException;
@@ -18,11 +19,41 @@ import org.renjin.sexp.SEXP;
 
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
+/**
+ * Binds an R function call to one of a set of overloaded JVM methods.
+ * 
+ * <p>The overload chosen for a list of arguments depends only on the {@link Signature} 
+ * of the arguments, so the choice is cached for each signature. The overload itself 
+ * calls the method reflectively at first, and through a generated 
+ * {@link MethodInvoker} once it has been called {@link #INVOKER_THRESHOLD} times.
+ */
 public class FunctionBinding {
 
+  /**
+   * The number of calls to an overload after which we generate an invoker
+   * for it, so that methods which are only called a few times do not pay for
+   * generating and loading a class.
+   */
+  public static final int INVOKER_THRESHOLD = 16;
+
+  /**
+   * The maximum number of distinct argument signatures for which
+   * the matching overload is cached
+   */
+  private static final int MAX_CACHED_SIGNATURES = 32;
+
   private List<Overload> overloads = Lists.newArrayList();
   private int maxArgCount;
+
+  private final Map<Signature, Overload> resolved = Maps.newHashMap();
+
+  /**
+   * The most recently resolved signature, which can be checked 
+   * without allocating a new {@code Signature}
+   */
+  private volatile Resolution lastResolution;
   
   public FunctionBinding(Iterable<Method> overloads) {
     for(Method method : overloads) {
@@ -47,6 +78,10 @@ public class FunctionBinding {
     private Method method;
     private Converter returnValueConverter;
     
+    private int callCount;
+    private volatile boolean invokerGenerated;
+    private MethodInvoker invoker;
+    
     public Overload(Method method) {
       super(method.getParameterTypes(),
             method.getParameterAnnotations(), 
@@ -62,6 +97,17 @@ public class FunctionBinding {
     
     
     public SEXP invoke(Context context, Object instance, List<SEXP> args) {
+      MethodInvoker invoker = getInvoker();
+      if(invoker != null) {
+        try {
+          return invoker.invoke(context, instance, args);
+        } catch(RuntimeException e) {
+          throw e;
+        } catch(Exception e) {
+          // checked exceptions thrown by the method itself
+          throw new RuntimeException(e);
+        }
+      }
       Object[] converted = convertArguments(context, args);
       try {
         Object result = method.invoke(instance, converted);
@@ -79,6 +125,27 @@ public class FunctionBinding {
         }
       }
     }
+
+    /**
+     * @return the generated invoker for this overload, or {@code null} if the 
+     * method has not yet been called often enough, or cannot be called from generated code.
+     */
+    private MethodInvoker getInvoker() {
+      if(invokerGenerated) {
+        return invoker;
+      }
+      if(isVarArgs() || ++callCount < INVOKER_THRESHOLD) {
+        return null;
+      }
+      synchronized (this) {
+        if(!invokerGenerated) {
+          invoker = MethodInvokerGenerator.generate(method, hasContextArgument(), 
+              getArgumentConverters(), returnValueConverter);
+          invokerGenerated = true;
+        }
+        return invoker;
+      }
+    }
     
     @Override
     public String toString() {
@@ -96,15 +163,117 @@ public class FunctionBinding {
       args.add(context.evaluate( it.next(), rho));
     }
     
-    // find overload
+    Overload overload = resolve(args);
+    if(overload == null) {
+      throw new EvalException("Cannot match arguments (%s) to any JVM method overload:\n%s", 
+          ExceptionUtil.toString(args), ExceptionUtil.overloadListToString(overloads));
+    }
+    return overload.invoke(context, instance, args);
+  }
+
+  /**
+   * Finds the first overload which accepts the given arguments, consulting 
+   * the cache of previously resolved signatures first.
+   */
+  private Overload resolve(List<SEXP> args) {
+    Resolution last = lastResolution;
+    if(last != null && last.signature.matches(args)) {
+      return last.overload;
+    }
+    Signature signature = new Signature(args);
+    Overload overload;
+    synchronized (resolved) {
+      overload = resolved.get(signature);
+    }
+    if(overload == null) {
+      overload = findOverload(args);
+      if(overload == null) {
+        return null;
+      }
+      synchronized (resolved) {
+        if(resolved.size() < MAX_CACHED_SIGNATURES) {
+          resolved.put(signature, overload);
+        }
+      }
+    }
+    lastResolution = new Resolution(signature, overload);
+    return overload;
+  }
+
+  private Overload findOverload(List<SEXP> args) {
     for(Overload overload : overloads) {
       if(overload.accept(args)) {
-        
-        return overload.invoke(context, instance, args);
-        
+        return overload;
       }
     }
-    throw new EvalException("Cannot match arguments (%s) to any JVM method overload:\n%s", 
-        ExceptionUtil.toString(args), ExceptionUtil.overloadListToString(overloads));
+    return null;
+  }
+
+  private static class Resolution {
+    private final Signature signature;
+    private final Overload overload;
+
+    public Resolution(Signature signature, Overload overload) {
+      this.signature = signature;
+      this.overload = overload;
+    }
+  }
+
+  /**
+   * The properties of a list of arguments which determine whether the 
+   * {@link Converter}s accept them: the class of each argument, whether its length
+   * is 0, 1 or greater, and for wrapped JVM objects, the class of the object.
+   */
+  private static class Signature {
+    private final Class[] classes;
+    private final int[] lengths;
+
+    public Signature(List<SEXP> args) {
+      classes = new Class[args.size()];
+      lengths = new int[args.size()];
+      for(int i=0;i!=classes.length;++i) {
+        SEXP arg = args.get(i);
+        classes[i] = classOf(arg);
+        lengths[i] = lengthOf(arg);
+      }
+    }
+
+    private static Class classOf(SEXP arg) {
+      if(arg instanceof Environment && ((Environment) arg).getFrame() instanceof ObjectFrame) {
+        return ((ObjectFrame)((Environment) arg).getFrame()).getInstance().getClass();
+      }
+      return arg.getClass();
+    }
+
+    private static int lengthOf(SEXP arg) {
+      return Math.min(arg.length(), 2);
+    }
+
+    public boolean matches(List<SEXP> args) {
+      if(args.size() != classes.length) {
+        return false;
+      }
+      for(int i=0;i!=classes.length;++i) {
+        SEXP arg = args.get(i);
+        if(classOf(arg) != classes[i] || lengthOf(arg) != lengths[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if(!(obj instanceof Signature)) {
+        return false;
+      }
+      Signature other = (Signature) obj;
+      return Arrays.equals(classes, other.classes) && Arrays.equals(lengths, other.lengths);
+    }
+
+    @Override
+    public int hashCode() {
+      return Arrays.hashCode(classes) * 31 + Arrays.hashCode(lengths);
+    }
   }
 }
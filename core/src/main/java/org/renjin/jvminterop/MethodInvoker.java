@@ -0,0 +1,91 @@
+package org.renjin.jvminterop;
+
+import java.util.List;
+
+import org.renjin.eval.Context;
+import org.renjin.eval.EvalException;
+import org.renjin.jvminterop.converters.Converter;
+import org.renjin.sexp.AtomicVector;
+import org.renjin.sexp.DoubleArrayVector;
+import org.renjin.sexp.IntArrayVector;
+import org.renjin.sexp.Logical;
+import org.renjin.sexp.LogicalArrayVector;
+import org.renjin.sexp.SEXP;
+import org.renjin.sexp.StringVector;
+import org.renjin.sexp.Vector;
+
+/**
+ * Calls a single JVM method with arguments which have already been matched
+ * to it by {@link FunctionBinding}, converting the arguments and the result.
+ *
+ * <p>Subclasses are generated at runtime by {@link MethodInvokerGenerator}, and
+ * call the method directly rather than through {@code Method.invoke}, so that
+ * {@code double}, {@code int}, {@code boolean} and {@code String} arguments
+ * are passed without being boxed into an {@code Object[]}. The static methods
+ * of this class are the conversions called by the generated code, and must
+ * behave in the same way as the corresponding {@link Converter}s.
+ */
+public abstract class MethodInvoker {
+
+  /**
+   * The converters for each (non-context) argument, used for parameters
+   * which are not specialized
+   */
+  protected final Converter[] argumentConverters;
+  protected final Converter returnValueConverter;
+
+  protected MethodInvoker(Converter[] argumentConverters, Converter returnValueConverter) {
+    this.argumentConverters = argumentConverters;
+    this.returnValueConverter = returnValueConverter;
+  }
+
+  public abstract SEXP invoke(Context context, Object instance, List<SEXP> args);
+
+  private static Vector scalar(SEXP value, String type) {
+    if(!(value instanceof AtomicVector)) {
+      throw new EvalException("Cannot convert '%s' to %s", value.getTypeName(), type);
+    } else if(value.length() < 1) {
+      throw new EvalException("Cannot pass empty vector to %s argument", type);
+    }
+    return (Vector)value;
+  }
+
+  public static double toDouble(SEXP value) {
+    return scalar(value, "double").getElementAsDouble(0);
+  }
+
+  public static int toInt(SEXP value) {
+    return scalar(value, "int").getElementAsInt(0);
+  }
+
+  public static boolean toBoolean(SEXP value) {
+    return scalar(value, "boolean").getElementAsLogical(0) != Logical.FALSE;
+  }
+
+  public static String toJavaString(SEXP value) {
+    if(!(value instanceof AtomicVector)) {
+      throw new EvalException("Cannot convert '%s' to String", value.getTypeName());
+    }
+    Vector vector = (Vector)value;
+    if(vector.length() == 0 || vector.isElementNA(0)) {
+      return null;
+    }
+    return vector.getElementAsString(0);
+  }
+
+  public static SEXP fromDouble(double value) {
+    return new DoubleArrayVector(value);
+  }
+
+  public static SEXP fromInt(int value) {
+    return new IntArrayVector(value);
+  }
+
+  public static SEXP fromBoolean(boolean value) {
+    return new LogicalArrayVector(value);
+  }
+
+  public static SEXP fromJavaString(String value) {
+    return new StringVector(value);
+  }
+}
@@ -0,0 +1,335 @@
+package org.renjin.jvminterop;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.renjin.compiler.ByteCodeUtil;
+import org.renjin.jvminterop.converters.Converter;
+import org.renjin.sexp.SEXP;
+
+/**
+ * Generates a subclass of {@link MethodInvoker} which calls a given method
+ * directly.
+ *
+ * <p>Parameters of type {@code double}, {@code float}, {@code long}, {@code int},
+ * {@code short}, {@code boolean} and {@code String}, and return values of these
+ * types, are converted by the static methods of {@code MethodInvoker} without
+ * boxing. Parameters and return values of other reference types go through the
+ * overload's {@code Converter}s, as they would for a reflective call.
+ */
+class MethodInvokerGenerator implements Opcodes {
+
+  private static final AtomicInteger CLASS_COUNT = new AtomicInteger();
+
+  private static final String INVOKER_CLASS = Type.getInternalName(MethodInvoker.class);
+  private static final String CONVERTER_CLASS = Type.getInternalName(Converter.class);
+  private static final String SEXP_CLASS = Type.getInternalName(SEXP.class);
+  private static final String SEXP_DESCRIPTOR = Type.getDescriptor(SEXP.class);
+
+  private final Method method;
+  private final boolean contextArgument;
+  private final String className;
+
+  private MethodInvokerGenerator(Method method, boolean contextArgument) {
+    this.method = method;
+    this.contextArgument = contextArgument;
+    this.className = "org/renjin/jvminterop/generated/Invoker" + CLASS_COUNT.incrementAndGet();
+  }
+
+  /**
+   * Generates an invoker for the given method.
+   *
+   * @param method the method to call. It must not take variable arguments.
+   * @param contextArgument true if the method's first parameter is the {@code @Current Context}
+   * @return a new {@code MethodInvoker}, or {@code null} if the method cannot be called
+   * from generated code, for example because it belongs to a class which is not public.
+   */
+  public static MethodInvoker generate(Method method, boolean contextArgument,
+      Converter[] argumentConverters, Converter returnValueConverter) {
+
+    Method accessible = findAccessibleMethod(method);
+    if(accessible == null || accessible.isVarArgs()) {
+      return null;
+    }
+    InvokerClassLoader loader = new InvokerClassLoader(accessible.getDeclaringClass().getClassLoader());
+    if(!isSupported(accessible, loader)) {
+      return null;
+    }
+    MethodInvokerGenerator generator = new MethodInvokerGenerator(accessible, contextArgument);
+    try {
+      Class invokerClass = loader.defineClass(generator.className.replace('/', '.'), generator.generate());
+      return (MethodInvoker) invokerClass
+          .getConstructor(Converter[].class, Converter.class)
+          .newInstance(argumentConverters, returnValueConverter);
+    } catch (Exception e) {
+      throw new RuntimeException("Exception generating invoker for " + method, e);
+    }
+  }
+
+  /**
+   * Finds a method with the same signature as {@code method} which can be linked to from
+   * another package, if the method is declared by a class which is not itself public.
+   */
+  private static Method findAccessibleMethod(Method method) {
+    if(isPublic(method.getDeclaringClass())) {
+      return method;
+    }
+    if(Modifier.isStatic(method.getModifiers())) {
+      return null;
+    }
+    return findPublicOverride(method.getDeclaringClass(), method);
+  }
+
+  private static Method findPublicOverride(Class clazz, Method method) {
+    if(clazz == null) {
+      return null;
+    }
+    if(isPublic(clazz)) {
+      try {
+        return clazz.getMethod(method.getName(), method.getParameterTypes());
+      } catch (NoSuchMethodException e) {
+        // keep looking
+      }
+    }
+    for(Class iface : clazz.getInterfaces()) {
+      Method found = findPublicOverride(iface, method);
+      if(found != null) {
+        return found;
+      }
+    }
+    return findPublicOverride(clazz.getSuperclass(), method);
+  }
+
+  private static boolean isPublic(Class clazz) {
+    while(clazz.isArray()) {
+      clazz = clazz.getComponentType();
+    }
+    while(clazz != null) {
+      if(!clazz.isPrimitive() && !Modifier.isPublic(clazz.getModifiers())) {
+        return false;
+      }
+      clazz = clazz.getDeclaringClass();
+    }
+    return true;
+  }
+
+  /**
+   * @return true if all of the classes named by the method's signature are public, and
+   * would be resolved to the same classes by the generated class
+   */
+  private static boolean isSupported(Method method, ClassLoader loader) {
+    if(!Modifier.isPublic(method.getModifiers())) {
+      return false;
+    }
+    if(!isSupportedType(method.getDeclaringClass(), loader) ||
+       !isSupportedType(method.getReturnType(), loader)) {
+      return false;
+    }
+    for(Class type : method.getParameterTypes()) {
+      if(!isSupportedType(type, loader)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isSupportedType(Class type, ClassLoader loader) {
+    if(type == Byte.TYPE || type == Character.TYPE ||
+       type == Long.class || type == Float.class || type == Short.class) {
+      // would need conversions which the Converters do not perform
+      return false;
+    }
+    if(type.isPrimitive()) {
+      return true;
+    }
+    if(!isPublic(type)) {
+      return false;
+    }
+    Class component = type;
+    while(component.isArray()) {
+      component = component.getComponentType();
+    }
+    if(component.isPrimitive()) {
+      return true;
+    }
+    try {
+      return loader.loadClass(component.getName()) == component;
+    } catch (ClassNotFoundException e) {
+      return false;
+    }
+  }
+
+  private byte[] generate() {
+    ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+    cw.visit(V1_6, ACC_PUBLIC + ACC_SUPER + ACC_FINAL, className, null, INVOKER_CLASS, null);
+    writeConstructor(cw);
+    writeInvoke(cw);
+    cw.visitEnd();
+    return cw.toByteArray();
+  }
+
+  private void writeConstructor(ClassWriter cw) {
+    String descriptor = "([" + Type.getDescriptor(Converter.class) + Type.getDescriptor(Converter.class) + ")V";
+    MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", descriptor, null, null);
+    mv.visitCode();
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitVarInsn(ALOAD, 1);
+    mv.visitVarInsn(ALOAD, 2);
+    mv.visitMethodInsn(INVOKESPECIAL, INVOKER_CLASS, "<init>", descriptor);
+    mv.visitInsn(RETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+  }
+
+  private void writeInvoke(ClassWriter cw) {
+    MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "invoke",
+        "(Lorg/renjin/eval/Context;Ljava/lang/Object;Ljava/util/List;)" + SEXP_DESCRIPTOR, null, null);
+    mv.visitCode();
+
+    String owner = Type.getInternalName(method.getDeclaringClass());
+    boolean isStatic = Modifier.isStatic(method.getModifiers());
+    if(!isStatic) {
+      mv.visitVarInsn(ALOAD, 2);
+      mv.visitTypeInsn(CHECKCAST, owner);
+    }
+
+    Class[] parameterTypes = method.getParameterTypes();
+    int firstArg = 0;
+    if(contextArgument) {
+      mv.visitVarInsn(ALOAD, 1);
+      firstArg = 1;
+    }
+    for(int i=firstArg; i<parameterTypes.length; ++i) {
+      int argIndex = i - firstArg;
+      mv.visitVarInsn(ALOAD, 3);
+      pushInt(mv, argIndex);
+      mv.visitMethodInsn(INVOKEINTERFACE, "java/util/List", "get", "(I)Ljava/lang/Object;");
+      mv.visitTypeInsn(CHECKCAST, SEXP_CLASS);
+      writeArgumentConversion(mv, parameterTypes[i], argIndex);
+    }
+
+    if(isStatic) {
+      mv.visitMethodInsn(INVOKESTATIC, owner, method.getName(), Type.getMethodDescriptor(method));
+    } else if(method.getDeclaringClass().isInterface()) {
+      mv.visitMethodInsn(INVOKEINTERFACE, owner, method.getName(), Type.getMethodDescriptor(method));
+    } else {
+      mv.visitMethodInsn(INVOKEVIRTUAL, owner, method.getName(), Type.getMethodDescriptor(method));
+    }
+
+    writeReturnConversion(mv, method.getReturnType());
+    mv.visitInsn(ARETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+  }
+
+  private void pushInt(MethodVisitor mv, int i) {
+    if(i < 127) {
+      ByteCodeUtil.pushInt(mv, i);
+    } else {
+      mv.visitLdcInsn(i);
+    }
+  }
+
+  /**
+   * Converts the {@code SEXP} on the top of the stack to the given parameter type.
+   */
+  private void writeArgumentConversion(MethodVisitor mv, Class type, int argIndex) {
+    if(type == Double.TYPE) {
+      invokeConversion(mv, "toDouble", "D");
+    } else if(type == Float.TYPE) {
+      invokeConversion(mv, "toDouble", "D");
+      mv.visitInsn(D2F);
+    } else if(type == Long.TYPE) {
+      invokeConversion(mv, "toDouble", "D");
+      mv.visitInsn(D2L);
+    } else if(type == Integer.TYPE) {
+      invokeConversion(mv, "toInt", "I");
+    } else if(type == Short.TYPE) {
+      invokeConversion(mv, "toInt", "I");
+      mv.visitInsn(I2S);
+    } else if(type == Boolean.TYPE) {
+      invokeConversion(mv, "toBoolean", "Z");
+    } else if(type == String.class) {
+      invokeConversion(mv, "toJavaString", "Ljava/lang/String;");
+    } else {
+      // argumentConverters[argIndex].convertToJava(sexp)
+      mv.visitVarInsn(ALOAD, 0);
+      mv.visitFieldInsn(GETFIELD, INVOKER_CLASS, "argumentConverters", "[" + Type.getDescriptor(Converter.class));
+      pushInt(mv, argIndex);
+      mv.visitInsn(AALOAD);
+      mv.visitInsn(SWAP);
+      mv.visitMethodInsn(INVOKEINTERFACE, CONVERTER_CLASS, "convertToJava", "(" + SEXP_DESCRIPTOR + ")Ljava/lang/Object;");
+      if(type != Object.class) {
+        mv.visitTypeInsn(CHECKCAST, Type.getInternalName(type));
+      }
+    }
+  }
+
+  private void invokeConversion(MethodVisitor mv, String name, String returnDescriptor) {
+    mv.visitMethodInsn(INVOKESTATIC, INVOKER_CLASS, name, "(" + SEXP_DESCRIPTOR + ")" + returnDescriptor);
+  }
+
+  /**
+   * Converts the value returned by the method, if any, to a {@code SEXP}
+   */
+  private void writeReturnConversion(MethodVisitor mv, Class type) {
+    if(type == Void.TYPE) {
+      mv.visitFieldInsn(GETSTATIC, "org/renjin/sexp/Null", "INSTANCE", "Lorg/renjin/sexp/Null;");
+    } else if(type == Double.TYPE) {
+      invokeReturnConversion(mv, "fromDouble", "D");
+    } else if(type == Float.TYPE) {
+      mv.visitInsn(F2D);
+      invokeReturnConversion(mv, "fromDouble", "D");
+    } else if(type == Long.TYPE) {
+      mv.visitInsn(L2D);
+      invokeReturnConversion(mv, "fromDouble", "D");
+    } else if(type == Integer.TYPE || type == Short.TYPE) {
+      invokeReturnConversion(mv, "fromInt", "I");
+    } else if(type == Boolean.TYPE) {
+      invokeReturnConversion(mv, "fromBoolean", "Z");
+    } else if(type == String.class) {
+      invokeReturnConversion(mv, "fromJavaString", "Ljava/lang/String;");
+    } else {
+      // returnValueConverter.convertToR(result)
+      mv.visitVarInsn(ALOAD, 0);
+      mv.visitFieldInsn(GETFIELD, INVOKER_CLASS, "returnValueConverter", Type.getDescriptor(Converter.class));
+      mv.visitInsn(SWAP);
+      mv.visitMethodInsn(INVOKEINTERFACE, CONVERTER_CLASS, "convertToR", "(Ljava/lang/Object;)" + SEXP_DESCRIPTOR);
+    }
+  }
+
+  private void invokeReturnConversion(MethodVisitor mv, String name, String argumentDescriptor) {
+    mv.visitMethodInsn(INVOKESTATIC, INVOKER_CLASS, name, "(" + argumentDescriptor + ")" + SEXP_DESCRIPTOR);
+  }
+
+  /**
+   * Defines generated classes, resolving references to Renjin classes through
+   * the loader of this class, and all other classes through the loader of the
+   * class whose method is called.
+   */
+  private static class InvokerClassLoader extends ClassLoader {
+    private final ClassLoader targetLoader;
+
+    public InvokerClassLoader(ClassLoader targetLoader) {
+      super(MethodInvoker.class.getClassLoader());
+      this.targetLoader = targetLoader;
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+      if(targetLoader == null) {
+        throw new ClassNotFoundException(name);
+      }
+      return targetLoader.loadClass(name);
+    }
+
+    public Class defineClass(String name, byte[] b) {
+      return defineClass(name, b, 0, b.length);
+    }
+  }
+}
@@ -5,7 +5,17 @@ import org.renjin.sexp.*;
 
 import java.lang.reflect.Array;
 
-
+/**
+ * Converts between R numeric vectors and arrays of {@code double}, {@code float}
+ * and {@code long}, or their boxed equivalents.
+ *
+ * <p>{@code double[]} arrays are not copied in either direction: an array returned
+ * from Java becomes the storage of the resulting {@code DoubleArrayVector}, and a
+ * {@code DoubleArrayVector} passed to a {@code double[]} parameter is passed as its
+ * backing array. As with C code called through {@code .Call}, Java methods must
+ * therefore treat {@code double[]} arguments as read-only, and must not modify an
+ * array after returning it to R.
+ */
 public class DoubleArrayConverter implements Converter<Object> {
 
   public final Class componentClass;
@@ -26,12 +36,29 @@ public class DoubleArrayConverter implements Converter<Object> {
   public SEXP convertToR(Object value) {
     if (value == null) {
       return new DoubleArrayVector(DoubleVector.NA);
+    } else if (value instanceof double[]) {
+      return DoubleArrayVector.unsafe((double[]) value);
+    } else if (value instanceof float[]) {
+      float[] array = (float[]) value;
+      double[] dArray = new double[array.length];
+      for (int i = 0; i < array.length; i++) {
+        dArray[i] = array[i];
+      }
+      return DoubleArrayVector.unsafe(dArray);
+    } else if (value instanceof long[]) {
+      long[] array = (long[]) value;
+      double[] dArray = new double[array.length];
+      for (int i = 0; i < array.length; i++) {
+        dArray[i] = array[i];
+      }
+      return DoubleArrayVector.unsafe(dArray);
     } else {
-      double dArray[] = new double[Array.getLength(value)];
-      for (int i = 0; i < Array.getLength(value); i++) {
-        dArray[i] = ((Number)Array.get(value, i)).doubleValue();
+      Object[] array = (Object[]) value;
+      double[] dArray = new double[array.length];
+      for (int i = 0; i < array.length; i++) {
+        dArray[i] = array[i] == null ? DoubleVector.NA : ((Number)array[i]).doubleValue();
       }
-      return new DoubleArrayVector(dArray);
+      return DoubleArrayVector.unsafe(dArray);
     }
   }
 
@@ -51,16 +78,41 @@ public class DoubleArrayConverter implements Converter<Object> {
   public Object convertToJava(SEXP value) {  
     if(!(value instanceof AtomicVector)) {
       throw new EvalException("It's not an AtomicVector", value.getTypeName());
-    } else if(value.length() < 1) {
-      //to keep its type info
-      return new Double[0];
     }
     AtomicVector dv= (AtomicVector)value;
     int length = dv.length();
-   
-    Object array = Array.newInstance(componentClass, value.length());
+
+    if(componentClass == Double.TYPE) {
+      if(dv instanceof DoubleArrayVector) {
+        return ((DoubleArrayVector) dv).toDoubleArrayUnsafe();
+      }
+      return dv.toDoubleArray();
+
+    } else if(componentClass == Float.TYPE) {
+      float[] array = new float[length];
+      for(int i=0;i<length;i++){
+        array[i] = (float)dv.getElementAsDouble(i);
+      }
+      return array;
+
+    } else if(componentClass == Long.TYPE) {
+      long[] array = new long[length];
+      for(int i=0;i<length;i++){
+        array[i] = (long)dv.getElementAsDouble(i);
+      }
+      return array;
+    }
+
+    Object[] array = (Object[])Array.newInstance(componentClass, length);
     for(int i=0;i<length;i++){
-      Array.set(array, i, dv.getElementAsObject(i));
+      double element = dv.getElementAsDouble(i);
+      if(componentClass == Double.class) {
+        array[i] = element;
+      } else if(componentClass == Float.class) {
+        array[i] = (float)element;
+      } else {
+        array[i] = (long)element;
+      }
     }
     return array;
   }
@@ -0,0 +1,59 @@
+package org.renjin.jvminterop.converters;
+
+import java.nio.DoubleBuffer;
+
+import org.renjin.eval.EvalException;
+import org.renjin.sexp.*;
+
+/**
+ * Converts between R numeric vectors and {@link DoubleBuffer}s, so that off-heap
+ * data can be exchanged without being copied.
+ *
+ * <p>A buffer returned from Java is wrapped in a {@link DoubleBufferVector} which reads
+ * its remaining elements directly. Vectors are passed to Java as read-only buffers,
+ * which share the storage of {@code DoubleBufferVector}s and {@code DoubleArrayVector}s.
+ */
+public class DoubleBufferConverter implements Converter<DoubleBuffer> {
+
+  public static final DoubleBufferConverter INSTANCE = new DoubleBufferConverter();
+
+  private DoubleBufferConverter() {
+  }
+
+  public static boolean accept(Class clazz) {
+    return clazz == DoubleBuffer.class;
+  }
+
+  @Override
+  public SEXP convertToR(DoubleBuffer value) {
+    if(value == null) {
+      return new DoubleArrayVector(DoubleVector.NA);
+    }
+    return new DoubleBufferVector(value);
+  }
+
+  @Override
+  public boolean acceptsSEXP(SEXP exp) {
+    return  exp instanceof DoubleVector ||
+            exp instanceof IntVector ||
+            exp instanceof LogicalVector;
+  }
+
+  @Override
+  public Object convertToJava(SEXP value) {
+    if(value instanceof DoubleBufferVector) {
+      return ((DoubleBufferVector) value).getBuffer();
+    } else if(value instanceof DoubleArrayVector) {
+      return DoubleBuffer.wrap(((DoubleArrayVector) value).toDoubleArrayUnsafe()).asReadOnlyBuffer();
+    } else if(value instanceof AtomicVector) {
+      return DoubleBuffer.wrap(((AtomicVector) value).toDoubleArray()).asReadOnlyBuffer();
+    } else {
+      throw new EvalException("Cannot convert '%s' to DoubleBuffer", value.getTypeName());
+    }
+  }
+
+  @Override
+  public int getSpecificity() {
+    return Specificity.DOUBLE;
+  }
+}
@@ -0,0 +1,57 @@
+package org.renjin.jvminterop.converters;
+
+import java.nio.IntBuffer;
+
+import org.renjin.eval.EvalException;
+import org.renjin.sexp.*;
+
+/**
+ * Converts between R integer vectors and {@link IntBuffer}s, so that off-heap
+ * data can be exchanged without being copied.
+ *
+ * <p>A buffer returned from Java is wrapped in an {@link IntBufferVector} which reads
+ * its remaining elements directly. Vectors are passed to Java as read-only buffers,
+ * which share the storage of {@code IntBufferVector}s and {@code IntArrayVector}s.
+ */
+public class IntBufferConverter implements Converter<IntBuffer> {
+
+  public static final IntBufferConverter INSTANCE = new IntBufferConverter();
+
+  private IntBufferConverter() {
+  }
+
+  public static boolean accept(Class clazz) {
+    return clazz == IntBuffer.class;
+  }
+
+  @Override
+  public SEXP convertToR(IntBuffer value) {
+    if(value == null) {
+      return new IntArrayVector(IntVector.NA);
+    }
+    return new IntBufferVector(value);
+  }
+
+  @Override
+  public boolean acceptsSEXP(SEXP exp) {
+    return exp instanceof IntVector;
+  }
+
+  @Override
+  public Object convertToJava(SEXP value) {
+    if(value instanceof IntBufferVector) {
+      return ((IntBufferVector) value).getBuffer();
+    } else if(value instanceof IntArrayVector) {
+      return IntBuffer.wrap(((IntArrayVector) value).toIntArrayUnsafe()).asReadOnlyBuffer();
+    } else if(value instanceof IntVector) {
+      return IntBuffer.wrap(((IntVector) value).toIntArray()).asReadOnlyBuffer();
+    } else {
+      throw new EvalException("Cannot convert '%s' to IntBuffer", value.getTypeName());
+    }
+  }
+
+  @Override
+  public int getSpecificity() {
+    return Specificity.INTEGER;
+  }
+}
@@ -1,29 +1,45 @@
 package org.renjin.jvminterop.converters;
 
 import org.renjin.eval.EvalException;
-import org.renjin.sexp.AtomicVector;
-import org.renjin.sexp.IntArrayVector;
-import org.renjin.sexp.IntVector;
-import org.renjin.sexp.SEXP;
+import org.renjin.sexp.*;
 
+import java.lang.reflect.Array;
 
-public class IntegerArrayConverter implements Converter<Number[]> {
+/**
+ * Converts between R integer vectors and arrays of {@code int} and {@code short},
+ * or their boxed equivalents.
+ *
+ * <p>As for {@link DoubleArrayConverter}, {@code int[]} arrays are shared rather
+ * than copied, and must not be modified by either side.
+ */
+public class IntegerArrayConverter implements Converter<Object> {
 
-  public static final IntegerArrayConverter INSTANCE = new IntegerArrayConverter();
+  public final Class componentClass;
 
-  private IntegerArrayConverter() {
+  public IntegerArrayConverter(Class clazz) {
+    componentClass = clazz.getComponentType();
   }
 
   @Override
-  public SEXP convertToR(Number[] value) {
+  public SEXP convertToR(Object value) {
     if (value == null) {
       return new IntArrayVector(IntVector.NA);
+    } else if (value instanceof int[]) {
+      return IntArrayVector.unsafe((int[]) value);
+    } else if (value instanceof short[]) {
+      short[] array = (short[]) value;
+      int iArray[] = new int[array.length];
+      for (int i = 0; i < array.length; i++) {
+        iArray[i] = array[i];
+      }
+      return IntArrayVector.unsafe(iArray);
     } else {
-      int iArray[] = new int[value.length];
-      for (int i = 0; i < value.length; i++) {
-        iArray[i] = value[i].intValue();
+      Object[] array = (Object[]) value;
+      int iArray[] = new int[array.length];
+      for (int i = 0; i < array.length; i++) {
+        iArray[i] = array[i] == null ? IntVector.NA : ((Number)array[i]).intValue();
       }
-      return new IntArrayVector(iArray);
+      return IntArrayVector.unsafe(iArray);
     }
   }
 
@@ -49,15 +65,31 @@ public class IntegerArrayConverter implements Converter<Number[]> {
   public Object convertToJava(SEXP value) {  
     if(!(value instanceof AtomicVector)) {
       throw new EvalException("It's not an AtomicVector", value.getTypeName());
-    } else if(value.length() < 1) {
-      //to keep its type info
-      return new Integer[0];
     }
     IntVector lv= (IntVector)value;
     int length = lv.length();
-    Integer[] values = new Integer[length];
+
+    if(componentClass == Integer.TYPE) {
+      if(lv instanceof IntArrayVector) {
+        return ((IntArrayVector) lv).toIntArrayUnsafe();
+      }
+      return lv.toIntArray();
+
+    } else if(componentClass == Short.TYPE) {
+      short[] array = new short[length];
+      for(int i=0;i<length;i++){
+        array[i] = (short)lv.getElementAsInt(i);
+      }
+      return array;
+    }
+
+    Object[] values = (Object[])Array.newInstance(componentClass, length);
     for(int i=0;i<length;i++){
-      values[i]= lv.getElementAsObject(i);
+      if(componentClass == Integer.class) {
+        values[i] = lv.getElementAsInt(i);
+      } else {
+        values[i] = (short)lv.getElementAsInt(i);
+      }
     }
     return values;
   }
@@ -2,8 +2,15 @@ package org.renjin.jvminterop.converters;
 
 import org.renjin.sexp.AtomicVector;
 import org.renjin.sexp.SEXP;
+import org.renjin.sexp.StringDictionaryVector;
 import org.renjin.sexp.StringVector;
 
+/**
+ * Converts between R character vectors and {@code String[]} arrays.
+ *
+ * <p>As for {@link DoubleArrayConverter}, arrays are shared rather than copied,
+ * and must not be modified by either side.
+ */
 public class StringArrayConverter implements Converter<String[]>{
 
   public static final Converter INSTANCE = new StringArrayConverter();
@@ -16,7 +23,10 @@ public class StringArrayConverter implements Converter<String[]>{
   
   @Override
   public SEXP convertToR(String[] value) {
-    return new StringVector(value);
+    if(value == null) {
+      return new StringVector(StringVector.NA);
+    }
+    return StringVector.unsafe(value);
   }
 
   @Override
@@ -26,6 +36,9 @@ public class StringArrayConverter implements Converter<String[]>{
 
   @Override
   public Object convertToJava(SEXP value) {
+    if(value instanceof StringVector && !(value instanceof StringDictionaryVector)) {
+      return ((StringVector) value).toArrayUnsafe();
+    }
     AtomicVector vector = (AtomicVector)value;
     String[] array = new String[value.length()];
     for(int i=0;i!=value.length();++i) {
@@ -40,7 +40,7 @@ public class Bootstrapper {
     
       // now we can compile the rest of the packages
       for(String packageName : new String[] 
-          { "datasets", "utils", "grDevices", "graphics", "stats", "splines" }) {
+          { "datasets", "utils", "grDevices", "graphics", "stats", "splines", "parallel" }) {
         buildPackage(packageName);
       }
     } catch(Exception e) {
@@ -0,0 +1,446 @@
+package org.renjin.parser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.renjin.primitives.io.serialization.RDataReader;
+import org.renjin.primitives.io.serialization.RDataWriter;
+import org.renjin.sexp.ExpressionVector;
+import org.renjin.sexp.SEXP;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+
+/**
+ * Caches the results of parsing R source, so that scripts and package sources which
+ * are sourced again, in the same process or in a later one, are not lexed and parsed again.
+ *
+ * <p>Sources are identified by a SHA-1 digest of their text. Parsed sources are kept in
+ * memory, up to a number of entries after which the least recently used are evicted.
+ * If the {@code renjin.parse.cache} system property names a directory, they are also
+ * written there in R's XDR serialization format, from which later processes read them
+ * back. Each build of the parser uses its own subdirectory, so that expressions written
+ * by one version are never read by another, and the least recently used files are
+ * deleted once there are more than {@code renjin.parse.cache.files} of them.
+ *
+ * <p>Files are also identified by their path, size and modification time: as long as
+ * these are unchanged, the digest computed when the file was last read is used again,
+ * and the file need not be read at all. A bounded number of such stamps is kept.
+ *
+ * <p>The parser does not attach {@code srcref}s, so parsed source holds only calls,
+ * symbols and constants, and is serialized without a context.
+ */
+public class ParseCache {
+
+  public static final int DEFAULT_CAPACITY = Integer.getInteger("renjin.parse.cache.entries", 256);
+
+  public static final int DEFAULT_MAX_FILES = Integer.getInteger("renjin.parse.cache.files", 4096);
+
+  /**
+   * Written at the start of each file in the cache directory, and to be changed
+   * whenever the parser changes the expressions it produces
+   */
+  private static final int FORMAT_VERSION = 1;
+
+  private static final String SUFFIX = ".parsed";
+
+  private static final ParseCache DEFAULT = new ParseCache(defaultDirectory(), DEFAULT_CAPACITY);
+
+  private final File directory;
+  private final int capacity;
+  private final int maxFiles;
+
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+  private final Map<String, Stamp> stamps;
+
+  /**
+   * The number of files in the cache directory, counted when the first entry is written,
+   * or -1 before then
+   */
+  private int fileCount = -1;
+
+  private long hits;
+  private long diskHits;
+  private long misses;
+  private long parseNanos;
+  private long savedNanos;
+
+  /**
+   * @param directory the directory in which to keep parsed sources between processes,
+   * or {@code null} to keep them only in memory
+   * @param capacity the number of parsed sources to keep in memory
+   */
+  public ParseCache(File directory, int capacity) {
+    this(directory, capacity, DEFAULT_MAX_FILES);
+  }
+
+  /**
+   * @param maxFiles the number of parsed sources to keep in {@code directory}
+   */
+  public ParseCache(File directory, int capacity, int maxFiles) {
+    this.directory = directory;
+    this.capacity = capacity;
+    this.maxFiles = maxFiles;
+    final int maxStamps = Math.max(capacity, 1) * 4;
+    this.stamps = new LinkedHashMap<String, Stamp>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Stamp> eldest) {
+        return size() > maxStamps;
+      }
+    };
+  }
+
+  /**
+   * @return the cache shared by all sessions in this process
+   */
+  public static ParseCache getDefault() {
+    return DEFAULT;
+  }
+
+  private static File defaultDirectory() {
+    String property = System.getProperty("renjin.parse.cache");
+    if(property == null || property.length() == 0) {
+      return null;
+    }
+    return new File(property, parserVersion());
+  }
+
+  /**
+   * @return a name which identifies this build of the parser: the version of the
+   * package, if known, and a digest of the generated parser class, which tells apart
+   * snapshot builds of the same version
+   */
+  static String parserVersion() {
+    Package parserPackage = RParser.class.getPackage();
+    String version = parserPackage == null ? null : parserPackage.getImplementationVersion();
+    StringBuilder name = new StringBuilder();
+    name.append(version == null ? "unknown" : version.replaceAll("[^A-Za-z0-9._-]", "_"));
+    name.append('-').append(FORMAT_VERSION);
+    try {
+      InputStream in = RParser.class.getResourceAsStream("RParser.class");
+      if(in != null) {
+        try {
+          name.append('-').append(digest(ByteStreams.toByteArray(in)).substring(0, 12));
+        } finally {
+          in.close();
+        }
+      }
+    } catch(IOException e) {
+      // identified by the version alone
+    }
+    return name.toString();
+  }
+
+  /**
+   * Parses {@code source}, as {@link RParser#parseSource(String)} does, unless
+   * the same source has already been parsed.
+   */
+  public ExpressionVector parse(String source) {
+    return parse(digest(source), source);
+  }
+
+  /**
+   * Parses the contents of {@code file}, unless the same source has already been parsed.
+   */
+  public ExpressionVector parse(File file, Charset charset) throws IOException {
+    String path = file.getAbsolutePath();
+    long size = file.length();
+    long lastModified = file.lastModified();
+
+    Stamp stamp;
+    synchronized (this) {
+      stamp = stamps.get(path);
+    }
+    if(stamp != null && stamp.matches(size, lastModified, charset)) {
+      ExpressionVector cached = lookup(stamp.digest);
+      if(cached != null) {
+        return cached;
+      }
+    }
+
+    String source = Files.toString(file, charset);
+    String digest = digest(source);
+    synchronized (this) {
+      stamps.put(path, new Stamp(size, lastModified, charset, digest));
+    }
+    return parse(digest, source);
+  }
+
+  private ExpressionVector parse(String digest, String source) {
+    ExpressionVector cached = lookup(digest);
+    if(cached != null) {
+      return cached;
+    }
+    long start = System.nanoTime();
+    ExpressionVector parsed = RParser.parseSource(source);
+    long nanos = System.nanoTime() - start;
+
+    Entry entry = new Entry(parsed, nanos);
+    synchronized (this) {
+      misses++;
+      parseNanos += nanos;
+      put(digest, entry);
+    }
+    store(digest, entry);
+    return parsed;
+  }
+
+  /**
+   * @return the parsed source with the given digest, from memory or from disk,
+   * or {@code null} if it is in neither
+   */
+  private ExpressionVector lookup(String digest) {
+    synchronized (this) {
+      Entry entry = entries.get(digest);
+      if(entry != null) {
+        hits++;
+        savedNanos += entry.parseNanos;
+        return entry.value;
+      }
+    }
+    long start = System.nanoTime();
+    Entry entry = load(digest);
+    if(entry == null) {
+      return null;
+    }
+    long loadNanos = System.nanoTime() - start;
+    synchronized (this) {
+      diskHits++;
+      savedNanos += Math.max(0, entry.parseNanos - loadNanos);
+      put(digest, entry);
+    }
+    return entry.value;
+  }
+
+  private void put(String digest, Entry entry) {
+    entries.put(digest, entry);
+    while(entries.size() > capacity) {
+      entries.remove(entries.keySet().iterator().next());
+    }
+  }
+
+  private Entry load(String digest) {
+    if(directory == null) {
+      return null;
+    }
+    File file = new File(directory, digest + SUFFIX);
+    if(!file.exists()) {
+      return null;
+    }
+    // marks the entry as recently used, so that it is the last to be deleted
+    file.setLastModified(System.currentTimeMillis());
+    try {
+      DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+      try {
+        if(in.readInt() != FORMAT_VERSION) {
+          return null;
+        }
+        long nanos = in.readLong();
+        SEXP value = new RDataReader(null, in).readFile();
+        if(!(value instanceof ExpressionVector)) {
+          return null;
+        }
+        return new Entry((ExpressionVector) value, nanos);
+      } finally {
+        in.close();
+      }
+    } catch(IOException e) {
+      // a damaged or partly written entry, which is parsed and written again
+      return null;
+    }
+  }
+
+  /**
+   * Writes the parsed source to the cache directory, through a temporary file, so
+   * that other processes never read a partly written entry. The cache is only an
+   * optimization, so failures are ignored.
+   */
+  private void store(String digest, Entry entry) {
+    if(directory == null) {
+      return;
+    }
+    File temp = null;
+    try {
+      if(!directory.isDirectory() && !directory.mkdirs()) {
+        return;
+      }
+      temp = File.createTempFile(digest, ".tmp", directory);
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+      try {
+        out.writeInt(FORMAT_VERSION);
+        out.writeLong(entry.parseNanos);
+        new RDataWriter(null, out).writeFile(entry.value);
+      } finally {
+        out.close();
+      }
+      if(temp.renameTo(new File(directory, digest + SUFFIX))) {
+        temp = null;
+        trim();
+      }
+    } catch(IOException e) {
+      // leave the entry to be parsed again
+    } catch(UnsupportedOperationException e) {
+      // an expression which cannot be serialized
+    } finally {
+      if(temp != null) {
+        temp.delete();
+      }
+    }
+  }
+
+  /**
+   * Deletes the least recently used files once the directory holds more than
+   * {@code maxFiles}, down to three quarters of that number, so that the directory
+   * is not listed on every write
+   */
+  private void trim() {
+    synchronized (this) {
+      if(fileCount != -1 && ++fileCount <= maxFiles) {
+        return;
+      }
+    }
+    File[] files = directory.listFiles(new FilenameFilter() {
+      @Override
+      public boolean accept(File dir, String name) {
+        return name.endsWith(SUFFIX);
+      }
+    });
+    if(files == null) {
+      return;
+    }
+    int count = files.length;
+    if(count > maxFiles) {
+      Arrays.sort(files, new Comparator<File>() {
+        @Override
+        public int compare(File a, File b) {
+          long difference = a.lastModified() - b.lastModified();
+          return difference < 0 ? -1 : (difference > 0 ? 1 : 0);
+        }
+      });
+      int keep = maxFiles * 3 / 4;
+      for(int i = 0; i < files.length - keep; ++i) {
+        if(files[i].delete()) {
+          count--;
+        }
+      }
+    }
+    synchronized (this) {
+      fileCount = count;
+    }
+  }
+
+  private static String digest(String source) {
+    return digest(source.getBytes(Charsets.UTF_8));
+  }
+
+  private static String digest(byte[] content) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-1");
+    } catch(NoSuchAlgorithmException e) {
+      throw new AssertionError(e);
+    }
+    byte[] bytes = digest.digest(content);
+    StringBuilder hex = new StringBuilder(bytes.length * 2);
+    for(byte b : bytes) {
+      hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+      hex.append(Character.forDigit(b & 0xF, 16));
+    }
+    return hex.toString();
+  }
+
+  public synchronized int getEntryCount() {
+    return entries.size();
+  }
+
+  /**
+   * @return the number of sources found already parsed in memory
+   */
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  /**
+   * @return the number of sources read back from the cache directory
+   */
+  public synchronized long getDiskHits() {
+    return diskHits;
+  }
+
+  /**
+   * @return the number of sources which had to be parsed
+   */
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  /**
+   * @return the time spent parsing sources which were not in the cache
+   */
+  public synchronized long getParseNanos() {
+    return parseNanos;
+  }
+
+  /**
+   * @return the time that parsing the sources found in the cache originally took,
+   * less the time spent reading them back from disk
+   */
+  public synchronized long getSavedNanos() {
+    return savedNanos;
+  }
+
+  /**
+   * Removes all parsed sources from memory, leaving those on disk
+   */
+  public synchronized void clear() {
+    entries.clear();
+    stamps.clear();
+  }
+
+  private static class Entry {
+    private final ExpressionVector value;
+    private final long parseNanos;
+
+    public Entry(ExpressionVector value, long parseNanos) {
+      this.value = value;
+      this.parseNanos = parseNanos;
+    }
+  }
+
+  /**
+   * The size, modification time and digest of a file when it was last read
+   */
+  private static class Stamp {
+    private final long size;
+    private final long lastModified;
+    private final Charset charset;
+    private final String digest;
+
+    public Stamp(long size, long lastModified, Charset charset, String digest) {
+      this.size = size;
+      this.lastModified = lastModified;
+      this.charset = charset;
+      this.digest = digest;
+    }
+
+    public boolean matches(long size, long lastModified, Charset charset) {
+      return this.size == size && this.lastModified == lastModified && this.charset.equals(charset);
+    }
+  }
+}
@@ -23,8 +23,7 @@ package org.renjin.parser;
 
 import com.google.common.base.Function;
 
-import java.text.NumberFormat;
-
+import org.renjin.primitives.text.DoubleFormatter;
 import org.renjin.sexp.DoubleVector;
 import org.renjin.sexp.IntVector;
 import org.renjin.sexp.Logical;
@@ -32,34 +31,19 @@ import org.renjin.sexp.Raw;
 import org.renjin.sexp.StringVector;
 
 public class ParseUtil {
-  public static final NumberFormat INTEGER_FORMAT = createIntegerFormat();
-  public static final NumberFormat REAL_FORMAT = createRealFormat();
-
-
-  public static NumberFormat createRealFormat() {
-    NumberFormat format = NumberFormat.getNumberInstance();
-    format.setMinimumFractionDigits(0);
-    format.setMaximumFractionDigits(14);
-    return format;
-  }
-
-  private static NumberFormat createIntegerFormat() {
-    NumberFormat format = NumberFormat.getIntegerInstance();
-    format.setGroupingUsed(false);
-    return format;
-  }
 
+  /**
+   * Formats an {@code int} in decimal, without grouping, whatever the default locale
+   */
   public static String toString(int value) {
-    return INTEGER_FORMAT.format(value);
+    return Integer.toString(value);
   }
 
+  /**
+   * Formats a {@code double} as {@code as.character()} does, with up to 15 significant digits
+   */
   public static String toString(double value) {
-    // TODO: the original R implementation formats numbers based on options,
-    // this is just a quick hack
-    if(value > 100000) {
-      return Double.toString(value);
-    }
-    return REAL_FORMAT.format(value);
+    return DoubleFormatter.toString(value);
   }
 
   public static class DoubleResult {
@@ -256,13 +240,6 @@ public class ParseUtil {
 
 
 
-  public static class RealPrinter implements Function<Double, String> {
-    @Override
-    public String apply(Double input) {
-      return formatRealLiteral(input, "NA");
-    }
-  }
-
   public static class RealDeparser implements Function<Double, String> {
     @Override
     public String apply(Double input) {
@@ -367,7 +344,7 @@ public class ParseUtil {
     } else if(Double.isNaN(value)) {
       return "NaN";
     } else if(Double.isInfinite(value)) {
-      return "Inf";
+      return value > 0 ? "Inf" : "-Inf";
     } else {
       return ParseUtil.toString(value);
     }
@@ -0,0 +1,113 @@
+package org.renjin.primitives;
+
+import org.renjin.eval.EvalException;
+import org.renjin.primitives.annotations.Primitive;
+import org.renjin.sexp.AtomicVector;
+import org.renjin.sexp.IntArrayVector;
+import org.renjin.sexp.IntVector;
+import org.renjin.sexp.ListVector;
+import org.renjin.sexp.Null;
+import org.renjin.sexp.SEXP;
+import org.renjin.sexp.Symbols;
+import org.renjin.sexp.Vector;
+
+/**
+ * Grouped counts and reductions, computed by {@link Grouping} without splitting
+ * the data into a vector for each group.
+ */
+public class Aggregation {
+
+  private Aggregation() { }
+
+  /**
+   * Counts the number of times each of the integers {@code 1..nbins} occurs in
+   * {@code bin}. Values outside that range and {@code NA}s are ignored.
+   */
+  @Primitive
+  public static IntVector tabulate(AtomicVector bin, int nbins) {
+    if(IntVector.isNA(nbins) || nbins < 0) {
+      throw new EvalException("invalid '%s' argument", "nbin");
+    }
+    return new IntArrayVector(Grouping.fromCodes(bin, nbins).counts());
+  }
+
+  /**
+   * Counts the number of elements with each combination of the codes of {@code factors},
+   * which all have the same length, as the cells of a contingency table whose extents
+   * are {@code dims}.
+   */
+  @Primitive
+  public static IntVector tabulateCodes(ListVector factors, AtomicVector dims) {
+    if(factors.length() != dims.length()) {
+      throw new EvalException("invalid '%s' argument", "dims");
+    }
+    AtomicVector[] codes = new AtomicVector[factors.length()];
+    int[] levelCounts = new int[factors.length()];
+    for(int j = 0; j != codes.length; ++j) {
+      SEXP factor = factors.getElementAsSEXP(j);
+      if(!(factor instanceof AtomicVector) || factor.length() != factors.getElementAsSEXP(0).length()) {
+        throw new EvalException("all arguments must have the same length");
+      }
+      codes[j] = (AtomicVector) factor;
+      levelCounts[j] = dims.getElementAsInt(j);
+    }
+    return new IntArrayVector(Grouping.fromCodes(codes, levelCounts).counts());
+  }
+
+  /**
+   * Sums the rows of the matrix {@code x} within each group, where the group of each row
+   * is the position of {@code group[i]} in {@code ugroup}.
+   *
+   * @return a matrix with a row for each element of {@code ugroup}
+   */
+  @Primitive("rowsum_matrix")
+  public static Vector rowsumMatrix(AtomicVector x, AtomicVector group, AtomicVector ugroup, boolean removeNA) {
+    int rowCount = group.length();
+    int columnCount = rowCount == 0 ? 0 : x.length() / rowCount;
+
+    Vector sums = Grouping.byKeys(group, ugroup).sumColumns(x, columnCount, removeNA);
+    return (Vector) sums.setAttribute(Symbols.DIM, new IntArrayVector(ugroup.length(), columnCount));
+  }
+
+  /**
+   * Sums the rows of each column of the data frame {@code x} within each group, as
+   * {@link #rowsumMatrix(AtomicVector, AtomicVector, AtomicVector, boolean)} does for matrices.
+   *
+   * @return a list of the sums for each column, with the same names as {@code x}
+   */
+  @Primitive("rowsum_df")
+  public static ListVector rowsumDataFrame(ListVector x, AtomicVector group, AtomicVector ugroup, boolean removeNA) {
+    Grouping grouping = Grouping.byKeys(group, ugroup);
+    ListVector.Builder columns = new ListVector.Builder(0, x.length());
+    for(SEXP column : x) {
+      if(!(column instanceof AtomicVector) || column.inherits("factor")) {
+        throw new EvalException("non-numeric data frame in rowsum");
+      }
+      columns.add(grouping.sumColumns((AtomicVector) column, 1, removeNA));
+    }
+    columns.copySomeAttributesFrom(x, Symbols.NAMES);
+    return columns.build();
+  }
+
+  /**
+   * Computes a reduction of {@code x} within each group, for the fast paths in
+   * {@code tapply()} and {@code aggregate()}.
+   *
+   * @param x the values to reduce
+   * @param group the group of each value, in the range {@code 1..groupCount}
+   * @param groupCount the number of groups
+   * @param reducer the name of the reduction, as accepted by
+   * {@link Grouping#reduce(String, AtomicVector, boolean)}
+   * @return the value of the reduction for each group, or {@code NULL} if the
+   * reduction must be computed by applying the function to each group in turn
+   */
+  @Primitive
+  public static SEXP groupReduce(AtomicVector x, AtomicVector group, int groupCount, String reducer,
+      boolean removeNA) {
+    if(x.length() != group.length()) {
+      throw new EvalException("arguments must have same length");
+    }
+    Vector result = Grouping.fromCodes(group, groupCount).reduce(reducer, x, removeNA);
+    return result == null ? Null.INSTANCE : result;
+  }
+}
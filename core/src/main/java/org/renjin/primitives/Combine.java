@@ -25,6 +25,7 @@ import com.google.common.base.Function;
 import com.google.common.base.Strings;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import org.renjin.eval.AllocationTracker;
 import org.renjin.eval.Context;
 import org.renjin.eval.EvalException;
 import org.renjin.primitives.annotations.ArgumentList;
@@ -34,6 +35,7 @@ import org.renjin.primitives.annotations.Primitive;
 import org.renjin.primitives.matrix.IntMatrixBuilder;
 import org.renjin.sexp.*;
 
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -57,9 +59,10 @@ public class Combine {
     // list to determine which vector type to use
     Inspector inspector = new Inspector(recursive);
     inspector.acceptAll(Iterables.transform(arguments.namedValues(), VALUE_OF));
+    inspector.acceptNames(arguments);
 
     // Build a new vector with all the elements
-    return new Combiner(recursive, inspector.getResult())
+    return Combiner.create(recursive, inspector)
         .add(arguments.namedValues())
         .combine();
   }
@@ -73,21 +76,24 @@ public class Combine {
     // list to determine which vector type to use
     Inspector inspector = new Inspector(recursive);
     inspector.acceptAll(vector);
+    inspector.acceptNames(vector);
 
-    return new Combiner(recursive, inspector.getResult())
+    return Combiner.create(recursive, inspector)
         .add(vector.namedValues())
         .combine();
   }
 
 
   /**
-   * Finds the narrowest common type of an expression
+   * Finds the narrowest common type of an expression, the number of elements
+   * it will have when combined, and whether any of them might have a name
    */
   static class Inspector extends SexpVisitor<Vector.Type> {
 
     private boolean recursive = false;
     private int count = 0;
     private Vector.Type resultType = Null.VECTOR_TYPE;
+    private boolean haveNames = false;
 
     /**
      * Visits each element of {@code ListExp}
@@ -100,18 +106,21 @@ public class Combine {
     public void visit(DoubleVector vector) {
       resultType = Vector.Type.widest(resultType, vector);
       count += vector.length();
+      acceptNames(vector);
     }
 
     @Override
     public void visit(IntVector vector) {
       resultType = Vector.Type.widest(resultType, vector);
       count += vector.length();
+      acceptNames(vector);
     }
 
     @Override
     public void visit(LogicalVector vector) {
       resultType = Vector.Type.widest(resultType, vector);
       count += vector.length();
+      acceptNames(vector);
     }
 
     @Override
@@ -123,16 +132,19 @@ public class Combine {
     public void visit(StringVector vector) {
       resultType = Vector.Type.widest(resultType, vector);
       count += vector.length();
+      acceptNames(vector);
     }
     
     @Override
     public void visit(ComplexVector vector) {
       resultType = Vector.Type.widest(resultType, vector);
       count += vector.length();
+      acceptNames(vector);
     }
 
     @Override
     public void visit(ListVector list) {
+      acceptNames(list);
       if(recursive) {
         acceptAll(list);
       } else {
@@ -150,6 +162,16 @@ public class Combine {
     protected void unhandled(SEXP exp) {
       resultType = Vector.Type.widest(resultType, ListVector.VECTOR_TYPE);
       count++;
+      haveNames = true;
+    }
+
+    /**
+     * Notes whether {@code vector}, or the list of arguments, has names
+     */
+    void acceptNames(SEXP vector) {
+      if(vector.getAttribute(Symbols.NAMES) != Null.INSTANCE) {
+        haveNames = true;
+      }
     }
 
     @Override
@@ -160,18 +182,46 @@ public class Combine {
     public int getCount() {
       return count;
     }
+
+    /**
+     * @return false if none of the combined elements can have a name, 
+     * so that names need not be computed
+     */
+    public boolean haveNames() {
+      return haveNames;
+    }
   }
 
-  private static class Combiner {
+  /**
+   * Combines the elements of vectors into a single vector. The elements of
+   * double, integer, logical and character results are copied into a single
+   * array of the exact length found by the {@link Inspector}, and names are
+   * only computed if some element might have one.
+   */
+  private abstract static class Combiner {
     private boolean recursive;
-    private Vector.Builder vector;
 
-    private StringVector.Builder names = new StringVector.Builder();
+    private StringVector.Builder names;
     private boolean haveNames = false;
 
-    public Combiner(boolean recursive, Vector.Type resultType) {
+    protected Combiner(boolean recursive, Inspector inspector) {
       this.recursive = recursive;
-      this.vector = resultType.newBuilder();
+      if(inspector.haveNames()) {
+        this.names = new StringVector.Builder();
+      }
+    }
+
+    public static Combiner create(boolean recursive, Inspector inspector) {
+      Vector.Type resultType = inspector.getResult();
+      if(resultType == DoubleVector.VECTOR_TYPE) {
+        return new DoubleCombiner(recursive, inspector);
+      } else if(resultType == IntVector.VECTOR_TYPE || resultType == LogicalVector.VECTOR_TYPE) {
+        return new IntCombiner(recursive, inspector);
+      } else if(resultType == StringVector.VECTOR_TYPE) {
+        return new StringCombiner(recursive, inspector);
+      } else {
+        return new BuilderCombiner(recursive, inspector);
+      }
     }
 
     public Combiner add(Iterable<NamedValue> list) {
@@ -188,15 +238,27 @@ public class Combine {
         } else if(recursive && value instanceof PairList) {
           add(prefix, ((PairList)value).nodes());
         } else {
-          for(int i=0;i!=value.length();++i) {
-            vector.addFrom(value, i);
-            addNameFrom(prefix, value, i);
+          addElements(value);
+          if(names != null) {
+            for(int i=0;i!=value.length();++i) {
+              addNameFrom(prefix, value, i);
+            }
           }
         }
       }
       return this;
     }
 
+    /**
+     * Adds all the elements of {@code value} to the result
+     */
+    protected abstract void addElements(SEXP value);
+
+    /**
+     * @return the combined elements, without names
+     */
+    protected abstract Vector build();
+
     private void addNameFrom(String prefix, SEXP vector, int index) {
       // The resulting name starts with the argument's
       // tag, if any
@@ -244,13 +306,147 @@ public class Combine {
     }
 
     public Vector combine() {
+      Vector vector = build();
       if(haveNames) {
-        vector.setAttribute(Symbols.NAMES, names.build());
+        vector = (Vector) vector.setAttribute(Symbols.NAMES, names.build());
       }
+      return vector;
+    }
+  }
+
+  /**
+   * Combines elements of any type through a {@code Vector.Builder}
+   */
+  private static class BuilderCombiner extends Combiner {
+    private Vector.Builder vector;
+
+    public BuilderCombiner(boolean recursive, Inspector inspector) {
+      super(recursive, inspector);
+      this.vector = inspector.getResult().newBuilder();
+    }
+
+    @Override
+    protected void addElements(SEXP value) {
+      for(int i=0;i!=value.length();++i) {
+        vector.addFrom(value, i);
+      }
+    }
+
+    @Override
+    protected Vector build() {
       return vector.build();
     }
   }
 
+  private static class DoubleCombiner extends Combiner {
+    private double[] values;
+    private int length;
+
+    public DoubleCombiner(boolean recursive, Inspector inspector) {
+      super(recursive, inspector);
+      this.values = new double[inspector.getCount()];
+    }
+
+    @Override
+    protected void addElements(SEXP value) {
+      int n = value.length();
+      if(length + n > values.length) {
+        values = Arrays.copyOf(values, length + n);
+      }
+      if(value instanceof DoubleArrayVector) {
+        java.lang.System.arraycopy(((DoubleArrayVector) value).toDoubleArrayUnsafe(), 0, values, length, n);
+      } else {
+        AtomicVector vector = (AtomicVector) value;
+        for(int i=0;i!=n;++i) {
+          values[length+i] = vector.isElementNA(i) ? DoubleVector.NA : vector.getElementAsDouble(i);
+        }
+      }
+      length += n;
+    }
+
+    @Override
+    protected Vector build() {
+      AllocationTracker.recordVector(length, 8);
+      return DoubleArrayVector.unsafe(length == values.length ? values : Arrays.copyOf(values, length));
+    }
+  }
+
+  /**
+   * Combines integer and logical elements, which are both stored as {@code int}s
+   */
+  private static class IntCombiner extends Combiner {
+    private final boolean logical;
+    private int[] values;
+    private int length;
+
+    public IntCombiner(boolean recursive, Inspector inspector) {
+      super(recursive, inspector);
+      this.logical = inspector.getResult() == LogicalVector.VECTOR_TYPE;
+      this.values = new int[inspector.getCount()];
+    }
+
+    @Override
+    protected void addElements(SEXP value) {
+      int n = value.length();
+      if(length + n > values.length) {
+        values = Arrays.copyOf(values, length + n);
+      }
+      if(value instanceof IntArrayVector && !logical) {
+        java.lang.System.arraycopy(((IntArrayVector) value).toIntArrayUnsafe(), 0, values, length, n);
+      } else {
+        AtomicVector vector = (AtomicVector) value;
+        for(int i=0;i!=n;++i) {
+          values[length+i] = logical ? vector.getElementAsRawLogical(i) : vector.getElementAsInt(i);
+        }
+      }
+      length += n;
+    }
+
+    @Override
+    protected Vector build() {
+      AllocationTracker.recordVector(length, 4);
+      int[] array = length == values.length ? values : Arrays.copyOf(values, length);
+      if(logical) {
+        return LogicalArrayVector.unsafe(array);
+      } else {
+        return IntArrayVector.unsafe(array);
+      }
+    }
+  }
+
+  private static class StringCombiner extends Combiner {
+    private String[] values;
+    private int length;
+
+    public StringCombiner(boolean recursive, Inspector inspector) {
+      super(recursive, inspector);
+      this.values = new String[inspector.getCount()];
+    }
+
+    @Override
+    protected void addElements(SEXP value) {
+      int n = value.length();
+      if(length + n > values.length) {
+        values = Arrays.copyOf(values, length + n);
+      }
+      if(value instanceof StringVector && !(value instanceof StringDictionaryVector)) {
+        java.lang.System.arraycopy(((StringVector) value).toArrayUnsafe(), 0, values, length, n);
+      } else {
+        AtomicVector vector = (AtomicVector) value;
+        for(int i=0;i!=n;++i) {
+          values[length+i] = vector.getElementAsString(i);
+        }
+      }
+      length += n;
+    }
+
+    @Override
+    protected Vector build() {
+      AllocationTracker.recordVector(length, 8);
+      return StringVector.unsafe(length == values.length ? values : Arrays.copyOf(values, length));
+    }
+  }
+
   private static final Function<NamedValue,SEXP> VALUE_OF =
       new Function<NamedValue, SEXP>() {
     @Override
@@ -27,9 +27,14 @@ import org.renjin.primitives.annotations.Primitive;
 import org.renjin.sexp.AtomicVector;
 import org.renjin.sexp.Environment;
 import org.renjin.sexp.FunctionCall;
+import org.renjin.sexp.IntVector;
 import org.renjin.sexp.Logical;
+import org.renjin.sexp.LogicalArrayVector;
 import org.renjin.sexp.LogicalVector;
+import org.renjin.sexp.Null;
 import org.renjin.sexp.SEXP;
+import org.renjin.sexp.StringDictionaryVector;
+import org.renjin.sexp.StringVector;
 
 
 public class Comparison {
@@ -92,6 +97,47 @@ public class Comparison {
   }
 
 
+  /**
+   * Compares a dictionary-encoded character vector with a single string, as {@code x == y}
+   * or {@code x != y}, by comparing each distinct value once and looking up the result of each
+   * element by its code.
+   *
+   * @return the comparison, or {@code null} if the operands are not a dictionary-encoded vector
+   * and a string, neither of which has attributes
+   */
+  public static LogicalVector compareCodes(boolean equal, SEXP x, SEXP y) {
+    if(x instanceof StringDictionaryVector) {
+      return compareCodes(equal, (StringDictionaryVector) x, y);
+    } else if(y instanceof StringDictionaryVector) {
+      return compareCodes(equal, (StringDictionaryVector) y, x);
+    } else {
+      return null;
+    }
+  }
+
+  private static LogicalVector compareCodes(boolean equal, StringDictionaryVector x, SEXP y) {
+    if(!(y instanceof StringVector) || y.length() != 1 ||
+        x.getAttributes() != Null.INSTANCE || y.getAttributes() != Null.INSTANCE) {
+      return null;
+    }
+    String value = ((StringVector) y).getElementAsString(0);
+    StringVector dictionary = x.getDictionary();
+    int[] byCode = new int[dictionary.length() + 1];
+    for(int i = 0; i != dictionary.length(); ++i) {
+      if(value == null) {
+        byCode[i + 1] = IntVector.NA;
+      } else {
+        byCode[i + 1] = (value.equals(dictionary.getElementAsString(i)) == equal) ? 1 : 0;
+      }
+    }
+    int[] result = new int[x.length()];
+    for(int i = 0; i != result.length; ++i) {
+      int code = x.getCode(i);
+      result[i] = code == IntVector.NA ? IntVector.NA : byCode[code];
+    }
+    return LogicalArrayVector.unsafe(result);
+  }
+
   private static Logical checkedToLogical(SEXP exp, String errorMessage) {
     if(exp instanceof AtomicVector) {
       AtomicVector vector = (AtomicVector) exp;
@@ -451,7 +451,7 @@ public class Deparse {
         if(Double.isNaN(value)) {
           return "NaN";
         } else if(Double.isInfinite(value)) {
-          return "Inf";
+          return value > 0 ? "Inf" : "-Inf";
         } else {
           return ParseUtil.toString(value);
         }
@@ -23,13 +23,17 @@ package org.renjin.primitives;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Iterables;
+import com.google.common.io.CharStreams;
 import com.google.common.collect.Lists;
 import org.renjin.base.Base;
+import org.renjin.eval.ApplyDispatcher;
 import org.renjin.eval.Calls;
 import org.renjin.eval.Context;
 import org.renjin.eval.EvalException;
+import org.renjin.eval.Instrumentation;
 import org.renjin.jvminterop.FunctionBinding;
 import org.renjin.methods.Methods;
+import org.renjin.parser.ParseCache;
 import org.renjin.parser.RParser;
 import org.renjin.primitives.annotations.ArgumentList;
 import org.renjin.primitives.annotations.Current;
@@ -37,22 +41,26 @@ import org.renjin.primitives.annotations.Evaluate;
 import org.renjin.primitives.annotations.Primitive;
 import org.renjin.primitives.io.connections.Connection;
 import org.renjin.primitives.io.connections.Connections;
+import org.renjin.primitives.io.connections.FileConnection;
 import org.renjin.primitives.special.ReturnException;
 import org.renjin.sexp.*;
 import org.renjin.sexp.Frame;
 
 import java.awt.*;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.Reader;
 import java.io.StringReader;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.nio.charset.Charset;
 import java.util.Arrays;
 import java.util.List;
 
 public class Evaluation {
 
+  private static final Symbol DOUBLE_BRACKET = Symbol.get("[[");
+
 
 
   /**
@@ -115,49 +123,47 @@ public class Evaluation {
   public static ListVector lapply(@Current Context context, @Current Environment rho, Vector vector,
       Function function) {
 
-    ListVector.Builder builder = ListVector.newBuilder();
+    ApplyDispatcher dispatcher = new ApplyDispatcher(context, rho, function);
+    ListVector.Builder builder = new ListVector.Builder(0, vector.length());
     for(int i=0;i!=vector.length();++i) {
-      // For historical reasons, the calls created by lapply are unevaluated, and code has
-      // been written (e.g. bquote) that relies on this.
-      FunctionCall getElementCall = FunctionCall.newCall(Symbol.get("[["), (SEXP)vector, new IntArrayVector(i+1));
-      FunctionCall applyFunctionCall = new FunctionCall((SEXP)function, new PairList.Node(getElementCall,
-          new PairList.Node(Symbols.ELLIPSES, Null.INSTANCE)));
-      builder.add( context.evaluate(applyFunctionCall, rho) );
+      builder.add( applyToElement(dispatcher, vector, i) );
     }
     builder.copySomeAttributesFrom(vector, Symbols.NAMES);
     return builder.build();
   }
+
+  /**
+   * Evaluates {@code FUN(X[[i]], ...)}. Unless {@code X} has a class, in which case
+   * {@code [[} may dispatch to a method, the element is extracted directly.
+   */
+  static SEXP applyToElement(ApplyDispatcher dispatcher, Vector vector, int i) {
+    // For historical reasons, the calls created by lapply are unevaluated, and code has
+    // been written (e.g. bquote) that relies on this.
+    FunctionCall getElementCall = FunctionCall.newCall(DOUBLE_BRACKET, vector, new IntArrayVector(i+1));
+    if(vector.isObject()) {
+      return dispatcher.applyToCall(getElementCall);
+    } else {
+      return dispatcher.apply(getElementCall, vector.getElementAsSEXP(i));
+    }
+  }
   
   public static Vector vapply(@Current Context context, @Current Environment rho, Vector vector,
       Function function, Vector funValue, boolean useNames) {
     
-    // Retrieve the additional arguments from the `...` value 
-    // in the closure that called us
-    PairList extraArgs = (PairList)rho.getVariable(Symbols.ELLIPSES);
-    
+    ApplyDispatcher dispatcher = new ApplyDispatcher(context, rho, function);
+
     Vector.Builder result = funValue.getVectorType().newBuilderWithInitialCapacity(vector.length());
     for(int i=0;i!=vector.length();++i) {
 
-      // build function call 
-      PairList.Builder args = new PairList.Builder();
-      
-      FunctionCall getCall = FunctionCall.newCall(
-          Symbol.get("[["), vector, new IntArrayVector(i+1));
-      
-      args.add(getCall);
-      args.addAll(extraArgs);
-      FunctionCall call = new FunctionCall(function, args.build());
-      
-      // evaluate
-      SEXP x = context.evaluate(call);
+      SEXP x = applyToElement(dispatcher, vector, i);
       
       // check the result
       if(!(x instanceof Vector) || 
           x.length() != funValue.length() ||
           ((Vector)x).getVectorType().isWiderThan(funValue)) {
-        throw new EvalException("values must be type '%s',\n but %s result is type '%s'",
+        throw new EvalException("values must be type '%s',\n but FUN(X[[%d]]) result is type '%s'",
             funValue.getTypeName(),
-            Deparse.deparseExp(call),
+            i+1,
             x.getTypeName());
             
       }
@@ -175,8 +181,78 @@ public class Evaluation {
     
     return result.build();
   }
-  
 
+  public static ListVector eapply(@Current Context context, @Current Environment rho, Environment env,
+      Function function, boolean allNames, boolean useNames) {
+
+    StringVector.Builder names = new StringVector.Builder();
+    ListVector.Builder values = new ListVector.Builder();
+    for(Symbol name : env.getSymbolNames()) {
+      if(allNames || !name.getPrintName().startsWith(".")) {
+        names.add(name.getPrintName());
+        values.add(env.getVariable(name).force());
+      }
+    }
+    ListVector valueList = values.build();
+
+    ApplyDispatcher dispatcher = new ApplyDispatcher(context, rho, function);
+    ListVector.Builder result = new ListVector.Builder(0, valueList.length());
+    for(int i=0;i!=valueList.length();++i) {
+      FunctionCall getElementCall = FunctionCall.newCall(DOUBLE_BRACKET, valueList, new IntArrayVector(i+1));
+      result.add(dispatcher.apply(getElementCall, valueList.getElementAsSEXP(i)));
+    }
+    if(useNames) {
+      result.setAttribute(Symbols.NAMES, names.build());
+    }
+    return result.build();
+  }
+
+  /**
+   * Applies {@code f} to each leaf of {@code object} whose class is among {@code classes}, 
+   * descending recursively into the elements which are themselves lists.
+   */
+  public static ListVector rapply(@Current Context context, @Current Environment rho, ListVector object,
+      Function function, StringVector classes, SEXP deflt, String how) {
+
+    ApplyDispatcher dispatcher = new ApplyDispatcher(context, rho, function);
+    return rapplyList(dispatcher, object, classes, deflt, how.equals("replace"));
+  }
+
+  private static ListVector rapplyList(ApplyDispatcher dispatcher, ListVector list, StringVector classes,
+      SEXP deflt, boolean replace) {
+
+    ListVector.Builder result = new ListVector.Builder(0, list.length());
+    for(SEXP element : list) {
+      if(element instanceof ListVector && !(element instanceof ExpressionVector)) {
+        result.add(rapplyList(dispatcher, (ListVector) element, classes, deflt, replace));
+      } else if(inheritsAny(element, classes)) {
+        result.add(dispatcher.apply(element, element));
+      } else {
+        result.add(replace ? element : deflt);
+      }
+    }
+    if(replace) {
+      result.copyAttributesFrom(list);
+    } else {
+      result.copySomeAttributesFrom(list, Symbols.NAMES);
+    }
+    return result.build();
+  }
+
+  private static boolean inheritsAny(SEXP exp, StringVector classes) {
+    if(classes.getElementAsString(0).equals("ANY")) {
+      return true;
+    }
+    StringVector dataClasses = Calls.computeDataClasses(exp);
+    for(String dataClass : dataClasses) {
+      for(String wanted : classes) {
+        if(dataClass.equals(wanted)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
 
   public static void stop(boolean call, String message) {
     throw new EvalException(message);
@@ -433,6 +509,13 @@ public class Evaluation {
 //            methodName, packageName));
   }
   
+  private static void countDispatch(Context context) {
+    Instrumentation instrumentation = context.getGlobals().getInstrumentation();
+    if(instrumentation != null) {
+      instrumentation.s3Dispatched();
+    }
+  }
+
   public static SEXP UseMethod(Context context, Environment rho, FunctionCall call) {
     SEXP generic = context.evaluate(call.getArgument(0), rho);
     EvalException.check(generic.length() == 1 && generic instanceof StringVector,
@@ -814,6 +897,7 @@ public class Evaluation {
 
     FunctionCall newcall = new FunctionCall(Symbol.get(buf), actuals);
 
+    countDispatch(context);
 
     if(nextfun instanceof Closure) {
       return Calls.applyClosure((Closure)nextfun, context, newcall, actuals, env, m);
@@ -866,6 +950,7 @@ public class Evaluation {
 
 
         if(function instanceof Closure) {
+         countDispatch(context);
          SEXP result = Calls.applyClosure((Closure) function, context, newCall,
               repromisedArgs, rho, extra);
          return result;
@@ -894,14 +979,37 @@ public class Evaluation {
       }
     } else if(file.inherits("connection")) {
       Connection conn = Connections.getConnection(context, file);
-      Reader reader = new InputStreamReader(conn.getInputStream());
-      ExpressionVector result = RParser.parseSource(reader);
+      ParseCache cache = ParseCache.getDefault();
+      File unread = conn instanceof FileConnection ? ((FileConnection) conn).getUnreadFile() : null;
+      ExpressionVector result;
+      if(unread != null) {
+        result = cache.parse(unread, Charset.defaultCharset());
+      } else {
+        result = cache.parse(CharStreams.toString(new InputStreamReader(conn.getInputStream())));
+      }
       Iterables.addAll(expressions, result);
     }
 
     return new ExpressionVector(expressions);
   }
 
+  /**
+   * @return the number of sources found already parsed in memory and on disk by
+   * the {@link ParseCache}, the number parsed, and the time in seconds spent parsing
+   * and saved by the cache
+   */
+  public static ListVector parseCacheStats() {
+    ParseCache cache = ParseCache.getDefault();
+    ListVector.NamedBuilder stats = new ListVector.NamedBuilder();
+    stats.add("entries", cache.getEntryCount());
+    stats.add("hits", new DoubleArrayVector(cache.getHits()));
+    stats.add("disk.hits", new DoubleArrayVector(cache.getDiskHits()));
+    stats.add("misses", new DoubleArrayVector(cache.getMisses()));
+    stats.add("parse.time", new DoubleArrayVector(cache.getParseNanos() / 1e9));
+    stats.add("saved.time", new DoubleArrayVector(cache.getSavedNanos() / 1e9));
+    return stats.build();
+  }
+
   public static int nargs(@Current Context context) {
     return context.getArguments().length();
   }
@@ -0,0 +1,464 @@
+package org.renjin.primitives;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.renjin.eval.EvalException;
+import org.renjin.primitives.annotations.Primitive;
+import org.renjin.sexp.AbstractSEXP;
+import org.renjin.sexp.AttributeMap;
+import org.renjin.sexp.IntArrayVector;
+import org.renjin.sexp.IntVector;
+import org.renjin.sexp.ListVector;
+import org.renjin.sexp.LogicalArrayVector;
+import org.renjin.sexp.Null;
+import org.renjin.sexp.PairList;
+import org.renjin.sexp.SEXP;
+import org.renjin.sexp.StringDictionaryVector;
+import org.renjin.sexp.StringVector;
+import org.renjin.sexp.Symbols;
+
+/**
+ * Operations on factors which work on their integer codes, rather than on the
+ * character vectors of their levels, as the methods in base do.
+ *
+ * <p>Comparisons resolve the level they compare with once, and then compare codes;
+ * levels are dropped or renamed through an array which maps each old code to its new
+ * code; interactions are computed as mixed-radix numbers of the codes of each factor.
+ * None of them creates a string for each element.
+ */
+public class Factors {
+
+  private static final int EQ = 0;
+  private static final int NE = 1;
+  private static final int LT = 2;
+  private static final int GT = 3;
+  private static final int LE = 4;
+  private static final int GE = 5;
+
+  private static final int NOT_FACTOR = 0;
+  private static final int FACTOR = 1;
+  private static final int ORDERED = 2;
+
+  private Factors() { }
+
+  /**
+   * Applies an operator of the {@code Ops} group to factors, as {@code Ops.factor} and
+   * {@code Ops.ordered} would, if the operands are a factor and a single string, or two
+   * factors with the same levels, and the operator is a comparison meaningful for them.
+   *
+   * <p>Callers must only try this where the methods in base would otherwise be dispatched.
+   *
+   * @return the result, or {@code null} if the operation must be dispatched to the methods in base
+   */
+  public static SEXP tryOps(String opName, PairList args) {
+    if(args.length() != 2) {
+      return null;
+    }
+    int op = comparison(opName);
+    if(op == -1) {
+      return null;
+    }
+    SEXP x = args.getElementAsSEXP(0);
+    SEXP y = args.getElementAsSEXP(1);
+    int xKind = factorKind(x);
+    int yKind = factorKind(y);
+
+    if(xKind != NOT_FACTOR && yKind != NOT_FACTOR) {
+      return compareFactors(op, xKind, (IntVector) x, (IntVector) y);
+    } else if(xKind != NOT_FACTOR) {
+      return compareWithLevel(op, xKind, (IntVector) x, y, false);
+    } else if(yKind != NOT_FACTOR) {
+      return compareWithLevel(op, yKind, (IntVector) y, x, true);
+    } else {
+      return null;
+    }
+  }
+
+  /**
+   * @return whether {@code x} is a factor or an ordered factor, without any other
+   * class which might have its own methods
+   */
+  private static int factorKind(SEXP x) {
+    if(!(x instanceof IntVector) || !(x.getAttribute(Symbols.LEVELS) instanceof StringVector)) {
+      return NOT_FACTOR;
+    }
+    SEXP classes = ((AbstractSEXP) x).getAttributeMap().getClassVector();
+    if(!(classes instanceof StringVector)) {
+      return NOT_FACTOR;
+    }
+    StringVector names = (StringVector) classes;
+    if(names.length() == 1 && "factor".equals(names.getElementAsString(0))) {
+      return FACTOR;
+    } else if(names.length() == 2 && "ordered".equals(names.getElementAsString(0)) &&
+        "factor".equals(names.getElementAsString(1))) {
+      return ORDERED;
+    } else {
+      return NOT_FACTOR;
+    }
+  }
+
+  private static int comparison(String opName) {
+    if(opName.equals("==")) {
+      return EQ;
+    } else if(opName.equals("!=")) {
+      return NE;
+    } else if(opName.equals("<")) {
+      return LT;
+    } else if(opName.equals(">")) {
+      return GT;
+    } else if(opName.equals("<=")) {
+      return LE;
+    } else if(opName.equals(">=")) {
+      return GE;
+    } else {
+      return -1;
+    }
+  }
+
+  private static boolean compare(int op, int x, int y) {
+    switch(op) {
+      case EQ:
+        return x == y;
+      case NE:
+        return x != y;
+      case LT:
+        return x < y;
+      case GT:
+        return x > y;
+      case LE:
+        return x <= y;
+      default:
+        return x >= y;
+    }
+  }
+
+  private static StringVector levels(SEXP factor) {
+    return (StringVector) factor.getAttribute(Symbols.LEVELS);
+  }
+
+  /**
+   * Compares two factors with identical levels, which, if the levels are distinct, are
+   * equal where their codes are equal
+   */
+  private static SEXP compareFactors(int op, int kind, IntVector x, IntVector y) {
+    if(kind != factorKind(y) || (kind == FACTOR && op != EQ && op != NE) ||
+        !levels(x).equals(levels(y)) || (kind == FACTOR && !distinct(levels(x)))) {
+      return null;
+    }
+    int length = Math.max(x.length(), y.length());
+    if((x.length() != length && x.length() != 1) || (y.length() != length && y.length() != 1)) {
+      return null;
+    }
+    int levelCount = levels(x).length();
+    int[] result = new int[length];
+    for(int i = 0; i != length; ++i) {
+      int xCode = slot(x.getElementAsInt(x.length() == 1 ? 0 : i), levelCount);
+      int yCode = slot(y.getElementAsInt(y.length() == 1 ? 0 : i), levelCount);
+      if(xCode == 0 || yCode == 0 || xCode > levelCount || yCode > levelCount) {
+        result[i] = IntVector.NA;
+      } else {
+        result[i] = compare(op, xCode, yCode) ? 1 : 0;
+      }
+    }
+    return LogicalArrayVector.unsafe(result);
+  }
+
+  /**
+   * Compares a factor with a single string, by comparing the string with each level once
+   *
+   * @param swapped true if {@code value} is the left operand
+   */
+  private static SEXP compareWithLevel(int op, int kind, IntVector factor, SEXP value, boolean swapped) {
+    if(!(value instanceof StringVector) || value.length() != 1 || ((AbstractSEXP) value).isObject()) {
+      return null;
+    }
+    if(kind == FACTOR && op != EQ && op != NE) {
+      return null;
+    }
+    StringVector levels = levels(factor);
+    String string = ((StringVector) value).getElementAsString(0);
+
+    // the result for each code, with NA at 0 and beyond the last level
+    int[] byCode = new int[levels.length() + 2];
+    byCode[0] = IntVector.NA;
+    byCode[byCode.length - 1] = IntVector.NA;
+    if(op == EQ || op == NE) {
+      // Ops.factor compares NA levels as a placeholder string
+      if(levels.indexOfNA() != -1) {
+        return null;
+      }
+      for(int code = 1; code <= levels.length(); ++code) {
+        if(string == null) {
+          byCode[code] = IntVector.NA;
+        } else {
+          byCode[code] = (string.equals(levels.getElementAsString(code - 1)) == (op == EQ)) ? 1 : 0;
+        }
+      }
+    } else {
+      // Ops.ordered compares codes with the position of the first matching level
+      int level = string == null ? -1 : levels.indexOf(string);
+      for(int code = 1; code <= levels.length(); ++code) {
+        if(level == -1) {
+          byCode[code] = IntVector.NA;
+        } else if(swapped) {
+          byCode[code] = compare(op, level + 1, code) ? 1 : 0;
+        } else {
+          byCode[code] = compare(op, code, level + 1) ? 1 : 0;
+        }
+      }
+    }
+
+    int[] result = new int[factor.length()];
+    for(int i = 0; i != result.length; ++i) {
+      result[i] = byCode[slot(factor.getElementAsInt(i), levels.length())];
+    }
+    return LogicalArrayVector.unsafe(result);
+  }
+
+  /**
+   * @return {@code code} if it is a valid code, or else 0 if it is {@code NA},
+   * and {@code levelCount + 1} if it is outside the levels
+   */
+  private static int slot(int code, int levelCount) {
+    if(IntVector.isNA(code)) {
+      return 0;
+    } else if(code < 1 || code > levelCount) {
+      return levelCount + 1;
+    } else {
+      return code;
+    }
+  }
+
+  /**
+   * @return the levels of each element of {@code x}, held as a dictionary which shares
+   * the codes of {@code x} where they are all valid
+   */
+  @Primitive
+  public static StringVector asCharacterFactor(IntVector x) {
+    SEXP levelsAttribute = x.getAttribute(Symbols.LEVELS);
+    if(!(levelsAttribute instanceof StringVector)) {
+      throw new EvalException("malformed factor");
+    }
+    StringVector levels = (StringVector) levelsAttribute;
+    int[] codes = x instanceof IntArrayVector ? ((IntArrayVector) x).toIntArrayUnsafe() : x.toIntArray();
+
+    if(levels.indexOfNA() == -1 && allValid(codes, levels.length()) && distinct(levels)) {
+      return new StringDictionaryVector(codes, levels.getAttributes() == Null.INSTANCE ?
+          levels : StringVector.unsafe(levels.toArray()));
+    }
+    String[] values = new String[codes.length];
+    for(int i = 0; i != values.length; ++i) {
+      int code = codes[i];
+      if(!IntVector.isNA(code) && code >= 1 && code <= levels.length()) {
+        values[i] = levels.getElementAsString(code - 1);
+      }
+    }
+    return StringVector.unsafe(values);
+  }
+
+  private static boolean allValid(int[] codes, int levelCount) {
+    for(int code : codes) {
+      if(code != IntVector.NA && (code < 1 || code > levelCount)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean distinct(StringVector levels) {
+    Set<String> seen = new HashSet<String>();
+    for(int i = 0; i != levels.length(); ++i) {
+      if(!seen.add(levels.getElementAsString(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Drops the levels of {@code x} which no element has, as {@code factor(x)} does, keeping
+   * the order of the levels which remain.
+   *
+   * @return a factor with the names of {@code x}, and no other attributes than its levels and class
+   */
+  @Primitive
+  public static IntVector droplevelsFactor(IntVector x) {
+    StringVector levels = StringVector.coerceFrom(x.getAttribute(Symbols.LEVELS));
+    boolean[] used = new boolean[levels.length() + 1];
+    for(int i = 0; i != x.length(); ++i) {
+      int code = x.getElementAsInt(i);
+      if(!IntVector.isNA(code) && code >= 1 && code <= levels.length()) {
+        used[code] = true;
+      }
+    }
+
+    // Maps each old code to its new code. NA levels are excluded, and
+    // repeated levels are merged, as factor() does
+    int[] map = new int[levels.length() + 1];
+    Map<String, Integer> newCodes = new HashMap<String, Integer>();
+    StringVector.Builder newLevels = new StringVector.Builder();
+    for(int code = 1; code <= levels.length(); ++code) {
+      String level = levels.getElementAsString(code - 1);
+      if(!used[code] || level == null) {
+        map[code] = IntVector.NA;
+      } else {
+        Integer newCode = newCodes.get(level);
+        if(newCode == null) {
+          newLevels.add(level);
+          newCode = newLevels.length();
+          newCodes.put(level, newCode);
+        }
+        map[code] = newCode;
+      }
+    }
+
+    AttributeMap attributes = AttributeMap.factor(newLevels.build(), x.inherits("ordered"));
+    SEXP names = x.getAttribute(Symbols.NAMES);
+    if(names != Null.INSTANCE) {
+      PairList.Builder list = new PairList.Builder();
+      list.add(Symbols.NAMES, names);
+      list.addAll(attributes.toPairList());
+      return IntArrayVector.unsafe(recode(x, map), list.build());
+    }
+    return IntArrayVector.unsafe(recode(x, map), attributes);
+  }
+
+  /**
+   * Renames or merges the levels of {@code x}, as {@code levels<-} does
+   *
+   * @param newCodes the new code of each level of {@code x}, or {@code NA}
+   * @return the new codes of the elements of {@code x}, without attributes
+   */
+  @Primitive
+  public static IntVector recodeFactor(IntVector x, IntVector newCodes) {
+    int[] map = new int[newCodes.length() + 1];
+    map[0] = IntVector.NA;
+    for(int i = 0; i != newCodes.length(); ++i) {
+      map[i + 1] = newCodes.getElementAsInt(i);
+    }
+    return IntArrayVector.unsafe(recode(x, map));
+  }
+
+  /**
+   * @return the code {@code map[code]} of each element, or {@code NA} for elements
+   * whose code is {@code NA} or outside {@code map}
+   */
+  private static int[] recode(IntVector x, int[] map) {
+    int[] codes = new int[x.length()];
+    for(int i = 0; i != codes.length; ++i) {
+      int code = x.getElementAsInt(i);
+      if(IntVector.isNA(code) || code < 1 || code >= map.length) {
+        codes[i] = IntVector.NA;
+      } else {
+        codes[i] = map[code];
+      }
+    }
+    return codes;
+  }
+
+  /**
+   * Computes the interaction of factors, whose codes are the mixed-radix numbers formed
+   * by the codes of each factor, the first varying fastest, or the last if {@code lexOrder}
+   * is true.
+   *
+   * @return the interaction, or {@code NULL} if the factors have different lengths,
+   * too many combinations of levels, or combinations with the same label, which are
+   * left to the R implementation
+   */
+  @Primitive
+  public static SEXP interaction(ListVector factors, boolean drop, String sep, boolean lexOrder) {
+    int count = factors.length();
+    if(count == 0) {
+      return Null.INSTANCE;
+    }
+    IntVector[] codes = new IntVector[count];
+    StringVector[] levels = new StringVector[count];
+    long combinations = 1;
+    for(int j = 0; j != count; ++j) {
+      SEXP factor = factors.getElementAsSEXP(j);
+      if(!(factor instanceof IntVector) || factor.length() != factors.getElementAsSEXP(0).length()) {
+        return Null.INSTANCE;
+      }
+      codes[j] = (IntVector) factor;
+      levels[j] = StringVector.coerceFrom(factor.getAttribute(Symbols.LEVELS));
+      combinations *= levels[j].length();
+      if(combinations > Integer.MAX_VALUE) {
+        return Null.INSTANCE;
+      }
+    }
+
+    // the weight of each factor's code in the combined code
+    int[] radix = new int[count];
+    int weight = 1;
+    for(int k = 0; k != count; ++k) {
+      int j = lexOrder ? count - 1 - k : k;
+      radix[j] = weight;
+      weight *= levels[j].length();
+    }
+
+    int length = codes[0].length();
+    int[] combined = new int[length];
+    for(int i = 0; i != length; ++i) {
+      int code = 0;
+      for(int j = 0; j != count; ++j) {
+        int factorCode = codes[j].getElementAsInt(i);
+        if(IntVector.isNA(factorCode) || factorCode < 1 || factorCode > levels[j].length()) {
+          code = IntVector.NA;
+          break;
+        }
+        code += (factorCode - 1) * radix[j];
+      }
+      combined[i] = code;
+    }
+
+    // label every combination, as repeated labels are merged by the R implementation
+    String[] allLabels = new String[(int) combinations];
+    Set<String> seen = new HashSet<String>();
+    StringBuilder label = new StringBuilder();
+    for(int code = 0; code != allLabels.length; ++code) {
+      if(count == 1) {
+        allLabels[code] = levels[0].getElementAsString(code);
+      } else {
+        label.setLength(0);
+        for(int j = 0; j != count; ++j) {
+          if(j > 0) {
+            label.append(sep);
+          }
+          String level = levels[j].getElementAsString((code / radix[j]) % levels[j].length());
+          label.append(level == null ? "NA" : level);
+        }
+        allLabels[code] = label.toString();
+      }
+      if(!seen.add(allLabels[code])) {
+        return Null.INSTANCE;
+      }
+    }
+
+    // map each combination to its level, keeping only those which occur if drop is true
+    int[] map = new int[allLabels.length];
+    if(drop) {
+      for(int code : combined) {
+        if(code != IntVector.NA) {
+          map[code] = 1;
+        }
+      }
+    }
+    StringVector.Builder labels = new StringVector.Builder();
+    for(int code = 0; code != map.length; ++code) {
+      if(!drop || map[code] != 0) {
+        labels.add(allLabels[code]);
+        map[code] = labels.length();
+      }
+    }
+
+    for(int i = 0; i != length; ++i) {
+      if(combined[i] != IntVector.NA) {
+        combined[i] = map[combined[i]];
+      }
+    }
+    return IntArrayVector.unsafe(combined, AttributeMap.factor(labels.build(), false));
+  }
+}
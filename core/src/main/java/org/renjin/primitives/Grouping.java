@@ -0,0 +1,539 @@
+package org.renjin.primitives;
+
+import java.util.Arrays;
+
+import org.renjin.eval.EvalException;
+import org.renjin.sexp.AtomicVector;
+import org.renjin.sexp.DoubleArrayVector;
+import org.renjin.sexp.DoubleVector;
+import org.renjin.sexp.IntArrayVector;
+import org.renjin.sexp.IntVector;
+import org.renjin.sexp.StringVector;
+import org.renjin.sexp.Vector;
+
+/**
+ * Assigns each element of a vector to one of a fixed number of groups, and computes
+ * counts and reductions such as sums and means for each group in a single pass over
+ * the data, accumulating directly into primitive arrays.
+ *
+ * <p>This is the engine behind {@code split()}, {@code tabulate()}, {@code rowsum()}, and
+ * the fast paths in {@code tapply()} and {@code aggregate()}, which would otherwise split
+ * the data into a separate vector for each group and call a closure on each.
+ *
+ * <p>The reductions follow the same rules for missing values as the corresponding
+ * builtins, so that the results are the same as applying {@code sum()}, {@code min()}, etc.
+ * to each group in turn. Groups with no elements at all are {@code NA}.
+ */
+public class Grouping {
+
+  /**
+   * The zero-based group of each element, or -1 if the element belongs to no group
+   */
+  private final int[] groups;
+  private final int groupCount;
+
+  private Grouping(int[] groups, int groupCount) {
+    this.groups = groups;
+    this.groupCount = groupCount;
+  }
+
+  /**
+   * Groups elements by integer codes in the range {@code 1..groupCount}, such as
+   * the codes of a factor. Elements whose codes are {@code NA} or out of range
+   * belong to no group.
+   */
+  public static Grouping fromCodes(AtomicVector codes, int groupCount) {
+    int[] groups = new int[codes.length()];
+    for(int i=0;i!=groups.length;++i) {
+      int code = codes.getElementAsInt(i);
+      if(IntVector.isNA(code) || code < 1 || code > groupCount) {
+        groups[i] = -1;
+      } else {
+        groups[i] = code - 1;
+      }
+    }
+    return new Grouping(groups, groupCount);
+  }
+
+  /**
+   * Groups elements by the combination of the codes of several factors, as the cells of
+   * a contingency table with a dimension for each factor. The group of each element is the
+   * mixed-radix number formed by its codes, the first varying fastest. Elements with a code
+   * which is {@code NA} or outside {@code 1..levelCounts[j]} belong to no group.
+   */
+  public static Grouping fromCodes(AtomicVector[] codes, int[] levelCounts) {
+    long groupCount = 1;
+    for(int levelCount : levelCounts) {
+      groupCount *= levelCount;
+    }
+    if(groupCount > Integer.MAX_VALUE) {
+      throw new EvalException("attempt to make a table with >= 2^31 elements");
+    }
+    int length = codes.length == 0 ? 0 : codes[0].length();
+    int[] groups = new int[length];
+    for(int i=0;i!=length;++i) {
+      int group = 0;
+      int radix = 1;
+      for(int j=0;j!=codes.length;++j) {
+        int code = codes[j].getElementAsInt(i);
+        if(IntVector.isNA(code) || code < 1 || code > levelCounts[j]) {
+          group = -1;
+          break;
+        }
+        group += (code - 1) * radix;
+        radix *= levelCounts[j];
+      }
+      groups[i] = group;
+    }
+    return new Grouping(groups, (int) groupCount);
+  }
+
+  /**
+   * Groups elements by the position of their key in {@code uniqueKeys}, which is
+   * found by hashing rather than by searching {@code uniqueKeys} for each element.
+   * Keys which do not appear in {@code uniqueKeys} belong to no group.
+   */
+  public static Grouping byKeys(AtomicVector keys, AtomicVector uniqueKeys) {
+    KeyTable table;
+    if(keys instanceof StringVector || uniqueKeys instanceof StringVector) {
+      table = new StringKeyTable(uniqueKeys);
+    } else {
+      table = new NumericKeyTable(uniqueKeys);
+    }
+    int[] groups = new int[keys.length()];
+    for(int i=0;i!=groups.length;++i) {
+      groups[i] = table.lookup(keys, i);
+    }
+    return new Grouping(groups, uniqueKeys.length());
+  }
+
+  public int getGroupCount() {
+    return groupCount;
+  }
+
+  /**
+   * @return the number of elements in each group
+   */
+  public int[] counts() {
+    int[] counts = new int[groupCount];
+    for(int i=0;i!=groups.length;++i) {
+      if(groups[i] >= 0) {
+        counts[groups[i]]++;
+      }
+    }
+    return counts;
+  }
+
+  /**
+   * Sorts the indices of the elements by group, keeping elements of the same group
+   * in their original order. The indices of the elements of group {@code g} start at
+   * {@code offsets[g]}, where {@code offsets} is the running total of {@code counts}.
+   *
+   * @param counts the number of elements in each group, as returned by {@link #counts()}
+   */
+  public int[] order(int[] counts) {
+    int[] next = new int[groupCount];
+    int total = 0;
+    for(int g=0;g!=groupCount;++g) {
+      next[g] = total;
+      total += counts[g];
+    }
+    int[] order = new int[total];
+    for(int i=0;i!=groups.length;++i) {
+      if(groups[i] >= 0) {
+        order[next[groups[i]]++] = i;
+      }
+    }
+    return order;
+  }
+
+  /**
+   * Computes the reduction named by {@code reducer}, which is one of {@code "sum"},
+   * {@code "mean"}, {@code "min"}, {@code "max"}, {@code "length"}, {@code "first"}
+   * or {@code "last"}.
+   *
+   * @return the value of the reduction for each group, or {@code null} if the result can't
+   * be computed here, which is the case when {@code min()} or {@code max()} would
+   * be applied to a group with only missing values
+   */
+  public Vector reduce(String reducer, AtomicVector x, boolean removeNA) {
+    if(reducer.equals("sum")) {
+      return sum(x, removeNA);
+    } else if(reducer.equals("mean")) {
+      return mean(x, removeNA);
+    } else if(reducer.equals("min")) {
+      return range(x, removeNA, false);
+    } else if(reducer.equals("max")) {
+      return range(x, removeNA, true);
+    } else if(reducer.equals("length")) {
+      return length();
+    } else if(reducer.equals("first")) {
+      return pick(x, false);
+    } else if(reducer.equals("last")) {
+      return pick(x, true);
+    } else {
+      throw new EvalException("invalid reducer '%s'", reducer);
+    }
+  }
+
+  /**
+   * @return the number of elements in each group, or {@code NA} for
+   * groups with no elements
+   */
+  public IntVector length() {
+    int[] counts = counts();
+    for(int g=0;g!=groupCount;++g) {
+      if(counts[g] == 0) {
+        counts[g] = IntVector.NA;
+      }
+    }
+    return new IntArrayVector(counts);
+  }
+
+  /**
+   * Sums the elements of each group. As with {@code sum()}, the result is
+   * integer unless {@code x} is double.
+   */
+  public Vector sum(AtomicVector x, boolean removeNA) {
+    int[] counts = counts();
+    if(x instanceof DoubleVector) {
+      double[] sums = new double[groupCount];
+      sumColumn(x, 0, removeNA, sums, 0);
+      return new DoubleArrayVector(naIfEmpty(sums, counts));
+    } else {
+      int[] sums = new int[groupCount];
+      sumColumn(x, 0, removeNA, sums, 0);
+      return new IntArrayVector(naIfEmpty(sums, counts));
+    }
+  }
+
+  /**
+   * Sums the elements of each group within each column of the matrix {@code x}, as
+   * {@code rowsum()} does. The result is a matrix with a row for each group, stored
+   * in column-major order.
+   */
+  public Vector sumColumns(AtomicVector x, int columnCount, boolean removeNA) {
+    int rowCount = groups.length;
+    if(x instanceof DoubleVector) {
+      double[] sums = new double[groupCount * columnCount];
+      for(int col=0;col!=columnCount;++col) {
+        sumColumn(x, col * rowCount, removeNA, sums, col * groupCount);
+      }
+      return new DoubleArrayVector(sums);
+    } else {
+      int[] sums = new int[groupCount * columnCount];
+      for(int col=0;col!=columnCount;++col) {
+        sumColumn(x, col * rowCount, removeNA, sums, col * groupCount);
+      }
+      return new IntArrayVector(sums);
+    }
+  }
+
+  private void sumColumn(AtomicVector x, int offset, boolean removeNA, double[] sums, int resultOffset) {
+    for(int i=0;i!=groups.length;++i) {
+      int g = groups[i];
+      if(g >= 0) {
+        double value = x.getElementAsDouble(offset + i);
+        if(DoubleVector.isNA(value)) {
+          if(!removeNA) {
+            sums[resultOffset + g] = DoubleVector.NA;
+          }
+        } else if(!DoubleVector.isNA(sums[resultOffset + g])) {
+          sums[resultOffset + g] += value;
+        }
+      }
+    }
+  }
+
+  private void sumColumn(AtomicVector x, int offset, boolean removeNA, int[] sums, int resultOffset) {
+    for(int i=0;i!=groups.length;++i) {
+      int g = groups[i];
+      if(g >= 0) {
+        int value = x.getElementAsInt(offset + i);
+        if(IntVector.isNA(value)) {
+          if(!removeNA) {
+            sums[resultOffset + g] = IntVector.NA;
+          }
+        } else if(!IntVector.isNA(sums[resultOffset + g])) {
+          sums[resultOffset + g] += value;
+        }
+      }
+    }
+  }
+
+  /**
+   * Computes the arithmetic mean of each group. If {@code removeNA} is true, groups
+   * with only missing values have a mean of {@code NaN}, as {@code mean()} of
+   * an empty vector does.
+   */
+  public DoubleVector mean(AtomicVector x, boolean removeNA) {
+    double[] sums = new double[groupCount];
+    int[] counts = new int[groupCount];
+    int[] elements = new int[groupCount];
+    for(int i=0;i!=groups.length;++i) {
+      int g = groups[i];
+      if(g >= 0) {
+        elements[g]++;
+        if(x.isElementNA(i)) {
+          if(!removeNA) {
+            sums[g] = DoubleVector.NA;
+          }
+        } else {
+          sums[g] += x.getElementAsDouble(i);
+          counts[g]++;
+        }
+      }
+    }
+    for(int g=0;g!=groupCount;++g) {
+      if(elements[g] == 0 || DoubleVector.isNA(sums[g])) {
+        sums[g] = DoubleVector.NA;
+      } else {
+        sums[g] = sums[g] / counts[g];
+      }
+    }
+    return new DoubleArrayVector(sums);
+  }
+
+  /**
+   * Computes the minimum or maximum of each group. As with {@code min()} and {@code max()},
+   * the result is double if {@code x} is double and integer otherwise, and a group which
+   * is empty or holds an {@code NA} which is not removed is {@code NA} of that type.
+   */
+  private Vector range(AtomicVector x, boolean removeNA, boolean maximum) {
+    int[] counts = counts();
+    double[] extremes = new double[groupCount];
+    boolean[] seen = new boolean[groupCount];
+    boolean[] missing = new boolean[groupCount];
+    for(int i=0;i!=groups.length;++i) {
+      int g = groups[i];
+      if(g >= 0) {
+        if(x.isElementNA(i)) {
+          missing[g] = true;
+        } else {
+          double value = x.getElementAsDouble(i);
+          // once a group's extreme is NaN, it stays NaN
+          if(!seen[g] || Double.isNaN(value) ||
+              (!Double.isNaN(extremes[g]) && (maximum ? value > extremes[g] : value < extremes[g]))) {
+            extremes[g] = value;
+          }
+          seen[g] = true;
+        }
+      }
+    }
+    boolean[] na = new boolean[groupCount];
+    for(int g=0;g!=groupCount;++g) {
+      if(counts[g] == 0 || (missing[g] && !removeNA)) {
+        na[g] = true;
+      } else if(!seen[g]) {
+        // min() and max() of an empty vector are infinite, with a warning
+        return null;
+      }
+    }
+    if(x instanceof DoubleVector) {
+      for(int g=0;g!=groupCount;++g) {
+        if(na[g]) {
+          extremes[g] = DoubleVector.NA;
+        }
+      }
+      return new DoubleArrayVector(extremes);
+    }
+    int[] intExtremes = new int[groupCount];
+    for(int g=0;g!=groupCount;++g) {
+      intExtremes[g] = na[g] ? IntVector.NA : (int)extremes[g];
+    }
+    return new IntArrayVector(intExtremes);
+  }
+
+  /**
+   * @return the first, or if {@code last} is true the last, element of each group
+   */
+  private Vector pick(AtomicVector x, boolean last) {
+    int[] picked = new int[groupCount];
+    Arrays.fill(picked, -1);
+    for(int i=0;i!=groups.length;++i) {
+      int g = groups[i];
+      if(g >= 0 && (last || picked[g] == -1)) {
+        picked[g] = i;
+      }
+    }
+    Vector.Builder result = x.newBuilderWithInitialSize(groupCount);
+    for(int g=0;g!=groupCount;++g) {
+      if(picked[g] == -1) {
+        result.setNA(g);
+      } else {
+        result.setFrom(g, x, picked[g]);
+      }
+    }
+    return result.build();
+  }
+
+  private static double[] naIfEmpty(double[] values, int[] counts) {
+    for(int g=0;g!=counts.length;++g) {
+      if(counts[g] == 0) {
+        values[g] = DoubleVector.NA;
+      }
+    }
+    return values;
+  }
+
+  private static int[] naIfEmpty(int[] values, int[] counts) {
+    for(int g=0;g!=counts.length;++g) {
+      if(counts[g] == 0) {
+        values[g] = IntVector.NA;
+      }
+    }
+    return values;
+  }
+
+  /**
+   * Open-addressing hash table mapping each distinct key to its position
+   * in the vector of unique keys
+   */
+  private abstract static class KeyTable {
+    private final int[] slots;
+    private final int mask;
+
+    protected KeyTable(int keyCount) {
+      int capacity = 2;
+      while(capacity < keyCount * 2) {
+        capacity <<= 1;
+      }
+      slots = new int[capacity];
+      Arrays.fill(slots, -1);
+      mask = capacity - 1;
+    }
+
+    protected final void insertAll(int keyCount) {
+      for(int i=0;i!=keyCount;++i) {
+        int slot = mix(uniqueHash(i)) & mask;
+        while(slots[slot] != -1) {
+          if(uniqueEquals(slots[slot], i)) {
+            break;
+          }
+          slot = (slot + 1) & mask;
+        }
+        if(slots[slot] == -1) {
+          slots[slot] = i;
+        }
+      }
+    }
+
+    /**
+     * @return the position of element {@code index} of {@code keys} within the
+     * unique keys, or -1 if it is not present
+     */
+    public final int lookup(AtomicVector keys, int index) {
+      int slot = mix(hash(keys, index)) & mask;
+      while(slots[slot] != -1) {
+        if(matches(keys, index, slots[slot])) {
+          return slots[slot];
+        }
+        slot = (slot + 1) & mask;
+      }
+      return -1;
+    }
+
+    private static int mix(int hash) {
+      hash ^= (hash >>> 20) ^ (hash >>> 12);
+      return hash ^ (hash >>> 7) ^ (hash >>> 4);
+    }
+
+    protected abstract int uniqueHash(int uniqueIndex);
+
+    protected abstract boolean uniqueEquals(int uniqueIndex1, int uniqueIndex2);
+
+    protected abstract int hash(AtomicVector keys, int index);
+
+    protected abstract boolean matches(AtomicVector keys, int index, int uniqueIndex);
+  }
+
+  private static class StringKeyTable extends KeyTable {
+    private final String[] unique;
+
+    public StringKeyTable(AtomicVector uniqueKeys) {
+      super(uniqueKeys.length());
+      unique = new String[uniqueKeys.length()];
+      for(int i=0;i!=unique.length;++i) {
+        unique[i] = uniqueKeys.getElementAsString(i);
+      }
+      insertAll(unique.length);
+    }
+
+    private static int hashOf(String key) {
+      return key == null ? 0 : key.hashCode();
+    }
+
+    private static boolean same(String a, String b) {
+      return a == null ? b == null : a.equals(b);
+    }
+
+    @Override
+    protected int uniqueHash(int uniqueIndex) {
+      return hashOf(unique[uniqueIndex]);
+    }
+
+    @Override
+    protected boolean uniqueEquals(int uniqueIndex1, int uniqueIndex2) {
+      return same(unique[uniqueIndex1], unique[uniqueIndex2]);
+    }
+
+    @Override
+    protected int hash(AtomicVector keys, int index) {
+      return hashOf(keys.getElementAsString(index));
+    }
+
+    @Override
+    protected boolean matches(AtomicVector keys, int index, int uniqueIndex) {
+      return same(keys.getElementAsString(index), unique[uniqueIndex]);
+    }
+  }
+
+  /**
+   * Compares keys by the bits of their double values, so that {@code NA} matches only
+   * {@code NA}, {@code NaN} matches only {@code NaN}, and -0 matches 0
+   */
+  private static class NumericKeyTable extends KeyTable {
+    private final long[] unique;
+
+    public NumericKeyTable(AtomicVector uniqueKeys) {
+      super(uniqueKeys.length());
+      unique = new long[uniqueKeys.length()];
+      for(int i=0;i!=unique.length;++i) {
+        unique[i] = bits(uniqueKeys, i);
+      }
+      insertAll(unique.length);
+    }
+
+    private static long bits(AtomicVector keys, int index) {
+      double value = keys.getElementAsDouble(index);
+      if(value == 0) {
+        return 0L;
+      }
+      return Double.doubleToRawLongBits(value);
+    }
+
+    private static int hashOf(long bits) {
+      return (int)(bits ^ (bits >>> 32));
+    }
+
+    @Override
+    protected int uniqueHash(int uniqueIndex) {
+      return hashOf(unique[uniqueIndex]);
+    }
+
+    @Override
+    protected boolean uniqueEquals(int uniqueIndex1, int uniqueIndex2) {
+      return unique[uniqueIndex1] == unique[uniqueIndex2];
+    }
+
+    @Override
+    protected int hash(AtomicVector keys, int index) {
+      return hashOf(bits(keys, index));
+    }
+
+    @Override
+    protected boolean matches(AtomicVector keys, int index, int uniqueIndex) {
+      return bits(keys, index) == unique[uniqueIndex];
+    }
+  }
+}
@@ -0,0 +1,108 @@
+package org.renjin.primitives;
+
+import org.renjin.eval.Context;
+import org.renjin.eval.EvalException;
+import org.renjin.eval.MemoCache;
+import org.renjin.primitives.annotations.Current;
+import org.renjin.primitives.annotations.Primitive;
+import org.renjin.sexp.DoubleArrayVector;
+import org.renjin.sexp.Environment;
+import org.renjin.sexp.Function;
+import org.renjin.sexp.FunctionCall;
+import org.renjin.sexp.ListVector;
+import org.renjin.sexp.Null;
+import org.renjin.sexp.PairList;
+import org.renjin.sexp.Promise;
+import org.renjin.sexp.SEXP;
+import org.renjin.sexp.Symbol;
+
+/**
+ * Calls memoised functions through the session's {@link MemoCache}, and
+ * reports on and limits the cache.
+ */
+public class Memoization {
+
+  private Memoization() { }
+
+  /**
+   * Applies {@code function} to the already evaluated {@code arguments}, unless the
+   * result of the same call is already in the cache. Calls which signal an error
+   * are not cached.
+   */
+  @Primitive
+  public static SEXP memoCall(@Current Context context, @Current Environment rho,
+                              Function function, ListVector arguments) {
+    MemoCache cache = context.getGlobals().getMemoCache();
+    MemoCache.Key key = MemoCache.key(function, arguments);
+    SEXP result = cache.get(key);
+    if(result == null) {
+      PairList.Builder argumentList = new PairList.Builder();
+      for(int i = 0; i != arguments.length(); ++i) {
+        SEXP value = arguments.getElementAsSEXP(i);
+        // the arguments are values, and must not be evaluated again
+        Promise promise = new Promise(value, value);
+        String name = arguments.getName(i);
+        if(name.length() == 0) {
+          argumentList.add(promise);
+        } else {
+          argumentList.add(Symbol.get(name), promise);
+        }
+      }
+      result = context.evaluate(new FunctionCall(function, argumentList.build()), rho);
+      cache.put(key, result);
+    }
+    return result;
+  }
+
+  /**
+   * Removes the cached results of {@code function}, or all cached results
+   * if {@code function} is {@code NULL}
+   */
+  @Primitive
+  public static void memoForget(@Current Context context, SEXP function) {
+    if(function == Null.INSTANCE) {
+      context.getGlobals().getMemoCache().forget(null);
+    } else if(function instanceof Function) {
+      context.getGlobals().getMemoCache().forget((Function) function);
+    } else {
+      throw new EvalException("'f' must be a function or NULL");
+    }
+  }
+
+  /**
+   * @return the number of entries in the cache, their estimated size in bytes, the limit
+   * on that size, and the number of hits, misses, evictions and results too large to cache
+   */
+  @Primitive
+  public static ListVector memoStats(@Current Context context) {
+    MemoCache cache = context.getGlobals().getMemoCache();
+    ListVector.NamedBuilder stats = new ListVector.NamedBuilder();
+    stats.add("entries", cache.getEntryCount());
+    stats.add("bytes", new DoubleArrayVector(cache.getBytes()));
+    stats.add("limit", new DoubleArrayVector(cache.getLimit()));
+    stats.add("hits", new DoubleArrayVector(cache.getHits()));
+    stats.add("misses", new DoubleArrayVector(cache.getMisses()));
+    stats.add("evictions", new DoubleArrayVector(cache.getEvictions()));
+    stats.add("rejected", new DoubleArrayVector(cache.getRejections()));
+    return stats.build();
+  }
+
+  /**
+   * Sets the limit on the estimated size in bytes of the cache, unless
+   * {@code bytes} is {@code NA}.
+   *
+   * @return the previous limit
+   */
+  @Primitive
+  public static double memoLimit(@Current Context context, double bytes) {
+    MemoCache cache = context.getGlobals().getMemoCache();
+    long previous = cache.getLimit();
+    if(!Double.isNaN(bytes)) {
+      if(bytes < 0) {
+        throw new EvalException("invalid '%s' argument", "bytes");
+      }
+      cache.setLimit(Double.isInfinite(bytes) ? Long.MAX_VALUE : (long) bytes);
+    }
+    return previous;
+  }
+}
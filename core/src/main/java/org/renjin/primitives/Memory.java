@@ -0,0 +1,161 @@
+package org.renjin.primitives;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+
+import org.renjin.eval.AllocationTracker;
+import org.renjin.eval.Context;
+import org.renjin.eval.EvalException;
+import org.renjin.primitives.annotations.Current;
+import org.renjin.primitives.annotations.Primitive;
+import org.renjin.sexp.DoubleArrayVector;
+import org.renjin.sexp.DoubleVector;
+import org.renjin.sexp.SEXP;
+import org.renjin.sexp.Vector;
+
+/**
+ * Reports on the memory used by the JVM and by R objects, and limits the
+ * memory allocated by a session.
+ */
+public class Memory {
+
+  /**
+   * The size of a cons cell in a 64-bit build of GNU R, by which
+   * {@code gc()} divides non-heap memory to report it as "Ncells"
+   */
+  private static final int NCELL_BYTES = 56;
+
+  /**
+   * The size of a vector cell in GNU R, by which {@code gc()} divides heap
+   * memory to report it as "Vcells"
+   */
+  private static final int VCELL_BYTES = 8;
+
+  private static final double BYTES_PER_MB = 1024d * 1024d;
+
+  private Memory() { }
+
+  /**
+   * @return the estimated number of bytes occupied by {@code x}
+   * @see SizeEstimator
+   */
+  @Primitive("object.size")
+  public static double objectSize(SEXP x) {
+    return SizeEstimator.deepSize(x);
+  }
+
+  /**
+   * Runs the garbage collector, and reports the memory in use afterwards, in the form
+   * of GNU R's {@code gc()}: a 2x7 matrix of "Ncells" and "Vcells", which here are the
+   * JVM's non-heap and heap memory respectively.
+   *
+   * <p>The columns are the number of cells used and the same in Mb, the number of cells
+   * which may be used before the next collection (the memory committed by the JVM) and
+   * the same in Mb, the limit set by {@code mem.limits()} in Mb, and the peak number of
+   * cells used and the same in Mb.
+   *
+   * @param verbose if true, also prints the number of collections and the time spent
+   * in them by each of the JVM's garbage collectors
+   * @param reset if true, resets the peak usage, and the count of memory allocated
+   * by this session against its limit
+   */
+  @Primitive
+  public static DoubleVector gc(@Current Context context, boolean verbose, boolean reset) throws IOException {
+    java.lang.System.gc();
+
+    MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+    MemoryUsage heap = memoryBean.getHeapMemoryUsage();
+    MemoryUsage nonHeap = memoryBean.getNonHeapMemoryUsage();
+
+    long peakHeap = 0;
+    long peakNonHeap = 0;
+    for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      MemoryUsage peak = pool.getPeakUsage();
+      if(peak != null) {
+        if(pool.getType() == MemoryType.HEAP) {
+          peakHeap += peak.getUsed();
+        } else {
+          peakNonHeap += peak.getUsed();
+        }
+      }
+    }
+
+    AllocationTracker tracker = context.getGlobals().getAllocationTracker();
+
+    if(verbose) {
+      PrintWriter out = context.getGlobals().getStdOut();
+      for(GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+        out.println(String.format("Garbage collector '%s': %d collections, %.3f seconds",
+            collector.getName(), collector.getCollectionCount(), collector.getCollectionTime() / 1000d));
+      }
+      if(tracker != null) {
+        out.println(String.format("%.1f Mbytes of vectors allocated", tracker.getAllocatedBytes() / BYTES_PER_MB));
+      }
+      out.flush();
+    }
+
+    if(reset) {
+      for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+        pool.resetPeakUsage();
+      }
+      if(tracker != null) {
+        tracker.reset();
+      }
+    }
+
+    double vsizeLimit = DoubleVector.NA;
+    if(tracker != null && tracker.getSoftLimit() > 0) {
+      vsizeLimit = megabytes(tracker.getSoftLimit());
+    }
+
+    return new DoubleArrayVector(
+        nonHeap.getUsed() / NCELL_BYTES, heap.getUsed() / VCELL_BYTES,
+        megabytes(nonHeap.getUsed()), megabytes(heap.getUsed()),
+        nonHeap.getCommitted() / NCELL_BYTES, heap.getCommitted() / VCELL_BYTES,
+        megabytes(nonHeap.getCommitted()), megabytes(heap.getCommitted()),
+        DoubleVector.NA, vsizeLimit,
+        peakNonHeap / NCELL_BYTES, peakHeap / VCELL_BYTES,
+        megabytes(peakNonHeap), megabytes(peakHeap));
+  }
+
+  /**
+   * Converts bytes to Mb, rounded up to one decimal place as GNU R does
+   */
+  private static double megabytes(long bytes) {
+    return Math.ceil(bytes / BYTES_PER_MB * 10d) / 10d;
+  }
+
+  /**
+   * Sets a soft limit on the bytes of vector data which the session may allocate, in
+   * place of GNU R's limit on the size of the vector heap. Setting a limit turns on
+   * allocation accounting for the session: see {@link AllocationTracker}.
+   *
+   * @param nsize ignored: there is no separate limit on the number of cons cells
+   * @param vsize the limit in bytes, {@code Inf} to remove the limit, or
+   * {@code NA} to leave it unchanged
+   * @return the limits after any change, {@code NA} where there is none
+   */
+  @Primitive("mem.limits")
+  public static DoubleVector memLimits(@Current Context context, Vector nsize, Vector vsize) {
+    Context.Globals globals = context.getGlobals();
+    if(vsize.length() > 0 && !vsize.isElementNA(0)) {
+      double limit = vsize.getElementAsDouble(0);
+      if(Double.isNaN(limit) || limit < 0) {
+        throw new EvalException("invalid '%s' argument", "vsize");
+      }
+      globals.trackAllocations().setSoftLimit(Double.isInfinite(limit) ? 0 : (long)limit);
+    }
+    AllocationTracker tracker = globals.getAllocationTracker();
+    double vsizeLimit = DoubleVector.NA;
+    if(tracker != null && tracker.getSoftLimit() > 0) {
+      vsizeLimit = tracker.getSoftLimit();
+    }
+    return new DoubleArrayVector(DoubleVector.NA, vsizeLimit);
+  }
+}
@@ -0,0 +1,236 @@
+package org.renjin.primitives;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.renjin.eval.AllocationTracker;
+import org.renjin.eval.ApplyDispatcher;
+import org.renjin.eval.Context;
+import org.renjin.eval.EvalException;
+import org.renjin.primitives.annotations.Current;
+import org.renjin.primitives.annotations.Primitive;
+import org.renjin.sexp.Environment;
+import org.renjin.sexp.Function;
+import org.renjin.sexp.IntVector;
+import org.renjin.sexp.ListVector;
+import org.renjin.sexp.Null;
+import org.renjin.sexp.PairList;
+import org.renjin.sexp.Promise;
+import org.renjin.sexp.SEXP;
+import org.renjin.sexp.StringVector;
+import org.renjin.sexp.Symbol;
+import org.renjin.sexp.Symbols;
+import org.renjin.sexp.Vector;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Thread-based implementation of the {@code parallel} package's {@code mclapply()},
+ * on which {@code parLapply()} is also built.
+ *
+ * <p>GNU R runs each job in a child process created with {@code fork()}, which we can't
+ * do inside a JVM. Instead, each job is evaluated on a pooled thread, in a worker
+ * {@code Context} created by {@link Context#forkWorker()}. As with a forked process, the
+ * worker sees everything visible to the caller, but assignments to its global
+ * environment and changes to its options are its own, it draws random numbers from its
+ * own stream, and the warnings it raises are signalled in the caller once all jobs have
+ * finished.
+ *
+ * <p>Unlike a forked process, a worker shares the caller's environments rather than a
+ * copy of them, so the function being applied must not assign into environments other
+ * than its own, for example with {@code <<-}.
+ */
+public class Parallel {
+
+  private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(new WorkerThreadFactory());
+
+  private Parallel() { }
+
+  @Primitive
+  public static int detectCores() {
+    return Runtime.getRuntime().availableProcessors();
+  }
+
+  /**
+   * Applies {@code function} to each element of {@code vector} using up to {@code cores}
+   * threads.
+   *
+   * <p>If {@code preschedule} is true, the elements are divided among {@code cores} jobs
+   * in advance, so that element {@code i} is evaluated by job {@code i mod cores}. Otherwise,
+   * each element is a separate job, with its own random number stream, and the jobs are
+   * handed out to the threads as they become free, which balances the load better when the
+   * evaluation time of each element varies.
+   *
+   * <p>Errors in user code do not stop the other elements from being evaluated: the result
+   * for the element is instead an object of class {@code "try-error"}, as in GNU R.
+   */
+  public static ListVector mclapply(@Current Context context, @Current Environment rho, Vector vector,
+      Function function, int cores, boolean preschedule) {
+
+    if(IntVector.isNA(cores) || cores < 1) {
+      throw new EvalException("'mc.cores' must be >= 1");
+    }
+
+    // The extra arguments are promises in the caller's frame: evaluate them here
+    // rather than concurrently from each of the workers
+    SEXP extraArgs = rho.getVariable(Symbols.ELLIPSES);
+    if(extraArgs instanceof PairList) {
+      for(PairList.Node node : ((PairList) extraArgs).nodes()) {
+        if(node.getValue() instanceof Promise) {
+          ((Promise) node.getValue()).force();
+        }
+      }
+    }
+
+    int length = vector.length();
+    int jobCount = preschedule ? Math.min(cores, length) : length;
+
+    // Create the workers on this thread, so that each job is assigned the same
+    // random number stream regardless of the order in which the jobs run
+    Job[] jobs = new Job[jobCount];
+    for(int i=0;i!=jobCount;++i) {
+      jobs[i] = new Job(context.forkWorker(), rho, vector, function, i, jobCount);
+    }
+
+    SEXP[] results = new SEXP[length];
+    runJobs(jobs, Math.min(cores, jobCount), results);
+
+    for(Job job : jobs) {
+      Warning.emitWorkerWarnings(context, job.workerContext.getGlobals().drainWorkerWarnings());
+    }
+
+    ListVector.Builder builder = new ListVector.Builder(0, length);
+    for(int i=0;i!=length;++i) {
+      builder.add(results[i]);
+    }
+    builder.copySomeAttributesFrom(vector, Symbols.NAMES);
+    return builder.build();
+  }
+
+  /**
+   * Runs {@code jobs} on {@code threadCount} threads, one of which is the calling thread,
+   * and waits for them all to complete.
+   */
+  private static void runJobs(Job[] jobs, int threadCount, SEXP[] results) {
+    if(jobs.length == 0) {
+      return;
+    }
+    JobQueue queue = new JobQueue(jobs, results);
+    List<Future<Void>> futures = Lists.newArrayList();
+    for(int i=1;i<threadCount;++i) {
+      futures.add(EXECUTOR.submit(queue));
+    }
+    try {
+      queue.call();
+      for(Future<Void> future : futures) {
+        future.get();
+      }
+    } catch(InterruptedException e) {
+      for(Future<Void> future : futures) {
+        future.cancel(true);
+      }
+      Thread.currentThread().interrupt();
+      throw new EvalException("interrupted while waiting for parallel jobs");
+    } catch(ExecutionException e) {
+      if(e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new EvalException(e.getCause());
+    }
+  }
+
+  /**
+   * Builds the value returned for an element whose evaluation failed, in the
+   * same form as {@code try()}
+   */
+  private static SEXP tryError(EvalException e) {
+    String message = e.getErrorMessage();
+
+    ListVector.NamedBuilder condition = new ListVector.NamedBuilder(0, 2);
+    condition.add("message", new StringVector(message));
+    condition.add("call", Null.INSTANCE);
+    condition.setAttribute(Symbols.CLASS, new StringVector("simpleError", "error", "condition"));
+
+    StringVector.Builder error = new StringVector.Builder();
+    error.add("Error : " + message + "\n");
+    error.setAttribute(Symbols.CLASS, new StringVector("try-error"));
+    error.setAttribute(Symbol.get("condition"), condition.build());
+    return error.build();
+  }
+
+  /**
+   * The elements evaluated by one worker, which are every {@code stride}th element
+   * of the vector starting from {@code offset}
+   */
+  private static class Job {
+    private final Context workerContext;
+    private final Environment rho;
+    private final Vector vector;
+    private final Function function;
+    private final int offset;
+    private final int stride;
+
+    public Job(Context workerContext, Environment rho, Vector vector, Function function, int offset, int stride) {
+      this.workerContext = workerContext;
+      this.rho = rho;
+      this.vector = vector;
+      this.function = function;
+      this.offset = offset;
+      this.stride = stride;
+    }
+
+    public void run(SEXP[] results) {
+      if(AllocationTracker.isEnabled()) {
+        AllocationTracker.bind(workerContext.getGlobals().getAllocationTracker());
+      }
+      ApplyDispatcher dispatcher = new ApplyDispatcher(workerContext, rho, function);
+      for(int i=offset;i<vector.length();i+=stride) {
+        try {
+          results[i] = Evaluation.applyToElement(dispatcher, vector, i);
+        } catch(EvalException e) {
+          results[i] = tryError(e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Hands out jobs to each thread which calls it, until none remain
+   */
+  private static class JobQueue implements Callable<Void> {
+    private final Job[] jobs;
+    private final SEXP[] results;
+    private final AtomicInteger nextJob = new AtomicInteger(0);
+
+    public JobQueue(Job[] jobs, SEXP[] results) {
+      this.jobs = jobs;
+      this.results = results;
+    }
+
+    @Override
+    public Void call() {
+      int jobIndex;
+      while((jobIndex = nextJob.getAndIncrement()) < jobs.length) {
+        jobs[jobIndex].run(results);
+      }
+      return null;
+    }
+  }
+
+  private static class WorkerThreadFactory implements ThreadFactory {
+    private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "renjin-parallel-" + threadNumber.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
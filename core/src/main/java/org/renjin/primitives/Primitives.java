@@ -13,6 +13,8 @@ import org.renjin.primitives.graphics.Plot;
 import org.renjin.primitives.graphics.RgbHsv;
 import org.renjin.primitives.io.Cat;
 import org.renjin.primitives.io.DebianControlFiles;
+import org.renjin.primitives.io.WriteTable;
+import org.renjin.primitives.io.compress.MemCompression;
 import org.renjin.primitives.io.connections.Connections;
 import org.renjin.primitives.io.serialization.Serialization;
 import org.renjin.primitives.match.Duplicates;
@@ -638,7 +640,7 @@ public class Primitives {
     f("print.function", Print.class, 0, 111, 3);
     f("prmatrix", /*prmatrix*/ null, 0, 111, 6);
     f("invisible", Types.class, 0, 101, 1);
-    f("gc", System.class, 0, 11, 2);
+    f("gc", Memory.class, 0, 11, 2);
     f("gcinfo", /*gcinfo*/ null, 0, 11, 1);
     f("gctorture", /*gctorture*/ null, 0, 11, 1);
     f("memory.profile", /*memoryprofile*/ null, 0, 11, 0);
@@ -649,6 +651,15 @@ public class Primitives {
     f("seq_along", Sequences.class, "seqAlong", 0, 1, 1);
     f("list", Types.class, "list", 1, 1, -1);
     f("split",  Split.class, 0, 11, 2);
+    f("tabulate", Aggregation.class, 0, 11, 2);
+    f("tabulateCodes", Aggregation.class, 0, 11, 2);
+    f("rowsum_matrix", Aggregation.class, 0, 11, 4);
+    f("rowsum_df", Aggregation.class, 0, 11, 4);
+    f("groupReduce", Aggregation.class, 0, 11, 5);
+    f("asCharacterFactor", Factors.class, 0, 11, 1);
+    f("droplevelsFactor", Factors.class, 0, 11, 1);
+    f("recodeFactor", Factors.class, 0, 11, 2);
+    f("interaction", Factors.class, 0, 11, 4);
     f("is.loaded", /*isloaded*/ null, 0, 11, -1, PP_FOREIGN, PREC_FN, 0);
     f(".C", Evaluation.class, 0, 1, -1, PP_FOREIGN, PREC_FN, 0);
     f(".Fortran", Evaluation.class, 1, 1, -1, PP_FOREIGN, PREC_FN, 0);
@@ -714,10 +725,10 @@ public class Primitives {
     f("sink.number", /*sinknumber*/ null, 0, 11, 1);
     f("lib.fixup", Types.class, 0, 111, 2);
     f("pos.to.env", /*pos2env*/ null, 0, 1, 1);
-    f("eapply", /*eapply*/ null, 0, 10, 4);
+    f("eapply", Evaluation.class, 0, 10, 4);
     f("lapply", Evaluation.class, 1, 10, 2);
     f("vapply", Evaluation.class, 1, 10, 4);
-    f("rapply", /*rapply*/ null, 0, 11, 5);
+    f("rapply", Evaluation.class, 0, 11, 5);
     f("islistfactor",  Types.class, 0, 11, 2);
     f("colSums", Matrices.class, 0, 11, 4);
     f("colMeans", Matrices.class, 1, 11, 4);
@@ -728,9 +739,9 @@ public class Primitives {
     f("tracemem", /*memtrace*/ null, 0, 1, 1);
     f("retracemem", /*memretrace*/ null, 0, 1, -1);
     f("untracemem", /*memuntrace*/ null, 0, 101, 1);
-    f("object.size", /*objectsize*/ null, 0, 11, 1);
+    f("object.size", Memory.class, 0, 11, 1);
     f("inspect", /*inspect*/ null, 0, 111, 1);
-    f("mem.limits", /*memlimits*/ null, 0, 11, 2);
+    f("mem.limits", Memory.class, 0, 11, 2);
     f("merge", /*merge*/ null, 0, 11, 4);
     f("capabilities", System.class, 0, 11, 0);
     f("capabilitiesX11", /*capabilitiesX11*/ null, 0, 11, 0);
@@ -896,14 +907,14 @@ public class Primitives {
     f("stderr", Connections.class, 0, 11, 0);
     f("readLines",Connections.class, 0, 11, 5);
     f("writeLines", Connections.class, 0, 11, 4);
-    f("readBin", /*readbin*/ null, 0, 11, 6);
-    f("writeBin", /*writebin*/ null, 0, 211, 5);
+    f("readBin", Connections.class, 0, 11, 6);
+    f("writeBin", Connections.class, 0, 211, 5);
     f("readChar", Connections.class, 0, 11, 3);
-    f("writeChar", /*writechar*/ null, 0, 211, 5);
+    f("writeChar", Connections.class, 0, 211, 5);
     f("open", Connections.class, 0, 11, 3);
     f("isOpen", Connections.class, 0, 11, 2);
     f("isIncomplete", /*isincomplete*/ null, 0, 11, 1);
-    f("isSeekable", /*isseekable*/ null, 0, 11, 1);
+    f("isSeekable", Connections.class, 0, 11, 1);
     f("close", Connections.class, 0, 11, 2);
     f("flush", /*flush*/ null, 0, 11, 1);
     f("file", Connections.class, 1, 11, 4);
@@ -911,18 +922,18 @@ public class Primitives {
     f("pipe", /*pipe*/ null, 0, 11, 3);
     f("fifo", /*fifo*/ null, 0, 11, 4);
     f("gzfile", Connections.class, 0, 11, 4);
-    f("bzfile", /*gzfile*/ null, 1, 11, 4);
-    f("xzfile", /*gzfile*/ null, 2, 11, 4);
+    f("bzfile", Connections.class, 1, 11, 4);
+    f("xzfile", Connections.class, 2, 11, 4);
     f("unz", /*unz*/ null, 0, 11, 3);
-    f("seek", /*seek*/ null, 0, 11, 4);
-    f("truncate", /*truncate*/ null, 0, 11, 1);
+    f("seek", Connections.class, 0, 11, 4);
+    f("truncate", Connections.class, 0, 11, 1);
     f("pushBack", Connections.class, 0, 11, 3);
     f("clearPushBack", Connections.class, 0, 11, 1);
     f("pushBackLength", Connections.class, 0, 11, 1);
-    f("rawConnection", /*rawconnection*/ null, 0, 11, 3);
-    f("rawConnectionValue", /*rawconvalue*/ null, 0, 11, 1);
-    f("textConnection", /*textconnection*/ null, 0, 11, 5);
-    f("textConnectionValue", /*textconvalue*/ null, 0, 11, 1);
+    f("rawConnection", Connections.class, 0, 11, 3);
+    f("rawConnectionValue", Connections.class, 0, 11, 1);
+    f("textConnection", Connections.class, 0, 11, 5);
+    f("textConnectionValue", Connections.class, 0, 11, 1);
     f("socketConnection", Connections.class, 0, 11, 6);
     f("sockSelect", /*sockselect*/ null, 0, 11, 3);
     f("getConnection", /*getconnection*/ null, 0, 11, 1);
@@ -930,9 +941,9 @@ public class Primitives {
     f("summary.connection", /*sumconnection*/ null, 0, 11, 1);
     f("download", /*download*/ null, 0, 11, 5);
     f("nsl", /*nsl*/ null, 0, 11, 1);
-    f("gzcon", /*gzcon*/ null, 0, 11, 3);
-    f("memCompress", /*memCompress*/ null, 0, 11, 2);
-    f("memDecompress", /*memDecompress*/ null, 0, 11, 2);
+    f("gzcon", Connections.class, 0, 11, 3);
+    f("memCompress", MemCompression.class, 0, 11, 2);
+    f("memDecompress", MemCompression.class, 0, 11, 2);
 
     f("readDCF", DebianControlFiles.class, 0, 11, 2);
 
@@ -959,14 +970,24 @@ public class Primitives {
     f("importIntoEnv", Namespaces.class, 0, 11, 4);
     f("env.profile", /*envprofile*/ null, 0, 211, 1);
 
-    f("write.table", /*writetable*/ null, 0, 111, 11);
+    f("write.table", WriteTable.class, 0, 111, 11);
     f("Encoding", Types.class, 0, 11, 1);
     f("setEncoding", Types.class, 0, 11, 2);
     f("lazyLoadDBfetch", Serialization.class, 0, 1, 4);
-    f("setTimeLimit", /*setTimeLimit*/ null, 0, 111, 3);
-    f("setSessionTimeLimit", /*setSessionTimeLimit*/ null, 0, 111, 2);
+    f("setTimeLimit", System.class, 0, 111, 3);
+    f("setSessionTimeLimit", System.class, 0, 111, 2);
+    f("memoCall", Memoization.class, 0, 11, 2);
+    f("memoForget", Memoization.class, 0, 111, 1);
+    f("memoStats", Memoization.class, 0, 11, 0);
+    f("memoLimit", Memoization.class, 0, 11, 1);
+    f("parseCacheStats", Evaluation.class, 0, 11, 0);
     f("icuSetCollate", /*ICUset*/ null, 0, 111, -1, PP_FUNCALL, PREC_FN, 0) ;
     
+    // parallel package
+    f("mclapply", Parallel.class, 0, 11, 4);
+    f("detectCores", Parallel.class, 0, 11, 0);
+    f("nextRNGStream", RNG.class, 0, 11, 1);
+
     // jvm specific
     f("import", Jvmi.class, 0, 0, -1);
     f("jload", Jvmi.class, 0, 0, -1);
@@ -21,38 +21,74 @@
 
 package org.renjin.primitives;
 
-import com.google.common.base.Function;
-import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import org.renjin.eval.Context;
+import org.renjin.eval.EvalException;
 import org.renjin.parser.ParseUtil;
 import org.renjin.primitives.annotations.Current;
 import org.renjin.primitives.annotations.Primitive;
+import org.renjin.primitives.text.DoubleFormatter;
 import org.renjin.sexp.*;
 
 import java.io.IOException;
+import java.io.PrintWriter;
 import java.util.List;
 
 public class Print {
 
+  /**
+   * The default for {@code getOption("max.print")}
+   */
+  public static final int DEFAULT_MAX_PRINT = 99999;
+
   private Print() {}
 
   @Primitive("print.default")
   public static SEXP printDefault(@Current Context context, SEXP expression, SEXP digits, boolean quote, SEXP naPrint,
       SEXP printGap, SEXP right, SEXP max, SEXP useSource, SEXP noOp) throws IOException {
 
-    PrintingVisitor visitor = new PrintingVisitor()
+    PrintingVisitor visitor = new PrintingVisitor(context.getGlobals().getStdOut())
     .setCharactersPerLine(80)
-    .setQuote(quote);
+    .setQuote(quote)
+    .setDigits(digitsOption(context, digits))
+    .setScipen(context.getGlobals().options.getInt("scipen", 0))
+    .setMaxPrint(maxPrintOption(context, max));
     expression.accept(visitor);
+    visitor.flush();
 
-    context.getGlobals().getStdOut().print(visitor.getResult());
-    context.getGlobals().getStdOut().flush();
     context.setInvisibleFlag();
     return expression;
 
   }
 
+  private static int digitsOption(Context context, SEXP digits) {
+    int value;
+    if(digits instanceof AtomicVector && digits.length() >= 1 &&
+        !((AtomicVector) digits).isElementNA(0)) {
+      value = ((AtomicVector) digits).getElementAsInt(0);
+    } else {
+      value = context.getGlobals().options.getInt("digits", DoubleFormatter.DEFAULT_DIGITS);
+    }
+    if(value < 1 || value > DoubleFormatter.MAX_DIGITS) {
+      throw new EvalException("invalid '%s' argument", "digits");
+    }
+    return value;
+  }
+
+  private static int maxPrintOption(Context context, SEXP max) {
+    int value;
+    if(max instanceof AtomicVector && max.length() >= 1 &&
+        !((AtomicVector) max).isElementNA(0)) {
+      value = ((AtomicVector) max).getElementAsInt(0);
+    } else {
+      value = context.getGlobals().options.getInt("max.print", DEFAULT_MAX_PRINT);
+    }
+    if(IntVector.isNA(value) || value < 1) {
+      throw new EvalException("invalid '%s' argument", "max");
+    }
+    return value;
+  }
+
   public static String doPrint(SEXP expression) {
     PrintingVisitor visitor = new PrintingVisitor()
     .setCharactersPerLine(80);
@@ -69,12 +105,30 @@ public class Print {
 
   static class PrintingVisitor extends SexpVisitor<String> {
 
-    private StringBuilder out;
+    /**
+     * The number of characters buffered before they are written out
+     */
+    private static final int FLUSH_SIZE = 8192;
+
+    private final StringBuilder out;
+    private final PrintWriter writer;
     private int charactersPerLine = 80;
     private boolean quote = true;
+    private int digits = DoubleFormatter.DEFAULT_DIGITS;
+    private int scipen = 0;
+    private int maxPrint = Integer.MAX_VALUE;
 
     PrintingVisitor() {
+      this(null);
+    }
+
+    /**
+     * Creates a visitor which writes each line to {@code writer} as it is printed,
+     * rather than accumulating the output
+     */
+    PrintingVisitor(PrintWriter writer) {
       this.out = new StringBuilder();
+      this.writer = writer;
     }
     
     public PrintingVisitor setCharactersPerLine(int charactersPerLine) {
@@ -86,6 +140,24 @@ public class Print {
       this.quote = quote;
       return this;
     }
+
+    public PrintingVisitor setDigits(int digits) {
+      this.digits = digits;
+      return this;
+    }
+
+    public PrintingVisitor setScipen(int scipen) {
+      this.scipen = scipen;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of entries to print, as {@code getOption("max.print")}
+     */
+    public PrintingVisitor setMaxPrint(int maxPrint) {
+      this.maxPrint = maxPrint;
+      return this;
+    }
     
     public String print(SEXP exp) {
       exp.accept(this);
@@ -94,27 +166,31 @@ public class Print {
 
     @Override
     public void visit(ListVector list) {
+      int count = Math.min(list.length(), maxPrint);
       int index = 1;
-      for(int i=0; i!= list.length(); ++i) {
+      for(int i=0; i!= count; ++i) {
         SEXP value = list.get(i);
         String name = list.getName(i);
 
         if(StringVector.isNA(name)) {
-          out.append("[[").append(index).append("]]\n");
+          out.append("[[").append(index).append("]]");
         } else {
-          out.append("$").append(name).append("\n");
+          out.append("$").append(name);
         }
+        newLine();
         value.accept(this);
-        out.append("\n");
+        newLine();
         index++;
       }
+      printOmitted(list.length() - count, "entries");
       printAttributes(list);
     }
     
     
     @Override
     protected void unhandled(SEXP exp) {
-      out.append(exp.toString()).append('\n');
+      out.append(exp.toString());
+      newLine();
       printAttributes(exp);
     }
 
@@ -123,34 +199,97 @@ public class Print {
       return out.toString();
     }
 
+    /**
+     * Writes any buffered output to the writer, and flushes it
+     */
+    public void flush() {
+      if(writer != null) {
+        writer.append(out);
+        writer.flush();
+        out.setLength(0);
+      }
+    }
+
+    private void newLine() {
+      out.append('\n');
+      if(writer != null && out.length() >= FLUSH_SIZE) {
+        writer.append(out);
+        out.setLength(0);
+      }
+    }
+
     @Override
-    public void visit(IntVector vector) {
-      printVector(vector, Alignment.RIGHT, new ParseUtil.IntPrinter());
+    public void visit(final IntVector vector) {
+      final ParseUtil.IntPrinter printer = new ParseUtil.IntPrinter();
+      printVector(vector, Alignment.RIGHT, new ElementFormatter() {
+        @Override
+        String format(int index) {
+          return printer.apply(vector.getElementAsInt(index));
+        }
+      });
     }
 
     @Override
-    public void visit(LogicalVector vector) {
-      printVector(vector, Alignment.RIGHT, new ParseUtil.LogicalPrinter());
+    public void visit(final LogicalVector vector) {
+      final ParseUtil.LogicalPrinter printer = new ParseUtil.LogicalPrinter();
+      printVector(vector, Alignment.RIGHT, new ElementFormatter() {
+        @Override
+        String format(int index) {
+          return printer.apply(vector.getElementAsLogical(index));
+        }
+      });
     }
 
     @Override
-    public void visit(DoubleVector vector) {
-      printVector(vector, Alignment.RIGHT, new ParseUtil.RealPrinter());
+    public void visit(final DoubleVector vector) {
+      // the elements share a common number of decimal places or notation
+      final DoubleFormatter formatter = new DoubleFormatter(digits).setScipen(scipen);
+      final StringBuilder buffer = new StringBuilder();
+      printVector(vector, Alignment.RIGHT, new ElementFormatter() {
+        @Override
+        void accept(int index) {
+          formatter.accept(vector.getElementAsDouble(index));
+        }
+
+        @Override
+        void layout() {
+          formatter.layout(0);
+        }
+
+        @Override
+        String format(int index) {
+          buffer.setLength(0);
+          return formatter.append(buffer, vector.getElementAsDouble(index)).toString();
+        }
+      });
     }
 
     @Override
-    public void visit(StringVector vector) {
-      printVector(vector, Alignment.LEFT, new ParseUtil.StringPrinter().withQuotes(quote));
+    public void visit(final StringVector vector) {
+      final ParseUtil.StringPrinter printer = new ParseUtil.StringPrinter().withQuotes(quote);
+      printVector(vector, Alignment.LEFT, new ElementFormatter() {
+        @Override
+        String format(int index) {
+          return printer.apply(vector.getElementAsString(index));
+        }
+      });
     }
 
     @Override
-    public void visit(RawVector vector) {
-      printVector(vector, Alignment.RIGHT, new ParseUtil.RawPrinter());
+    public void visit(final RawVector vector) {
+      final ParseUtil.RawPrinter printer = new ParseUtil.RawPrinter();
+      printVector(vector, Alignment.RIGHT, new ElementFormatter() {
+        @Override
+        String format(int index) {
+          return printer.apply(vector.getElement(index));
+        }
+      });
     }   
 
     @Override
     public void visit(Null nullExpression) {
-      out.append("NULL\n");
+      out.append("NULL");
+      newLine();
     }
 
     @Override
@@ -158,17 +297,22 @@ public class Print {
       out.append(".Primitive(").append(ParseUtil.formatStringLiteral(special.getName(), "NA"));
     }
 
-    private <T> void printVector(Iterable<T> vector, Alignment align, Function<T, String> printer) {
-      SEXP sexp = (SEXP)vector;
-      List<String> elements = Lists.newArrayList(Iterables.transform(vector, printer));
-      
-      SEXP dim = sexp.getAttribute(Symbols.DIM);
+    private void printVector(Vector vector, Alignment align, ElementFormatter formatter) {
+      SEXP dim = vector.getAttribute(Symbols.DIM);
       if(dim.length() == 2) {
-        new MatrixPrinter(elements, align, sexp.getAttributes());
+        new MatrixPrinter(vector, formatter, align);
       } else {
-        new VectorPrinter(elements, align, sexp.getAttributes());
+        new VectorPrinter(vector, formatter, align);
+      }
+      printAttributes(vector);
+    }
+
+    private void printOmitted(int omitted, String what) {
+      if(omitted > 0) {
+        out.append(" [ reached getOption(\"max.print\") -- omitted ")
+           .append(omitted).append(' ').append(what).append(" ]");
+        newLine();
       }
-      printAttributes(sexp);
     }
 
     private void printAttributes(SEXP sexp) {
@@ -177,7 +321,8 @@ public class Print {
            !node.getTag().equals(Symbols.DIM) &&
            !node.getTag().equals(Symbols.DIMNAMES) &&
             node.getValue() != Null.INSTANCE) {
-          out.append("attr(," + new ParseUtil.StringPrinter().apply(node.getName()) + ")\n");
+          out.append("attr(," + new ParseUtil.StringPrinter().apply(node.getName()) + ")");
+          newLine();
           node.getValue().accept(this);
         }
       }
@@ -188,6 +333,22 @@ public class Print {
       LEFT, RIGHT
     }
 
+    /**
+     * Formats the elements of a vector by their position. All the elements which
+     * are to be printed are passed to {@code accept()}, and then {@code layout()} is
+     * called, before any is formatted.
+     */
+    private abstract static class ElementFormatter {
+
+      void accept(int index) {
+      }
+
+      void layout() {
+      }
+
+      abstract String format(int index);
+    }
+
     private class VectorPrinter {
       private List<String> elements;
       private final Alignment elementAlign;
@@ -196,10 +357,19 @@ public class Print {
       private int elementsPerLine;
       private AtomicVector names;
 
-      private VectorPrinter(List<String> elements, Alignment elementAlign, PairList attributes) {
-        this.elements = elements;
+      private VectorPrinter(Vector vector, ElementFormatter formatter, Alignment elementAlign) {
+        // only the elements up to max.print are formatted, or even looked at
+        int count = Math.min(vector.length(), maxPrint);
+        for(int i=0;i!=count;++i) {
+          formatter.accept(i);
+        }
+        formatter.layout();
+        this.elements = Lists.newArrayListWithCapacity(count);
+        for(int i=0;i!=count;++i) {
+          elements.add(formatter.format(i));
+        }
         this.elementAlign = elementAlign;
-        this.names = (AtomicVector)attributes.findByTag(Symbols.NAMES);
+        this.names = (AtomicVector)vector.getAttribute(Symbols.NAMES);
         if(hasNames()) {
           elementAlign = Alignment.RIGHT;
         }
@@ -207,6 +377,7 @@ public class Print {
         calcMaxIndexWidth();
         calcElementsPerLine();
         print();
+        printOmitted(vector.length() - count, "entries");
       }
       
       private boolean hasNames() {
@@ -273,7 +444,7 @@ public class Print {
           }
           appendAligned(name(startIndex+i), maxElementWidth, elementAlign);
         }
-        out.append("\n");
+        newLine();
       }
       
       private String name(int index) {
@@ -292,7 +463,7 @@ public class Print {
           }
           appendAligned(elements.get(startIndex+i), maxElementWidth, elementAlign);
         }
-        out.append('\n');
+        newLine();
       }
 
       private void appendAligned(String s, int size, Alignment alignment) {
@@ -318,17 +489,35 @@ public class Print {
       
       private int rows;
       private int cols;
+      private int printedRows;
       private Vector rowNames = Null.INSTANCE;
       private Vector colNames = Null.INSTANCE;
       
-      private MatrixPrinter(List<String> elements, Alignment elementAlign, PairList attributes) {
-        this.elements = elements;
+      private MatrixPrinter(Vector vector, ElementFormatter formatter, Alignment elementAlign) {
         this.elementAlign = elementAlign;
-        Vector dim = (Vector)attributes.findByTag(Symbols.DIM);
+        Vector dim = (Vector)vector.getAttribute(Symbols.DIM);
         rows = dim.getElementAsInt(0);
         cols = dim.getElementAsInt(1);
+
+        // whole rows are omitted to stay within max.print
+        printedRows = rows;
+        if(cols > 0 && (long)rows * cols > maxPrint) {
+          printedRows = maxPrint / cols;
+        }
+        for(int j=0;j!=cols;++j) {
+          for(int i=0;i!=printedRows;++i) {
+            formatter.accept(Indexes.matrixIndexToVectorIndex(i, j, rows, cols));
+          }
+        }
+        formatter.layout();
+        elements = Lists.newArrayListWithCapacity(printedRows * cols);
+        for(int j=0;j!=cols;++j) {
+          for(int i=0;i!=printedRows;++i) {
+            elements.add(formatter.format(Indexes.matrixIndexToVectorIndex(i, j, rows, cols)));
+          }
+        }
         
-        SEXP dimnames = (Vector)attributes.findByTag(Symbols.DIMNAMES);
+        SEXP dimnames = vector.getAttribute(Symbols.DIMNAMES);
         if(dimnames.length() == 2) {
           rowNames = dimnames.getElementAsSEXP(0);
           colNames = dimnames.getElementAsSEXP(1);
@@ -337,6 +526,7 @@ public class Print {
         calcMaxRowHeaderWidth();
         calcColumnWidth();
         print();
+        printOmitted(rows - printedRows, "rows");
       }
 
       private String colHeader(int col) {
@@ -356,7 +546,7 @@ public class Print {
       }
       
       private void calcMaxRowHeaderWidth() {
-        for(int i=0;i!=rows;++i) {
+        for(int i=0;i!=printedRows;++i) {
           int headerLength = rowHeader(i).length();
           if(headerLength > maxRowHeaderWidth) {
             maxRowHeaderWidth = headerLength;
@@ -381,13 +571,13 @@ public class Print {
       private void print() {
         printColumnHeaders();
         
-        for(int i=0; i!=rows;++i) {
+        for(int i=0; i!=printedRows;++i) {
           appendAligned(rowHeader(i), maxRowHeaderWidth, Alignment.RIGHT);
           for(int j=0;j!=cols;++j) {
             out.append(' ');
-            appendAligned(elements.get(Indexes.matrixIndexToVectorIndex(i, j, rows, cols)), colWidth, elementAlign);
+            appendAligned(elements.get(Indexes.matrixIndexToVectorIndex(i, j, printedRows, cols)), colWidth, elementAlign);
           }
-          out.append('\n');
+          newLine();
         }
       }
 
@@ -399,7 +589,7 @@ public class Print {
           out.append(' ');
           appendAligned(colHeader(j), colWidth, elementAlign);
         }
-        out.append('\n');
+        newLine();
       }
       
       private void appendAligned(String s, int size, Alignment alignment) {
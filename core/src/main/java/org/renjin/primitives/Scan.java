@@ -145,11 +145,11 @@ public class Scan {
     }
 
     public void read(String value) {
-      this.builder.add(value);
+      this.builder.add(StringVector.dedup(value));
     }
 
     public StringVector build() {
-      return builder.build();
+      return StringDictionaryVector.encode(builder.build());
     }
   }
   
@@ -303,6 +303,9 @@ public class Scan {
   }
   
   private static Vector buildFactor(StringVector vector, StringVector naStrings) {
+      if(vector instanceof StringDictionaryVector) {
+        return buildFactor((StringDictionaryVector) vector, naStrings);
+      }
       Map<String, Integer> codes = Maps.newHashMap();
       IntArrayVector.Builder factor = new IntArrayVector.Builder(vector.length());
       for(int i=0;i!=vector.length();++i) {
@@ -325,6 +328,32 @@ public class Scan {
       return factor.build();
   }
 
+  /**
+   * Builds the factor from the codes of a dictionary-encoded vector, giving each
+   * distinct value its level when it is first seen, as for other vectors
+   */
+  private static Vector buildFactor(StringDictionaryVector vector, StringVector naStrings) {
+      StringVector dictionary = vector.getDictionary();
+      int[] levelCodes = new int[dictionary.length() + 1];
+      StringVector.Builder levels = StringVector.newBuilder();
+      int[] factor = new int[vector.length()];
+      for(int i=0;i!=factor.length;++i) {
+        int code = vector.getCode(i);
+        int slot = code == IntVector.NA ? 0 : code;
+        if(levelCodes[slot] == 0) {
+          String element = slot == 0 ? StringVector.NA : dictionary.getElementAsString(slot-1);
+          if(naStrings.indexOf(element) == -1) {
+            levels.add(element);
+            levelCodes[slot] = levels.length();
+          } else {
+            levelCodes[slot] = IntVector.NA;
+          }
+        }
+        factor[i] = levelCodes[slot];
+      }
+      return IntArrayVector.unsafe(factor, AttributeMap.factor(levels.build(), false));
+  }
+
   private static Converter<?> getConverter(StringVector vector, StringVector naStrings) {
     Converter<?> converters[] = new Converter<?>[] {
         new LogicalConverter(),
@@ -0,0 +1,298 @@
+package org.renjin.primitives;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.Buffer;
+import java.nio.CharBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.renjin.sexp.Closure;
+import org.renjin.sexp.ListVector;
+import org.renjin.sexp.Null;
+import org.renjin.sexp.PairList;
+import org.renjin.sexp.PrimitiveFunction;
+import org.renjin.sexp.Promise;
+import org.renjin.sexp.SEXP;
+import org.renjin.sexp.Symbol;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Estimates the number of bytes of JVM heap occupied by an R object, as reported
+ * by {@code object.size()}.
+ *
+ * <p>The size of each {@code SEXP} is computed from the fields declared by its class,
+ * plus the arrays, strings and NIO buffers which it holds directly, so that compact
+ * representations such as {@code IntSequence} are only charged for what they actually
+ * store. The estimator then follows the object's attributes, elements, pairlist nodes,
+ * and the body and formals of closures. Objects reachable more than once, such as an
+ * attribute shared by several elements of a list, are only counted once.
+ *
+ * <p>As in GNU R, the contents of environments are not included, since they are
+ * normally shared with other objects. Nor are symbols, {@code NULL} or builtin
+ * functions, which are global singletons. Unevaluated promises are charged for
+ * their expressions, and evaluated promises for their values.
+ */
+public class SizeEstimator {
+
+  private static final int OBJECT_HEADER;
+  private static final int ARRAY_HEADER;
+  private static final int REFERENCE;
+  private static final int ALIGNMENT = 8;
+
+  static {
+    if("32".equals(java.lang.System.getProperty("sun.arch.data.model"))) {
+      OBJECT_HEADER = 8;
+      ARRAY_HEADER = 12;
+      REFERENCE = 4;
+    } else if(compressedOops()) {
+      OBJECT_HEADER = 12;
+      ARRAY_HEADER = 16;
+      REFERENCE = 4;
+    } else {
+      OBJECT_HEADER = 16;
+      ARRAY_HEADER = 24;
+      REFERENCE = 8;
+    }
+  }
+
+  private static final ConcurrentMap<Class, Layout> LAYOUTS = new ConcurrentHashMap<Class, Layout>();
+
+  private final Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+  private final Deque<SEXP> pending = new ArrayDeque<SEXP>();
+  private long size = 0;
+
+  private SizeEstimator() { }
+
+  /**
+   * @return the estimated size in bytes of {@code sexp} and everything it
+   * refers to, other than environments and global singletons
+   */
+  public static long deepSize(SEXP sexp) {
+    SizeEstimator estimator = new SizeEstimator();
+    estimator.push(sexp);
+    while(!estimator.pending.isEmpty()) {
+      estimator.visit(estimator.pending.pop());
+    }
+    return estimator.size;
+  }
+
+  /**
+   * @return the estimated size in bytes of {@code sexp} itself and the arrays,
+   * strings and buffers which it holds directly
+   */
+  public static long shallowSize(SEXP sexp) {
+    if(isSingleton(sexp)) {
+      return 0;
+    }
+    SizeEstimator estimator = new SizeEstimator();
+    estimator.addShallow(sexp);
+    return estimator.size;
+  }
+
+  private static boolean isSingleton(SEXP sexp) {
+    return sexp == Null.INSTANCE || sexp instanceof Symbol || sexp instanceof PrimitiveFunction;
+  }
+
+  private void visit(SEXP sexp) {
+    if(isSingleton(sexp) || !visited.add(sexp)) {
+      return;
+    }
+    addShallow(sexp);
+
+    push(sexp.getAttributes());
+
+    if(sexp instanceof ListVector) {
+      for(SEXP element : (ListVector) sexp) {
+        push(element);
+      }
+    } else if(sexp instanceof PairList.Node) {
+      PairList.Node node = (PairList.Node) sexp;
+      push(node.getValue());
+      push(node.getNext());
+    } else if(sexp instanceof Closure) {
+      push(((Closure) sexp).getFormals());
+      push(((Closure) sexp).getBody());
+    } else if(sexp instanceof Promise) {
+      Promise promise = (Promise) sexp;
+      push(promise.isEvaluated() ? promise.getValue() : promise.getExpression());
+    }
+  }
+
+  private void push(SEXP sexp) {
+    if(sexp != null) {
+      pending.push(sexp);
+    }
+  }
+
+  private void addShallow(SEXP sexp) {
+    Layout layout = layoutOf(sexp.getClass());
+    size += layout.instanceSize;
+    for(Field field : layout.storageFields) {
+      Object value;
+      try {
+        value = field.get(sexp);
+      } catch(IllegalAccessException e) {
+        continue;
+      }
+      if(value != null && visited.add(value)) {
+        size += storageSize(value);
+      }
+    }
+  }
+
+  /**
+   * @return the size of an array, string, buffer or collection held by a {@code SEXP}
+   */
+  private long storageSize(Object value) {
+    if(value instanceof String) {
+      return stringSize((String) value);
+
+    } else if(value instanceof Object[]) {
+      Object[] array = (Object[]) value;
+      long arraySize = arraySize(array.length, REFERENCE);
+      if(value instanceof String[]) {
+        for(String string : (String[]) array) {
+          if(string != null && visited.add(string)) {
+            arraySize += stringSize(string);
+          }
+        }
+      }
+      return arraySize;
+
+    } else if(value.getClass().isArray()) {
+      return arraySize(java.lang.reflect.Array.getLength(value),
+          primitiveSize(value.getClass().getComponentType()));
+
+    } else if(value instanceof Buffer) {
+      // direct and memory-mapped buffers occupy no heap beyond the buffer object
+      Buffer buffer = (Buffer) value;
+      if(buffer.isDirect()) {
+        return align(OBJECT_HEADER + 6 * 4 + 3 * REFERENCE + 8);
+      }
+      return align(OBJECT_HEADER + 6 * 4 + 3 * REFERENCE + 8) +
+          arraySize(buffer.capacity(), bufferElementSize(buffer));
+
+    } else if(value instanceof Collection) {
+      // an ArrayList or similar: the list object plus its backing array
+      return align(OBJECT_HEADER + 2 * 4 + REFERENCE) +
+          arraySize(((Collection) value).size(), REFERENCE);
+    }
+    return 0;
+  }
+
+  private static long stringSize(String string) {
+    return align(OBJECT_HEADER + REFERENCE + 2 * 4) + arraySize(string.length(), 2);
+  }
+
+  private static long arraySize(int length, int elementSize) {
+    return align(ARRAY_HEADER + (long)length * elementSize);
+  }
+
+  private static long align(long size) {
+    return (size + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+  }
+
+  private static int primitiveSize(Class type) {
+    if(type == long.class || type == double.class) {
+      return 8;
+    } else if(type == int.class || type == float.class) {
+      return 4;
+    } else if(type == short.class || type == char.class) {
+      return 2;
+    } else if(type == byte.class || type == boolean.class) {
+      return 1;
+    } else {
+      return REFERENCE;
+    }
+  }
+
+  private static int bufferElementSize(Buffer buffer) {
+    if(buffer instanceof DoubleBuffer || buffer instanceof LongBuffer) {
+      return 8;
+    } else if(buffer instanceof IntBuffer || buffer instanceof FloatBuffer) {
+      return 4;
+    } else if(buffer instanceof CharBuffer || buffer instanceof ShortBuffer) {
+      return 2;
+    } else {
+      return 1;
+    }
+  }
+
+  private static Layout layoutOf(Class type) {
+    Layout layout = LAYOUTS.get(type);
+    if(layout == null) {
+      layout = new Layout(type);
+      LAYOUTS.putIfAbsent(type, layout);
+    }
+    return layout;
+  }
+
+  /**
+   * Whether the JVM is using 32-bit references on a 64-bit platform, which
+   * HotSpot does by default for heaps smaller than 32 GB
+   */
+  private static boolean compressedOops() {
+    try {
+      CompositeData option = (CompositeData) ManagementFactory.getPlatformMBeanServer().invoke(
+          new ObjectName("com.sun.management:type=HotSpotDiagnostic"), "getVMOption",
+          new Object[] { "UseCompressedOops" }, new String[] { String.class.getName() });
+      return Boolean.parseBoolean((String) option.get("value"));
+    } catch(Exception e) {
+      return Runtime.getRuntime().maxMemory() < 32L * 1024 * 1024 * 1024;
+    }
+  }
+
+  /**
+   * The size of the instances of a class, and those of its fields which hold
+   * the storage of the object
+   */
+  private static class Layout {
+    private final long instanceSize;
+    private final List<Field> storageFields = Lists.newArrayList();
+
+    public Layout(Class type) {
+      long fieldSize = 0;
+      for(Class c = type; c != null; c = c.getSuperclass()) {
+        for(Field field : c.getDeclaredFields()) {
+          if(Modifier.isStatic(field.getModifiers())) {
+            continue;
+          }
+          Class fieldType = field.getType();
+          fieldSize += fieldType.isPrimitive() ? primitiveSize(fieldType) : REFERENCE;
+          if(isStorage(fieldType)) {
+            try {
+              field.setAccessible(true);
+              storageFields.add(field);
+            } catch(SecurityException e) {
+              // the storage is not counted
+            }
+          }
+        }
+      }
+      instanceSize = align(OBJECT_HEADER + fieldSize);
+    }
+
+    private static boolean isStorage(Class fieldType) {
+      return fieldType.isArray() || fieldType == String.class ||
+          Buffer.class.isAssignableFrom(fieldType) || Collection.class.isAssignableFrom(fieldType);
+    }
+  }
+}
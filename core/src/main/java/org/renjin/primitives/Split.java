@@ -1,63 +1,129 @@
 package org.renjin.primitives;
 
-import java.util.Map;
-import java.util.Set;
-
 import org.renjin.primitives.annotations.Primitive;
+import org.renjin.sexp.AtomicVector;
+import org.renjin.sexp.DoubleArrayVector;
+import org.renjin.sexp.DoubleVector;
+import org.renjin.sexp.IntArrayVector;
 import org.renjin.sexp.IntVector;
 import org.renjin.sexp.ListVector;
+import org.renjin.sexp.LogicalArrayVector;
+import org.renjin.sexp.LogicalVector;
+import org.renjin.sexp.Null;
+import org.renjin.sexp.SEXP;
+import org.renjin.sexp.StringVector;
+import org.renjin.sexp.Symbols;
 import org.renjin.sexp.Vector;
 
-
-import com.google.common.collect.Maps;
-
 public class Split {
   private Split() {}
-  
+
   /**
-   * Splits the 
-   * @param indices
-   * @param factors
-   * @return
+   * Splits the elements of {@code toSplit} into groups by the integer codes in
+   * {@code factors}.
+   *
+   * <p>The elements are first counted by group, so that each group's elements can then
+   * be copied directly into an array of the right size.
+   *
+   * @param toSplit the vector to split
+   * @param factors the group of each element, as the codes of a factor. If {@code factors}
+   * has levels, the result has an element for each level, named by the level;
+   * otherwise it has an element for each code which occurs, named by the code.
+   * @return a list of the elements in each group
    */
   @Primitive
   public static ListVector split(Vector toSplit, IntVector factors) {
     assert toSplit.length() == factors.length();
-    
-    SplitMap map = new SplitMap(toSplit);
-    for(int i=0;i!=factors.length();++i) {
-      int split = factors.getElementAsInt(i);
-      map.getSplitBuilder(split)
-          .addFrom(toSplit, i);
+
+    SEXP levels = factors.getAttribute(Symbols.LEVELS);
+    int groupCount;
+    if(levels instanceof StringVector) {
+      groupCount = levels.length();
+    } else {
+      groupCount = maxCode(factors);
     }
-    
-    ListVector.NamedBuilder resultList = new ListVector.NamedBuilder();
-    for(Integer split : map.getKeys()) {
-      resultList.add(split.toString(), 
-          map.getSplitBuilder(split).build());
+
+    Grouping grouping = Grouping.fromCodes(factors, groupCount);
+    int[] counts = grouping.counts();
+    int[] order = grouping.order(counts);
+
+    AtomicVector names = toSplit.getNames();
+
+    ListVector.NamedBuilder resultList = new ListVector.NamedBuilder(0, groupCount);
+    int start = 0;
+    for(int group=0;group!=groupCount;++group) {
+      if(levels instanceof StringVector) {
+        resultList.add(((StringVector) levels).getElementAsString(group),
+            subset(toSplit, names, order, start, counts[group]));
+      } else if(counts[group] > 0) {
+        resultList.add(Integer.toString(group + 1),
+            subset(toSplit, names, order, start, counts[group]));
+      }
+      start += counts[group];
     }
     return resultList.build();
   }
-  
-  private static class SplitMap {
-    private Vector sourceVector;
-    private Map<Integer, Vector.Builder> splits = Maps.newHashMap();
-    
-    public SplitMap(Vector sourceVector) {
-      this.sourceVector = sourceVector;
+
+  private static int maxCode(IntVector factors) {
+    int max = 0;
+    for(int i=0;i!=factors.length();++i) {
+      int code = factors.getElementAsInt(i);
+      if(!IntVector.isNA(code) && code > max) {
+        max = code;
+      }
     }
-    
-    public Vector.Builder getSplitBuilder(int value) {
-      Vector.Builder builder = splits.get(value);
-      if(builder == null) {
-        builder = sourceVector.newBuilderWithInitialSize(0);
-        splits.put(value, builder);
-      }
-      return builder;
+    return max;
+  }
+
+  /**
+   * @return the elements of {@code source} at the positions {@code order[start..start+count)},
+   * with their names
+   */
+  private static Vector subset(Vector source, AtomicVector names, int[] order, int start, int count) {
+    Vector result;
+    if(source instanceof DoubleVector) {
+      double[] values = new double[count];
+      for(int i=0;i!=count;++i) {
+        values[i] = source.getElementAsDouble(order[start+i]);
+      }
+      result = new DoubleArrayVector(values);
+
+    } else if(source instanceof IntVector) {
+      int[] values = new int[count];
+      for(int i=0;i!=count;++i) {
+        values[i] = source.getElementAsInt(order[start+i]);
+      }
+      result = new IntArrayVector(values);
+
+    } else if(source instanceof LogicalVector) {
+      int[] values = new int[count];
+      for(int i=0;i!=count;++i) {
+        values[i] = source.getElementAsRawLogical(order[start+i]);
+      }
+      result = new LogicalArrayVector(values);
+
+    } else if(source instanceof StringVector) {
+      String[] values = new String[count];
+      for(int i=0;i!=count;++i) {
+        values[i] = source.getElementAsString(order[start+i]);
+      }
+      result = new StringVector(values);
+
+    } else {
+      Vector.Builder builder = source.newBuilderWithInitialSize(count);
+      for(int i=0;i!=count;++i) {
+        builder.setFrom(i, source, order[start+i]);
+      }
+      result = builder.build();
     }
-    
-    public Set<Integer> getKeys() {
-      return splits.keySet();
+
+    if(names != Null.INSTANCE) {
+      String[] subsetNames = new String[count];
+      for(int i=0;i!=count;++i) {
+        subsetNames[i] = names.getElementAsString(order[start+i]);
+      }
+      result = (Vector) result.setAttribute(Symbols.NAMES, new StringVector(subsetNames));
     }
+    return result;
   }
 }
@@ -270,16 +270,28 @@ public class System {
     }
   }
 
+  /**
+   * Limits the CPU and elapsed time of each top level computation, starting with
+   * the current one, or only of the current one if {@code transientLimit} is true.
+   * Limits which are not finite and positive are removed.
+   *
+   * @see org.renjin.eval.EvaluationBudget
+   */
   @Primitive
-  public static DoubleVector gc(boolean verbose, boolean reset) {
-    try {
-      java.lang.System.gc();
-    } catch(Exception e) {
-      
-    }
-    return new DoubleArrayVector();
+  public static void setTimeLimit(@Current Context context, double cpu, double elapsed, boolean transientLimit) {
+    context.getGlobals().getEvaluationBudget().setTimeLimit(cpu, elapsed, transientLimit);
   }
-  
+
+  /**
+   * Limits the CPU and elapsed time of the rest of the session.
+   *
+   * @see org.renjin.eval.EvaluationBudget
+   */
+  @Primitive
+  public static void setSessionTimeLimit(@Current Context context, double cpu, double elapsed) {
+    context.getGlobals().getEvaluationBudget().setSessionTimeLimit(cpu, elapsed);
+  }
+
   /**
    * Returns object of class ‘"proc_time"’ which is a numeric vector of
    * length 5, containing the user, system, and total elapsed times for
@@ -488,8 +488,8 @@ public class Types {
         return (IntVector) IntegerConverter.INSTANCE
             .convertToR((Integer) instance);
       } else if (IntegerArrayConverter.accept(clazz)) {
-        return (IntVector) IntegerArrayConverter.INSTANCE
-            .convertToR((Integer[]) instance);
+        return (IntVector) new IntegerArrayConverter(clazz)
+            .convertToR(instance);
       }
     }
     throw new EvalException(
@@ -515,7 +515,7 @@ public class Types {
             .convertToR((Double) instance);
       } else if (DoubleArrayConverter.accept(clazz)) {
         return (DoubleVector)new DoubleArrayConverter(clazz)
-            .convertToR((Double[]) instance);
+            .convertToR(instance);
       }
     }
     throw new EvalException(
@@ -27,6 +27,7 @@ import org.renjin.primitives.annotations.Primitive;
 import org.renjin.sexp.Environment;
 import org.renjin.sexp.FunctionCall;
 import org.renjin.sexp.ListVector;
+import org.renjin.sexp.SEXP;
 import org.renjin.sexp.Symbol;
 
 import java.io.IOException;
@@ -65,6 +66,11 @@ public class Warning {
       } catch(IOException e) {
         
       }
+    } else if(warnMode == 0 && context.getGlobals().isWorker()) {
+      // last.warning is shared with the parent, which will
+      // signal the warning once the worker has finished
+      context.getGlobals().addWorkerWarning(message, call);
+
     } else if(warnMode == 0) {
       // store warnings until end of evaluation
       
@@ -79,4 +85,16 @@ public class Warning {
       baseEnv.setVariable(LAST_WARNING, lastWarning.build());
     }
   }
+
+  /**
+   * Signals, in the parent {@code context}, the warnings collected by a worker
+   * created with {@link Context#forkWorker()}
+   */
+  static void emitWorkerWarnings(Context context, ListVector warnings) {
+    for(int i=0;i!=warnings.length();++i) {
+      SEXP call = warnings.getElementAsSEXP(i);
+      emitWarning(context, call instanceof FunctionCall ? (FunctionCall) call : null, false,
+          warnings.getName(i));
+    }
+  }
 }
@@ -4,6 +4,7 @@ import org.renjin.eval.Calls;
 import org.renjin.eval.ClosureDispatcher;
 import org.renjin.eval.Context;
 import org.renjin.eval.DispatchChain;
+import org.renjin.primitives.Comparison;
 import org.renjin.sexp.*;
 import org.renjin.sexp.PairList.Node;
 
@@ -262,6 +263,14 @@ public class WrapperRuntime {
     return Calls.DispatchGroup(group, call, name, newArgs, context, rho);
   }
   
+  /**
+   * @return the result of {@code ==} or {@code !=} computed on the codes of a
+   * dictionary-encoded character vector, or {@code null} if the operands cannot be compared so
+   */
+  public static SEXP tryCompareCodes(String name, SEXP s0, SEXP s1) {
+    return Comparison.compareCodes(name.equals("=="), s0, s1);
+  }
+
   public static SEXP tryDispatchSummaryFromPrimitive(Context context, Environment rho, FunctionCall call,
       String name, ListVector evaluatedArguments, boolean naRm) {
     
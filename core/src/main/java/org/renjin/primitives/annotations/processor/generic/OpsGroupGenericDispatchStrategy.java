@@ -5,6 +5,8 @@ import org.renjin.primitives.annotations.processor.WrapperSourceWriter;
 /**
  * The 'Ops' group requires special treatment because they are always unary or binary,
  * and dispatch on either the first or second argument, which are always evaluated.
+ * Equality comparisons of dictionary-encoded character vectors are tried first, as
+ * they need not be expanded to strings.
  */
 public class OpsGroupGenericDispatchStrategy extends GenericDispatchStrategy {
 
@@ -17,6 +19,13 @@ public class OpsGroupGenericDispatchStrategy extends GenericDispatchStrategy {
   @Override
   public void beforeTypeMatching(WrapperSourceWriter s, int arity) {
 
+    if(arity == 2 && (name.equals("==") || name.equals("!="))) {
+      s.writeStatement("SEXP codesResult = tryCompareCodes(\"" + name + "\", s0, s1)");
+      s.writeBeginBlock("if(codesResult != null) {");
+      s.writeStatement("return codesResult");
+      s.writeCloseBlock();
+    }
+
     if(arity == 1) {
       s.writeBeginIf("((AbstractSEXP)s0).isObject()");
     } else {
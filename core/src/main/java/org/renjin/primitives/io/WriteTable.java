@@ -0,0 +1,329 @@
+package org.renjin.primitives.io;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import org.renjin.eval.Context;
+import org.renjin.eval.EvalException;
+import org.renjin.eval.Instrumentation;
+import org.renjin.primitives.annotations.Current;
+import org.renjin.primitives.annotations.Primitive;
+import org.renjin.primitives.io.connections.AbstractConnection;
+import org.renjin.primitives.io.connections.BufferedLineWriter;
+import org.renjin.primitives.io.connections.Connection;
+import org.renjin.primitives.io.connections.Connections;
+import org.renjin.primitives.text.DoubleFormatter;
+import org.renjin.sexp.AtomicVector;
+import org.renjin.sexp.DoubleVector;
+import org.renjin.sexp.IntVector;
+import org.renjin.sexp.ListVector;
+import org.renjin.sexp.LogicalVector;
+import org.renjin.sexp.Null;
+import org.renjin.sexp.SEXP;
+import org.renjin.sexp.StringVector;
+import org.renjin.sexp.Symbols;
+
+/**
+ * Writes the rows of a data frame or matrix to a connection, as the internal
+ * part of {@code write.table()}.
+ *
+ * <p>The table is written a row at a time, walking across the columns, so that no
+ * character copy of the table is ever built. Each row is formatted into a reusable
+ * buffer and passed on to the connection's {@link BufferedLineWriter}, which encodes
+ * and writes the output in large blocks.
+ */
+public class WriteTable {
+
+  private final int rowCount;
+  private final StringVector rowNames;
+  private final boolean quoteRowNames;
+  private final Column[] columns;
+  private final String separator;
+  private final String eol;
+  private final String na;
+  private final char dec;
+  private final boolean escapeQuotes;
+
+  private final StringBuilder line = new StringBuilder();
+
+  /**
+   * @param x a data frame, whose non-atomic columns other than factors have already been
+   * converted to character, or a matrix
+   * @param file the connection to write to, which is open
+   * @param rowCount the number of rows in {@code x}
+   * @param columnCount the number of columns in {@code x}
+   * @param rowNames the row names to write, or {@code NULL}
+   * @param quote the (1-based) indexes of the columns to quote, and 0 if the row
+   * names are to be quoted
+   * @param escapeQuotes true if embedded quotes are to be escaped with a backslash,
+   * false if they are to be doubled
+   */
+  @Primitive("write.table")
+  public static void writeTable(@Current Context context, SEXP x, SEXP file, int rowCount, int columnCount,
+                                SEXP rowNames, String sep, String eol, String na, String dec,
+                                IntVector quote, boolean escapeQuotes) throws IOException {
+
+    if(dec.length() != 1) {
+      throw new EvalException("'dec' must be a single character");
+    }
+    if(rowNames != Null.INSTANCE && !(rowNames instanceof StringVector)) {
+      throw new EvalException("invalid '%s' argument", "rnames");
+    }
+
+    WriteTable writer = new WriteTable(x, rowCount, columnCount,
+        rowNames == Null.INSTANCE ? null : (StringVector) rowNames,
+        sep, eol, na, dec.charAt(0), quote, escapeQuotes);
+
+    Connection connection = Connections.getConnection(context, file);
+    long chars;
+    if(connection instanceof AbstractConnection) {
+      BufferedLineWriter out = ((AbstractConnection) connection).getLineWriter();
+      chars = writer.write(out);
+      out.flush();
+    } else {
+      PrintWriter out = connection.getPrintWriter();
+      chars = writer.write(out);
+      out.flush();
+    }
+
+    Instrumentation instrumentation = context.getGlobals().getInstrumentation();
+    if(instrumentation != null) {
+      instrumentation.charsWritten(chars);
+    }
+  }
+
+  private WriteTable(SEXP x, int rowCount, int columnCount, StringVector rowNames, String separator,
+                     String eol, String na, char dec, IntVector quote, boolean escapeQuotes) {
+    this.rowCount = rowCount;
+    this.rowNames = rowNames;
+    this.separator = separator;
+    this.eol = eol;
+    this.na = na;
+    this.dec = dec;
+    this.escapeQuotes = escapeQuotes;
+
+    boolean[] quoted = new boolean[columnCount + 1];
+    for(int i = 0; i != quote.length(); ++i) {
+      int column = quote.getElementAsInt(i);
+      if(column >= 0 && column <= columnCount) {
+        quoted[column] = true;
+      }
+    }
+    this.quoteRowNames = quoted[0];
+
+    this.columns = new Column[columnCount];
+    if(x instanceof ListVector) {
+      for(int j = 0; j != columnCount; ++j) {
+        columns[j] = column(x.getElementAsSEXP(j), 0, quoted[j + 1]);
+      }
+    } else if(x instanceof AtomicVector) {
+      for(int j = 0; j != columnCount; ++j) {
+        columns[j] = column(x, j * rowCount, quoted[j + 1]);
+      }
+    } else {
+      throw new EvalException("invalid '%s' argument", "x");
+    }
+  }
+
+  private Column column(SEXP vector, int offset, boolean quote) {
+    if(!(vector instanceof AtomicVector)) {
+      throw new EvalException("unimplemented type '%s' in 'write.table'", vector.getTypeName());
+    }
+    if(vector instanceof IntVector && vector.inherits("factor")) {
+      SEXP levels = vector.getAttribute(Symbols.LEVELS);
+      if(levels instanceof StringVector) {
+        return new FactorColumn((IntVector) vector, (StringVector) levels, offset, quote);
+      }
+    }
+    if(vector instanceof StringVector) {
+      return new StringColumn((StringVector) vector, offset, quote);
+    } else if(vector instanceof DoubleVector) {
+      return new DoubleColumn((DoubleVector) vector, offset);
+    } else if(vector instanceof LogicalVector) {
+      return new LogicalColumn((LogicalVector) vector, offset);
+    } else if(vector instanceof IntVector) {
+      return new IntColumn((IntVector) vector, offset);
+    } else {
+      return new AtomicColumn((AtomicVector) vector, offset);
+    }
+  }
+
+  /**
+   * Writes all the rows of the table to {@code out}
+   *
+   * @return the number of characters written
+   */
+  private long write(Appendable out) throws IOException {
+    long chars = 0;
+    for(int i = 0; i != rowCount; ++i) {
+      line.setLength(0);
+      if(rowNames != null) {
+        appendString(rowNames.getElementAsString(i), quoteRowNames);
+        line.append(separator);
+      }
+      for(int j = 0; j != columns.length; ++j) {
+        if(j > 0) {
+          line.append(separator);
+        }
+        columns[j].append(i);
+      }
+      line.append(eol);
+      out.append(line);
+      chars += line.length();
+    }
+    return chars;
+  }
+
+  private void appendString(String value, boolean quote) {
+    if(value == null) {
+      line.append(na);
+    } else if(!quote) {
+      line.append(value);
+    } else {
+      line.append('"');
+      for(int i = 0; i != value.length(); ++i) {
+        char c = value.charAt(i);
+        if(c == '"') {
+          line.append(escapeQuotes ? '\\' : '"');
+        }
+        line.append(c);
+      }
+      line.append('"');
+    }
+  }
+
+  /**
+   * Writes the elements of a column, or of a column of a matrix, which starts at {@code offset}
+   */
+  private abstract class Column {
+    protected final int offset;
+
+    protected Column(int offset) {
+      this.offset = offset;
+    }
+
+    abstract void append(int row);
+  }
+
+  private class StringColumn extends Column {
+    private final StringVector vector;
+    private final boolean quote;
+
+    private StringColumn(StringVector vector, int offset, boolean quote) {
+      super(offset);
+      this.vector = vector;
+      this.quote = quote;
+    }
+
+    @Override
+    void append(int row) {
+      appendString(vector.getElementAsString(offset + row), quote);
+    }
+  }
+
+  private class FactorColumn extends Column {
+    private final IntVector codes;
+    private final StringVector levels;
+    private final boolean quote;
+
+    private FactorColumn(IntVector codes, StringVector levels, int offset, boolean quote) {
+      super(offset);
+      this.codes = codes;
+      this.levels = levels;
+      this.quote = quote;
+    }
+
+    @Override
+    void append(int row) {
+      int code = codes.getElementAsInt(offset + row);
+      if(IntVector.isNA(code)) {
+        line.append(na);
+      } else {
+        appendString(levels.getElementAsString(code - 1), quote);
+      }
+    }
+  }
+
+  private class DoubleColumn extends Column {
+    private final DoubleVector vector;
+
+    private DoubleColumn(DoubleVector vector, int offset) {
+      super(offset);
+      this.vector = vector;
+    }
+
+    @Override
+    void append(int row) {
+      double value = vector.getElementAsDouble(offset + row);
+      if(Double.isNaN(value)) {
+        line.append(na);
+      } else {
+        int start = line.length();
+        DoubleFormatter.appendCharacter(line, value);
+        if(dec != '.') {
+          for(int i = start; i != line.length(); ++i) {
+            if(line.charAt(i) == '.') {
+              line.setCharAt(i, dec);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  private class IntColumn extends Column {
+    private final IntVector vector;
+
+    private IntColumn(IntVector vector, int offset) {
+      super(offset);
+      this.vector = vector;
+    }
+
+    @Override
+    void append(int row) {
+      int value = vector.getElementAsInt(offset + row);
+      if(IntVector.isNA(value)) {
+        line.append(na);
+      } else {
+        line.append(value);
+      }
+    }
+  }
+
+  private class LogicalColumn extends Column {
+    private final LogicalVector vector;
+
+    private LogicalColumn(LogicalVector vector, int offset) {
+      super(offset);
+      this.vector = vector;
+    }
+
+    @Override
+    void append(int row) {
+      int value = vector.getElementAsRawLogical(offset + row);
+      if(IntVector.isNA(value)) {
+        line.append(na);
+      } else {
+        line.append(value != 0 ? "TRUE" : "FALSE");
+      }
+    }
+  }
+
+  private class AtomicColumn extends Column {
+    private final AtomicVector vector;
+
+    private AtomicColumn(AtomicVector vector, int offset) {
+      super(offset);
+      this.vector = vector;
+    }
+
+    @Override
+    void append(int row) {
+      if(vector.isElementNA(offset + row)) {
+        line.append(na);
+      } else {
+        line.append(vector.getElementAsString(offset + row));
+      }
+    }
+  }
+}
@@ -0,0 +1,143 @@
+package org.renjin.primitives.io.compress;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Compresses its input by splitting it into fixed-size blocks, compressing each
+ * block as an independent stream on a pool of worker threads, and writing the 
+ * compressed streams to the underlying stream in their original order. 
+ * 
+ * <p>This relies on the format permitting concatenated streams, which is true for
+ * both gzip and bzip2. The number of blocks in flight is bounded, so memory use 
+ * is proportional to the block size and number of threads, and not to the size
+ * of the payload.
+ */
+public class BlockParallelOutputStream extends OutputStream {
+
+  private final OutputStream out;
+  private final Codec codec;
+  private final int level;
+  private final ExecutorService executor;
+  private final int maxBlocksInFlight;
+  
+  private byte[] block;
+  private int blockLength;
+  
+  private final LinkedList<Future<byte[]>> pending = new LinkedList<Future<byte[]>>();
+  
+  private boolean submitted = false;
+  private boolean closed = false;
+  
+  public BlockParallelOutputStream(OutputStream out, Codec codec, int level, 
+      ExecutorService executor, int threads) {
+    this.out = out;
+    this.codec = codec;
+    this.level = level;
+    this.executor = executor;
+    this.maxBlocksInFlight = threads * 2;
+    this.block = new byte[codec.getParallelBlockSize(level)];
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    block[blockLength++] = (byte)b;
+    if(blockLength == block.length) {
+      submitBlock();
+    }
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    while(len > 0) {
+      int count = Math.min(len, block.length - blockLength);
+      System.arraycopy(b, off, block, blockLength, count);
+      blockLength += count;
+      off += count;
+      len -= count;
+      if(blockLength == block.length) {
+        submitBlock();
+      }
+    }
+  }
+  
+  private void submitBlock() throws IOException {
+    final byte[] input = block;
+    final int length = blockLength;
+    pending.add(executor.submit(new Callable<byte[]>() {
+      @Override
+      public byte[] call() throws Exception {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 2);
+        OutputStream stream = codec.compress(compressed, level);
+        stream.write(input, 0, length);
+        stream.close();
+        return compressed.toByteArray();
+      }
+    }));
+    block = new byte[block.length];
+    blockLength = 0;
+    submitted = true;
+    
+    while(pending.size() >= maxBlocksInFlight) {
+      writeNextBlock();
+    }
+  }
+
+  /**
+   * Waits for the oldest pending block to be compressed and
+   * writes it to the underlying stream
+   */
+  private void writeNextBlock() throws IOException {
+    try {
+      out.write(pending.removeFirst().get());
+    } catch (InterruptedException e) {
+      cancelPending();
+      throw new InterruptedIOException();
+    } catch (ExecutionException e) {
+      cancelPending();
+      if(e.getCause() instanceof IOException) {
+        throw (IOException)e.getCause();
+      }
+      throw new IOException(e.getCause().getMessage());
+    }
+  }
+  
+  private void cancelPending() {
+    for(Future<byte[]> future : pending) {
+      future.cancel(true);
+    }
+    pending.clear();
+  }
+
+  /**
+   * Writes all blocks which have been submitted. A partial block is not 
+   * submitted, as that would reduce the compression ratio.
+   */
+  @Override
+  public void flush() throws IOException {
+    while(!pending.isEmpty()) {
+      writeNextBlock();
+    }
+    out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if(closed) {
+      return;
+    }
+    closed = true;
+    if(blockLength > 0 || !submitted) {
+      submitBlock();
+    }
+    flush();
+    out.close();
+  }
+}
@@ -0,0 +1,173 @@
+package org.renjin.primitives.io.compress;
+
+import org.renjin.primitives.io.bz2.CBZip2InputStream;
+import org.renjin.primitives.io.bz2.CBZip2OutputStream;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * The bzip2 format, as written by {@code bzfile()}. 
+ * 
+ * <p>Our {@link CBZip2InputStream} and {@link CBZip2OutputStream} expect the caller 
+ * to handle the "BZ" signature. Bzip2 compresses each block of up to 900k independently, 
+ * and streams can be concatenated, so payloads can be compressed in parallel
+ * without any loss in ratio beyond the additional stream headers.
+ */
+public class Bzip2Codec implements Codec {
+
+  @Override
+  public String getName() {
+    return "bzip2";
+  }
+
+  @Override
+  public boolean matches(byte[] header, int length) {
+    return length >= 3 && header[0] == 'B' && header[1] == 'Z' && header[2] == 'h';
+  }
+
+  @Override
+  public InputStream decompress(InputStream in) throws IOException {
+    return new ConcatenatedInputStream(new BufferedInputStream(in, 64 * 1024));
+  }
+
+  @Override
+  public OutputStream compress(OutputStream out, int level) throws IOException {
+    return new LazyOutputStream(out, Math.max(1, Math.min(9, level)));
+  }
+
+  @Override
+  public int getParallelBlockSize(int level) {
+    return Math.max(1, Math.min(9, level)) * 100000 - 1000;
+  }
+  
+  /**
+   * Defers creating the {@code CBZip2OutputStream} until the first byte is written, 
+   * as it cannot compress an empty stream.
+   */
+  private static class LazyOutputStream extends OutputStream {
+    
+    /**
+     * A complete bzip2 stream with no blocks: the signature, the 
+     * end-of-stream marker, and a combined CRC of zero
+     */
+    private static final byte[] EMPTY_STREAM = { 'B', 'Z', 'h', '9', 
+      0x17, 0x72, 0x45, 0x38, 0x50, (byte)0x90, 0, 0, 0, 0 };
+    
+    private final OutputStream out;
+    private final int blockSize;
+    private CBZip2OutputStream stream;
+    
+    public LazyOutputStream(OutputStream out, int blockSize) {
+      this.out = out;
+      this.blockSize = blockSize;
+    }
+
+    private OutputStream stream() throws IOException {
+      if(stream == null) {
+        out.write('B');
+        out.write('Z');
+        stream = new CBZip2OutputStream(out, blockSize);
+      }
+      return stream;
+    }
+    
+    @Override
+    public void write(int b) throws IOException {
+      stream().write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      if(len > 0) {
+        stream().write(b, off, len);
+      }
+    }
+
+    @Override
+    public void flush() throws IOException {
+      if(stream != null) {
+        stream.flush();
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      if(stream == null) {
+        out.write(EMPTY_STREAM);
+        out.close();
+      } else {
+        stream.close();
+      }
+    }
+  }
+  
+  /**
+   * Reads a sequence of concatenated bzip2 streams
+   */
+  private static class ConcatenatedInputStream extends InputStream {
+    
+    private final InputStream source;
+    private final InputStream in;
+    private CBZip2InputStream stream;
+    
+    public ConcatenatedInputStream(InputStream source) throws IOException {
+      this.source = source;
+      // CBZip2InputStream closes its input when it reaches the end of each stream 
+      this.in = new FilterInputStream(source) {
+        @Override
+        public void close() throws IOException {
+        }
+      };
+      nextStream();
+    }
+
+    private boolean nextStream() throws IOException {
+      int b1 = in.read();
+      int b2 = in.read();
+      if(b1 == 'B' && b2 == 'Z') {
+        stream = new CBZip2InputStream(in);
+        return true;
+      } else {
+        stream = null;
+        return false;
+      }
+    }
+    
+    @Override
+    public int read() throws IOException {
+      while(stream != null) {
+        int b = stream.read();
+        if(b != -1) {
+          return b;
+        }
+        nextStream();
+      }
+      return -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if(len == 0) {
+        return 0;
+      }
+      int count = 0;
+      while(count < len) {
+        int c = read();
+        if(c == -1) {
+          break;
+        }
+        b[off + count++] = (byte)c;
+      }
+      return count == 0 ? -1 : count;
+    }
+
+    @Override
+    public void close() throws IOException {
+      source.close();
+    }
+  }
+}
@@ -0,0 +1,39 @@
+package org.renjin.primitives.io.compress;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A streaming compression format, such as gzip or bzip2.
+ */
+public interface Codec {
+
+  /**
+   * 
+   * @return the name of this codec, as used by R (e.g. "gzip")
+   */
+  String getName();
+  
+  /**
+   * 
+   * @return true if {@code header}, the first bytes of a stream, 
+   * identifies data compressed in this format.
+   */
+  boolean matches(byte[] header, int length);
+  
+  InputStream decompress(InputStream in) throws IOException;
+  
+  /**
+   * @param level the compression level, from 1 (fastest) to 9 (best)
+   */
+  OutputStream compress(OutputStream out, int level) throws IOException;
+  
+  /**
+   * 
+   * @return the number of uncompressed bytes to compress independently in each block 
+   * when compressing in parallel, or zero if this format does not 
+   * support concatenated streams.
+   */
+  int getParallelBlockSize(int level);
+}
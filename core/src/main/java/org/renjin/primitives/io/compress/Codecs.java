@@ -0,0 +1,193 @@
+package org.renjin.primitives.io.compress;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Registry of the available compression {@link Codec}s.
+ * 
+ * <p>Codecs which support concatenated streams compress large payloads in parallel
+ * blocks, using up to {@link #getParallelism()} threads. This defaults to the number 
+ * of available processors, and can be set with the {@code renjin.compress.threads}
+ * system property; a value of 1 disables parallel compression.
+ */
+public class Codecs {
+
+  public static final Codec GZIP = new GzipCodec();
+  public static final Codec BZIP2 = new Bzip2Codec();
+  public static final Codec LZMA = new LzmaCodec();
+  
+  /**
+   * The signature of the .xz container format, which we cannot read
+   */
+  private static final byte[] XZ_MAGIC = { (byte)0xFD, '7', 'z', 'X', 'Z', 0 };
+  
+  /**
+   * The number of bytes needed to identify any registered format
+   */
+  private static final int HEADER_SIZE = 16;
+  
+  private static final Map<String, Codec> CODECS = new LinkedHashMap<String, Codec>();
+  
+  private static int parallelism = Integer.getInteger("renjin.compress.threads", 
+      Runtime.getRuntime().availableProcessors());
+  
+  private static ExecutorService executor;
+  
+  static {
+    register(GZIP);
+    register(BZIP2);
+    register(LZMA);
+  }
+  
+  private Codecs() { }
+  
+  public static synchronized void register(Codec codec) {
+    CODECS.put(codec.getName(), codec);
+  }
+  
+  /**
+   * 
+   * @return the codec with the given name, or {@code null} if there is no such codec
+   */
+  public static synchronized Codec get(String name) {
+    return CODECS.get(name);
+  }
+  
+  /**
+   * 
+   * @return the codec matching the first bytes of {@code header}, or 
+   * {@code null} if the format is not recognized
+   * @throws IOException if {@code header} is the start of an .xz stream
+   */
+  public static synchronized Codec detect(byte[] header, int length) throws IOException {
+    if(isXz(header, length)) {
+      throw new IOException("the .xz format is not supported");
+    }
+    for(Codec codec : CODECS.values()) {
+      if(codec.matches(header, length)) {
+        return codec;
+      }
+    }
+    return null;
+  }
+  
+  private static boolean isXz(byte[] header, int length) {
+    if(length < XZ_MAGIC.length) {
+      return false;
+    }
+    for(int i=0;i!=XZ_MAGIC.length;++i) {
+      if(header[i] != XZ_MAGIC[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+  
+  /**
+   * Detects the format of a stream, without consuming any of it.
+   * 
+   * @param in a stream which supports {@code mark()}
+   * @return the codec matching the start of the stream, or 
+   * {@code null} if the format is not recognized
+   */
+  public static Codec detect(InputStream in) throws IOException {
+    byte[] header = new byte[HEADER_SIZE];
+    in.mark(header.length);
+    int length = 0;
+    while(length < header.length) {
+      int count = in.read(header, length, header.length - length);
+      if(count == -1) {
+        break;
+      }
+      length += count;
+    }
+    in.reset();
+    return detect(header, length);
+  }
+  
+  /**
+   * Wraps {@code in} in the decompressor for its format, or returns it as-is 
+   * if it is not compressed in a recognized format.
+   * 
+   * @param in a stream which supports {@code mark()}
+   */
+  public static InputStream decompressIfCompressed(InputStream in) throws IOException {
+    Codec codec = detect(in);
+    if(codec == null) {
+      return in;
+    } else {
+      return codec.decompress(in);
+    }
+  }
+  
+  public static synchronized int getParallelism() {
+    return parallelism;
+  }
+  
+  public static synchronized void setParallelism(int threads) {
+    parallelism = Math.max(1, threads);
+  }
+  
+  private static synchronized ExecutorService getExecutor() {
+    if(executor == null) {
+      executor = Executors.newCachedThreadPool(new ThreadFactory() {
+        private int count = 0;
+        
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, "renjin-compress-" + (count++));
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return executor;
+  }
+  
+  /**
+   * Creates a stream which compresses to {@code out}, compressing in parallel
+   * blocks if the codec supports it.
+   */
+  public static OutputStream compress(Codec codec, OutputStream out, int level) throws IOException {
+    int threads = getParallelism();
+    if(threads > 1 && codec.getParallelBlockSize(level) > 0) {
+      return new BlockParallelOutputStream(out, codec, level, getExecutor(), threads);
+    } else {
+      return codec.compress(out, level);
+    }
+  }
+  
+  public static byte[] compress(Codec codec, byte[] bytes, int offset, int length, int level) throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream(Math.max(32, length / 4));
+    OutputStream out;
+    if(length > codec.getParallelBlockSize(level)) {
+      out = compress(codec, baos, level);
+    } else {
+      out = codec.compress(baos, level);
+    }
+    out.write(bytes, offset, length);
+    out.close();
+    return baos.toByteArray();
+  }
+  
+  public static byte[] decompress(Codec codec, byte[] bytes, int offset, int length) throws IOException {
+    InputStream in = codec.decompress(new ByteArrayInputStream(bytes, offset, length));
+    ByteArrayOutputStream out = new ByteArrayOutputStream(length * 4);
+    byte[] buffer = new byte[64 * 1024];
+    int count;
+    while((count = in.read(buffer)) != -1) {
+      out.write(buffer, 0, count);
+    }
+    in.close();
+    return out.toByteArray();
+  }
+}
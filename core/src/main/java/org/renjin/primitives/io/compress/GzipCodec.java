@@ -0,0 +1,203 @@
+package org.renjin.primitives.io.compress;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * The gzip format, as written by {@code gzfile()}. 
+ * 
+ * <p>Concatenated gzip members form a valid gzip stream, so payloads can be 
+ * compressed in independent blocks. {@code java.util.zip.GZIPInputStream} only reads
+ * the first member on Java 6, so we read the members ourselves.
+ */
+public class GzipCodec implements Codec {
+
+  public static final int GZIP_MAGIC_BYTE1 = 31;
+  public static final int GZIP_MAGIC_BYTE2 = 139;
+  
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  @Override
+  public String getName() {
+    return "gzip";
+  }
+
+  @Override
+  public boolean matches(byte[] header, int length) {
+    return length >= 2 && 
+        (header[0] & 0xFF) == GZIP_MAGIC_BYTE1 && 
+        (header[1] & 0xFF) == GZIP_MAGIC_BYTE2;
+  }
+
+  @Override
+  public InputStream decompress(InputStream in) throws IOException {
+    return new ConcatenatedInputStream(in);
+  }
+
+  @Override
+  public OutputStream compress(OutputStream out, final int level) throws IOException {
+    return new GZIPOutputStream(out, BUFFER_SIZE) {
+      {
+        def.setLevel(level);
+      }
+    };
+  }
+
+  @Override
+  public int getParallelBlockSize(int level) {
+    return 1024 * 1024;
+  }
+
+  /**
+   * Reads a sequence of concatenated gzip members, verifying the
+   * CRC and length in each member's trailer. Anything following the last member
+   * which does not start with the gzip signature is ignored, as in gzip itself.
+   */
+  private static class ConcatenatedInputStream extends InputStream {
+
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    private final PushbackInputStream in;
+    private final Inflater inflater = new Inflater(true);
+    private final CRC32 crc = new CRC32();
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int bufferLength;
+    private boolean eof;
+
+    public ConcatenatedInputStream(InputStream in) throws IOException {
+      this.in = new PushbackInputStream(in, BUFFER_SIZE);
+      readHeader();
+    }
+
+    private void readHeader() throws IOException {
+      if(readUnsignedByte() != GZIP_MAGIC_BYTE1 || readUnsignedByte() != GZIP_MAGIC_BYTE2) {
+        throw new ZipException("Not in GZIP format");
+      }
+      if(readUnsignedByte() != 8) {
+        throw new ZipException("Unsupported compression method");
+      }
+      int flags = readUnsignedByte();
+      // modification time, extra flags and OS
+      skipBytes(6);
+      if((flags & FEXTRA) != 0) {
+        skipBytes(readUnsignedShort());
+      }
+      if((flags & FNAME) != 0) {
+        skipString();
+      }
+      if((flags & FCOMMENT) != 0) {
+        skipString();
+      }
+      if((flags & FHCRC) != 0) {
+        skipBytes(2);
+      }
+      inflater.reset();
+      crc.reset();
+    }
+
+    /**
+     * Reads the trailer of the current member, and the header of the next member if any
+     */
+    private void nextMember() throws IOException {
+      int remaining = inflater.getRemaining();
+      if(remaining > 0) {
+        in.unread(buffer, bufferLength - remaining, remaining);
+      }
+      if(readInt() != (int)crc.getValue()) {
+        throw new ZipException("Corrupt GZIP trailer");
+      }
+      if(readInt() != (int)inflater.getBytesWritten()) {
+        throw new ZipException("Corrupt GZIP trailer");
+      }
+      int b1 = in.read();
+      int b2 = b1 == -1 ? -1 : in.read();
+      if(b1 == GZIP_MAGIC_BYTE1 && b2 == GZIP_MAGIC_BYTE2) {
+        in.unread(b2);
+        in.unread(b1);
+        readHeader();
+      } else {
+        eof = true;
+      }
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] b = new byte[1];
+      return read(b, 0, 1) == -1 ? -1 : (b[0] & 0xFF);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if(len == 0) {
+        return 0;
+      }
+      while(!eof) {
+        int count;
+        try {
+          count = inflater.inflate(b, off, len);
+        } catch (DataFormatException e) {
+          throw new ZipException(e.getMessage());
+        }
+        if(count > 0) {
+          crc.update(b, off, count);
+          return count;
+        }
+        if(inflater.finished()) {
+          nextMember();
+        } else if(inflater.needsInput()) {
+          bufferLength = in.read(buffer, 0, buffer.length);
+          if(bufferLength == -1) {
+            throw new EOFException("Unexpected end of ZLIB input stream");
+          }
+          inflater.setInput(buffer, 0, bufferLength);
+        } else if(inflater.needsDictionary()) {
+          throw new ZipException("Unexpected preset dictionary in GZIP stream");
+        }
+      }
+      return -1;
+    }
+
+    private int readUnsignedByte() throws IOException {
+      int b = in.read();
+      if(b == -1) {
+        throw new EOFException();
+      }
+      return b;
+    }
+
+    private int readUnsignedShort() throws IOException {
+      return readUnsignedByte() | (readUnsignedByte() << 8);
+    }
+
+    private int readInt() throws IOException {
+      return readUnsignedShort() | (readUnsignedShort() << 16);
+    }
+
+    private void skipBytes(int count) throws IOException {
+      for(int i=0;i!=count;++i) {
+        readUnsignedByte();
+      }
+    }
+
+    private void skipString() throws IOException {
+      while(readUnsignedByte() != 0) { }
+    }
+
+    @Override
+    public void close() throws IOException {
+      inflater.end();
+      in.close();
+    }
+  }
+}
@@ -0,0 +1,120 @@
+package org.renjin.primitives.io.compress;
+
+import org.renjin.primitives.io.lzma.LzmaDecoder;
+import org.renjin.primitives.io.lzma.LzmaEncoder;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * LZMA compression in the "LZMA alone" (.lzma) format, which {@code xzfile()} can read.
+ * 
+ * <p>We only have the raw LZMA coder from the 7-zip SDK, and not the LZMA2 coder 
+ * needed for the .xz container format, so we cannot read or write .xz files. The 
+ * .lzma format consists of the coder properties byte, the dictionary size as a 4-byte
+ * little-endian integer, the uncompressed size as an 8-byte little-endian integer 
+ * (or -1 if unknown), and then the compressed data.
+ * 
+ * <p>The SDK's coders push their output to a stream rather than being pulled, so they
+ * run on a background thread through a {@link PipedCoder}.
+ */
+public class LzmaCodec implements Codec {
+
+  /**
+   * The coder properties byte written by our encoder's
+   * default settings (lc=3, lp=0, pb=2)
+   */
+  private static final int DEFAULT_PROPERTIES = 0x5D;
+  
+  private static final int HEADER_SIZE = 13;
+  
+  /**
+   * Dictionary sizes for each compression level, matching xz's presets
+   */
+  private static final int[] DICTIONARY_SIZES = {
+    1 << 18, 1 << 20, 1 << 21, 1 << 22, 1 << 22, 
+    1 << 23, 1 << 23, 1 << 24, 1 << 25, 1 << 26 };
+  
+  @Override
+  public String getName() {
+    return "lzma";
+  }
+
+  /**
+   * The .lzma format has no signature, so, like xz, we only accept the default
+   * properties, a dictionary size of 2^n or 2^n + 2^(n-1), and an uncompressed 
+   * size which is either unknown or less than 256 GiB.
+   */
+  @Override
+  public boolean matches(byte[] header, int length) {
+    if(length < HEADER_SIZE || (header[0] & 0xFF) != DEFAULT_PROPERTIES) {
+      return false;
+    }
+    int dictionarySize = (int)readLittleEndian(header, 1, 4);
+    int highestBit = Integer.highestOneBit(dictionarySize);
+    if(highestBit == 0 || 
+        (dictionarySize != highestBit && dictionarySize != (highestBit | (highestBit >>> 1)))) {
+      return false;
+    }
+    long size = readLittleEndian(header, 5, 8);
+    return size == -1 || (size >>> 38) == 0;
+  }
+  
+  private static long readLittleEndian(byte[] bytes, int offset, int length) {
+    long value = 0;
+    for(int i=0;i!=length;++i) {
+      value |= ((long)(bytes[offset + i] & 0xFF)) << (8 * i);
+    }
+    return value;
+  }
+
+  @Override
+  public InputStream decompress(InputStream in) throws IOException {
+    final DataInputStream compressed = new DataInputStream(new BufferedInputStream(in, 64 * 1024));
+    final byte[] properties = new byte[LzmaEncoder.kPropSize];
+    compressed.readFully(properties);
+    long size = 0;
+    for(int i=0;i!=8;++i) {
+      size |= ((long)compressed.readUnsignedByte()) << (8 * i);
+    }
+    final long outSize = size;
+    final LzmaDecoder decoder = new LzmaDecoder();
+    if(!decoder.SetDecoderProperties(properties)) {
+      throw new IOException("invalid LZMA properties");
+    }
+    return new PipedCoder() {
+      @Override
+      protected void code(InputStream in, OutputStream out) throws IOException {
+        if(!decoder.Code(in, out, outSize)) {
+          throw new IOException("LZMA decompression error");
+        }
+      }
+    }.decode(compressed);
+  }
+  
+  @Override
+  public OutputStream compress(OutputStream out, int level) throws IOException {
+    final LzmaEncoder encoder = new LzmaEncoder();
+    encoder.SetDictionarySize(DICTIONARY_SIZES[Math.max(0, Math.min(9, level))]);
+    encoder.SetEndMarkerMode(true);
+    encoder.WriteCoderProperties(out);
+    for(int i=0;i!=8;++i) {
+      out.write(0xFF);
+    }
+    return new PipedCoder() {
+      @Override
+      protected void code(InputStream in, OutputStream out) throws IOException {
+        encoder.Code(in, out, -1, -1);
+        out.flush();
+      }
+    }.encode(out);
+  }
+
+  @Override
+  public int getParallelBlockSize(int level) {
+    return 0;
+  }
+}
@@ -0,0 +1,118 @@
+package org.renjin.primitives.io.compress;
+
+import org.renjin.eval.Context;
+import org.renjin.eval.EvalException;
+import org.renjin.primitives.Warning;
+import org.renjin.primitives.annotations.Current;
+import org.renjin.primitives.annotations.Primitive;
+import org.renjin.sexp.Null;
+import org.renjin.sexp.RawVector;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * In-memory compression of raw vectors: {@code memCompress()} and {@code memDecompress()}.
+ * 
+ * <p>As in R, the "gzip" type compresses to the zlib format, rather than to a gzip 
+ * stream, although both are accepted when decompressing. We cannot read or write
+ * the .xz format, so the "xz" type can only decompress the older .lzma format.
+ */
+public class MemCompression {
+
+  private static final int TYPE_NONE = 1;
+  private static final int TYPE_GZIP = 2;
+  private static final int TYPE_BZIP2 = 3;
+  private static final int TYPE_XZ = 4;
+  private static final int TYPE_UNKNOWN = 5;
+  
+  private static final int ZLIB_MAGIC = 0x78;
+  
+  private MemCompression() { }
+  
+  /**
+   * @param type 1 for "none", 2 for "gzip", 3 for "bzip2" and 4 for "xz"
+   */
+  @Primitive
+  public static RawVector memCompress(RawVector from, int type) throws IOException {
+    byte[] bytes = from.getAsByteArray();
+    switch(type) {
+    case TYPE_NONE:
+      return from;
+    case TYPE_GZIP:
+      return toRaw(deflate(bytes));
+    case TYPE_BZIP2:
+      return toRaw(Codecs.compress(Codecs.BZIP2, bytes, 0, bytes.length, 9));
+    case TYPE_XZ:
+      throw new EvalException("xz compression is not supported");
+    default:
+      throw new EvalException("invalid '%s' argument", "type");
+    }
+  }
+  
+  /**
+   * @param type 1 for "none", 2 for "gzip", 3 for "bzip2", 4 for "xz", and 5 if
+   * the type should be detected from the data itself
+   */
+  @Primitive
+  public static RawVector memDecompress(@Current Context context, RawVector from, int type) throws IOException {
+    byte[] bytes = from.getAsByteArray();
+    if(type == TYPE_UNKNOWN) {
+      Codec codec = Codecs.detect(bytes, bytes.length);
+      if(codec != null) {
+        return toRaw(Codecs.decompress(codec, bytes, 0, bytes.length));
+      } else if(bytes.length > 0 && (bytes[0] & 0xFF) == ZLIB_MAGIC) {
+        return toRaw(inflate(bytes));
+      } else {
+        Warning.invokeWarning(context, "unknown compression, assuming none");
+        return from;
+      }
+    }
+    switch(type) {
+    case TYPE_NONE:
+      return from;
+    case TYPE_GZIP:
+      if(Codecs.GZIP.matches(bytes, bytes.length)) {
+        return toRaw(Codecs.decompress(Codecs.GZIP, bytes, 0, bytes.length));
+      } else {
+        return toRaw(inflate(bytes));
+      }
+    case TYPE_BZIP2:
+      return toRaw(Codecs.decompress(Codecs.BZIP2, bytes, 0, bytes.length));
+    case TYPE_XZ:
+      if(Codecs.detect(bytes, bytes.length) != Codecs.LZMA) {
+        throw new EvalException("only the .lzma format can be decompressed with type 'xz'");
+      }
+      return toRaw(Codecs.decompress(Codecs.LZMA, bytes, 0, bytes.length));
+    default:
+      throw new EvalException("invalid '%s' argument", "type");
+    }
+  }
+  
+  private static RawVector toRaw(byte[] bytes) {
+    return new RawVector(bytes, bytes.length, Null.INSTANCE);
+  }
+  
+  private static byte[] deflate(byte[] bytes) throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream(Math.max(32, bytes.length / 4));
+    DeflaterOutputStream out = new DeflaterOutputStream(baos);
+    out.write(bytes);
+    out.close();
+    return baos.toByteArray();
+  }
+  
+  private static byte[] inflate(byte[] bytes) throws IOException {
+    InputStream in = new InflaterInputStream(new ByteArrayInputStream(bytes));
+    ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length * 4);
+    byte[] buffer = new byte[64 * 1024];
+    int count;
+    while((count = in.read(buffer)) != -1) {
+      out.write(buffer, 0, count);
+    }
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,143 @@
+package org.renjin.primitives.io.compress;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+
+/**
+ * Adapts a coder which reads all of its input from an {@code InputStream} and
+ * pushes all of its output to an {@code OutputStream}, like the LZMA SDK's encoder
+ * and decoder, to the streams expected by connections, by running the coder on
+ * a background thread connected through a pipe.
+ */
+abstract class PipedCoder {
+
+  private static final int PIPE_SIZE = 256 * 1024;
+
+  private Thread thread;
+  private volatile IOException error;
+
+  /**
+   * Runs the coder to completion
+   */
+  protected abstract void code(InputStream in, OutputStream out) throws IOException;
+
+  /**
+   * Starts decoding from {@code compressed} on a background thread.
+   *
+   * @return a stream from which the decoded bytes can be read
+   */
+  public InputStream decode(final InputStream compressed) throws IOException {
+    final PipedInputStream pipeIn = new PipedInputStream(PIPE_SIZE);
+    final OutputStream pipeOut = new FlushingOutputStream(new PipedOutputStream(pipeIn));
+    start(compressed, pipeOut);
+
+    return new FilterInputStream(pipeIn) {
+      @Override
+      public int read() throws IOException {
+        int b = super.read();
+        if(b == -1) {
+          checkError();
+        }
+        return b;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+        int count = super.read(b, off, len);
+        if(count == -1) {
+          checkError();
+        }
+        return count;
+      }
+
+      @Override
+      public void close() throws IOException {
+        super.close();
+        compressed.close();
+      }
+    };
+  }
+
+  /**
+   * Starts encoding to {@code compressed} on a background thread.
+   *
+   * @return a stream to which the bytes to encode should be written. Closing
+   * the stream waits for the coder to finish and closes {@code compressed}.
+   */
+  public OutputStream encode(final OutputStream compressed) throws IOException {
+    PipedInputStream pipeIn = new PipedInputStream(PIPE_SIZE);
+    OutputStream pipeOut = new FlushingOutputStream(new PipedOutputStream(pipeIn));
+    start(pipeIn, compressed);
+
+    return new BufferedOutputStream(pipeOut, 64 * 1024) {
+      @Override
+      public void close() throws IOException {
+        super.close();
+        join();
+        checkError();
+        compressed.close();
+      }
+    };
+  }
+
+  private void start(final InputStream in, final OutputStream out) {
+    thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          code(in, out);
+        } catch(IOException e) {
+          error = e;
+        } catch(RuntimeException e) {
+          error = new IOException(e.getMessage());
+        } finally {
+          try {
+            out.close();
+          } catch(IOException e) {
+            // ignore: the other end has already closed the pipe
+          }
+        }
+      }
+    }, "renjin-codec");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  private void join() throws IOException {
+    try {
+      thread.join();
+    } catch(InterruptedException e) {
+      throw new InterruptedIOException();
+    }
+  }
+
+  private void checkError() throws IOException {
+    if(error != null) {
+      throw error;
+    }
+  }
+
+  /**
+   * Flushes the pipe after each write, otherwise the reader
+   * is only woken once per second
+   */
+  private static class FlushingOutputStream extends FilterOutputStream {
+
+    public FlushingOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      out.flush();
+    }
+  }
+}
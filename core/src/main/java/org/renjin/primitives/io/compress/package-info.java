@@ -0,0 +1,6 @@
+/**
+ * Compression codecs used by compressed file connections and 
+ * {@code memCompress()}/{@code memDecompress()}
+ */
+package org.renjin.primitives.io.compress;
+
@@ -1,20 +1,35 @@
 package org.renjin.primitives.io.connections;
 
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
 
 public abstract class AbstractConnection implements Connection {
 
   private PushbackBufferedReader reader;
   private PrintWriter writer;
+  private BufferedLineWriter lineWriter;
+  
+  private Charset charset = Charset.defaultCharset();
+  
+  /**
+   * Sets the encoding used to read and write text from this connection.
+   * This must be set before the connection is opened for text.
+   */
+  public void setCharset(Charset charset) {
+    this.charset = charset;
+  }
+  
+  public Charset getCharset() {
+    return charset;
+  }
   
   @Override
   public final PushbackBufferedReader getReader() throws IOException {
     if(this.reader == null) {
-      this.reader =
-          new PushbackBufferedReader(
-          new InputStreamReader(getInputStream()));
+      this.reader = new PushbackBufferedReader(getInputStream(), charset);
     }
     return this.reader;
   }
@@ -22,10 +37,34 @@ public abstract class AbstractConnection implements Connection {
   @Override
   public final PrintWriter getPrintWriter() throws IOException {
     if(writer == null) {
-      this.writer = new PrintWriter(getOutputStream());
+      this.writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), charset));
     }
     return this.writer;
   }
+  
+  /**
+   * 
+   * @return a writer which encodes whole batches of lines directly to this 
+   * connection's output stream. Any output pending in this connection's 
+   * {@code PrintWriter} is flushed first so that the ordering of output is preserved.
+   */
+  public final BufferedLineWriter getLineWriter() throws IOException {
+    flushPrintWriter();
+    if(lineWriter == null) {
+      this.lineWriter = new BufferedLineWriter(Channels.newChannel(getOutputStream()), charset);
+    }
+    return lineWriter;
+  }
+
+  /**
+   * Flushes any characters buffered by the {@link PrintWriter} through to
+   * the underlying {@code OutputStream}
+   */
+  protected final void flushPrintWriter() {
+    if(writer != null) {
+      writer.flush();
+    }
+  }
 
   @Override
   public void close() throws IOException {
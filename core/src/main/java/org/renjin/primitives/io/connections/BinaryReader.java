@@ -0,0 +1,295 @@
+package org.renjin.primitives.io.connections;
+
+import com.google.common.base.Charsets;
+import org.apache.commons.math.complex.Complex;
+import org.renjin.sexp.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Decodes binary data, as read by {@code readBin()}, directly from
+ * {@link ByteBuffer}s into the backing arrays of R vectors.
+ *
+ * <p>Large reads from files on the local file system are served by mapping
+ * the requested region of the file into memory, so that elements are decoded
+ * in bulk without first being copied through a heap buffer. Reads from other
+ * connections are made through a single reusable heap buffer.
+ */
+public class BinaryReader {
+
+  /**
+   * Reads of at least this many bytes from a {@code FileChannel} are
+   * memory-mapped.
+   */
+  private static final int MAP_THRESHOLD = 1024 * 1024;
+
+  /**
+   * Maximum number of bytes to decode at once, so that we don't
+   * need to allocate or map very large buffers
+   */
+  private static final int MAX_CHUNK_SIZE = 64 * 1024 * 1024;
+
+  /**
+   * Maximum number of bytes to copy at once through the heap buffer
+   */
+  private static final int MAX_HEAP_CHUNK_SIZE = 1024 * 1024;
+
+  private final ByteOrder order;
+
+  private ReadableByteChannel channel;
+  private FileChannel fileChannel;
+  private ByteBuffer source;
+
+  private ByteBuffer heapBuffer;
+
+  private BinaryReader(ByteOrder order) {
+    this.order = order;
+  }
+
+  public static BinaryReader forChannel(FileChannel channel, ByteOrder order) {
+    BinaryReader reader = new BinaryReader(order);
+    reader.channel = channel;
+    reader.fileChannel = channel;
+    return reader;
+  }
+
+  public static BinaryReader forStream(InputStream in, ByteOrder order) {
+    BinaryReader reader = new BinaryReader(order);
+    reader.channel = Channels.newChannel(in);
+    return reader;
+  }
+
+  /**
+   * Creates a reader which decodes elements directly from {@code buffer},
+   * advancing its position as they are read.
+   */
+  public static BinaryReader forBuffer(ByteBuffer buffer, ByteOrder order) {
+    BinaryReader reader = new BinaryReader(order);
+    reader.source = buffer;
+    return reader;
+  }
+
+  /**
+   * Creates a reader for the given connection, opening it for input if it
+   * is not already open.
+   */
+  public static BinaryReader forConnection(Connection conn, ByteOrder order) throws IOException {
+    if(conn instanceof RawConnection) {
+      return forBuffer(((RawConnection) conn).getBuffer(), order);
+    }
+    InputStream in = conn.getInputStream();
+    if(conn instanceof FileConnection && ((FileConnection) conn).isSeekable()) {
+      FileChannel channel = ((FileConnection) conn).getChannel();
+      if(channel != null) {
+        return forChannel(channel, order);
+      }
+    }
+    return forStream(in, order);
+  }
+
+  /**
+   *
+   * @return the maximum number of elements of {@code size} bytes which could
+   * be read, given that {@code n} were requested.
+   */
+  private int maxElements(int n, int size) throws IOException {
+    long remaining;
+    if(source != null) {
+      remaining = source.remaining();
+    } else if(fileChannel != null) {
+      remaining = fileChannel.size() - fileChannel.position();
+    } else {
+      return n;
+    }
+    return (int)Math.max(0, Math.min(n, remaining / size));
+  }
+
+  /**
+   * Fetches the next chunk of whole elements from the source.
+   *
+   * @param size the size of each element, in bytes
+   * @param elementsWanted the maximum number of elements to return
+   * @return a buffer containing zero or more whole elements, in the
+   * requested byte order
+   */
+  private ByteBuffer nextChunk(int size, int elementsWanted) throws IOException {
+    int bytesWanted = Math.min(elementsWanted, MAX_CHUNK_SIZE / size) * size;
+    ByteBuffer chunk;
+    if(source != null) {
+      int length = Math.min(bytesWanted, source.remaining() - (source.remaining() % size));
+      chunk = source.slice();
+      chunk.limit(length);
+      source.position(source.position() + length);
+
+    } else if(fileChannel != null && bytesWanted >= MAP_THRESHOLD) {
+      long position = fileChannel.position();
+      long available = fileChannel.size() - position;
+      int length = (int)Math.min(bytesWanted, available - (available % size));
+      chunk = fileChannel.map(FileChannel.MapMode.READ_ONLY, position, length);
+      fileChannel.position(position + length);
+
+    } else {
+      chunk = readFully(Math.min(bytesWanted, (MAX_HEAP_CHUNK_SIZE / size) * size));
+      chunk.limit(chunk.limit() - (chunk.limit() % size));
+    }
+    return chunk.order(order);
+  }
+
+  /**
+   * Reads from the channel until {@code length} bytes have been read
+   * or the end of the stream has been reached.
+   */
+  private ByteBuffer readFully(int length) throws IOException {
+    if(heapBuffer == null || heapBuffer.capacity() < length) {
+      heapBuffer = ByteBuffer.allocate(length);
+    }
+    heapBuffer.clear();
+    heapBuffer.limit(length);
+    while(heapBuffer.hasRemaining()) {
+      if(channel.read(heapBuffer) == -1) {
+        break;
+      }
+    }
+    heapBuffer.flip();
+    return heapBuffer;
+  }
+
+  private int readByte() throws IOException {
+    ByteBuffer buffer = nextChunk(1, 1);
+    if(!buffer.hasRemaining()) {
+      return -1;
+    }
+    return buffer.get() & 0xFF;
+  }
+
+  public DoubleVector readDoubles(int n, int size) throws IOException {
+    double[] values = new double[maxElements(n, size)];
+    int count = 0;
+    while(count < values.length) {
+      ByteBuffer chunk = nextChunk(size, values.length - count);
+      int elements = chunk.remaining() / size;
+      if(elements == 0) {
+        break;
+      }
+      if(size == 8) {
+        chunk.asDoubleBuffer().get(values, count, elements);
+      } else {
+        FloatBuffer floats = chunk.asFloatBuffer();
+        for(int i=0;i!=elements;++i) {
+          values[count+i] = floats.get(i);
+        }
+      }
+      count += elements;
+    }
+    return new DoubleArrayVector(values, count, Null.INSTANCE);
+  }
+
+  public IntVector readIntegers(int n, int size, boolean signed) throws IOException {
+    int values[] = readIntArray(n, size, signed);
+    return new IntArrayVector(values, Null.INSTANCE);
+  }
+
+  public LogicalVector readLogicals(int n, int size) throws IOException {
+    int values[] = readIntArray(n, size, true);
+    return new LogicalArrayVector(values, Null.INSTANCE);
+  }
+
+  private int[] readIntArray(int n, int size, boolean signed) throws IOException {
+    int[] values = new int[maxElements(n, size)];
+    int count = 0;
+    while(count < values.length) {
+      ByteBuffer chunk = nextChunk(size, values.length - count);
+      int elements = chunk.remaining() / size;
+      if(elements == 0) {
+        break;
+      }
+      switch(size) {
+      case 1:
+        for(int i=0;i!=elements;++i) {
+          byte b = chunk.get(i);
+          values[count+i] = signed ? b : (b & 0xFF);
+        }
+        break;
+      case 2:
+        ShortBuffer shorts = chunk.asShortBuffer();
+        for(int i=0;i!=elements;++i) {
+          short s = shorts.get(i);
+          values[count+i] = signed ? s : (s & 0xFFFF);
+        }
+        break;
+      case 4:
+        chunk.asIntBuffer().get(values, count, elements);
+        break;
+      case 8:
+        LongBuffer longs = chunk.asLongBuffer();
+        for(int i=0;i!=elements;++i) {
+          values[count+i] = (int)longs.get(i);
+        }
+        break;
+      default:
+        throw new IllegalArgumentException("size: " + size);
+      }
+      count += elements;
+    }
+    if(count < values.length) {
+      int[] read = new int[count];
+      System.arraycopy(values, 0, read, 0, count);
+      return read;
+    }
+    return values;
+  }
+
+  public ComplexVector readComplex(int n, int size) throws IOException {
+    DoubleVector parts = readDoubles(n * 2, size / 2);
+    ComplexVector.Builder result = new ComplexVector.Builder(0, parts.length() / 2);
+    for(int i=0;i+1<parts.length();i+=2) {
+      result.add(new Complex(parts.getElementAsDouble(i), parts.getElementAsDouble(i+1)));
+    }
+    return result.build();
+  }
+
+  public RawVector readRaw(int n) throws IOException {
+    byte[] values = new byte[maxElements(n, 1)];
+    int count = 0;
+    while(count < values.length) {
+      ByteBuffer chunk = nextChunk(1, values.length - count);
+      int length = chunk.remaining();
+      if(length == 0) {
+        break;
+      }
+      chunk.get(values, count, length);
+      count += length;
+    }
+    return new RawVector(values, count, Null.INSTANCE);
+  }
+
+  /**
+   * Reads {@code n} nul-terminated strings
+   */
+  public StringVector readStrings(int n) throws IOException {
+    StringVector.Builder result = new StringVector.Builder();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    for(int i=0;i!=n;++i) {
+      bytes.reset();
+      int b;
+      while((b = readByte()) > 0) {
+        bytes.write(b);
+      }
+      if(b == -1 && bytes.size() == 0) {
+        break;
+      }
+      result.add(new String(bytes.toByteArray(), Charsets.UTF_8));
+    }
+    return result.build();
+  }
+}
@@ -0,0 +1,222 @@
+package org.renjin.primitives.io.connections;
+
+import com.google.common.base.Charsets;
+import org.apache.commons.math.complex.Complex;
+import org.renjin.eval.EvalException;
+import org.renjin.sexp.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Encodes the elements of R vectors, as written by {@code writeBin()} and
+ * {@code writeChar()}, into a reusable direct {@link ByteBuffer} which is
+ * flushed to the underlying channel as it fills.
+ */
+public class BinaryWriter {
+
+  private static final int BUFFER_SIZE = 256 * 1024;
+
+  private final WritableByteChannel channel;
+  private final ByteBuffer buffer;
+  private long bytesWritten;
+
+  public BinaryWriter(WritableByteChannel channel, ByteOrder order) {
+    this.channel = channel;
+    this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    this.buffer.order(order);
+  }
+
+  public BinaryWriter(OutputStream out, ByteOrder order) {
+    this(Channels.newChannel(out), order);
+  }
+
+  /**
+   * Creates a writer for the given connection, opening it for output if it
+   * is not already open.
+   */
+  public static BinaryWriter forConnection(Connection conn, ByteOrder order) throws IOException {
+    OutputStream out = conn.getOutputStream();
+    if(conn instanceof FileConnection && ((FileConnection) conn).isSeekable()) {
+      FileChannel channel = ((FileConnection) conn).getChannel();
+      if(channel != null) {
+        return new BinaryWriter(channel, order);
+      }
+    }
+    return new BinaryWriter(out, order);
+  }
+
+  /**
+   * Ensures that at least {@code size} bytes are available in the buffer,
+   * flushing its current contents to the channel if necessary
+   */
+  private void ensureRemaining(int size) throws IOException {
+    if(buffer.remaining() < size) {
+      flush();
+    }
+  }
+
+  public void flush() throws IOException {
+    buffer.flip();
+    bytesWritten += buffer.remaining();
+    while(buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  /**
+   * @return the number of bytes flushed to the channel so far
+   */
+  public long getBytesWritten() {
+    return bytesWritten;
+  }
+
+  /**
+   * Writes the elements of {@code vector}, each encoded to {@code size} bytes.
+   *
+   * @param size the size of each element in bytes, or {@code IntVector.NA} for
+   * the natural size of the vector's type.
+   */
+  public void writeVector(Vector vector, int size) throws IOException {
+    if(vector instanceof DoubleVector) {
+      writeDoubles(vector, IntVector.isNA(size) ? 8 : size);
+    } else if(vector instanceof IntVector) {
+      writeIntegers(vector, IntVector.isNA(size) ? 4 : size);
+    } else if(vector instanceof LogicalVector) {
+      writeLogicals(vector, IntVector.isNA(size) ? 4 : size);
+    } else if(vector instanceof ComplexVector) {
+      writeComplex((ComplexVector) vector, IntVector.isNA(size) ? 16 : size);
+    } else if(vector instanceof RawVector) {
+      writeRaw((RawVector) vector);
+    } else if(vector instanceof StringVector) {
+      writeStrings((StringVector) vector);
+    } else {
+      throw new EvalException("can only write vector objects");
+    }
+  }
+
+  public void writeDoubles(Vector vector, int size) throws IOException {
+    if(size != 4 && size != 8) {
+      throw new EvalException("size %d is unknown on this machine", size);
+    }
+    int length = vector.length();
+    for(int i=0;i!=length;++i) {
+      ensureRemaining(size);
+      if(size == 8) {
+        buffer.putDouble(vector.getElementAsDouble(i));
+      } else {
+        buffer.putFloat((float)vector.getElementAsDouble(i));
+      }
+    }
+  }
+
+  public void writeIntegers(Vector vector, int size) throws IOException {
+    checkIntegerSize(size);
+    int length = vector.length();
+    for(int i=0;i!=length;++i) {
+      putInt(vector.getElementAsInt(i), size);
+    }
+  }
+
+  public void writeLogicals(Vector vector, int size) throws IOException {
+    checkIntegerSize(size);
+    int length = vector.length();
+    for(int i=0;i!=length;++i) {
+      putInt(vector.getElementAsRawLogical(i), size);
+    }
+  }
+
+  private void checkIntegerSize(int size) {
+    if(size != 1 && size != 2 && size != 4 && size != 8) {
+      throw new EvalException("size %d is unknown on this machine", size);
+    }
+  }
+
+  private void putInt(int value, int size) throws IOException {
+    ensureRemaining(size);
+    switch(size) {
+    case 1:
+      buffer.put((byte)value);
+      break;
+    case 2:
+      buffer.putShort((short)value);
+      break;
+    case 4:
+      buffer.putInt(value);
+      break;
+    case 8:
+      buffer.putLong(value);
+      break;
+    }
+  }
+
+  public void writeComplex(ComplexVector vector, int size) throws IOException {
+    if(size != 8 && size != 16) {
+      throw new EvalException("size %d is unknown on this machine", size);
+    }
+    for(int i=0;i!=vector.length();++i) {
+      ensureRemaining(size);
+      Complex z = vector.getElementAsComplex(i);
+      if(size == 16) {
+        buffer.putDouble(z.getReal());
+        buffer.putDouble(z.getImaginary());
+      } else {
+        buffer.putFloat((float)z.getReal());
+        buffer.putFloat((float)z.getImaginary());
+      }
+    }
+  }
+
+  public void writeRaw(RawVector vector) throws IOException {
+    byte[] bytes = new byte[Math.min(vector.length(), buffer.capacity())];
+    int offset = 0;
+    while(offset < vector.length()) {
+      int length = Math.min(bytes.length, vector.length() - offset);
+      vector.copyTo(offset, bytes, 0, length);
+      writeBytes(bytes, 0, length);
+      offset += length;
+    }
+  }
+
+  /**
+   * Writes each element of {@code vector} as a nul-terminated string
+   */
+  public void writeStrings(StringVector vector) throws IOException {
+    for(int i=0;i!=vector.length();++i) {
+      String element = vector.isElementNA(i) ? "NA" : vector.getElementAsString(i);
+      writeBytes(element.getBytes(Charsets.UTF_8));
+      ensureRemaining(1);
+      buffer.put((byte)0);
+    }
+  }
+
+  public void writeBytes(byte[] bytes) throws IOException {
+    writeBytes(bytes, 0, bytes.length);
+  }
+
+  public void writeBytes(byte[] bytes, int offset, int length) throws IOException {
+    while(length > 0) {
+      ensureRemaining(1);
+      int count = Math.min(length, buffer.remaining());
+      buffer.put(bytes, offset, count);
+      offset += count;
+      length -= count;
+    }
+  }
+
+  /**
+   * Writes {@code count} zero bytes, used to pad fixed-width strings
+   */
+  public void writeZeros(int count) throws IOException {
+    for(int i=0;i!=count;++i) {
+      ensureRemaining(1);
+      buffer.put((byte)0);
+    }
+  }
+}
@@ -0,0 +1,124 @@
+package org.renjin.primitives.io.connections;
+
+import org.renjin.sexp.StringVector;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Writes lines of text in batches, copying characters into a reusable
+ * {@code CharBuffer} and encoding them with a {@link CharsetEncoder} into
+ * a large direct {@code ByteBuffer}, which is written to the
+ * channel only as it fills.
+ *
+ * <p>Nothing is written to the channel until the buffers fill or
+ * {@link #flush()} is called.
+ */
+public class BufferedLineWriter implements Appendable {
+
+  private static final int CHAR_BUFFER_SIZE = 64 * 1024;
+  private static final int BYTE_BUFFER_SIZE = 1024 * 1024;
+
+  private final WritableByteChannel channel;
+  private final CharsetEncoder encoder;
+  private final CharBuffer chars;
+  private final ByteBuffer bytes;
+
+  public BufferedLineWriter(WritableByteChannel channel, Charset charset) {
+    this.channel = channel;
+    this.encoder = charset.newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    this.chars = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+    this.bytes = ByteBuffer.allocateDirect(BYTE_BUFFER_SIZE);
+  }
+
+  /**
+   * Writes each element of {@code lines}, followed by {@code separator}, and
+   * flushes the result to the channel
+   */
+  public void writeLines(StringVector lines, String separator) throws IOException {
+    for(int i=0;i!=lines.length();++i) {
+      if(lines.isElementNA(i)) {
+        append("NA");
+      } else {
+        append(lines.getElementAsString(i));
+      }
+      append(separator);
+    }
+    flush();
+  }
+
+  @Override
+  public BufferedLineWriter append(CharSequence s) throws IOException {
+    return append(s, 0, s.length());
+  }
+
+  @Override
+  public BufferedLineWriter append(CharSequence s, int start, int end) throws IOException {
+    int offset = start;
+    while(offset < end) {
+      int count = Math.min(chars.remaining(), end - offset);
+      if(s instanceof String) {
+        ((String) s).getChars(offset, offset + count, chars.array(), chars.position());
+      } else if(s instanceof StringBuilder) {
+        ((StringBuilder) s).getChars(offset, offset + count, chars.array(), chars.position());
+      } else {
+        for(int i = 0; i != count; ++i) {
+          chars.array()[chars.position() + i] = s.charAt(offset + i);
+        }
+      }
+      chars.position(chars.position() + count);
+      offset += count;
+      if(!chars.hasRemaining()) {
+        encode();
+      }
+    }
+    return this;
+  }
+
+  @Override
+  public BufferedLineWriter append(char c) throws IOException {
+    if(!chars.hasRemaining()) {
+      encode();
+    }
+    chars.put(c);
+    return this;
+  }
+
+  private void encode() throws IOException {
+    chars.flip();
+    while(true) {
+      CoderResult result = encoder.encode(chars, bytes, false);
+      if(result.isError()) {
+        result.throwException();
+      }
+      if(result.isOverflow()) {
+        writeBytes();
+      } else {
+        break;
+      }
+    }
+    // retains any trailing high surrogate until its pair arrives
+    chars.compact();
+  }
+
+  private void writeBytes() throws IOException {
+    bytes.flip();
+    while(bytes.hasRemaining()) {
+      channel.write(bytes);
+    }
+    bytes.clear();
+  }
+
+  public void flush() throws IOException {
+    encode();
+    writeBytes();
+  }
+}
@@ -0,0 +1,55 @@
+package org.renjin.primitives.io.connections;
+
+import org.apache.commons.vfs.FileObject;
+import org.renjin.primitives.io.compress.Codec;
+import org.renjin.primitives.io.compress.Codecs;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A connection to a compressed file, as opened by {@code gzfile()}, {@code bzfile()}
+ * or {@code xzfile()}.
+ * 
+ * <p>As in R, the format of a file opened for reading is detected from its contents,
+ * so any of these connections can read a file compressed in any of the registered 
+ * formats, or one which is not compressed at all. Output is compressed with the 
+ * connection's own codec, except for {@link XzFileConnection}, which cannot be written.
+ */
+public class CompressedFileConnection extends FileConnection {
+
+  private final Codec codec;
+  private final int compressionLevel;
+  
+  public CompressedFileConnection(FileObject file, Codec codec, int compressionLevel) throws IOException {
+    super(file);
+    this.codec = codec;
+    this.compressionLevel = compressionLevel;
+  }
+
+  @Override
+  protected InputStream doOpenForInput() throws IOException {
+    return Codecs.decompressIfCompressed(new BufferedInputStream(super.doOpenForInput()));
+  }
+  
+  @Override
+  protected OutputStream doOpenForOutput() throws IOException {
+    return Codecs.compress(codec, super.doOpenForOutput(), compressionLevel);
+  }
+  
+  @Override
+  public boolean isSeekable() {
+    return false;
+  }
+
+  @Override
+  public String getClassName() {
+    if(codec == Codecs.BZIP2) {
+      return "bzfile";
+    } else {
+      return "gzfile";
+    }
+  }
+}
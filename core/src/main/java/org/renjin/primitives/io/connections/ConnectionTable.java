@@ -36,8 +36,22 @@ public class ConnectionTable {
   }
   
   public IntVector newConnection(Connection conn) {
+    return connectionVector(installConnection(conn), conn);
+  }
+  
+  /**
+   * Replaces the connection at {@code index} with {@code conn}, 
+   * as {@code gzcon()} does when it wraps an existing connection
+   */
+  public IntVector replaceConnection(int index, Connection conn) {
+    getConnection(index);
+    table[index] = conn;
+    return connectionVector(index, conn);
+  }
+  
+  private IntVector connectionVector(int index, Connection conn) {
     IntArrayVector.Builder sexp = new IntArrayVector.Builder(1);
-    sexp.set(0, installConnection(conn));
+    sexp.set(0, index);
     sexp.setAttribute(Symbols.CLASS, new StringVector("connection", conn.getClassName()));
     return sexp.build();
   }
@@ -59,6 +73,16 @@ public class ConnectionTable {
     return table[index];
   }
   
+  /**
+   * Removes a closed connection from the table so that its slot can be reused.
+   * The standard connections are never removed.
+   */
+  public void removeConnection(int index) {
+    if(index > STDERR_HANDLE && index < table.length) {
+      table[index] = null;
+    }
+  }
+  
   public Connection getConnection(IntVector conn) {
     return getConnection(conn.getElementAsInt(0));
   }
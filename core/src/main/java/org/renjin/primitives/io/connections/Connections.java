@@ -25,17 +25,23 @@ import com.google.common.base.Strings;
 import org.apache.commons.vfs.FileSystemException;
 import org.renjin.eval.Context;
 import org.renjin.eval.EvalException;
+import org.renjin.eval.Instrumentation;
+import org.renjin.primitives.Warning;
 import org.renjin.primitives.annotations.Current;
 import org.renjin.primitives.annotations.Primitive;
 import org.renjin.primitives.annotations.Recycle;
+import org.renjin.primitives.io.compress.Codecs;
 import org.renjin.sexp.*;
 
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.Reader;
 import java.net.URL;
 import java.net.UnknownHostException;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
 
 /**
  * 
@@ -74,7 +80,56 @@ public class Connections {
       final String path, String open, String encoding, double compressionLevel)
       throws IOException {
 
-    return newConnection(context, open, new GzFileConnection(context.resolveFile(path)));
+    GzFileConnection conn = new GzFileConnection(context.resolveFile(path), (int)compressionLevel);
+    setEncoding(conn, encoding);
+    return newConnection(context, open, conn);
+  }
+  
+  /**
+   * Opens a connection to a file compressed with bzip2.
+   * 
+   * @param compressionLevel integer 1-9
+   */
+  public static IntVector bzfile(@Current final Context context,
+      final String path, String open, String encoding, double compressionLevel)
+      throws IOException {
+
+    CompressedFileConnection conn = new CompressedFileConnection(context.resolveFile(path), 
+        Codecs.BZIP2, (int)compressionLevel);
+    setEncoding(conn, encoding);
+    return newConnection(context, open, conn);
+  }
+  
+  /**
+   * Opens a connection to a file compressed with LZMA, which can only be read: we 
+   * can read the .lzma format, but cannot read or write the .xz format.
+   * 
+   * @param compressionLevel integer 0-9
+   */
+  public static IntVector xzfile(@Current final Context context,
+      final String path, String open, String encoding, double compressionLevel)
+      throws IOException {
+
+    XzFileConnection conn = new XzFileConnection(context.resolveFile(path), 
+        (int)Math.abs(compressionLevel));
+    setEncoding(conn, encoding);
+    return newConnection(context, open, conn);
+  }
+  
+  /**
+   * Wraps an existing connection so that it reads and writes gzip-compressed data. 
+   * The new connection replaces the original connection, keeping its number.
+   * 
+   * @param level the compression level, 0-9
+   * @param allowNonCompressed if true, uncompressed input is read as-is
+   */
+  public static IntVector gzcon(@Current final Context context, SEXP con, int level, 
+      boolean allowNonCompressed) throws IOException {
+    
+    Connection conn = getConnection(context, con);
+    int index = ((Vector)con).getElementAsInt(0);
+    return context.getGlobals().getConnectionTable().replaceConnection(index, 
+        new GzConConnection(conn, level, allowNonCompressed));
   }
   
   /**
@@ -111,7 +166,9 @@ public class Connections {
     } else if(STD_ERR.equals(path)) {
       return stderr(context);
     } else {
-      return newConnection(context, open, new FileConnection(context.resolveFile(path)));
+      FileConnection conn = new FileConnection(context.resolveFile(path));
+      setEncoding(conn, encoding);
+      return newConnection(context, open, conn);
     }
   }
   
@@ -119,7 +176,24 @@ public class Connections {
   public static IntVector url(@Current final Context context,
       final String description, String open, boolean blocking, String encoding) throws IOException {
   
-    return newConnection(context, open, new UrlConnection(new URL(description)));
+    UrlConnection conn = new UrlConnection(new URL(description));
+    setEncoding(conn, encoding);
+    return newConnection(context, open, conn);
+  }
+  
+  /**
+   * Sets the encoding with which text is read from and written to the connection. 
+   * The empty string and "native.enc" denote the platform's default encoding.
+   */
+  private static void setEncoding(AbstractConnection conn, String encoding) {
+    if(Strings.isNullOrEmpty(encoding) || encoding.equals("native.enc")) {
+      return;
+    }
+    try {
+      conn.setCharset(Charset.forName(encoding));
+    } catch(IllegalArgumentException e) {
+      throw new EvalException("unsupported conversion from '%s'", encoding);
+    }
   }
   
   
@@ -146,6 +220,7 @@ public class Connections {
   public static void close(@Current Context context, SEXP conn, String type /* Unused */)
       throws IOException {
     getConnection(context, conn).close();
+    context.getGlobals().getConnectionTable().removeConnection(((Vector)conn).getElementAsInt(0));
   }
 
   public static String readChar(@Current Context context, SEXP connIndex, int nchars,
@@ -157,16 +232,31 @@ public class Connections {
       byte[] bytes = new byte[nchars];
       DataInputStream dis = new DataInputStream(conn.getInputStream());
       dis.readFully(bytes);
+      countRead(context, nchars);
       return new String(bytes, Charsets.UTF_8);
     } else {
       
-      // it's not clear to me whether the read(char[]) methods are
-      // safe to use with unicode...
+      // nchars counts code points, so a surrogate pair occupies two
+      // chars of the buffer but counts as only a single character
       Reader in = conn.getReader();
-      StringBuilder result = new StringBuilder();
-      for(int i=0;i!=nchars;++i) {
-        result.appendCodePoint(in.read());
+      char[] buffer = new char[nchars];
+      StringBuilder result = new StringBuilder(nchars);
+      int remaining = nchars;
+      while(remaining > 0) {
+        int count = in.read(buffer, 0, remaining);
+        if(count == -1) {
+          break;
+        }
+        result.append(buffer, 0, count);
+        remaining -= Character.codePointCount(buffer, 0, count);
+        if(Character.isHighSurrogate(buffer[count-1])) {
+          int low = in.read();
+          if(low != -1) {
+            result.append((char)low);
+          }
+        }
       }
+      countCharsRead(context, result.length());
       return result.toString();
     }
   }
@@ -178,10 +268,13 @@ public class Connections {
     PushbackBufferedReader reader = getConnection(context, connection).getReader();
     StringVector.Builder lines = new StringVector.Builder();
     String line;
-    while((line=reader.readLine())!=null && 
-        (lines.length() != numLines)) {
-      lines.add(line);
+    long chars = 0;
+    while(lines.length() != numLines &&
+        (line=reader.readLine())!=null) {
+      lines.add(StringVector.dedup(line));
+      chars += line.length() + 1;
     }
+    countCharsRead(context, chars);
     
     if(numLines > 0 && 
        lines.length() < numLines && 
@@ -195,11 +288,350 @@ public class Connections {
   
   @Primitive("writeLines")
   public static void writeLines(@Current Context context, StringVector x, SEXP connIndex, String seperator, boolean useBytes) throws IOException {
-    PrintWriter writer = getConnection(context, connIndex).getPrintWriter();
-    for(String line : x) {
-      writer.print(line);
-      writer.print(seperator);
+    Connection conn = getConnection(context, connIndex);
+    if(conn instanceof AbstractConnection) {
+      ((AbstractConnection) conn).getLineWriter().writeLines(x, seperator);
+    } else if(conn instanceof TextConnection) {
+      ((TextConnection) conn).writeLines(x, seperator);
+    } else {
+      PrintWriter writer = conn.getPrintWriter();
+      for(int i=0;i!=x.length();++i) {
+        writer.print(x.isElementNA(i) ? "NA" : x.getElementAsString(i));
+        writer.print(seperator);
+      }
+      writer.flush();
+    }
+    Instrumentation instrumentation = context.getGlobals().getInstrumentation();
+    if(instrumentation != null) {
+      long chars = 0;
+      for(int i=0;i!=x.length();++i) {
+        chars += (x.isElementNA(i) ? 2 : x.getElementAsString(i).length()) + seperator.length();
+      }
+      instrumentation.charsWritten(chars);
+    }
+  }
+  
+  /**
+   * Reads binary data from a connection or raw vector.
+   * 
+   * @param con a connection or raw vector
+   * @param what the type of vector to read
+   * @param n the (maximal) number of elements to read
+   * @param size the number of bytes per element, or NA for the natural size
+   * @param signed for integers of size 1 or 2, whether they should be treated as signed 
+   * @param swap true if the byte order of the data differs from the platform's. Renjin 
+   * declares the JVM's native big-endian order as the platform order, so {@code swap} means little-endian.
+   */
+  @Primitive
+  public static Vector readBin(@Current Context context, SEXP con, String what, int n, int size, 
+      boolean signed, boolean swap) throws IOException {
+    
+    if(n < 0) {
+      throw new EvalException("invalid 'n' argument");
+    }
+    
+    BinaryReader reader;
+    if(con instanceof RawVector) {
+      reader = BinaryReader.forBuffer(((RawVector) con).asReadOnlyBuffer(), byteOrder(swap));
+      return readVector(reader, what, n, size, signed);
+    } else {
+      reader = BinaryReader.forConnection(getConnection(context, con), byteOrder(swap));
+      Vector result = readVector(reader, what, n, size, signed);
+      Instrumentation instrumentation = context.getGlobals().getInstrumentation();
+      if(instrumentation != null) {
+        instrumentation.bytesRead(binarySize(result, size));
+      }
+      return result;
+    }
+  }
+
+  private static Vector readVector(BinaryReader reader, String what, int n, int size, boolean signed)
+      throws IOException {
+    if(what.equals("numeric") || what.equals("double")) {
+      return reader.readDoubles(n, checkSize(size, 8, 4, 8));
+    
+    } else if(what.equals("integer") || what.equals("int")) {
+      return reader.readIntegers(n, checkSize(size, 4, 1, 2, 4, 8), signed);
+    
+    } else if(what.equals("logical")) {
+      return reader.readLogicals(n, checkSize(size, 4, 1, 2, 4, 8));
+    
+    } else if(what.equals("complex")) {
+      return reader.readComplex(n, checkSize(size, 16, 8, 16));
+    
+    } else if(what.equals("raw")) {
+      return reader.readRaw(n);
+      
+    } else if(what.equals("character")) {
+      return reader.readStrings(n);
+    
+    } else {
+      throw new EvalException("invalid 'what' argument");
+    }
+  }
+  
+  /**
+   * @return the number of bytes occupied by {@code vector} as read by {@code readBin}
+   */
+  private static long binarySize(Vector vector, int size) {
+    if(vector instanceof StringVector) {
+      long bytes = 0;
+      for(int i=0;i!=vector.length();++i) {
+        if(!vector.isElementNA(i)) {
+          bytes += vector.getElementAsString(i).getBytes(Charsets.UTF_8).length + 1;
+        }
+      }
+      return bytes;
+    }
+    if(!IntVector.isNA(size)) {
+      return (long)vector.length() * size;
+    } else if(vector instanceof RawVector) {
+      return vector.length();
+    } else if(vector instanceof DoubleVector) {
+      return (long)vector.length() * 8;
+    } else if(vector instanceof ComplexVector) {
+      return (long)vector.length() * 16;
+    } else {
+      return (long)vector.length() * 4;
+    }
+  }
+
+  private static int checkSize(int size, int naturalSize, int... allowedSizes) {
+    if(IntVector.isNA(size)) {
+      return naturalSize;
+    }
+    for(int allowed : allowedSizes) {
+      if(size == allowed) {
+        return size;
+      }
+    }
+    throw new EvalException("size %d is unknown on this machine", size);
+  }
+  
+  private static ByteOrder byteOrder(boolean swap) {
+    return swap ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+  }
+  
+  /**
+   * Writes the elements of an atomic vector to a connection, or, if {@code con}
+   * is a raw vector, to a new raw vector.
+   */
+  @Primitive
+  public static SEXP writeBin(@Current Context context, Vector object, SEXP con, int size, boolean swap, 
+      boolean useBytes) throws IOException {
+    
+    if(con instanceof RawVector) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      BinaryWriter writer = new BinaryWriter(out, byteOrder(swap));
+      writer.writeVector(object, size);
+      writer.flush();
+      return new RawVector(out.toByteArray());
+    
+    } else {
+      BinaryWriter writer = BinaryWriter.forConnection(getConnection(context, con), byteOrder(swap));
+      writer.writeVector(object, size);
+      writer.flush();
+      countWritten(context, writer);
+      return Null.INSTANCE;
+    }
+  }
+  
+  /**
+   * Writes fixed-length strings to a connection or raw vector.
+   * 
+   * @param nchars the number of characters to write from each element. Elements shorter than 
+   * {@code nchars} are padded with nuls.
+   * @param eos the terminator to write after each string, followed by a nul, or {@code NULL}
+   * to write no terminator at all
+   */
+  @Primitive
+  public static SEXP writeChar(@Current Context context, StringVector object, SEXP con, IntVector nchars, 
+      SEXP eos, boolean useBytes) throws IOException {
+    
+    ByteArrayOutputStream rawOut = null;
+    BinaryWriter writer;
+    if(con instanceof RawVector) {
+      rawOut = new ByteArrayOutputStream();
+      writer = new BinaryWriter(rawOut, ByteOrder.BIG_ENDIAN);
+    } else {
+      writer = BinaryWriter.forConnection(getConnection(context, con), ByteOrder.BIG_ENDIAN);
+    }
+    
+    byte[] terminator = null;
+    if(eos instanceof StringVector && eos.length() > 0) {
+      terminator = ((StringVector) eos).getElementAsString(0).getBytes(Charsets.UTF_8);
+    }
+    
+    for(int i=0;i!=object.length();++i) {
+      String element = object.isElementNA(i) ? "NA" : object.getElementAsString(i);
+      int count = nchars.getElementAsInt(i % nchars.length());
+      if(count <= element.length()) {
+        writer.writeBytes(element.substring(0, count).getBytes(Charsets.UTF_8));
+      } else {
+        byte[] bytes = element.getBytes(Charsets.UTF_8);
+        writer.writeBytes(bytes);
+        writer.writeZeros(count - element.length());
+        Warning.invokeWarning(context, "writeChar: more characters requested than are in the string - will zero-pad");
+      }
+      if(terminator != null) {
+        writer.writeBytes(terminator);
+        writer.writeZeros(1);
+      }
+    }
+    writer.flush();
+    
+    if(rawOut != null) {
+      return new RawVector(rawOut.toByteArray());
+    } else {
+      countWritten(context, writer);
+      return Null.INSTANCE;
+    }
+  }
+
+  private static void countRead(Context context, long count) {
+    Instrumentation instrumentation = context.getGlobals().getInstrumentation();
+    if(instrumentation != null) {
+      instrumentation.bytesRead(count);
+    }
+  }
+
+  private static void countCharsRead(Context context, long count) {
+    Instrumentation instrumentation = context.getGlobals().getInstrumentation();
+    if(instrumentation != null) {
+      instrumentation.charsRead(count);
+    }
+  }
+
+  private static void countWritten(Context context, BinaryWriter writer) {
+    Instrumentation instrumentation = context.getGlobals().getInstrumentation();
+    if(instrumentation != null) {
+      instrumentation.bytesWritten(writer.getBytesWritten());
+    }
+  }
+  
+  @Primitive
+  public static boolean isSeekable(@Current Context context, SEXP con) {
+    Connection conn = getConnection(context, con);
+    return conn instanceof SeekableConnection && ((SeekableConnection) conn).isSeekable();
+  }
+
+  /**
+   * Gets and optionally sets the position of a connection.
+   * 
+   * @param where the new position, or NA to leave the position unchanged
+   * @param origin 1 = relative to the start, 2 = relative to the current position, 3 = relative to the end
+   * @param rw unused; Renjin's file connections are opened for reading or for writing, but never both, 
+   * and so have a single position
+   * @return the position before any repositioning
+   */
+  @Primitive
+  public static double seek(@Current Context context, SEXP con, double where, int origin, int rw) 
+      throws IOException {
+    Connection conn = getConnection(context, con);
+    if(!(conn instanceof SeekableConnection) || !((SeekableConnection) conn).isSeekable()) {
+      throw new EvalException("'seek' not enabled for this connection");
+    }
+    SeekableConnection seekable = (SeekableConnection) conn;
+    long position = seekable.getPosition();
+    if(!DoubleVector.isNA(where)) {
+      long offset = (long)where;
+      switch(origin) {
+      case 2:
+        offset += position;
+        break;
+      case 3:
+        offset += seekable.size();
+        break;
+      }
+      seekable.setPosition(offset);
+    }
+    return position;
+  }
+  
+  @Primitive
+  public static void truncate(@Current Context context, SEXP con) throws IOException {
+    Connection conn = getConnection(context, con);
+    if(!(conn instanceof SeekableConnection) || !((SeekableConnection) conn).isSeekable()) {
+      throw new EvalException("can only truncate connections open for writing");
+    }
+    ((SeekableConnection) conn).truncate();
+  }
+  
+  /**
+   * Creates a text connection which either reads the lines of a character vector, or, 
+   * if opened for writing, accumulates the lines written to it in memory.
+   * 
+   * @param description the deparsed expression of {@code object}
+   * @param object the character vector to read when {@code open} is "r", or when writing, 
+   * the name of the variable to which output should be assigned, or {@code NULL} if the 
+   * connection is anonymous
+   * @param open "r", "w", or "a"
+   * @param env the environment in which the output variable is assigned
+   * @param type the encoding; unused
+   */
+  @Primitive
+  public static IntVector textConnection(@Current Context context, String description, SEXP object, 
+      String open, Environment env, int type) throws IOException {
+    
+    TextConnection conn;
+    if(open.isEmpty() || open.startsWith("r")) {
+      if(!(object instanceof StringVector)) {
+        throw new EvalException("invalid 'text' argument");
+      }
+      conn = TextConnection.forReading(description, (StringVector) object);
+      
+    } else if(open.startsWith("w") || open.startsWith("a")) {
+      String name = null;
+      StringVector initialLines = StringVector.EMPTY;
+      if(object != Null.INSTANCE) {
+        if(!(object instanceof StringVector) || object.length() != 1) {
+          throw new EvalException("invalid '%s' argument", "object");
+        }
+        name = ((StringVector) object).getElementAsString(0);
+        if(open.startsWith("a")) {
+          SEXP existing = env.getVariable(name);
+          if(existing instanceof StringVector) {
+            initialLines = (StringVector) existing;
+          }
+        }
+      }
+      conn = TextConnection.forWriting(name, env, initialLines);
+      
+    } else {
+      throw new EvalException("unsupported mode");
+    }
+    return context.getGlobals().getConnectionTable().newConnection(conn);
+  }
+  
+  @Primitive
+  public static StringVector textConnectionValue(@Current Context context, SEXP con) {
+    Connection conn = getConnection(context, con);
+    if(!(conn instanceof TextConnection)) {
+      throw new EvalException("'con' is not a textConnection");
+    }
+    return ((TextConnection) conn).getValue();
+  }
+  
+  /**
+   * Creates a binary connection which reads from, or writes to, a raw vector in memory.
+   */
+  @Primitive
+  public static IntVector rawConnection(@Current Context context, String description, SEXP object, 
+      String open) throws IOException {
+    if(!(object instanceof RawVector)) {
+      throw new EvalException("invalid '%s' argument", "raw");
+    }
+    RawConnection conn = new RawConnection((RawVector) object, new OpenSpec(open));
+    return context.getGlobals().getConnectionTable().newConnection(conn);
+  }
+  
+  @Primitive
+  public static RawVector rawConnectionValue(@Current Context context, SEXP con) {
+    Connection conn = getConnection(context, con);
+    if(!(conn instanceof RawConnection)) {
+      throw new EvalException("'con' is not a rawConnection");
     }
+    return ((RawConnection) conn).getValue();
   }
   
   //FIXME: port should be an int
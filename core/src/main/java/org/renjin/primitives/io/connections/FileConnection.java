@@ -1,24 +1,42 @@
-
 package org.renjin.primitives.io.connections;
 
 import org.apache.commons.vfs.FileObject;
 import org.apache.commons.vfs.FileSystemException;
+import org.apache.commons.vfs.provider.local.LocalFile;
+import org.apache.commons.vfs.provider.local.LocalFileName;
 import org.renjin.eval.EvalException;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 
 
-public class FileConnection extends AbstractConnection {
+public class FileConnection extends AbstractConnection implements SeekableConnection {
 
   private InputStream in;  
   private OutputStream out;
   
   private FileObject file;
+
+  /**
+   * The file on the local file system, or {@code null} if this 
+   * file is provided by another VFS provider
+   */
+  private File localFile;
+  
+  private boolean append;
   
   public FileConnection(FileObject file) throws IOException {
     this.file = file;
+    if(file instanceof LocalFile) {
+      // as LocalFile does: the URL's path is percent-encoded, which File does not decode
+      LocalFileName name = (LocalFileName) file.getName();
+      this.localFile = new File(name.getRootFile() + name.getPathDecoded());
+    }
   }
   
   @Override
@@ -33,6 +51,7 @@ public class FileConnection extends AbstractConnection {
         getReader();
       }
     } else if(spec.forWriting()) {
+      this.append = spec.forAppending();
       if(spec.isBinary()) {
         assureOpenForOutput();
       } else {
@@ -52,6 +71,9 @@ public class FileConnection extends AbstractConnection {
   }
 
   protected InputStream doOpenForInput() throws FileSystemException, IOException {
+    if(localFile != null) {
+      return new FileInputStream(localFile);
+    }
     return file.getContent().getInputStream();
   }
   
@@ -66,7 +88,10 @@ public class FileConnection extends AbstractConnection {
   }
 
   protected OutputStream doOpenForOutput() throws FileSystemException, IOException {
-    return file.getContent().getOutputStream();
+    if(localFile != null) {
+      return new FileOutputStream(localFile, append);
+    }
+    return file.getContent().getOutputStream(append);
   }
   
   @Override
@@ -79,6 +104,77 @@ public class FileConnection extends AbstractConnection {
     return assureOpenForOutput();
   }
 
+  /**
+   * 
+   * @return the {@code FileChannel} backing this connection's input or output
+   * stream, or {@code null} if the connection is not open, or is not backed
+   * by a file on the local file system.
+   */
+  public FileChannel getChannel() {
+    if(in instanceof FileInputStream) {
+      return ((FileInputStream) in).getChannel();
+    } else if(out instanceof FileOutputStream) {
+      flushPrintWriter();
+      return ((FileOutputStream) out).getChannel();
+    }
+    return null;
+  }
+
+  /**
+   * @return the file on the local file system from which this connection reads, or
+   * {@code null} if the file is provided by another VFS provider, is compressed, is open
+   * for output, or has already been partly read
+   */
+  public File getUnreadFile() throws IOException {
+    if(!isSeekable() || out != null) {
+      return null;
+    }
+    if(in != null && getPosition() != 0) {
+      return null;
+    }
+    return localFile;
+  }
+
+  private FileChannel assureChannel() throws IOException {
+    if(in == null && out == null) {
+      assureOpenForInput();
+    }
+    FileChannel channel = getChannel();
+    if(channel == null) {
+      throw new EvalException("'seek' not enabled for this connection");
+    }
+    return channel;
+  }
+
+  @Override
+  public boolean isSeekable() {
+    return localFile != null;
+  }
+
+  @Override
+  public long getPosition() throws IOException {
+    return assureChannel().position();
+  }
+
+  @Override
+  public void setPosition(long position) throws IOException {
+    assureChannel().position(position);
+  }
+
+  @Override
+  public long size() throws IOException {
+    return assureChannel().size();
+  }
+
+  @Override
+  public void truncate() throws IOException {
+    if(!(out instanceof FileOutputStream)) {
+      throw new EvalException("can only truncate connections open for writing");
+    }
+    FileChannel channel = getChannel();
+    channel.truncate(channel.position());
+  }
+
   @Override
   protected void closeInputIfOpen() throws IOException {
     if(in != null) {
@@ -0,0 +1,94 @@
+package org.renjin.primitives.io.connections;
+
+import org.renjin.eval.EvalException;
+import org.renjin.primitives.io.compress.Codecs;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Wraps an existing connection, as returned by {@code gzcon()}, so that 
+ * data is decompressed as it is read from, or compressed as it is written to,
+ * the underlying connection in the gzip format.
+ */
+public class GzConConnection extends AbstractConnection {
+
+  private final Connection conn;
+  private final int compressionLevel;
+  private final boolean allowNonCompressed;
+  
+  private InputStream in;
+  private OutputStream out;
+  
+  public GzConConnection(Connection conn, int compressionLevel, boolean allowNonCompressed) {
+    this.conn = conn;
+    this.compressionLevel = compressionLevel;
+    this.allowNonCompressed = allowNonCompressed;
+  }
+
+  @Override
+  public void open(OpenSpec spec) throws IOException {
+    if(!conn.isOpen()) {
+      conn.open(spec);
+    }
+  }
+
+  @Override
+  public InputStream getInputStream() throws IOException {
+    if(in == null) {
+      BufferedInputStream source = new BufferedInputStream(conn.getInputStream());
+      source.mark(2);
+      byte[] header = new byte[2];
+      int length = Math.max(0, source.read(header));
+      source.reset();
+      if(Codecs.GZIP.matches(header, length)) {
+        in = Codecs.GZIP.decompress(source);
+      } else if(allowNonCompressed) {
+        in = source;
+      } else {
+        throw new EvalException("file stream does not have gzip magic number");
+      }
+    }
+    return in;
+  }
+
+  @Override
+  public OutputStream getOutputStream() throws IOException {
+    if(out == null) {
+      out = Codecs.compress(Codecs.GZIP, conn.getOutputStream(), compressionLevel);
+    }
+    return out;
+  }
+
+  @Override
+  protected void closeInputIfOpen() throws IOException {
+    if(in != null) {
+      in.close();
+    }
+  }
+
+  @Override
+  protected void closeOutputIfOpen() throws IOException {
+    if(out != null) {
+      out.close();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    super.close();
+    conn.close();
+  }
+
+  @Override
+  public boolean isOpen() {
+    return conn.isOpen();
+  }
+
+  @Override
+  public String getClassName() {
+    return "gzcon";
+  }
+}
@@ -22,12 +22,9 @@
 package org.renjin.primitives.io.connections;
 
 import org.apache.commons.vfs.FileObject;
+import org.renjin.primitives.io.compress.Codecs;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
 /**
  * A connection to a gzipped file.
@@ -38,36 +35,15 @@ import java.util.zip.GZIPOutputStream;
  * as a regular file.
  *
  */
-public class GzFileConnection extends FileConnection {
-
-  public static final int GZIP_MAGIC_BYTE1 = 31;
-  public static final int GZIP_MAGIC_BYTE2 = 139;
+public class GzFileConnection extends CompressedFileConnection {
 
+  public static final int DEFAULT_COMPRESSION_LEVEL = 6;
 
   public GzFileConnection(FileObject file) throws IOException {
-    super(file);
-  }
-
-  @Override
-  protected InputStream doOpenForInput() throws IOException {
-    InputStream in = super.doOpenForInput();
-    in.mark(2);
-    boolean isCompressed =
-        in.read() == GZIP_MAGIC_BYTE1 &&
-        in.read() == GZIP_MAGIC_BYTE2;
-    in.reset();
-
-    if(isCompressed) {
-      return new GZIPInputStream(in);
-    } else {
-      return in;
-    }
+    this(file, DEFAULT_COMPRESSION_LEVEL);
   }
   
-  @Override
-  protected OutputStream doOpenForOutput() throws IOException {
-    return new GZIPOutputStream(super.doOpenForOutput());
+  public GzFileConnection(FileObject file, int compressionLevel) throws IOException {
+    super(file, Codecs.GZIP, compressionLevel);
   }
-
-
 }
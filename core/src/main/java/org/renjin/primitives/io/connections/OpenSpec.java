@@ -37,6 +37,10 @@ public class OpenSpec {
     return spec.equals("r+") || spec.contains("w") || spec.contains("a");
   }
   
+  public boolean forAppending() {
+    return spec.startsWith("a");
+  }
+  
   public boolean isText() {
     return !spec.contains("b");
   }
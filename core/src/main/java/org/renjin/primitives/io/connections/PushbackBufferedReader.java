@@ -1,62 +1,270 @@
 package org.renjin.primitives.io.connections;
 
-import com.google.common.base.Strings;
+import org.renjin.sexp.StringVector;
 
-import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 
 /**
  * Specialized reader class to support R character streams
  * which have pushback support. We need this because
- * the JRE's PusbackReader and BufferedReader do not 
+ * the JRE's PusbackReader and BufferedReader do not
  * play well together.
+ *
+ * <p>When constructed from an {@code InputStream}, bytes are decoded
+ * with a {@link CharsetDecoder} from a reusable {@code ByteBuffer} into a
+ * reusable {@code CharBuffer}, and lines are split by scanning the
+ * decoded characters in place. A {@code StringBuilder} is only needed for
+ * lines which span the end of the buffer.
+ *
+ * <p>When constructed from a {@code StringVector}, as for {@code textConnection()},
+ * each element is a line and {@link #readLine()} returns the elements themselves
+ * without copying them.
  */
 public class PushbackBufferedReader extends Reader {
 
-  private BufferedReader reader;
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  /**
+   * The source of characters, or {@code null} if
+   * we are decoding bytes from {@code channel}
+   */
+  private Reader reader;
+
+  private StringVector lines;
+  private int nextLine;
+  private int lineOffset;
+
+  private ReadableByteChannel channel;
+  private CharsetDecoder decoder;
+  private ByteBuffer bytes;
+
+  /**
+   * Characters which have been decoded but not yet read, between
+   * {@code position()} and {@code limit()}
+   */
+  private CharBuffer chars;
+
+  private boolean endOfInput = false;
+  private boolean flushed = false;
+
+  /**
+   * True if the last line ended with '\r' and so a
+   * following '\n' should be skipped.
+   */
+  private boolean skipLF = false;
+
+  private StringBuilder lineBuilder = new StringBuilder();
   private StringBuilder pushbackStack = new StringBuilder();
-  
-  
+
+
   public PushbackBufferedReader(Reader reader) {
-    this.reader = new BufferedReader(reader);
+    this.reader = reader;
+    this.chars = CharBuffer.allocate(BUFFER_SIZE);
+    this.chars.flip();
+  }
+
+  public PushbackBufferedReader(StringVector lines) {
+    this.lines = lines;
+    this.chars = CharBuffer.allocate(BUFFER_SIZE);
+    this.chars.flip();
+  }
+
+  public PushbackBufferedReader(InputStream in, Charset charset) {
+    this.channel = Channels.newChannel(in);
+    this.decoder = charset.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    this.bytes = ByteBuffer.allocate(BUFFER_SIZE);
+    this.chars = CharBuffer.allocate(BUFFER_SIZE);
+    this.chars.flip();
   }
 
   @Override
   public void close() throws IOException {
-    reader.close();
+    if(reader != null) {
+      reader.close();
+    } else if(channel != null) {
+      channel.close();
+    }
+  }
+
+  /**
+   * Refills the character buffer after all of its characters have been consumed.
+   *
+   * @return false if the end of the input has been reached and no more
+   * characters are available
+   */
+  private boolean fill() throws IOException {
+    chars.clear();
+    if(lines != null) {
+      copyLines();
+    } else if(reader != null) {
+      int count = 0;
+      while(count == 0) {
+        count = reader.read(chars.array(), 0, chars.capacity());
+      }
+      if(count == -1) {
+        endOfInput = true;
+        chars.limit(0);
+      } else {
+        chars.limit(count);
+      }
+    } else {
+      decode();
+      chars.flip();
+    }
+    return chars.hasRemaining();
+  }
+
+  /**
+   * Copies as many of the remaining lines, each followed by a newline,
+   * as will fit into the character buffer.
+   */
+  private void copyLines() {
+    char[] array = chars.array();
+    int pos = 0;
+    while(pos < array.length && nextLine < lines.length()) {
+      String line = line(nextLine);
+      int count = Math.min(line.length() - lineOffset, array.length - pos);
+      line.getChars(lineOffset, lineOffset + count, array, pos);
+      pos += count;
+      lineOffset += count;
+      if(lineOffset == line.length() && pos < array.length) {
+        array[pos++] = '\n';
+        nextLine++;
+        lineOffset = 0;
+      }
+    }
+    chars.limit(pos);
+  }
+
+  private String line(int index) {
+    return lines.isElementNA(index) ? "NA" : lines.getElementAsString(index);
+  }
+
+  private void decode() throws IOException {
+    while(chars.position() == 0 && !flushed) {
+      if(!endOfInput && channel.read(bytes) == -1) {
+        endOfInput = true;
+      }
+      bytes.flip();
+      CoderResult result = decoder.decode(bytes, chars, endOfInput);
+      bytes.compact();
+      if(result.isError()) {
+        result.throwException();
+      }
+      if(endOfInput && result.isUnderflow()) {
+        flushed = decoder.flush(chars).isUnderflow();
+      }
+    }
   }
 
   @Override
   public int read(char[] cbuf, int off, int len) throws IOException {
     if(pushbackStack.length() == 0) {
-      return reader.read(cbuf, off, len);
+      if(!chars.hasRemaining() && !fill()) {
+        return -1;
+      }
+      if(skipLF) {
+        skipLF = false;
+        if(chars.get(chars.position()) == '\n') {
+          chars.position(chars.position() + 1);
+          if(!chars.hasRemaining() && !fill()) {
+            return -1;
+          }
+        }
+      }
+      int toRead = Math.min(len, chars.remaining());
+      chars.get(cbuf, off, toRead);
+      return toRead;
     } else {
       int toRead = Math.min( pushbackStack.length(), len);
       pushbackStack.getChars(0, toRead, cbuf, off);
       pushbackStack.delete(0, toRead);
       return toRead;
-    } 
+    }
   }
-  
+
   public void pushBack(String string) {
     pushbackStack.insert(0, string);
   }
-  
+
   public String readLine() throws IOException {
     if(pushbackStack.length()==0) {
-      return reader.readLine();
+      return readBufferedLine();
     } else {
       // The qick brown fox\n
       int newLine = nextNewline(pushbackStack);
       if(newLine == -1) {
-        return popStack() + Strings.nullToEmpty(reader.readLine());
+        String rest = readBufferedLine();
+        return popStack() + (rest == null ? "" : rest);
       } else {
         return popStack(newLine);
       }
     }
   }
 
+  /**
+   * Reads the next line from the character buffer, scanning
+   * the buffer directly for line terminators.
+   */
+  private String readBufferedLine() throws IOException {
+    if(lines != null && !chars.hasRemaining() && lineOffset == 0 && !skipLF) {
+      if(nextLine < lines.length()) {
+        return line(nextLine++);
+      } else {
+        return null;
+      }
+    }
+    boolean spanning = false;
+    while(true) {
+      if(!chars.hasRemaining() && !fill()) {
+        return spanning ? lineBuilder.toString() : null;
+      }
+      char[] array = chars.array();
+      int start = chars.position();
+      int limit = chars.limit();
+      if(skipLF) {
+        skipLF = false;
+        if(array[start] == '\n') {
+          chars.position(++start);
+          continue;
+        }
+      }
+      for(int i=start;i<limit;++i) {
+        char c = array[i];
+        if(c == '\n' || c == '\r') {
+          String line;
+          if(spanning) {
+            line = lineBuilder.append(array, start, i - start).toString();
+          } else {
+            line = new String(array, start, i - start);
+          }
+          chars.position(i + 1);
+          skipLF = (c == '\r');
+          return line;
+        }
+      }
+      // line continues beyond the end of the buffer
+      if(!spanning) {
+        lineBuilder.setLength(0);
+        spanning = true;
+      }
+      lineBuilder.append(array, start, limit - start);
+      chars.position(limit);
+    }
+  }
+
   private int nextNewline(StringBuilder stack) {
     for(int i=0;i!=stack.length();++i) {
       if(stack.charAt(i) == '\n') {
@@ -65,13 +273,13 @@ public class PushbackBufferedReader extends Reader {
     }
     return -1;
   }
-  
+
   private String popStack() {
     String line = pushbackStack.toString();
     pushbackStack.setLength(0);
     return line;
   }
-  
+
   private String popStack(int newLinePos) {
     int eol = newLinePos;
     if(newLinePos != 0 && pushbackStack.charAt(newLinePos-1) == '\r') {
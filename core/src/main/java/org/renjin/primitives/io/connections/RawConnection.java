@@ -0,0 +1,221 @@
+package org.renjin.primitives.io.connections;
+
+import org.renjin.eval.EvalException;
+import org.renjin.sexp.Null;
+import org.renjin.sexp.RawVector;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * A binary connection, created by {@code rawConnection()}, which reads from or
+ * writes to a buffer in memory.
+ *
+ * <p>The connection's content is held in a single {@code ByteBuffer}, whose position
+ * is the connection's position and whose limit is the connection's size. A connection
+ * which is only read from is a read-only view of the original vector's storage, so
+ * that no bytes are copied until they are read. Writable connections own a growable
+ * array.
+ */
+public class RawConnection implements SeekableConnection {
+
+  private final boolean writable;
+  private ByteBuffer buffer;
+
+  private PushbackBufferedReader reader;
+  private PrintWriter writer;
+
+  private boolean open = true;
+
+  public RawConnection(RawVector initialValue, OpenSpec spec) {
+    this.writable = spec.forWriting();
+    if(!writable) {
+      this.buffer = initialValue.asReadOnlyBuffer();
+
+    } else if(spec.forAppending()) {
+      byte[] bytes = new byte[Math.max(256, initialValue.length())];
+      initialValue.copyTo(0, bytes, 0, initialValue.length());
+      this.buffer = ByteBuffer.wrap(bytes);
+      this.buffer.limit(initialValue.length());
+      this.buffer.position(initialValue.length());
+
+    } else {
+      this.buffer = ByteBuffer.wrap(new byte[256]);
+      this.buffer.limit(0);
+    }
+  }
+
+  @Override
+  public void open(OpenSpec spec) throws IOException {
+
+  }
+
+  /**
+   * @return the buffer which backs this connection. Reading from the buffer
+   * advances the connection's position.
+   */
+  ByteBuffer getBuffer() {
+    return buffer;
+  }
+
+  @Override
+  public InputStream getInputStream() throws IOException {
+    return new BufferInputStream();
+  }
+
+  @Override
+  public PushbackBufferedReader getReader() throws IOException {
+    if(reader == null) {
+      reader = new PushbackBufferedReader(getInputStream(), Charset.defaultCharset());
+    }
+    return reader;
+  }
+
+  @Override
+  public OutputStream getOutputStream() throws IOException {
+    if(!writable) {
+      throw new EvalException("cannot write to this connection");
+    }
+    return new BufferOutputStream();
+  }
+
+  @Override
+  public PrintWriter getPrintWriter() throws IOException {
+    if(writer == null) {
+      writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), Charset.defaultCharset()));
+    }
+    return writer;
+  }
+
+  /**
+   * Ensures that there is space for at least {@code count} bytes to be
+   * written at the current position, growing the backing array if needed.
+   */
+  private void ensureCapacity(int count) {
+    int required = buffer.position() + count;
+    if(required > buffer.capacity()) {
+      int newCapacity = Math.max(required, buffer.capacity() * 2);
+      ByteBuffer grown = ByteBuffer.wrap(new byte[newCapacity]);
+      int position = buffer.position();
+      buffer.position(0);
+      grown.put(buffer);
+      grown.position(position);
+      buffer = grown;
+    }
+    if(required > buffer.limit()) {
+      buffer.limit(required);
+    }
+  }
+
+  /**
+   *
+   * @return the bytes written to this connection
+   */
+  public RawVector getValue() {
+    if(!writable) {
+      throw new EvalException("'con' is not an output rawConnection");
+    }
+    if(writer != null) {
+      writer.flush();
+    }
+    return new RawVector(buffer.array(), buffer.limit(), Null.INSTANCE);
+  }
+
+  @Override
+  public boolean isSeekable() {
+    return true;
+  }
+
+  @Override
+  public long getPosition() throws IOException {
+    return buffer.position();
+  }
+
+  @Override
+  public void setPosition(long position) throws IOException {
+    if(position < 0 || position > buffer.limit()) {
+      throw new EvalException("attempt to seek outside the range of the raw connection");
+    }
+    buffer.position((int)position);
+  }
+
+  @Override
+  public long size() throws IOException {
+    return buffer.limit();
+  }
+
+  @Override
+  public void truncate() throws IOException {
+    if(!writable) {
+      throw new EvalException("can only truncate connections open for writing");
+    }
+    buffer.limit(buffer.position());
+  }
+
+  @Override
+  public void close() throws IOException {
+    if(writer != null) {
+      writer.flush();
+    }
+    open = false;
+  }
+
+  @Override
+  public boolean isOpen() {
+    return open;
+  }
+
+  @Override
+  public String getClassName() {
+    return "rawConnection";
+  }
+
+  private class BufferInputStream extends InputStream {
+
+    @Override
+    public int read() throws IOException {
+      if(!buffer.hasRemaining()) {
+        return -1;
+      }
+      return buffer.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if(len == 0) {
+        return 0;
+      }
+      if(!buffer.hasRemaining()) {
+        return -1;
+      }
+      int count = Math.min(len, buffer.remaining());
+      buffer.get(b, off, count);
+      return count;
+    }
+
+    @Override
+    public int available() throws IOException {
+      return buffer.remaining();
+    }
+  }
+
+  private class BufferOutputStream extends OutputStream {
+
+    @Override
+    public void write(int b) throws IOException {
+      ensureCapacity(1);
+      buffer.put((byte)b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      ensureCapacity(len);
+      buffer.put(b, off, len);
+    }
+  }
+}
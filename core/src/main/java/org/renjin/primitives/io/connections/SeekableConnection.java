@@ -0,0 +1,37 @@
+package org.renjin.primitives.io.connections;
+
+import java.io.IOException;
+
+/**
+ * A {@link Connection} which supports random access, as exposed
+ * to R code through {@code seek()}, {@code isSeekable()} and {@code truncate()}
+ */
+public interface SeekableConnection extends Connection {
+
+  /**
+   * 
+   * @return true if this connection can currently be repositioned. Some
+   * connections (gzipped files, for example) implement this interface
+   * but cannot seek.
+   */
+  boolean isSeekable();
+
+  /**
+   * 
+   * @return the current position, in bytes, from the start of the connection
+   */
+  long getPosition() throws IOException;
+
+  void setPosition(long position) throws IOException;
+
+  /**
+   * 
+   * @return the total size of the connection, in bytes
+   */
+  long size() throws IOException;
+
+  /**
+   * Truncates the connection at its current position
+   */
+  void truncate() throws IOException;
+}
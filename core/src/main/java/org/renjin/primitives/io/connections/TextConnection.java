@@ -0,0 +1,219 @@
+package org.renjin.primitives.io.connections;
+
+import org.renjin.eval.EvalException;
+import org.renjin.sexp.Environment;
+import org.renjin.sexp.StringVector;
+import org.renjin.sexp.Symbol;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * A text connection, created by {@code textConnection()}, which either reads
+ * lines from an existing character vector, or accumulates lines written to it
+ * in memory.
+ *
+ * <p>When reading, the elements of the vector are returned as lines without being
+ * copied. When writing, each complete line is appended to a growable array, and
+ * if the connection is named, the variable in the given environment is updated each
+ * time the connection is flushed.
+ */
+public class TextConnection implements Connection {
+
+  private final String objectName;
+
+  private PushbackBufferedReader reader;
+
+  private Environment environment;
+  private PrintWriter writer;
+
+  private String[] lines;
+  private int lineCount;
+
+  /**
+   * The last, incomplete line written to this connection
+   */
+  private StringBuilder partialLine = new StringBuilder();
+
+  private boolean open = true;
+
+  private TextConnection(String objectName) {
+    this.objectName = objectName;
+  }
+
+  /**
+   * Creates a new connection which reads the elements of {@code lines}
+   */
+  public static TextConnection forReading(String objectName, StringVector lines) {
+    TextConnection conn = new TextConnection(objectName);
+    conn.reader = new PushbackBufferedReader(lines);
+    return conn;
+  }
+
+  /**
+   * Creates a new connection which accumulates the lines written to it.
+   *
+   * @param objectName the name of the variable to which lines should be assigned, or {@code null}
+   * if the connection is anonymous
+   * @param environment the environment in which to assign the variable
+   * @param initialLines the lines to which output should be appended
+   */
+  public static TextConnection forWriting(String objectName, Environment environment, StringVector initialLines) {
+    TextConnection conn = new TextConnection(objectName);
+    conn.environment = environment;
+    conn.lines = new String[Math.max(16, initialLines.length())];
+    for(int i=0;i!=initialLines.length();++i) {
+      conn.lines[i] = initialLines.getElementAsString(i);
+    }
+    conn.lineCount = initialLines.length();
+    conn.writer = new PrintWriter(conn.new LineWriter());
+    conn.assign();
+    return conn;
+  }
+
+  @Override
+  public void open(OpenSpec spec) throws IOException {
+
+  }
+
+  @Override
+  public InputStream getInputStream() throws IOException {
+    throw new EvalException("can only read from a binary connection");
+  }
+
+  @Override
+  public PushbackBufferedReader getReader() throws IOException {
+    if(reader == null) {
+      throw new EvalException("cannot read from this connection");
+    }
+    return reader;
+  }
+
+  @Override
+  public OutputStream getOutputStream() throws IOException {
+    throw new EvalException("can only write to a binary connection");
+  }
+
+  @Override
+  public PrintWriter getPrintWriter() throws IOException {
+    if(writer == null) {
+      throw new EvalException("cannot write to this connection");
+    }
+    return writer;
+  }
+
+  /**
+   * Appends each element of {@code x} as a line, without copying
+   * the elements through the {@code PrintWriter}.
+   */
+  public void writeLines(StringVector x, String separator) throws IOException {
+    PrintWriter writer = getPrintWriter();
+    writer.flush();
+    if(!separator.equals("\n") || partialLine.length() != 0) {
+      for(int i=0;i!=x.length();++i) {
+        writer.print(x.isElementNA(i) ? "NA" : x.getElementAsString(i));
+        writer.print(separator);
+      }
+      writer.flush();
+    } else {
+      for(int i=0;i!=x.length();++i) {
+        addLine(x.isElementNA(i) ? "NA" : x.getElementAsString(i));
+      }
+      assign();
+    }
+  }
+
+  /**
+   *
+   * @return the lines written to this connection so far
+   */
+  public StringVector getValue() {
+    if(writer == null) {
+      throw new EvalException("'con' is not an output textConnection");
+    }
+    writer.flush();
+    return toVector();
+  }
+
+  private StringVector toVector() {
+    return new StringVector(Arrays.asList(lines).subList(0, lineCount));
+  }
+
+  private void addLine(String line) {
+    if(lineCount == lines.length) {
+      lines = Arrays.copyOf(lines, lines.length * 2);
+    }
+    lines[lineCount++] = line;
+  }
+
+  private void assign() {
+    if(objectName != null) {
+      environment.setVariable(Symbol.get(objectName), toVector());
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if(writer != null && open) {
+      writer.flush();
+      if(partialLine.length() > 0) {
+        addLine(partialLine.toString());
+        partialLine.setLength(0);
+      }
+      assign();
+    }
+    open = false;
+  }
+
+  @Override
+  public boolean isOpen() {
+    return open;
+  }
+
+  @Override
+  public String getClassName() {
+    return "textConnection";
+  }
+
+  /**
+   * Splits the characters written through the {@code PrintWriter} into
+   * lines.
+   */
+  private class LineWriter extends Writer {
+
+    private boolean dirty = false;
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+      int start = off;
+      int end = off + len;
+      for(int i=off;i<end;++i) {
+        if(cbuf[i] == '\n') {
+          partialLine.append(cbuf, start, i - start);
+          addLine(partialLine.toString());
+          partialLine.setLength(0);
+          start = i + 1;
+          dirty = true;
+        }
+      }
+      partialLine.append(cbuf, start, end - start);
+    }
+
+    @Override
+    public void flush() throws IOException {
+      if(dirty) {
+        dirty = false;
+        assign();
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      flush();
+    }
+  }
+}
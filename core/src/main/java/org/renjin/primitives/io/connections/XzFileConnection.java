@@ -0,0 +1,31 @@
+package org.renjin.primitives.io.connections;
+
+import org.apache.commons.vfs.FileObject;
+import org.renjin.primitives.io.compress.Codecs;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A connection opened by {@code xzfile()}. 
+ * 
+ * <p>Like the other compressed file connections, it reads files compressed in any 
+ * of the registered formats, including the .lzma format. We cannot write the .xz 
+ * format, so the connection cannot be opened for output.
+ */
+public class XzFileConnection extends CompressedFileConnection {
+
+  public XzFileConnection(FileObject file, int compressionLevel) throws IOException {
+    super(file, Codecs.LZMA, compressionLevel);
+  }
+
+  @Override
+  protected OutputStream doOpenForOutput() throws IOException {
+    throw new IOException("writing the .xz format is not supported");
+  }
+
+  @Override
+  public String getClassName() {
+    return "xzfile";
+  }
+}
@@ -327,7 +327,7 @@ public class RDataReader {
     for(int i=0;i!=length;++i) {
       values[i] = ((CHARSEXP)readExp()).getValue();
     }
-    return new StringVector(values, readAttributes(flags));
+    return StringDictionaryVector.encode(StringVector.unsafe(values, readAttributes(flags)));
   }
 
   private SEXP readComplexExp(Flags flags) throws IOException {
@@ -374,13 +374,15 @@ public class RDataReader {
       return new CHARSEXP(StringVector.NA );
     } else  {
       byte buf[] = in.readString(length);
+      String value;
       if(flags.isUTF8Encoded()) {
-        return new CHARSEXP(new String(buf, "UTF8"));
+        value = new String(buf, "UTF8");
       } else if(flags.isLatin1Encoded()) {
-        return new CHARSEXP(new String(buf, "Latin1"));
+        value = new String(buf, "Latin1");
       } else {
-        return new CHARSEXP(new String(buf));
+        value = new String(buf);
       }
+      return new CHARSEXP(StringVector.dedup(value));
     }
   }
 
@@ -234,7 +234,7 @@ public class RDataWriter {
   }
 
   private void writeList(ListVector vector) throws IOException {
-    writeFlags(VECSXP, vector);
+    writeFlags(vector instanceof ExpressionVector ? EXPRSXP : VECSXP, vector);
     out.writeInt(vector.length());
     for(SEXP element : vector) {
       writeExp(element);
@@ -1,13 +1,16 @@
 package org.renjin.primitives.match;
 
+import java.util.Arrays;
 import java.util.HashMap;
 
 import org.renjin.eval.EvalException;
 import org.renjin.primitives.match.DuplicateSearchAlgorithm.Action;
 import org.renjin.sexp.AtomicVector;
+import org.renjin.sexp.IntVector;
 import org.renjin.sexp.Logical;
 import org.renjin.sexp.LogicalVector;
 import org.renjin.sexp.Null;
+import org.renjin.sexp.StringDictionaryVector;
 import org.renjin.sexp.Vector;
 
 import com.google.common.collect.Maps;
@@ -66,6 +69,10 @@ public class Duplicates {
       DuplicateSearchAlgorithm<ResultType> algorithm) {
    
     algorithm.init(x);
+
+    if(x instanceof StringDictionaryVector) {
+      return searchCodes((StringDictionaryVector) x, fromLast, algorithm);
+    }
     
     /** Maps elements -> first encountered index */
     HashMap<Object, Integer> seen = Maps.newHashMap();
@@ -88,4 +95,32 @@ public class Duplicates {
     }
     return algorithm.getResult();
   }  
+
+  /**
+   * Searches a dictionary-encoded vector by the codes of its elements, which
+   * are equal only if the elements are equal.
+   */
+  private static <ResultType> ResultType searchCodes(
+      StringDictionaryVector x,
+      boolean fromLast,
+      DuplicateSearchAlgorithm<ResultType> algorithm) {
+
+    /** Maps codes -> first encountered index, with NA at 0 */
+    int[] seen = new int[x.getDictionary().length() + 1];
+    Arrays.fill(seen, -1);
+
+    for(Integer index : new IndexSequence(x, fromLast)) {
+      int code = x.getCode(index);
+      int slot = code == IntVector.NA ? 0 : code;
+      if(seen[slot] == -1) {
+        algorithm.onUnique(index);
+        seen[slot] = index;
+      } else {
+        if(algorithm.onDuplicate(index, seen[slot]) == Action.STOP) {
+          return algorithm.getResult();
+        }
+      }
+    }
+    return algorithm.getResult();
+  }
 }
@@ -55,6 +55,10 @@ public class Match {
       incomparables = Null.INSTANCE;
     }
 
+    if(search instanceof StringDictionaryVector && incomparables == Null.INSTANCE) {
+      return matchCodes((StringDictionaryVector) search, table, noMatch);
+    }
+
     int[] matches = new int[search.length()];
     for(int i=0;i!=search.length();++i) {
       if( incomparables.contains(search, i)) {
@@ -72,6 +76,23 @@ public class Match {
     return matches;
   }
 
+  /**
+   * Matches each distinct value of {@code search} against {@code table} once, and
+   * looks up the match of each element by its code
+   */
+  private static int[] matchCodes(StringDictionaryVector search, AtomicVector table, int noMatch) {
+    int[] dictionaryMatches = match(search.getDictionary(), table, noMatch, Null.INSTANCE);
+    int naMatch = table.indexOfNA();
+    naMatch = naMatch >= 0 ? naMatch+1 : noMatch;
+
+    int[] matches = new int[search.length()];
+    for(int i=0;i!=matches.length;++i) {
+      int code = search.getCode(i);
+      matches[i] = code == IntVector.NA ? naMatch : dictionaryMatches[code-1];
+    }
+    return matches;
+  }
+
   /**
    * pmatch seeks matches for the elements of its first argument among those of its second.
    *
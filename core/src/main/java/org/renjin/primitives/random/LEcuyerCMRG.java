@@ -0,0 +1,147 @@
+package org.renjin.primitives.random;
+
+/**
+ * L'Ecuyer's MRG32k3a combined multiple-recursive generator, as implemented by
+ * GNU R's {@code "L'Ecuyer-CMRG"} RNG kind.
+ *
+ * <p>The generator's period of about 2^191 is divided into streams of 2^127 values,
+ * and {@link #nextStream()} jumps directly to the start of the following stream. This
+ * makes it possible to give each of several parallel workers its own stream, derived
+ * deterministically from a single seed, with no risk of the streams overlapping.
+ *
+ * <p>See P. L'Ecuyer, R. Simard, E. J. Chen and W. D. Kelton, "An Object-Oriented
+ * Random-Number Package with Many Long Streams and Substreams", Operations
+ * Research 50(6), 2002.
+ */
+public class LEcuyerCMRG {
+
+  private static final long M1 = 4294967087L;
+  private static final long M2 = 4294944443L;
+
+  private static final long A12 = 1403580L;
+  private static final long A13N = 810728L;
+  private static final long A21 = 527612L;
+  private static final long A23N = 1370589L;
+
+  private static final double NORM = 2.328306549295727688e-10;
+
+  /**
+   * The matrices which advance the two components of the state by 2^127 steps
+   */
+  private static final long[][] A1P127 = {
+      { 2427906178L, 3580155704L, 949770784L },
+      { 226153695L, 1230515664L, 3580155704L },
+      { 1988835001L, 986791581L, 1230515664L } };
+
+  private static final long[][] A2P127 = {
+      { 1464411153L, 277697599L, 1610723613L },
+      { 32183930L, 1464411153L, 1022607788L },
+      { 2824425944L, 32183930L, 2093834863L } };
+
+  /**
+   * The six components of the state: the first three are in [0, m1),
+   * the last three in [0, m2)
+   */
+  private final long[] seed;
+
+  private LEcuyerCMRG(long[] seed) {
+    this.seed = seed;
+  }
+
+  /**
+   * Creates a new generator from an integer seed, scrambling the seed
+   * in the same way as GNU R's {@code set.seed()}.
+   */
+  public LEcuyerCMRG(int initialSeed) {
+    int scrambled = initialSeed;
+    for(int j=0;j<50;j++) {
+      scrambled = (69069 * scrambled + 1);
+    }
+    seed = new long[6];
+    for(int j=0;j<6;j++) {
+      scrambled = (69069 * scrambled + 1);
+      while(unsigned(scrambled) >= M2) {
+        scrambled = (69069 * scrambled + 1);
+      }
+      seed[j] = unsigned(scrambled);
+    }
+  }
+
+  /**
+   * Creates a generator from an existing state, in the form used by
+   * {@code .Random.seed}, where each component is stored as a signed 32-bit integer.
+   */
+  public static LEcuyerCMRG fromState(int[] state) {
+    long[] seed = new long[6];
+    for(int j=0;j!=6;++j) {
+      seed[j] = unsigned(state[j]);
+    }
+    return new LEcuyerCMRG(seed);
+  }
+
+  private static long unsigned(int value) {
+    return value & 0xFFFFFFFFL;
+  }
+
+  public double nextDouble() {
+    long p1 = A12 * seed[1] - A13N * seed[0];
+    p1 %= M1;
+    if(p1 < 0) {
+      p1 += M1;
+    }
+    seed[0] = seed[1];
+    seed[1] = seed[2];
+    seed[2] = p1;
+
+    long p2 = A21 * seed[5] - A23N * seed[3];
+    p2 %= M2;
+    if(p2 < 0) {
+      p2 += M2;
+    }
+    seed[3] = seed[4];
+    seed[4] = seed[5];
+    seed[5] = p2;
+
+    return ((p1 > p2) ? (p1 - p2) : (p1 - p2 + M1)) * NORM;
+  }
+
+  /**
+   * @return a new generator positioned at the start of the stream which follows
+   * this generator's current stream. This generator is not modified.
+   */
+  public LEcuyerCMRG nextStream() {
+    long[] next = new long[6];
+    for(int i=0;i!=3;++i) {
+      long sum1 = 0;
+      long sum2 = 0;
+      for(int j=0;j!=3;++j) {
+        sum1 = (sum1 + multiplyMod(A1P127[i][j], seed[j], M1)) % M1;
+        sum2 = (sum2 + multiplyMod(A2P127[i][j], seed[j+3], M2)) % M2;
+      }
+      next[i] = sum1;
+      next[i+3] = sum2;
+    }
+    return new LEcuyerCMRG(next);
+  }
+
+  /**
+   * Computes (a * b) mod m for 32-bit unsigned a and b without overflowing
+   * a signed 64-bit long, by splitting b into 16-bit halves
+   */
+  private static long multiplyMod(long a, long b, long m) {
+    long high = (a * (b >>> 16)) % m;
+    return (((high << 16) % m) + a * (b & 0xFFFFL)) % m;
+  }
+
+  /**
+   * @return the current state, with each component stored as a signed
+   * 32-bit integer as in {@code .Random.seed}
+   */
+  public int[] getState() {
+    int[] state = new int[6];
+    for(int j=0;j!=6;++j) {
+      state[j] = (int)seed[j];
+    }
+    return state;
+  }
+}
@@ -16,11 +16,17 @@ import org.renjin.sexp.*;
 public class RNG {
 
   public MersenneTwister mersenneTwisterAlg = null;
+  public LEcuyerCMRG lecuyerAlg = null;
   public RNGtype RNG_kind = RNGtype.MERSENNE_TWISTER; //default
   public N01type N01_kind = N01type.INVERSION; //default
   int[] dummy = new int[625];
   DoubleVector seeds;
   int randomseed = 0;
+
+  /**
+   * The last stream handed out by {@link #forkStream(Context.Globals)}
+   */
+  private LEcuyerCMRG lecuyerStream = null;
   static double i2_32m1 = 2.328306437080797e-10;/* = 1/(2^32 - 1) */
   public Context.Globals context;
   
@@ -42,19 +48,23 @@ public class RNG {
   public static IntVector RNGkind(@Current Context context, int kind, int normalkind) {
 	RNG rng = context.getGlobals().rng;  
     try {
-      rng.RNG_kind = RNGtype.values()[kind];
+      if(kind == -1) {
+        rng.RNG_kind = RNGtype.MERSENNE_TWISTER;
+      } else if(!IntVector.isNA(kind)) {
+        rng.RNG_kind = RNGtype.values()[kind];
+      }
     } catch (Exception e) {
       throw new EvalException("RNGkind: unimplemented RNG kind " + kind);
     }
 
     try {
-      rng.N01_kind = N01type.values()[normalkind];
+      if(!IntVector.isNA(normalkind)) {
+        rng.N01_kind = N01type.values()[normalkind];
+      }
     } catch (Exception e) {
       throw new EvalException("invalid Normal type in RNGkind");
     }
 
-    rng.RNG_kind = RNGtype.values()[kind];
-    rng.N01_kind = N01type.values()[normalkind];
     //System.out.println("Random generator is set to " + RNG.RNG_kind + " and " + RNG.N01_kind);
     return (new IntArrayVector(rng.RNG_kind.ordinal(), rng.N01_kind.ordinal()));
   }
@@ -85,6 +95,11 @@ public class RNG {
         }
         return;
 
+      case LECUYER_CMRG:
+        rng.lecuyerAlg = new LEcuyerCMRG(seed);
+        rng.lecuyerStream = null;
+        return;
+
       case KNUTH_TAOCP:
       case KNUTH_TAOCP2:
         throw new EvalException(rng.RNG_kind + " not implemented yet");
@@ -345,6 +360,12 @@ public class RNG {
         }
         return (mersenneTwisterAlg.nextDouble());
 
+      case LECUYER_CMRG:
+        if (lecuyerAlg == null) {
+          Randomize(RNG_kind);
+        }
+        return lecuyerAlg.nextDouble();
+
       case KNUTH_TAOCP:
       case KNUTH_TAOCP2:
         throw new EvalException(RNG_kind + " not implemented yet");
@@ -381,6 +402,11 @@ public class RNG {
         }
         return;
 
+      case LECUYER_CMRG:
+        lecuyerAlg = new LEcuyerCMRG(sseed);
+        lecuyerStream = null;
+        return;
+
       case KNUTH_TAOCP:
       case KNUTH_TAOCP2:
         throw new EvalException(RNG_kind + " not implemented yet");
@@ -390,4 +416,48 @@ public class RNG {
         throw new EvalException(RNG_kind + " not implemented yet");
     }
   }
+
+  /**
+   * Creates the generator for a parallel worker, which is independent of this
+   * generator and of the generators of other workers.
+   *
+   * <p>With the {@code L'Ecuyer-CMRG} kind, successive calls return successive streams
+   * following this generator's current stream, as GNU R's {@code mc.set.seed} does, so
+   * that the results are reproducible after {@code set.seed()}. Other kinds seed the
+   * worker's generator with a value drawn from this generator.
+   */
+  public RNG forkStream(Context.Globals workerGlobals) {
+    RNG worker = new RNG(workerGlobals);
+    worker.RNG_kind = RNG_kind;
+    worker.N01_kind = N01_kind;
+    if(RNG_kind == RNGtype.LECUYER_CMRG) {
+      if(lecuyerStream == null) {
+        if(lecuyerAlg == null) {
+          Randomize(RNG_kind);
+        }
+        lecuyerStream = LEcuyerCMRG.fromState(lecuyerAlg.getState());
+      }
+      lecuyerStream = lecuyerStream.nextStream();
+      worker.lecuyerAlg = LEcuyerCMRG.fromState(lecuyerStream.getState());
+    } else {
+      worker.randomseed = (int)(unif_rand() * Integer.MAX_VALUE) + 1;
+    }
+    return worker;
+  }
+
+  @Primitive("nextRNGStream")
+  public static IntVector nextRNGStream(IntVector seed) {
+    if(seed.length() != 7 || seed.getElementAsInt(0) % 100 != RNGtype.LECUYER_CMRG.ordinal()) {
+      throw new EvalException("invalid value of 'seed'");
+    }
+    int[] state = new int[6];
+    for(int j=0;j!=6;++j) {
+      state[j] = seed.getElementAsInt(j+1);
+    }
+    int[] next = LEcuyerCMRG.fromState(state).nextStream().getState();
+    int[] result = new int[7];
+    result[0] = seed.getElementAsInt(0);
+    System.arraycopy(next, 0, result, 1, 6);
+    return new IntArrayVector(result);
+  }
 }
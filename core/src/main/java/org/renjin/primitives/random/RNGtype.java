@@ -8,6 +8,7 @@ public enum RNGtype {
   MERSENNE_TWISTER, //This is default    
   KNUTH_TAOCP,                           
   USER_UNIF,
-  KNUTH_TAOCP2                            
+  KNUTH_TAOCP2,
+  LECUYER_CMRG
   
 }
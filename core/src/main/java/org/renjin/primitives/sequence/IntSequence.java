@@ -30,6 +30,14 @@ public class IntSequence extends IntVector {
     return length;
   }
 
+  public int getFrom() {
+    return from;
+  }
+
+  public int getBy() {
+    return by;
+  }
+
   @Override
   public int getElementAsInt(int i) {
     return from + i*by;
@@ -22,6 +22,7 @@
 package org.renjin.primitives.special;
 
 import org.renjin.eval.Context;
+import org.renjin.eval.EvaluationBudget;
 import org.renjin.sexp.Environment;
 import org.renjin.sexp.FunctionCall;
 import org.renjin.sexp.Null;
@@ -55,7 +56,9 @@ public class ForFunction extends SpecialFunction {
     Symbol symbol = (Symbol) args.getElementAsSEXP(0);
     Vector elements = (Vector) context.evaluate( args.getElementAsSEXP(1), rho);
     SEXP statement = args.getElementAsSEXP(2);
+    EvaluationBudget budget = context.getGlobals().getEvaluationBudget();
     for(int i=0; i!=elements.length(); ++i) {
+      budget.step(context);
       try {
         rho.setVariable(symbol, elements.getElementAsSEXP(i));
         context.evaluate( statement, rho);
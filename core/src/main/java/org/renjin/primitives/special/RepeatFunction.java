@@ -22,6 +22,7 @@
 package org.renjin.primitives.special;
 
 import org.renjin.eval.Context;
+import org.renjin.eval.EvaluationBudget;
 import org.renjin.sexp.Environment;
 import org.renjin.sexp.FunctionCall;
 import org.renjin.sexp.Null;
@@ -39,7 +40,9 @@ public class RepeatFunction extends SpecialFunction {
   public SEXP apply(Context context, Environment rho, FunctionCall call, PairList args) {
     SEXP statement = args.getElementAsSEXP(0);
 
+    EvaluationBudget budget = context.getGlobals().getEvaluationBudget();
     while(true) {
+      budget.step(context);
       try {
         context.evaluate( statement, rho);
       } catch(BreakException e) {
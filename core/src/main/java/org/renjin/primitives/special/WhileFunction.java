@@ -22,6 +22,7 @@
 package org.renjin.primitives.special;
 
 import org.renjin.eval.Context;
+import org.renjin.eval.EvaluationBudget;
 import org.renjin.sexp.Environment;
 import org.renjin.sexp.FunctionCall;
 import org.renjin.sexp.Null;
@@ -40,7 +41,9 @@ public class WhileFunction extends SpecialFunction {
     SEXP condition = args.getElementAsSEXP(0);
     SEXP statement = args.getElementAsSEXP(1);
 
+    EvaluationBudget budget = context.getGlobals().getEvaluationBudget();
     while(asLogicalNoNA(context, call, context.evaluate( condition, rho))) {
+      budget.step(context);
 
       try {
 
@@ -42,6 +42,20 @@ public class CompleteSelection extends Selection {
     };
   }
 
+  @Override
+  public int[] getIndices() {
+    int[] indices = new int[source.length()];
+    for(int i=0;i!=indices.length;++i) {
+      indices[i] = i;
+    }
+    return indices;
+  }
+
+  @Override
+  public int getRangeStart() {
+    return 0;
+  }
+
   @Override
   public int getSourceDimensions() {
     if(sourceDim.length() == 0) {
@@ -4,8 +4,8 @@ import java.util.Iterator;
 import java.util.List;
 
 import org.renjin.eval.EvalException;
-import org.renjin.primitives.Indexes;
 import org.renjin.sexp.AtomicVector;
+import org.renjin.sexp.IntVector;
 import org.renjin.sexp.Null;
 import org.renjin.sexp.SEXP;
 import org.renjin.sexp.Symbols;
@@ -13,8 +13,8 @@ import org.renjin.sexp.Vector;
 
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.Iterators;
 import com.google.common.collect.UnmodifiableIterator;
+import com.google.common.primitives.Ints;
 
 /**
  * When multiple subscripts are provided, they are treated as selecting/deselecting 
@@ -103,62 +103,114 @@ public class DimensionSelection extends Selection {
 
   @Override
   public Iterator<Integer> iterator() {
-    if(isEmpty()) {
-      return Iterators.emptyIterator();
-    } else {
-      return new IndexIterator();
-    }
+    return Ints.asList(getIndices()).iterator();
   }
 
-
   /**
-   * Iterators over the indices selected by the subscripts
+   * Computes the indices selected by the subscripts, a column at a time.
+   * 
+   * <p>If we are given subscripts like [1:2,3:4], then we have a 
+   * subscript matrix that looks like this:
+   * 
+   * <pre>
+   * 1  3
+   * 2  3
+   * 1  4
+   * 2  4
+   * </pre>
+   * 
+   * The offset of each column of this matrix within the storage array is
+   * computed once, and then added to the offsets of the selected rows.
    */
-  private class IndexIterator extends UnmodifiableIterator<Integer> {
-
-    /**
-     * Indices within the subscript matrix. 
-     * 
-     * <p>If we are
-     * given subscripts like [1,3:4], then we have a 
-     * subscript matrix that looks like this:
-     * 
-     * <pre>
-     * 1  3
-     * 1  4
-     * </pre>
-     * 
-     * {@code subscriptIndex} is the current position within 
-     * this matrix.
-     */
-    private int subscriptIndex[];
-    private boolean hasNext = true;
-
-    private IndexIterator() {
-      subscriptIndex = new int[dim.length];
+  @Override
+  public int[] getIndices() {
+    int[] indices = new int[elementCount];
+    if(elementCount == 0) {
+      return indices;
     }
 
-    @Override
-    public boolean hasNext() {
-      return hasNext;
+    // offsets[d][i] is the offset within the storage array of the
+    // i-th index selected along dimension d
+    int offsets[][] = new int[dim.length][];
+    int stride = 1;
+    for(int d=0;d!=dim.length;++d) {
+      offsets[d] = new int[dim[d]];
+      for(int i=0;i!=dim[d];++i) {
+        int index = subscripts[d].getAt(i);
+        offsets[d][i] = IntVector.isNA(index) ? IntVector.NA : index * stride;
+      }
+      stride *= sourceDim[d];
     }
 
-    @Override
-    public Integer next() {
-      // sourceIndices is the matrix coordinates of the 
-      // the next value indicated by the subscripts
-
-      int sourceIndices[] = new int[sourceDim.length];
-      for(int i=0;i!=sourceDim.length;++i) {
-        sourceIndices[i] = subscripts[i].getAt(subscriptIndex[i]);
+    int rowOffsets[] = offsets[0];
+    int position[] = new int[dim.length];
+    int count = 0;
+    do {
+      int columnOffset = 0;
+      for(int d=1;d!=dim.length && !IntVector.isNA(columnOffset);++d) {
+        int offset = offsets[d][position[d]];
+        columnOffset = IntVector.isNA(offset) ? IntVector.NA : columnOffset + offset;
       }
+      for(int i=0;i!=rowOffsets.length;++i) {
+        if(IntVector.isNA(columnOffset) || IntVector.isNA(rowOffsets[i])) {
+          indices[count++] = IntVector.NA;
+        } else {
+          indices[count++] = columnOffset + rowOffsets[i];
+        }
+      }
+    } while(nextColumn(position));
 
-      // index refers to the position within the storage array
-      int index = Indexes.arrayIndexToVectorIndex(sourceIndices, sourceDim);
-      hasNext = Indexes.incrementArrayIndex(subscriptIndex, dim);
+    return indices;
+  }
 
-      return index;
+  /**
+   * Advances {@code position} to the next combination of indices along
+   * the second and higher dimensions
+   * 
+   * @return false if there are no more combinations
+   */
+  private boolean nextColumn(int position[]) {
+    for(int d=1;d!=dim.length;++d) {
+      if(++position[d] < dim[d]) {
+        return true;
+      }
+      position[d] = 0;
+    }
+    return false;
+  }
+
+  /**
+   * The selection is contiguous if it selects whole lengths of the first
+   * dimensions, a range along the next, and a single index along the rest,
+   * for example {@code x[,2:5]} or {@code x[,,3]}.
+   */
+  @Override
+  public int getRangeStart() {
+    int start = 0;
+    int stride = 1;
+    boolean partial = false;
+    for(int d=0;d!=dim.length;++d) {
+      Subscript subscript = subscripts[d];
+      if(!partial) {
+        int rangeStart = subscript.getRangeStart();
+        if(rangeStart < 0 || rangeStart + subscript.getCount() > sourceDim[d]) {
+          return -1;
+        }
+        start += rangeStart * stride;
+        partial = subscript.getCount() != sourceDim[d];
+      } else {
+        if(subscript.getCount() != 1) {
+          return -1;
+        }
+        int index = subscript.getAt(0);
+        if(IntVector.isNA(index) || index >= sourceDim[d]) {
+          return -1;
+        }
+        start += index * stride;
+      }
+      stride *= sourceDim[d];
     }
+    return start;
   }
 
 
@@ -21,7 +21,10 @@
 
 package org.renjin.primitives.subset;
 
+import java.util.Arrays;
+
 import org.renjin.eval.EvalException;
+import org.renjin.primitives.sequence.IntSequence;
 import org.renjin.sexp.AtomicVector;
 import org.renjin.sexp.IntVector;
 
@@ -35,7 +38,19 @@ public class PositionalSubscript extends Subscript {
   private final int indices[];
   private int count;
 
+  /**
+   * The source index of the first element if the subscript is an increasing
+   * sequence such as {@code 1:5}, whose indices are not stored, or -1
+   */
+  private int rangeStart = -1;
+
   public PositionalSubscript(AtomicVector vector) {
+    if(isIncreasingRange(vector)) {
+      indices = null;
+      count = vector.length();
+      rangeStart = ((IntSequence) vector).getFrom() - 1;
+      return;
+    }
     indices = new int[vector.length()];
     for(int i=0;i!=indices.length;++i) {
       int index = vector.getElementAsInt(i);
@@ -50,7 +65,16 @@ public class PositionalSubscript extends Subscript {
     }
   }
 
+  private static boolean isIncreasingRange(AtomicVector vector) {
+    return vector instanceof IntSequence &&
+        ((IntSequence) vector).getBy() == 1 &&
+        ((IntSequence) vector).getFrom() > 0;
+  }
+
   static boolean arePositions(AtomicVector indices) {
+    if(isIncreasingRange(indices)) {
+      return true;
+    }
     boolean hasNeg = false;
     boolean hasPos = false;
 
@@ -76,6 +100,22 @@ public class PositionalSubscript extends Subscript {
 
   @Override
   public int getAt(int i) {
+    if(indices == null) {
+      return rangeStart + i;
+    }
     return indices[i];
   }
+
+  @Override
+  public int[] toIndexArray() {
+    if(indices == null) {
+      return super.toIndexArray();
+    }
+    return Arrays.copyOf(indices, count);
+  }
+
+  @Override
+  public int getRangeStart() {
+    return rangeStart;
+  }
 }
@@ -31,6 +31,30 @@ public abstract class Selection implements Iterable<Integer> {
    */
   public abstract int getElementCount();
 
+  /**
+   * 
+   * @return the indices of the selected elements within the source vector, in
+   * order, without boxing them as the {@code Iterator} does. Indices which are
+   * {@code NA} or beyond the end of the source select {@code NA}.
+   */
+  public int[] getIndices() {
+    int[] indices = new int[getElementCount()];
+    int i = 0;
+    for(Integer index : this) {
+      indices[i++] = index;
+    }
+    return indices;
+  }
+
+  /**
+   * 
+   * @return the index of the first selected element if this selection is a
+   * contiguous run of elements of the source in increasing order, or -1 otherwise
+   */
+  public int getRangeStart() {
+    return -1;
+  }
+
   
   public abstract Iterable<Integer> getSelectionAlongDimension(int dimensionIndex);
   
@@ -42,4 +42,24 @@ public abstract class Subscript {
    * @return the source index
    */
   public abstract int getAt(int i);
+
+  /**
+   * @return the source indices of the elements selected by this
+   * {@code Subscript}, in order
+   */
+  public int[] toIndexArray() {
+    int[] indices = new int[getCount()];
+    for(int i=0;i!=indices.length;++i) {
+      indices[i] = getAt(i);
+    }
+    return indices;
+  }
+
+  /**
+   * @return the source index of the first selected element if this {@code Subscript}
+   * selects a contiguous run of elements in increasing order, or -1 otherwise
+   */
+  public int getRangeStart() {
+    return -1;
+  }
 }
@@ -22,15 +22,22 @@
 package org.renjin.primitives.subset;
 
 import com.google.common.collect.Lists;
-import com.google.common.collect.Sets;
+import org.renjin.eval.AllocationTracker;
 import org.renjin.eval.EvalException;
 import org.renjin.sexp.*;
 
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
 import java.util.List;
-import java.util.Set;
 
 public class SubscriptOperation {
 
+  /**
+   * The minimum length of a contiguous range which is returned as a 
+   * view of the source vector's storage rather than copied
+   */
+  private static final int MIN_RANGE_VIEW_LENGTH = 1024;
+
   private Vector source;
 
   private boolean drop = true;
@@ -110,35 +117,32 @@ public class SubscriptOperation {
 
     } else {
 
-      StringVector.Builder names = null;
-      if(source.getAttribute(Symbols.NAMES) != Null.INSTANCE) {
-        names = new StringVector.Builder();
-      }
-      Vector.Builder result = source.newBuilderWithInitialSize(selection.getElementCount());
-      int count = 0;
-
-      for(Integer index : selection) {
-        if(!IntVector.isNA(index) && index < source.length()) {
-          result.setFrom(count++, source, index);
-          if(names != null) {
-            names.add(source.getName(index));
-          }
-        } else {
-          result.setNA(count++);
-          if(names != null) {
-            names.addNA();
-          }
+      Vector result;
+      Vector names = Null.INSTANCE;
+      
+      int rangeStart = selection.getRangeStart();
+      if(rangeStart != -1) {
+        result = extractRange(source, rangeStart, selection.getElementCount());
+        if(source.getAttribute(Symbols.NAMES) != Null.INSTANCE) {
+          names = extractRange((Vector) source.getAttribute(Symbols.NAMES), rangeStart, 
+              selection.getElementCount());
+        }
+      } else {
+        int[] indices = selection.getIndices();
+        result = extractElements(source, indices);
+        if(source.getAttribute(Symbols.NAMES) != Null.INSTANCE) {
+          names = extractElements((Vector) source.getAttribute(Symbols.NAMES), indices);
         }
       }
-      result.setAttribute(Symbols.DIM, extractionDimension());
+      result = (Vector) result.setAttribute(Symbols.DIM, extractionDimension());
       
       // COMPUTE NAMES:
       // if only subscript is used, always draw names from the NAMES attribute
       // of the source
       if(subscripts.size() == 1 && !sourceIsSingleDimensionArray()) {        
         // (no DIMs attribute)
-        if(names != null) {
-          result.setAttribute(Symbols.NAMES, names.build());
+        if(names != Null.INSTANCE) {
+          result = (Vector) result.setAttribute(Symbols.NAMES, names);
         }
       } else {
         // otherwise treat as an array and use dimnames
@@ -156,20 +160,151 @@ public class SubscriptOperation {
           }
         }
         if(dim.length() > 1 || !drop) {
-          result.setAttribute(Symbols.DIM, dim.build());
+          result = (Vector) result.setAttribute(Symbols.DIM, dim.build());
           if(hasDimNames) {
-            result.setAttribute(Symbols.DIMNAMES, dimNames.build());
+            result = (Vector) result.setAttribute(Symbols.DIMNAMES, dimNames.build());
           }
         } else {
           if(hasDimNames) {
-            result.setAttribute(Symbols.NAMES, dimNames.build().getElementAsSEXP(0));
+            result = (Vector) result.setAttribute(Symbols.NAMES, dimNames.build().getElementAsSEXP(0));
           }
         }
       }
+      return result;
+    }
+  }
+
+  /**
+   * Copies the elements of {@code source} at {@code indices}, without attributes.
+   * Indices which are {@code NA} or beyond the end of {@code source} select {@code NA}.
+   * 
+   * <p>Elements of array-backed vectors are copied directly between arrays, a run of 
+   * consecutive indices at a time, so that selecting whole columns of a matrix 
+   * or a logical mask with long runs amounts to a few calls to {@code System.arraycopy}.
+   * The result arrays are counted by the {@link AllocationTracker}, as those of
+   * builders are.
+   */
+  static Vector extractElements(Vector source, int[] indices) {
+    if(source instanceof DoubleArrayVector) {
+      double[] values = ((DoubleArrayVector) source).toDoubleArrayUnsafe();
+      AllocationTracker.recordVector(indices.length, 8);
+      double[] result = new double[indices.length];
+      for(int i=0;i<indices.length;) {
+        int run = runLength(indices, i, values.length);
+        if(run == 0) {
+          result[i++] = DoubleVector.NA;
+        } else {
+          System.arraycopy(values, indices[i], result, i, run);
+          i += run;
+        }
+      }
+      return DoubleArrayVector.unsafe(result);
+
+    } else if(source instanceof IntArrayVector) {
+      int[] values = ((IntArrayVector) source).toIntArrayUnsafe();
+      AllocationTracker.recordVector(indices.length, 4);
+      int[] result = new int[indices.length];
+      for(int i=0;i<indices.length;) {
+        int run = runLength(indices, i, values.length);
+        if(run == 0) {
+          result[i++] = IntVector.NA;
+        } else {
+          System.arraycopy(values, indices[i], result, i, run);
+          i += run;
+        }
+      }
+      return IntArrayVector.unsafe(result);
+
+    } else if(source instanceof StringDictionaryVector) {
+      // subsets the codes, and shares the dictionary
+      StringDictionaryVector dictionaryVector = (StringDictionaryVector) source;
+      int[] codes = dictionaryVector.getCodesUnsafe();
+      AllocationTracker.recordVector(indices.length, 4);
+      int[] result = new int[indices.length];
+      for(int i=0;i<indices.length;) {
+        int run = runLength(indices, i, codes.length);
+        if(run == 0) {
+          result[i++] = IntVector.NA;
+        } else {
+          System.arraycopy(codes, indices[i], result, i, run);
+          i += run;
+        }
+      }
+      return new StringDictionaryVector(result, dictionaryVector.getDictionary());
+
+    } else if(source instanceof StringVector) {
+      String[] values = ((StringVector) source).toArrayUnsafe();
+      AllocationTracker.recordVector(indices.length, 8);
+      String[] result = new String[indices.length];
+      for(int i=0;i<indices.length;) {
+        int run = runLength(indices, i, values.length);
+        if(run == 0) {
+          result[i++] = StringVector.NA;
+        } else {
+          System.arraycopy(values, indices[i], result, i, run);
+          i += run;
+        }
+      }
+      return StringVector.unsafe(result);
+
+    } else {
+      Vector.Builder result = source.newBuilderWithInitialSize(indices.length);
+      for(int i=0;i!=indices.length;++i) {
+        int index = indices[i];
+        if(!IntVector.isNA(index) && index < source.length()) {
+          result.setFrom(i, source, index);
+        } else {
+          result.setNA(i);
+        }
+      }
       return result.build();
     }
   }
-  
+
+  /**
+   * @return the number of consecutive source indices starting at {@code indices[start]},
+   * or zero if that index selects {@code NA}
+   */
+  private static int runLength(int[] indices, int start, int sourceLength) {
+    int first = indices[start];
+    if(IntVector.isNA(first) || first >= sourceLength) {
+      return 0;
+    }
+    int end = start + 1;
+    while(end < indices.length && indices[end] == first + (end - start) && indices[end] < sourceLength) {
+      end++;
+    }
+    return end - start;
+  }
+
+  /**
+   * Extracts {@code count} consecutive elements of {@code source}, starting at 
+   * {@code start}, without attributes.
+   * 
+   * <p>Large ranges of array-backed double and integer vectors, such as {@code x[2:n]},
+   * are returned as read-only views of the source's storage array, which is never
+   * modified, as builders copy the elements of the vectors they start from. 
+   * Small ranges are copied so that they do not keep a much larger array from
+   * being collected.
+   */
+  static Vector extractRange(Vector source, int start, int count) {
+    if(start + count <= source.length() && count >= MIN_RANGE_VIEW_LENGTH && 
+        count >= source.length() / 2) {
+      if(source instanceof DoubleArrayVector) {
+        return new DoubleBufferVector(DoubleBuffer.wrap(
+            ((DoubleArrayVector) source).toDoubleArrayUnsafe(), start, count));
+      } else if(source instanceof IntArrayVector) {
+        return new IntBufferVector(IntBuffer.wrap(
+            ((IntArrayVector) source).toIntArrayUnsafe(), start, count));
+      }
+    }
+    int[] indices = new int[count];
+    for(int i=0;i!=count;++i) {
+      indices[i] = start + i;
+    }
+    return extractElements(source, indices);
+  }
+
   private boolean sourceIsSingleDimensionArray() {
     return source.getAttribute(Symbols.DIM).length() == 1;
   }
@@ -238,7 +373,7 @@ public class SubscriptOperation {
     Vector.Builder result = createReplacementBuilder(elements);
     
     int replacement = 0;
-    for(int index : selection) {
+    for(int index : selection.getIndices()) {
       assert index < source.length() || selection.getSourceDimensions() == 1;
       if(!IntVector.isNA(index)) {
         result.setFrom(index, elements, replacement++);
@@ -273,18 +408,18 @@ public class SubscriptOperation {
   }
 
   public Vector remove() {
-    Set<Integer> indicesToRemove = Sets.newHashSet();
+    boolean[] removed = new boolean[source.length()];
 
-    for(int index : selection) {
-      if(!IntVector.isNA(index)) {
-        indicesToRemove.add(index);
+    for(int index : selection.getIndices()) {
+      if(!IntVector.isNA(index) && index < removed.length) {
+        removed[index] = true;
       }
     }
 
     Vector.Builder result = source.newBuilderWithInitialSize(0);
     result.copyAttributesFrom(source);
     for(int i=0;i!=source.length();++i) {
-      if(!indicesToRemove.contains(i)) {
+      if(!removed[i]) {
         result.addFrom(source, i);
       }
     }
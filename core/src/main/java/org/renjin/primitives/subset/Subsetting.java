@@ -97,15 +97,18 @@ public class Subsetting {
   public static SEXP getElementByName(ListVector list,
       @Evaluate(false) SEXP nameExp) {
     String name = asString(nameExp);
+    int exactMatch = list.indexOfName(name);
+    if (exactMatch != -1) {
+      return list.getElementAsSEXP(exactMatch);
+    }
+
     SEXP match = null;
     int matchCount = 0;
 
     for (int i = 0; i != list.length(); ++i) {
       String elementName = list.getName(i);
       if (!StringVector.isNA(elementName)) {
-        if (elementName.equals(name)) {
-          return list.getElementAsSEXP(i);
-        } else if (elementName.startsWith(name)) {
+        if (elementName.startsWith(name)) {
           match = list.get(i);
           matchCount++;
         }
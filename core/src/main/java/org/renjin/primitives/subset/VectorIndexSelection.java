@@ -42,6 +42,16 @@ public class VectorIndexSelection extends Selection {
     };
   }
 
+  @Override
+  public int[] getIndices() {
+    return subscript.toIndexArray();
+  }
+
+  @Override
+  public int getRangeStart() {
+    return subscript.getRangeStart();
+  }
+
   @Override
   public int getSourceDimensions() {
     return 1;
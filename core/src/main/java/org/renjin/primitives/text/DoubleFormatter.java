@@ -0,0 +1,582 @@
+package org.renjin.primitives.text;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+import org.renjin.sexp.AtomicVector;
+import org.renjin.sexp.DoubleVector;
+
+/**
+ * Formats {@code double}s as R's {@code formatReal()} and {@code encodeReal()} do: the
+ * elements of a vector are first examined together to choose between fixed and scientific
+ * notation and the number of digits to show, and then each element is written
+ * with that common layout.
+ *
+ * <pre>
+ * DoubleFormatter formatter = new DoubleFormatter(7);
+ * formatter.accept(x);
+ * formatter.layout(0);
+ * for(...) {
+ *   formatter.append(out, x.getElementAsDouble(i));
+ * }
+ * </pre>
+ *
+ * <p>Values are rounded to decimal digits by scaling them by a power of ten in double-double
+ * arithmetic, which is exact enough to round correctly unless the scaled value lies within
+ * a hair of a rounding boundary; only then, and for values too large or small to scale
+ * safely, is the exact decimal expansion computed with {@link BigDecimal}. Digits are
+ * written straight into the caller's {@code StringBuilder}, so formatting
+ * a vector allocates nothing per element.
+ *
+ * <p>Instances are not thread-safe, but are cheap, and can be reused after {@link #reset()}.
+ */
+public final strictfp class DoubleFormatter {
+
+  /**
+   * The default number of significant digits, as {@code getOption("digits")}
+   */
+  public static final int DEFAULT_DIGITS = 7;
+
+  /**
+   * The number of significant digits used by {@code as.character()} and {@code deparse()}
+   */
+  public static final int CHARACTER_DIGITS = 15;
+
+  public static final int MAX_DIGITS = 22;
+
+  /**
+   * The largest number of significant digits which are rounded in a {@code long}
+   */
+  private static final int MAX_LONG_DIGITS = 17;
+
+  /**
+   * The largest number of decimal places written from a {@code long}
+   */
+  private static final int MAX_LONG_DECIMALS = 20;
+
+  private static final long[] LONG_POWERS = new long[19];
+
+  /**
+   * The powers of ten which are exactly representable as {@code double}s
+   */
+  private static final double[] DOUBLE_POWERS = new double[23];
+
+  static {
+    LONG_POWERS[0] = 1;
+    for(int i = 1; i != LONG_POWERS.length; ++i) {
+      LONG_POWERS[i] = LONG_POWERS[i - 1] * 10;
+    }
+    DOUBLE_POWERS[0] = 1;
+    for(int i = 1; i != DOUBLE_POWERS.length; ++i) {
+      DOUBLE_POWERS[i] = DOUBLE_POWERS[i - 1] * 10;
+    }
+  }
+
+  private static final double TWO_53 = 9007199254740992.0;
+
+  /**
+   * Splits a double into two halves of 26 bits each for Dekker's exact product
+   */
+  private static final double SPLITTER = 134217729.0;
+
+  /**
+   * Values outside of this range are not scaled in double-double arithmetic, as the
+   * low-order parts of the products would lose precision to underflow or overflow
+   */
+  private static final double MIN_SCALED = 1e-250;
+  private static final double MAX_SCALED = 1e250;
+
+  /**
+   * Scaled values whose fraction is this close to one half are rounded exactly
+   */
+  private static final double AMBIGUOUS = 1e-9;
+
+  private static final double LOG10_2 = 0.30102999566398119521;
+
+  private static final ThreadLocal<DoubleFormatter> CHARACTER_FORMATTER = new ThreadLocal<DoubleFormatter>() {
+    @Override
+    protected DoubleFormatter initialValue() {
+      return new DoubleFormatter(CHARACTER_DIGITS);
+    }
+  };
+
+  private final int digits;
+  private int scipen = 0;
+
+  /*
+   * The most recently decomposed value, rounded to significant digits:
+   * the digits, without trailing zeros, and the decimal exponent of the first
+   */
+  private final char[] significand = new char[MAX_DIGITS];
+  private int nsig;
+  private int kpower;
+
+  /*
+   * The double-double scratch value used for scaling
+   */
+  private double hi;
+  private double lo;
+
+  private final char[] scratch = new char[MAX_LONG_DECIMALS + 2];
+
+  /*
+   * The extent of the values accepted so far
+   */
+  private boolean negative;
+  private int maxSignedLeft;
+  private int maxRight;
+  private int maxSignificant;
+  private int maxExponent;
+  private int minExponent;
+  private boolean naFlag;
+  private boolean nanFlag;
+  private boolean posInfFlag;
+  private boolean negInfFlag;
+
+  /*
+   * The common layout
+   */
+  private boolean fixed;
+  private int decimals;
+  private int width;
+
+  /**
+   * @param digits the number of significant digits to show, between 1 and 22
+   */
+  public DoubleFormatter(int digits) {
+    if(digits < 1 || digits > MAX_DIGITS) {
+      throw new IllegalArgumentException("digits must be between 1 and " + MAX_DIGITS);
+    }
+    this.digits = digits;
+    reset();
+  }
+
+  /**
+   * Sets the penalty against scientific notation, as {@code getOption("scipen")}: fixed notation is
+   * used unless it would be more than {@code scipen} characters wider than scientific notation.
+   */
+  public DoubleFormatter setScipen(int scipen) {
+    this.scipen = scipen;
+    return this;
+  }
+
+  /**
+   * Forgets the values accepted so far, so that the formatter can lay out another vector
+   */
+  public void reset() {
+    negative = false;
+    maxSignedLeft = 0;
+    maxRight = 0;
+    maxSignificant = 0;
+    maxExponent = Integer.MIN_VALUE;
+    minExponent = Integer.MAX_VALUE;
+    naFlag = false;
+    nanFlag = false;
+    posInfFlag = false;
+    negInfFlag = false;
+    fixed = true;
+    decimals = 0;
+    width = 0;
+  }
+
+  /**
+   * Includes all the elements of {@code vector} in the layout
+   */
+  public void accept(AtomicVector vector) {
+    for(int i = 0; i != vector.length(); ++i) {
+      accept(vector.getElementAsDouble(i));
+    }
+  }
+
+  /**
+   * Includes {@code x} in the layout
+   */
+  public void accept(double x) {
+    if(Double.isNaN(x)) {
+      if(DoubleVector.isNA(x)) {
+        naFlag = true;
+      } else {
+        nanFlag = true;
+      }
+    } else if(Double.isInfinite(x)) {
+      if(x > 0) {
+        posInfFlag = true;
+      } else {
+        negInfFlag = true;
+      }
+    } else {
+      significant(x, digits);
+      int sign = x < 0 ? 1 : 0;
+      int left = kpower + 1;
+      int signedLeft = sign + (left <= 0 ? 1 : left);
+      int right = nsig - left;
+
+      if(x < 0) {
+        negative = true;
+      }
+      maxSignedLeft = Math.max(maxSignedLeft, signedLeft);
+      maxRight = Math.max(maxRight, right);
+      maxSignificant = Math.max(maxSignificant, nsig);
+      maxExponent = Math.max(maxExponent, kpower);
+      minExponent = Math.min(minExponent, kpower);
+    }
+  }
+
+  /**
+   * Chooses the notation and number of digits for the values accepted so far.
+   *
+   * @param nsmall the minimum number of decimal places to show in fixed notation
+   */
+  public void layout(int nsmall) {
+    if(maxSignificant > 0) {
+      int right = maxRight;
+      int fixedWidth = maxSignedLeft + right + (right != 0 ? 1 : 0);
+
+      int exponentDigits = (maxExponent >= 100 || minExponent <= -99) ? 3 : 2;
+      decimals = maxSignificant - 1;
+      width = (negative ? 1 : 0) + (decimals > 0 ? 1 : 0) + decimals + 3 + exponentDigits;
+
+      fixed = fixedWidth <= width + scipen;
+      if(fixed) {
+        if(nsmall > right) {
+          right = nsmall;
+          fixedWidth = maxSignedLeft + right + 1;
+        }
+        decimals = right;
+        width = fixedWidth;
+      }
+    } else {
+      fixed = true;
+      decimals = 0;
+      width = 0;
+    }
+    if(naFlag) {
+      width = Math.max(width, 2);
+    }
+    if(nanFlag || posInfFlag) {
+      width = Math.max(width, 3);
+    }
+    if(negInfFlag) {
+      width = Math.max(width, 4);
+    }
+  }
+
+  /**
+   * @return true if the values are to be written in fixed notation
+   */
+  public boolean isFixed() {
+    return fixed;
+  }
+
+  /**
+   * @return the number of digits after the decimal point, in fixed notation, or
+   * after the first digit of the mantissa, in scientific notation
+   */
+  public int getDecimals() {
+    return decimals;
+  }
+
+  /**
+   * @return the width of the widest value, as written by {@link #append(StringBuilder, double)}
+   */
+  public int getWidth() {
+    return width;
+  }
+
+  /**
+   * @return {@code x} written with the layout chosen by {@link #layout(int)}
+   */
+  public String format(double x) {
+    StringBuilder out = new StringBuilder(width);
+    append(out, x);
+    return out.toString();
+  }
+
+  /**
+   * Writes {@code x} to {@code out} with the layout chosen by {@link #layout(int)}, without padding.
+   * {@code NA} is written as "NA".
+   */
+  public StringBuilder append(StringBuilder out, double x) {
+    if(Double.isNaN(x)) {
+      out.append(DoubleVector.isNA(x) ? "NA" : "NaN");
+    } else if(Double.isInfinite(x)) {
+      out.append(x > 0 ? "Inf" : "-Inf");
+    } else if(fixed) {
+      appendFixed(out, x);
+    } else {
+      appendScientific(out, x);
+    }
+    return out;
+  }
+
+  /**
+   * Formats a single value as {@code as.character()} does, with up to 15 significant digits,
+   * in fixed notation unless scientific notation is narrower.
+   */
+  public static String toString(double x) {
+    return appendCharacter(new StringBuilder(24), x).toString();
+  }
+
+  /**
+   * Writes a single value as {@code as.character()} does to {@code out}
+   */
+  public static StringBuilder appendCharacter(StringBuilder out, double x) {
+    return CHARACTER_FORMATTER.get().appendSingle(out, x);
+  }
+
+  private StringBuilder appendSingle(StringBuilder out, double x) {
+    reset();
+    accept(x);
+    layout(0);
+    if(fixed && !Double.isNaN(x) && !Double.isInfinite(x) && kpower < digits) {
+      // the significant digits are exactly those to show
+      if(x < 0) {
+        out.append('-');
+      }
+      appendSignificandFixed(out);
+      return out;
+    }
+    return append(out, x);
+  }
+
+  private void appendSignificandFixed(StringBuilder out) {
+    if(kpower < 0) {
+      out.append("0.");
+      for(int i = -1; i > kpower; --i) {
+        out.append('0');
+      }
+      out.append(significand, 0, nsig);
+    } else if(nsig <= kpower + 1) {
+      out.append(significand, 0, nsig);
+      for(int i = nsig; i <= kpower; ++i) {
+        out.append('0');
+      }
+    } else {
+      out.append(significand, 0, kpower + 1);
+      out.append('.');
+      out.append(significand, kpower + 1, nsig - kpower - 1);
+    }
+  }
+
+  private void appendFixed(StringBuilder out, double x) {
+    double abs = Math.abs(x);
+    long scaled = decimals <= MAX_LONG_DECIMALS ? scaleAndRound(abs, decimals) : -1;
+    if(x < 0) {
+      out.append('-');
+    }
+    if(scaled < 0) {
+      out.append(new BigDecimal(abs).setScale(decimals, RoundingMode.HALF_EVEN).toPlainString());
+      return;
+    }
+    int pos = scratch.length;
+    int written = 0;
+    do {
+      scratch[--pos] = (char)('0' + scaled % 10);
+      scaled /= 10;
+      written++;
+      if(written == decimals) {
+        scratch[--pos] = '.';
+      }
+    } while(scaled != 0 || written <= decimals);
+    out.append(scratch, pos, scratch.length - pos);
+  }
+
+  private void appendScientific(StringBuilder out, double x) {
+    significant(x, decimals + 1);
+    if(x < 0) {
+      out.append('-');
+    }
+    out.append(significand[0]);
+    if(decimals > 0) {
+      out.append('.');
+      out.append(significand, 1, nsig - 1);
+      for(int i = nsig - 1; i < decimals; ++i) {
+        out.append('0');
+      }
+    }
+    out.append('e');
+    int exponent = kpower;
+    if(exponent < 0) {
+      out.append('-');
+      exponent = -exponent;
+    } else {
+      out.append('+');
+    }
+    if(exponent < 10) {
+      out.append('0');
+    }
+    out.append(exponent);
+  }
+
+  /**
+   * Rounds {@code x} to {@code precision} significant digits, storing the digits, without
+   * trailing zeros, in {@code significand} and {@code nsig}, and the decimal exponent
+   * of the first in {@code kpower}.
+   */
+  private void significant(double x, int precision) {
+    double abs = Math.abs(x);
+    if(abs == 0) {
+      significand[0] = '0';
+      nsig = 1;
+      kpower = 0;
+      return;
+    }
+    if(precision <= MAX_LONG_DIGITS) {
+      int exponent = (int) Math.floor(Math.log10(abs));
+      // log10 may be off by one close to powers of ten
+      for(int attempt = 0; attempt != 3; ++attempt) {
+        long scaled = scaleAndRound(abs, precision - 1 - exponent);
+        if(scaled < 0) {
+          break;
+        }
+        if(scaled > LONG_POWERS[precision]) {
+          exponent++;
+        } else if(scaled == LONG_POWERS[precision]) {
+          // rounded up to the next power of ten
+          setSignificand(1, exponent + 1);
+          return;
+        } else if(scaled < LONG_POWERS[precision - 1]) {
+          exponent--;
+        } else {
+          setSignificand(scaled, exponent);
+          return;
+        }
+      }
+    }
+    BigDecimal rounded = new BigDecimal(abs)
+        .round(new MathContext(precision, RoundingMode.HALF_EVEN))
+        .stripTrailingZeros();
+    String unscaled = rounded.unscaledValue().toString();
+    nsig = unscaled.length();
+    unscaled.getChars(0, nsig, significand, 0);
+    kpower = nsig - 1 - rounded.scale();
+  }
+
+  private void setSignificand(long value, int exponent) {
+    while(value % 10 == 0) {
+      value /= 10;
+    }
+    int count = 1;
+    while(count < LONG_POWERS.length && value >= LONG_POWERS[count]) {
+      count++;
+    }
+    for(int i = count - 1; i >= 0; --i) {
+      significand[i] = (char)('0' + value % 10);
+      value /= 10;
+    }
+    nsig = count;
+    kpower = exponent;
+  }
+
+  /**
+   * @return {@code abs * 10^scale}, rounded half-even to an integer, or -1 if the result
+   * is too large to hold exactly or could not be rounded safely in double-double arithmetic
+   */
+  private long scaleAndRound(double abs, int scale) {
+    if(abs == 0) {
+      return 0;
+    }
+    if(abs < TWO_53 && abs == Math.floor(abs)) {
+      long value = (long) abs;
+      if(scale >= 0) {
+        if(scale <= MAX_LONG_DIGITS && value < LONG_POWERS[MAX_LONG_DIGITS - scale]) {
+          return value * LONG_POWERS[scale];
+        }
+        return -1;
+      }
+      if(-scale >= LONG_POWERS.length) {
+        return 0;
+      }
+      long divisor = LONG_POWERS[-scale];
+      long quotient = value / divisor;
+      long remainder = value - quotient * divisor;
+      long half = divisor / 2;
+      if(remainder > half || (remainder == half && (quotient & 1) == 1)) {
+        quotient++;
+      }
+      return quotient;
+    }
+
+    int binaryExponent = Math.getExponent(abs);
+    if((binaryExponent + 1) * LOG10_2 + scale < -1) {
+      // less than 0.1
+      return 0;
+    }
+    if(binaryExponent * LOG10_2 + scale > MAX_LONG_DIGITS) {
+      return -1;
+    }
+    if(abs < MIN_SCALED || abs > MAX_SCALED) {
+      return -1;
+    }
+
+    hi = abs;
+    lo = 0;
+    int remaining = scale;
+    while(remaining > 22) {
+      multiply(DOUBLE_POWERS[22]);
+      remaining -= 22;
+    }
+    while(remaining < -22) {
+      divide(DOUBLE_POWERS[22]);
+      remaining += 22;
+    }
+    if(remaining > 0) {
+      multiply(DOUBLE_POWERS[remaining]);
+    } else if(remaining < 0) {
+      divide(DOUBLE_POWERS[-remaining]);
+    }
+    if(!(hi < 1e17)) {
+      return -1;
+    }
+
+    double floor = Math.floor(hi);
+    double fraction = (hi - floor) + lo;
+    double carry = Math.floor(fraction);
+    long integer = (long) floor + (long) carry;
+    fraction -= carry;
+    if(Math.abs(fraction - 0.5) < AMBIGUOUS) {
+      return -1;
+    }
+    if(fraction > 0.5) {
+      integer++;
+    }
+    return integer;
+  }
+
+  /**
+   * Multiplies the double-double (hi, lo) by {@code factor}
+   */
+  private void multiply(double factor) {
+    double product = hi * factor;
+    double error = productError(hi, factor, product) + lo * factor;
+    hi = product + error;
+    lo = error - (hi - product);
+  }
+
+  /**
+   * Divides the double-double (hi, lo) by {@code divisor}
+   */
+  private void divide(double divisor) {
+    double quotient = hi / divisor;
+    double product = quotient * divisor;
+    double error = productError(quotient, divisor, product);
+    double correction = (((hi - product) - error) + lo) / divisor;
+    hi = quotient + correction;
+    lo = correction - (hi - quotient);
+  }
+
+  /**
+   * @return the rounding error of the product {@code a * b}, computed exactly
+   * with Dekker's algorithm
+   */
+  private static double productError(double a, double b, double product) {
+    double t = SPLITTER * a;
+    double aHi = t - (t - a);
+    double aLo = a - aHi;
+    t = SPLITTER * b;
+    double bHi = t - (t - b);
+    double bLo = b - bHi;
+    return ((aHi * bHi - product) + aHi * bLo + aLo * bHi) + aLo * bLo;
+  }
+}
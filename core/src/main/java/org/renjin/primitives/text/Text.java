@@ -34,7 +34,6 @@ import org.renjin.primitives.text.regex.REFactory;
 import org.renjin.sexp.*;
 
 import java.nio.charset.Charset;
-import java.text.DecimalFormat;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -644,10 +643,23 @@ public class Text {
 
    * @return
    */
-  public static StringVector format(DoubleVector x, boolean trim, SEXP digits, int nsmall,
+  public static StringVector format(@Current Context context, DoubleVector x, boolean trim, SEXP digits, int nsmall,
       SEXP minWidth, int zz, boolean naEncode, SEXP scientific ) {
-       
-    List<String> elements = formatNumericalElements(x);
+
+    if(nsmall < 0 || nsmall > 20) {
+      throw new EvalException("invalid '%s' argument", "nsmall");
+    }
+    DoubleFormatter formatter = new DoubleFormatter(formatDigits(context, digits))
+        .setScipen(scipen(context, scientific));
+    formatter.accept(x);
+    formatter.layout(nsmall);
+
+    List<String> elements = Lists.newArrayListWithCapacity(x.length());
+    StringBuilder buffer = new StringBuilder(formatter.getWidth());
+    for(int i=0;i!=x.length();++i) {
+      buffer.setLength(0);
+      elements.add(formatter.append(buffer, x.getElementAsDouble(i)).toString());
+    }
     int width = calculateWidth(elements, minWidth);
     
     if(!trim) {
@@ -660,7 +672,7 @@ public class Text {
   public static StringVector format(IntVector x, boolean trim, SEXP digits, int nsmall,
       SEXP minWidth, int zz, boolean naEncode, SEXP scientific ) {
        
-    List<String> elements = formatNumericalElements(x);
+    List<String> elements = formatIntegerElements(x);
     int width = calculateWidth(elements, minWidth);
     
     if(!trim) {
@@ -730,22 +742,53 @@ public class Text {
     return sb.toString();
   }
 
-  private static List<String> formatNumericalElements(AtomicVector x) {
-    DecimalFormat format = new DecimalFormat();
-    format.setMinimumFractionDigits(0);
-    format.setGroupingUsed(false);
-    
+  private static List<String> formatIntegerElements(IntVector x) {
     List<String> strings = Lists.newArrayList();
     for(int i=0;i!=x.length();++i) {
       if(x.isElementNA(i)) {
         strings.add("NA");
       } else {
-        strings.add(format.format(x.getElementAsDouble(i)));
+        strings.add(Integer.toString(x.getElementAsInt(i)));
       }
     }
     return strings;
   }
 
+  /**
+   * @return the number of significant digits to format, from the {@code digits}
+   * argument or else {@code getOption("digits")}
+   */
+  private static int formatDigits(Context context, SEXP digits) {
+    int value;
+    if(digits == Null.INSTANCE) {
+      value = context.getGlobals().options.getInt("digits", DoubleFormatter.DEFAULT_DIGITS);
+    } else {
+      value = ((AtomicVector) digits).getElementAsInt(0);
+    }
+    if(IntVector.isNA(value) || value < 1 || value > DoubleFormatter.MAX_DIGITS) {
+      throw new EvalException("invalid '%s' argument", "digits");
+    }
+    return value;
+  }
+
+  /**
+   * @return the penalty against scientific notation: the {@code scientific} argument
+   * if it is a number, a large penalty for or against if it is logical,
+   * or else {@code getOption("scipen")}
+   */
+  private static int scipen(Context context, SEXP scientific) {
+    if(scientific instanceof LogicalVector && scientific.length() == 1) {
+      Logical value = ((LogicalVector) scientific).getElementAsLogical(0);
+      if(value != Logical.NA) {
+        return value == Logical.TRUE ? -100 : 100;
+      }
+    } else if(scientific instanceof AtomicVector && scientific.length() == 1 &&
+        !((AtomicVector) scientific).isElementNA(0)) {
+      return ((AtomicVector) scientific).getElementAsInt(0);
+    }
+    return context.getGlobals().options.getInt("scipen", 0);
+  }
+
   private static List<String> formatLogicalElements(AtomicVector x) {
     List<String> strings = Lists.newArrayList();     
     for(int i=0;i!=x.length();++i) {
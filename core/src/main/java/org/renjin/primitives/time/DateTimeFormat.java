@@ -1,6 +1,9 @@
 package org.renjin.primitives.time;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.joda.time.DateTimeZone;
 import org.joda.time.format.DateTimeFormatter;
@@ -14,11 +17,30 @@ import com.google.common.collect.Lists;
 /**
  * Factory that creates instances of DateTimeFormatter from 
  * R-style date time format strings.
+ *
+ * <p>Compiled formatters are cached, keyed by the format string, the time zone
+ * and whether the zone name is appended, as the same handful of formats are typically
+ * used over and over again by {@code strptime()} and {@code format()}.
  */
 public class DateTimeFormat  {
-  
+
+  private static final int CACHE_SIZE = 64;
+
+  private static final Map<String, DateTimeFormatter> FORMATTER_CACHE = newCache();
+
+  private static final Map<String, FixedWidthDateTimeFormat> FIXED_WIDTH_CACHE = newCache();
+
   private DateTimeFormat() { }
 
+  private static <T> Map<String, T> newCache() {
+    return Collections.synchronizedMap(new LinkedHashMap<String, T>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, T> eldest) {
+        return size() > CACHE_SIZE;
+      }
+    });
+  }
+
   public static DateTimeFormatter forPattern(String patterns, boolean useTz) {
    DateTimeFormatterBuilder builder = new DateTimeFormatterBuilder();
     
@@ -110,7 +132,7 @@ public class DateTimeFormat  {
           // leap seconds).
           // TODO: I have no idea what the docs are talking about in relation
           // to leap seconds
-          builder.appendSecondOfDay(2);
+          builder.appendSecondOfMinute(2);
           break;
           // case 'U':
           // Week of the year as decimal number (00-53) using Sunday as
@@ -172,6 +194,49 @@ public class DateTimeFormat  {
   public static DateTimeFormatter forPattern(String pattern) {
     return forPattern(pattern, false);
   }
+
+  /**
+   * Returns a, possibly cached, {@code DateTimeFormatter} for the given pattern
+   * in the given time zone.
+   */
+  public static DateTimeFormatter forPattern(String pattern, DateTimeZone timeZone, boolean useTz) {
+    String key = timeZone.getID() + "\n" + useTz + "\n" + pattern;
+    DateTimeFormatter formatter = FORMATTER_CACHE.get(key);
+    if(formatter == null) {
+      formatter = forPattern(pattern, useTz).withZone(timeZone);
+      FORMATTER_CACHE.put(key, formatter);
+    }
+    return formatter;
+  }
+
+  /**
+   * Returns a, possibly cached, {@link FixedWidthDateTimeFormat} for the given pattern.
+   *
+   * @return the compiled format, or {@code null} if the pattern is not supported
+   * by {@code FixedWidthDateTimeFormat}
+   */
+  public static FixedWidthDateTimeFormat forFixedWidthPattern(String pattern) {
+    synchronized (FIXED_WIDTH_CACHE) {
+      if(FIXED_WIDTH_CACHE.containsKey(pattern)) {
+        return FIXED_WIDTH_CACHE.get(pattern);
+      }
+    }
+    FixedWidthDateTimeFormat format = FixedWidthDateTimeFormat.compile(pattern);
+    FIXED_WIDTH_CACHE.put(pattern, format);
+    return format;
+  }
+
+  /**
+   * Creates a {@code List} of {@link FixedWidthDateTimeFormat}s from a {@code StringVector}.
+   * Elements are {@code null} where the pattern is not supported.
+   */
+  public static List<FixedWidthDateTimeFormat> forFixedWidthPatterns(StringVector patterns) {
+    List<FixedWidthDateTimeFormat> formats = Lists.newArrayListWithCapacity(patterns.length());
+    for(String pattern : patterns) {
+      formats.add(forFixedWidthPattern(pattern));
+    }
+    return formats;
+  }
   
   /**
    * Creates a {@code List} of {@code DateTimeFormatter}s from a {@code StringVector}
@@ -183,7 +248,7 @@ public class DateTimeFormat  {
   public static List<DateTimeFormatter> forPatterns(StringVector patterns, DateTimeZone timeZone, boolean useTz) {
     List<DateTimeFormatter> formatters = Lists.newArrayListWithCapacity(patterns.length());
     for(String format : patterns) {
-      formatters.add(forPattern(format, useTz).withZone(timeZone));
+      formatters.add(forPattern(format, timeZone, useTz));
     }
     return formatters;
   }
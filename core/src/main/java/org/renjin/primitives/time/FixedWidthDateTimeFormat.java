@@ -0,0 +1,295 @@
+package org.renjin.primitives.time;
+
+import org.joda.time.DateTimeZone;
+
+/**
+ * Parses and formats date times for the common numeric formats, such as
+ * {@code "%Y-%m-%d %H:%M:%S"}, directly to and from an array of calendar fields,
+ * without allocating a {@code DateTime} or going through Joda's general
+ * formatter for each element.
+ *
+ * <p>Only patterns composed of {@code %Y}, {@code %m}, {@code %d}, {@code %H},
+ * {@code %M}, {@code %S} (or {@code %OS}), {@code %%} and literal characters, and
+ * which include at least the year, month and day, are supported. Input which this
+ * class cannot handle is left to the {@code DateTimeFormatter} built by
+ * {@link DateTimeFormat}, so that the results of both paths are always the same.
+ */
+public final class FixedWidthDateTimeFormat {
+
+  public static final int YEAR = 0;
+  public static final int MONTH = 1;
+  public static final int DAY_OF_MONTH = 2;
+  public static final int HOUR = 3;
+  public static final int MINUTE = 4;
+  public static final int SECOND = 5;
+
+  /**
+   * The length of the array of fields, in the order above. Months and days
+   * are 1-based, as in Joda.
+   */
+  public static final int FIELD_COUNT = 6;
+
+  /**
+   * Returned by {@link #toMillis(int[], DateTimeZone)} for local times which
+   * do not exist in the time zone.
+   */
+  public static final long INVALID_INSTANT = Long.MIN_VALUE;
+
+  private static final int LITERAL = -1;
+
+  private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+  private static final int[] DAYS_BEFORE_MONTH =
+      { 0, 31, 59, 90, 120, 151, 181, 212, 243, 273, 304, 334 };
+
+  /**
+   * The field parsed or printed by each element of the pattern, or
+   * {@code LITERAL}
+   */
+  private final int[] elements;
+  private final char[] literals;
+  private final int maxLength;
+
+  private FixedWidthDateTimeFormat(int[] elements, char[] literals, int maxLength) {
+    this.elements = elements;
+    this.literals = literals;
+    this.maxLength = maxLength;
+  }
+
+  /**
+   * Compiles an R-style format string.
+   *
+   * @return the compiled format, or {@code null} if the pattern contains specifiers
+   * which are not supported by this class.
+   */
+  public static FixedWidthDateTimeFormat compile(String pattern) {
+    int[] elements = new int[pattern.length()];
+    char[] literals = new char[pattern.length()];
+    int count = 0;
+    int maxLength = 0;
+    boolean[] present = new boolean[FIELD_COUNT];
+
+    for(int i=0;i<pattern.length();++i) {
+      char c = pattern.charAt(i);
+      int field = LITERAL;
+      if(c == '%' && i+1 < pattern.length()) {
+        char specifier = pattern.charAt(++i);
+        switch(specifier) {
+        case '%':
+          c = '%';
+          break;
+        case 'Y':
+          field = YEAR;
+          break;
+        case 'm':
+          field = MONTH;
+          break;
+        case 'd':
+          field = DAY_OF_MONTH;
+          break;
+        case 'H':
+          field = HOUR;
+          break;
+        case 'M':
+          field = MINUTE;
+          break;
+        case 'S':
+          field = SECOND;
+          break;
+        case 'O':
+          if(i+1 < pattern.length() && pattern.charAt(i+1) == 'S') {
+            i++;
+            field = SECOND;
+            break;
+          }
+          return null;
+        default:
+          return null;
+        }
+      }
+      elements[count] = field;
+      literals[count] = c;
+      count++;
+      if(field == LITERAL) {
+        maxLength += 1;
+      } else {
+        present[field] = true;
+        maxLength += maxWidth(field);
+      }
+    }
+    if(!present[YEAR] || !present[MONTH] || !present[DAY_OF_MONTH]) {
+      return null;
+    }
+    int[] trimmedElements = new int[count];
+    char[] trimmedLiterals = new char[count];
+    System.arraycopy(elements, 0, trimmedElements, 0, count);
+    System.arraycopy(literals, 0, trimmedLiterals, 0, count);
+    return new FixedWidthDateTimeFormat(trimmedElements, trimmedLiterals, maxLength);
+  }
+
+  private static int maxWidth(int field) {
+    return field == YEAR ? 4 : 2;
+  }
+
+  /**
+   * @return the maximum number of characters written by {@link #format(int[], char[])}
+   */
+  public int getMaxLength() {
+    return maxLength;
+  }
+
+  /**
+   * Parses {@code text} into {@code fields}. Fields which do not appear in the pattern
+   * are set to zero.
+   *
+   * @return true if the whole of {@code text} matched the pattern and the resulting
+   * fields form a valid date and time.
+   */
+  public boolean parse(String text, int[] fields) {
+    fields[HOUR] = 0;
+    fields[MINUTE] = 0;
+    fields[SECOND] = 0;
+
+    int pos = 0;
+    int length = text.length();
+    for(int i=0;i!=elements.length;++i) {
+      int field = elements[i];
+      if(field == LITERAL) {
+        if(pos >= length || text.charAt(pos) != literals[i]) {
+          return false;
+        }
+        pos++;
+      } else {
+        int start = pos;
+        int end = Math.min(length, pos + maxWidth(field));
+        int value = 0;
+        while(pos < end) {
+          int digit = text.charAt(pos) - '0';
+          if(digit < 0 || digit > 9) {
+            break;
+          }
+          value = value * 10 + digit;
+          pos++;
+        }
+        if(pos == start) {
+          return false;
+        }
+        fields[field] = value;
+      }
+    }
+    return pos == length && isValid(fields);
+  }
+
+  /**
+   * Formats {@code fields}, which must be valid and have a year between 0 and 9999,
+   * into {@code buffer}.
+   *
+   * @return the number of characters written
+   */
+  public int format(int[] fields, char[] buffer) {
+    int pos = 0;
+    for(int i=0;i!=elements.length;++i) {
+      int field = elements[i];
+      if(field == LITERAL) {
+        buffer[pos++] = literals[i];
+      } else if(field == YEAR) {
+        int year = fields[YEAR];
+        if(year >= 1000) {
+          buffer[pos++] = (char)('0' + year / 1000);
+        }
+        if(year >= 100) {
+          buffer[pos++] = (char)('0' + (year / 100) % 10);
+        }
+        if(year >= 10) {
+          buffer[pos++] = (char)('0' + (year / 10) % 10);
+        }
+        buffer[pos++] = (char)('0' + year % 10);
+      } else {
+        int value = fields[field];
+        buffer[pos++] = (char)('0' + value / 10);
+        buffer[pos++] = (char)('0' + value % 10);
+      }
+    }
+    return pos;
+  }
+
+  /**
+   * @return true if the fields are within the ranges accepted by Joda's
+   * ISO chronology, with a year between 0 and 9999
+   */
+  public static boolean isValid(int[] fields) {
+    int year = fields[YEAR];
+    int month = fields[MONTH];
+    return year >= 0 && year <= 9999 &&
+        month >= 1 && month <= 12 &&
+        fields[DAY_OF_MONTH] >= 1 && fields[DAY_OF_MONTH] <= daysInMonth(year, month) &&
+        fields[HOUR] >= 0 && fields[HOUR] <= 23 &&
+        fields[MINUTE] >= 0 && fields[MINUTE] <= 59 &&
+        fields[SECOND] >= 0 && fields[SECOND] <= 59;
+  }
+
+  public static boolean isLeapYear(int year) {
+    return (year % 4 == 0) && (year % 100 != 0 || year % 400 == 0);
+  }
+
+  private static int daysInMonth(int year, int month) {
+    if(month == 2) {
+      return isLeapYear(year) ? 29 : 28;
+    } else if(month == 4 || month == 6 || month == 9 || month == 11) {
+      return 30;
+    } else {
+      return 31;
+    }
+  }
+
+  /**
+   * @return the number of days between 1970-01-01 and the given date
+   * in the proleptic Gregorian calendar
+   */
+  public static long daysSinceEpoch(int year, int month, int dayOfMonth) {
+    long y = month <= 2 ? year - 1 : year;
+    long era = (y >= 0 ? y : y - 399) / 400;
+    long yearOfEra = y - era * 400;
+    long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + dayOfMonth - 1;
+    long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+    return era * 146097 + dayOfEra - 719468;
+  }
+
+  /**
+   * @return the 0-based day of the year of the given date
+   */
+  public static int dayOfYear(int year, int month, int dayOfMonth) {
+    int days = DAYS_BEFORE_MONTH[month - 1] + dayOfMonth - 1;
+    if(month > 2 && isLeapYear(year)) {
+      days ++;
+    }
+    return days;
+  }
+
+  /**
+   * @return the day of the week of the given date, with Sunday as 0
+   */
+  public static int dayOfWeek(int year, int month, int dayOfMonth) {
+    // 1970-01-01 was a Thursday
+    long day = (daysSinceEpoch(year, month, dayOfMonth) + 4) % 7;
+    return (int)(day < 0 ? day + 7 : day);
+  }
+
+  /**
+   * Converts valid local fields to an instant, resolving the offset in the same
+   * way as Joda's {@code ZonedChronology}.
+   *
+   * @return milliseconds since the epoch, or {@link #INVALID_INSTANT} if the local
+   * time falls in a gap caused by a time zone offset transition.
+   */
+  public static long toMillis(int[] fields, DateTimeZone zone) {
+    long localMillis = daysSinceEpoch(fields[YEAR], fields[MONTH], fields[DAY_OF_MONTH]) * MILLIS_PER_DAY +
+        ((fields[HOUR] * 60L + fields[MINUTE]) * 60L + fields[SECOND]) * 1000L;
+    int offset = zone.getOffsetFromLocal(localMillis);
+    long millis = localMillis - offset;
+    if(zone.getOffset(millis) != offset) {
+      return INVALID_INSTANT;
+    }
+    return millis;
+  }
+}
@@ -3,6 +3,8 @@ package org.renjin.primitives.time;
 import org.joda.time.DateTime;
 import org.renjin.sexp.DoubleArrayVector;
 import org.renjin.sexp.DoubleVector;
+import org.renjin.sexp.Null;
+import org.renjin.sexp.PairList;
 import org.renjin.sexp.StringVector;
 import org.renjin.sexp.Symbols;
 
@@ -32,6 +34,14 @@ public class PosixCtVector extends TimeVector {
   public DateTime getElementAsDateTime(int i) {
     return new DateTime((long)(vector.getElementAsDouble(i)*MILLISECONDS_PER_SECOND));
   }  
+
+  /**
+   * Creates a POSIXct vector from an array of seconds since the epoch
+   */
+  public static DoubleVector fromSeconds(double[] seconds) {
+    return new DoubleArrayVector(seconds, 
+        new PairList.Node(Symbols.CLASS, new StringVector("POSIXct", "POSIXt"), Null.INSTANCE));
+  }
   
   public static class Builder {
     private final DoubleArrayVector.Builder vector = new DoubleArrayVector.Builder();
@@ -52,6 +52,33 @@ public class PosixLtVector extends TimeVector {
     return seconds.length();
   }
 
+  public DateTimeZone getTimeZone() {
+    return timeZone;
+  }
+
+  /**
+   * Copies the calendar fields of the element at {@code index} into {@code fields},
+   * indexed by the constants of {@link FixedWidthDateTimeFormat}.
+   *
+   * @return false if any of the fields are {@code NA}
+   */
+  public boolean getLocalFields(int index, int[] fields) {
+    fields[FixedWidthDateTimeFormat.YEAR] = years.getElementAsInt(index);
+    fields[FixedWidthDateTimeFormat.MONTH] = monthsOfYear.getElementAsInt(index);
+    fields[FixedWidthDateTimeFormat.DAY_OF_MONTH] = daysOfMonth.getElementAsInt(index);
+    fields[FixedWidthDateTimeFormat.HOUR] = hours.getElementAsInt(index);
+    fields[FixedWidthDateTimeFormat.MINUTE] = minutes.getElementAsInt(index);
+    fields[FixedWidthDateTimeFormat.SECOND] = seconds.getElementAsInt(index);
+    for(int i=0;i!=FixedWidthDateTimeFormat.FIELD_COUNT;++i) {
+      if(IntVector.isNA(fields[i])) {
+        return false;
+      }
+    }
+    fields[FixedWidthDateTimeFormat.YEAR] += 1900;
+    fields[FixedWidthDateTimeFormat.MONTH] += 1;
+    return true;
+  }
+
   @Override
   public DateTime getElementAsDateTime(int index) {
     return new DateTime(
@@ -65,7 +92,7 @@ public class PosixLtVector extends TimeVector {
   }
 
   public static class Builder {
-    private ListVector.NamedBuilder list = new ListVector.NamedBuilder(9);
+    private ListVector.NamedBuilder list = new ListVector.NamedBuilder(0, 9);
     private IntArrayVector.Builder second = new IntArrayVector.Builder();
     private IntArrayVector.Builder minute = new IntArrayVector.Builder();
     private IntArrayVector.Builder hour = new IntArrayVector.Builder();
@@ -144,4 +171,105 @@ public class PosixLtVector extends TimeVector {
       return list.build();
     }
   }
+
+  /**
+   * Builds a POSIXlt list of a known length by writing each component directly
+   * into the array backing its {@code IntArrayVector}, so that elements parsed by
+   * {@link FixedWidthDateTimeFormat} do not need a {@code DateTime}.
+   */
+  public static class ColumnBuilder {
+    private final int[] second;
+    private final int[] minute;
+    private final int[] hour;
+    private final int[] dayOfMonth;
+    private final int[] month;
+    private final int[] year;
+    private final int[] weekday;
+    private final int[] dayOfYear;
+    private final int[] dst;
+    private DateTimeZone timeZone;
+
+    public ColumnBuilder(int length) {
+      second = new int[length];
+      minute = new int[length];
+      hour = new int[length];
+      dayOfMonth = new int[length];
+      month = new int[length];
+      year = new int[length];
+      weekday = new int[length];
+      dayOfYear = new int[length];
+      dst = new int[length];
+    }
+
+    /**
+     * Sets the element at {@code index} from valid local calendar fields.
+     *
+     * @param fields the fields, indexed by the constants of {@link FixedWidthDateTimeFormat}
+     * @param dstFlag 1 if daylight savings time is in effect, 0 if not, or -1 if unknown
+     */
+    public ColumnBuilder set(int index, int[] fields, int dstFlag) {
+      int y = fields[FixedWidthDateTimeFormat.YEAR];
+      int m = fields[FixedWidthDateTimeFormat.MONTH];
+      int d = fields[FixedWidthDateTimeFormat.DAY_OF_MONTH];
+      second[index] = fields[FixedWidthDateTimeFormat.SECOND];
+      minute[index] = fields[FixedWidthDateTimeFormat.MINUTE];
+      hour[index] = fields[FixedWidthDateTimeFormat.HOUR];
+      dayOfMonth[index] = d;
+      month[index] = m - 1;
+      year[index] = y - 1900;
+      weekday[index] = FixedWidthDateTimeFormat.dayOfWeek(y, m, d);
+      dayOfYear[index] = FixedWidthDateTimeFormat.dayOfYear(y, m, d);
+      dst[index] = dstFlag;
+      return this;
+    }
+
+    public ColumnBuilder set(int index, DateTime time) {
+      second[index] = time.getSecondOfMinute();
+      minute[index] = time.getMinuteOfHour();
+      hour[index] = time.getHourOfDay();
+      dayOfMonth[index] = time.getDayOfMonth();
+      month[index] = time.getMonthOfYear()-1;
+      year[index] = time.getYear()-1900;
+      weekday[index] = Builder.getRDayOfWeek(time);
+      dayOfYear[index] = time.getDayOfYear()-1;
+      dst[index] = Builder.getDstFlag(time);
+      return this;
+    }
+
+    public ColumnBuilder setNA(int index) {
+      second[index] = IntVector.NA;
+      minute[index] = IntVector.NA;
+      hour[index] = IntVector.NA;
+      dayOfMonth[index] = IntVector.NA;
+      month[index] = IntVector.NA;
+      year[index] = IntVector.NA;
+      weekday[index] = IntVector.NA;
+      dayOfYear[index] = IntVector.NA;
+      dst[index] = -1;
+      return this;
+    }
+
+    public ColumnBuilder withTimeZone(DateTimeZone tz) {
+      this.timeZone = tz;
+      return this;
+    }
+
+    public ListVector buildListVector() {
+      ListVector.NamedBuilder list = new ListVector.NamedBuilder(0, 9);
+      list.add(SECOND_FIELD, new IntArrayVector(second, Null.INSTANCE));
+      list.add(MINUTE_FIELD, new IntArrayVector(minute, Null.INSTANCE));
+      list.add(HOUR_FIELD, new IntArrayVector(hour, Null.INSTANCE));
+      list.add(DAY_OF_MONTH_FIELD, new IntArrayVector(dayOfMonth, Null.INSTANCE));
+      list.add(MONTH_FIELD, new IntArrayVector(month, Null.INSTANCE));
+      list.add(YEAR_FIELD, new IntArrayVector(year, Null.INSTANCE));
+      list.add(WEEKDAY_FIELD, new IntArrayVector(weekday, Null.INSTANCE));
+      list.add(DAY_OF_YEAR_FIELD, new IntArrayVector(dayOfYear, Null.INSTANCE));
+      list.add(DST_FIELD, new IntArrayVector(dst, Null.INSTANCE));
+      if(timeZone != null) {
+        list.setAttribute(Symbols.TZONE, new StringVector(timeZone.getID()));
+      }
+      list.setAttribute(Symbols.CLASS, new StringVector("POSIXlt", "POSIXt"));
+      return list.build();
+    }
+  }
 }
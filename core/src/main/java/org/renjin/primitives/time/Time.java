@@ -53,6 +53,10 @@ public class Time {
   
   /**
    * Parses a string value into a date time value. 
+   * 
+   * <p>Elements whose format is supported by {@link FixedWidthDateTimeFormat} are parsed
+   * directly into the components of the result; everything else is parsed by Joda.
+   * 
    * @param x
    * @param format
    * @param tz
@@ -67,16 +71,30 @@ public class Time {
     DateTimeZone timeZone = timeZoneFromRSpecification(tz);
 
     List<DateTimeFormatter> formatters = DateTimeFormat.forPatterns(formats, timeZone, false);
+    List<FixedWidthDateTimeFormat> fixedWidthFormats = DateTimeFormat.forFixedWidthPatterns(formats);
     
-    PosixLtVector.Builder result = new PosixLtVector.Builder();
     int resultLength = Math.max(x.length(), formats.length());
+    PosixLtVector.ColumnBuilder result = new PosixLtVector.ColumnBuilder(resultLength);
+    int[] fields = new int[FixedWidthDateTimeFormat.FIELD_COUNT];
     for(int i=0;i!=resultLength;++i) {
-      DateTimeFormatter formatter = formatters.get(i % formatters.size());
       String string = x.getElementAsString(i % x.length());
-      try {
-        result.add(formatter.parseDateTime(string));
-      } catch(IllegalArgumentException e) {
-        result.addNA();
+      FixedWidthDateTimeFormat fixedWidthFormat = fixedWidthFormats.get(i % fixedWidthFormats.size());
+      if(string == null) {
+        result.setNA(i);
+      } else if(fixedWidthFormat != null && fixedWidthFormat.parse(string, fields)) {
+        long millis = FixedWidthDateTimeFormat.toMillis(fields, timeZone);
+        if(millis == FixedWidthDateTimeFormat.INVALID_INSTANT) {
+          result.setNA(i);
+        } else {
+          result.set(i, fields, timeZone.isStandardOffset(millis) ? 0 : 1);
+        }
+      } else {
+        DateTimeFormatter formatter = formatters.get(i % formatters.size());
+        try {
+          result.set(i, formatter.parseDateTime(string));
+        } catch(IllegalArgumentException e) {
+          result.setNA(i);
+        }
       }
     }   
     if(!Strings.isNullOrEmpty(tz)) {
@@ -93,9 +111,21 @@ public class Time {
    */
   @Primitive("as.POSIXct")
   public static DoubleVector asPOSIXct(ListVector x, String tz) {
-    return new PosixCtVector.Builder()
-        .addAll(new PosixLtVector(x))
-        .buildDoubleVector();
+    PosixLtVector dateTimes = new PosixLtVector(x);
+    DateTimeZone timeZone = dateTimes.getTimeZone();
+    double[] seconds = new double[dateTimes.length()];
+    int[] fields = new int[FixedWidthDateTimeFormat.FIELD_COUNT];
+    for(int i=0;i!=seconds.length;++i) {
+      if(!dateTimes.getLocalFields(i, fields)) {
+        seconds[i] = DoubleVector.NA;
+      } else if(FixedWidthDateTimeFormat.isValid(fields)) {
+        long millis = FixedWidthDateTimeFormat.toMillis(fields, timeZone);
+        seconds[i] = millis == FixedWidthDateTimeFormat.INVALID_INSTANT ? DoubleVector.NA : millis / 1000;
+      } else {
+        seconds[i] = dateTimes.getElementAsDateTime(i).getMillis() / 1000;
+      }
+    }
+    return PosixCtVector.fromSeconds(seconds);
   }
   
   @Primitive("as.POSIXlt") 
@@ -122,21 +152,49 @@ public class Time {
   @Primitive("format.POSIXlt")
   public static StringVector formatPOSIXlt(ListVector x, StringVector patterns, boolean useTz) {
 
-    
     PosixLtVector dateTimes = new PosixLtVector(x);
-    List<DateTimeFormatter> formatters = DateTimeFormat.forPatterns(patterns, DateTimeZone.getDefault(), useTz);
+    if(dateTimes.length() == 0 || patterns.length() == 0) {
+      return new StringVector();
+    }
+    DateTimeZone timeZone = DateTimeZone.getDefault();
+    List<DateTimeFormatter> formatters = DateTimeFormat.forPatterns(patterns, timeZone, useTz);
+
+    // The calendar fields can only be written out as they are if no conversion
+    // between time zones is required
+    List<FixedWidthDateTimeFormat> fixedWidthFormats = null;
+    char[] buffer = null;
+    if(!useTz && dateTimes.getTimeZone().equals(timeZone)) {
+      fixedWidthFormats = DateTimeFormat.forFixedWidthPatterns(patterns);
+      int maxLength = 0;
+      for(FixedWidthDateTimeFormat format : fixedWidthFormats) {
+        if(format != null) {
+          maxLength = Math.max(maxLength, format.getMaxLength());
+        }
+      }
+      buffer = new char[maxLength];
+    }
     
-    StringVector.Builder result = new StringVector.Builder();
     int resultLength = Math.max(dateTimes.length(), patterns.length());
+    String[] result = new String[resultLength];
+    int[] fields = new int[FixedWidthDateTimeFormat.FIELD_COUNT];
 
     for(int i=0;i!=resultLength;++i) {
-      DateTimeFormatter formatter = formatters.get(i % formatters.size());
-      DateTime dateTime = dateTimes.getElementAsDateTime(i % dateTimes.length());
-      
-      result.add(formatter.print(dateTime));
+      int index = i % dateTimes.length();
+      if(!dateTimes.getLocalFields(index, fields)) {
+        result[i] = StringVector.NA;
+        continue;
+      }
+      FixedWidthDateTimeFormat fixedWidthFormat = fixedWidthFormats == null ? null :
+          fixedWidthFormats.get(i % fixedWidthFormats.size());
+      if(fixedWidthFormat != null && FixedWidthDateTimeFormat.isValid(fields)) {
+        result[i] = new String(buffer, 0, fixedWidthFormat.format(fields, buffer));
+      } else {
+        DateTimeFormatter formatter = formatters.get(i % formatters.size());
+        result[i] = formatter.print(dateTimes.getElementAsDateTime(index));
+      }
     }
     
-    return result.build();
+    return new StringVector(result);
   }
   
   /**
@@ -34,6 +34,10 @@ public abstract class AbstractAtomicVector extends AbstractVector implements Ato
     super(attributes);
   }
 
+  protected AbstractAtomicVector(AttributeMap attributes) {
+    super(attributes);
+  }
+
   protected AbstractAtomicVector() {
   }
 
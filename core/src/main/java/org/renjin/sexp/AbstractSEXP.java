@@ -33,23 +33,26 @@ import java.util.Collections;
  */
 public abstract class AbstractSEXP implements SEXP {
 
-  protected PairList attributes;
+  protected AttributeMap attributes;
 
   private final boolean object;
 
   protected AbstractSEXP() {
-    this.attributes = Null.INSTANCE;
+    this.attributes = AttributeMap.EMPTY;
     this.object = false;
   }
 
   protected AbstractSEXP(PairList attributes) {
-    Preconditions.checkNotNull(attributes);
+    this(AttributeMap.fromPairList(Preconditions.checkNotNull(attributes)));
+  }
+
+  protected AbstractSEXP(AttributeMap attributes) {
     this.attributes = attributes;
-    this.object = attributes.findByTag(Symbols.CLASS).length() > 0;
+    this.object = attributes.hasClass();
   }
 
   protected boolean checkDims() {
-    Vector dimVector = (Vector)attributes.findByTag(Symbols.DIM);
+    Vector dimVector = (Vector)attributes.getDim();
     if(dimVector.length() == 0) {
       return true;
     }
@@ -68,18 +71,35 @@ public abstract class AbstractSEXP implements SEXP {
 
   @Override
   public final boolean hasAttributes() {
-    return attributes != null && attributes.length() != 0;
+    return attributes != null && !attributes.isEmpty();
   }
 
+  /**
+   * @return a copy of the attributes of this expression, as the list held by the
+   * attribute map may be shared with other expressions and must not be modified
+   */
   @Override
   public PairList getAttributes() {
-    if(attributes == Null.INSTANCE) {
-      return attributes;
+    if(attributes.isEmpty()) {
+      return Null.INSTANCE;
+    } else if(attributes.hasCompactRowNames()) {
+      return Attributes.expandAttributes(attributes.toPairList());
     } else {
-      return Attributes.expandAttributes((PairList)attributes);
+      PairList.Builder copy = new PairList.Builder();
+      for(PairList.Node node : attributes.toPairList().nodes()) {
+        copy.add(node.getRawTag(), node.getValue());
+      }
+      return copy.build();
     }
   }
 
+  /**
+   * @return the attributes of this expression, as they are held
+   */
+  public AttributeMap getAttributeMap() {
+    return attributes;
+  }
+
   @Override
   public boolean isNumeric() {
     return false;
@@ -107,7 +127,7 @@ public abstract class AbstractSEXP implements SEXP {
    */
   @Override
   public StringVector getS3Class() {
-    SEXP classAttribute = attributes.findByTag(Symbols.CLASS);
+    SEXP classAttribute = attributes.getClassVector();
     if(classAttribute instanceof StringVector) {
       return (StringVector) classAttribute;
     }
@@ -125,26 +145,18 @@ public abstract class AbstractSEXP implements SEXP {
 
   @Override
   public boolean inherits(String sClassName) {
-    if(isObject()) {
-      Vector classes = (Vector)getAttribute(Symbols.CLASS);
-      for(int i=0;i!=classes.length();++i) {
-        if(sClassName.equals(classes.getElementAsString(i))) {
-          return true;
-        }
-      }
-    }
-    return false;
+    return isObject() && attributes.inherits(sClassName);
   }
 
   @Override
   public AtomicVector getNames() {
     // either Null.INSTANCE or StringVector, enforced below
-    return (AtomicVector) attributes.findByTag(Symbols.NAMES);
+    return (AtomicVector) attributes.getNames();
   }
 
   @Override
   public String getName(int index) {
-    SEXP names = attributes.findByTag(Symbols.NAMES);
+    SEXP names = attributes.getNames();
     if(names instanceof StringVector) {
       return ((StringVector) names).getElement(index);
     }
@@ -163,14 +175,9 @@ public abstract class AbstractSEXP implements SEXP {
   @Override
   public final int getIndexByName(String name) {
     if(attributes != null) {
-      SEXP namesExp = attributes.findByTag(Symbols.NAMES);
+      SEXP namesExp = attributes.getNames();
       if(namesExp instanceof StringVector) {
-        StringVector names = (StringVector) namesExp;
-        for(int i=0;i!=names.length();++i) {
-          if(names.getElement(i).equals(name)) {
-            return i;
-          }
-        }
+        return ((StringVector) namesExp).indexOf(name);
       }
     }
     return -1;
@@ -183,8 +190,8 @@ public abstract class AbstractSEXP implements SEXP {
 
   @Override
   public SEXP getAttribute(Symbol name) {
-    if(hasAttributes()) {
-      return attributes.findByTag(name);
+    if(attributes != null) {
+      return attributes.get(name);
     }
     return Null.INSTANCE;
   }
@@ -196,9 +203,8 @@ public abstract class AbstractSEXP implements SEXP {
   
   @Override
   public SEXP setAttribute(Symbol attributeName, SEXP value) {
-    return cloneWithNewAttributes(
-        replaceAttribute(attributeName,
-            Attributes.validateAttribute(this, attributeName, value)));
+    return cloneWithNewAttributes(attributes.copyWith(attributeName,
+        Attributes.validateAttribute(this, attributeName, value)));
   }
 
   @Override
@@ -218,29 +224,20 @@ public abstract class AbstractSEXP implements SEXP {
     return cloneWithNewAttributes(list.build());
   }
 
-  private PairList replaceAttribute(Symbol attributeName, SEXP newValue) {
-    PairList.Node.Builder builder = new PairList.Builder();
-    boolean replaced = false;
-    for(PairList.Node node : attributes.nodes()) {
-      if(node.getTag() == attributeName) {
-        if(newValue != Null.INSTANCE) {
-          builder.add(node.getTag(), newValue);
-        }
-        replaced = true;
-      } else {
-        builder.add(node.getRawTag(), node.getValue());
-      }
-    }
-    if(!replaced && newValue != Null.INSTANCE) {
-      builder.add(attributeName, newValue);
-    }
-    return builder.build();
-  }
-
   protected SEXP cloneWithNewAttributes(PairList attributes) {
     throw new UnsupportedOperationException("cannot change/set attributes on " + getClass().getSimpleName());
   }
 
+  /**
+   * Creates a copy of this expression with the given attributes. Classes which can be
+   * constructed from an {@code AttributeMap} override this method, so that maps shared
+   * between objects, such as those of factors, stay shared; others rebuild the map
+   * from its list.
+   */
+  protected SEXP cloneWithNewAttributes(AttributeMap attributes) {
+    return cloneWithNewAttributes(attributes.toPairList());
+  }
+
   @Override
   public Iterable<SEXP> elements() {
     return Collections.<SEXP>singleton(this);
@@ -35,6 +35,10 @@ abstract class AbstractVector extends AbstractSEXP implements Vector {
     super(attributes);
   }
 
+  protected AbstractVector(AttributeMap attributes) {
+    super(attributes);
+  }
+
   protected AbstractVector() {
   }
 
@@ -0,0 +1,283 @@
+package org.renjin.sexp;
+
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.collect.MapMaker;
+
+/**
+ * The immutable attributes of an {@code SEXP}.
+ *
+ * <p>The attributes are kept as a {@link PairList}, in the order in which they were set,
+ * but the values of the {@code names}, {@code dim}, {@code dimnames} and {@code class}
+ * attributes, which are read on every subset, S3 dispatch and arithmetic operation, are
+ * also held in their own fields, so that reading them does not search the list.
+ *
+ * <p>Maps are never modified: {@link #copyWith(Symbol, SEXP)} returns a copy with one
+ * attribute changed, which shares the values of all the others. Objects with the same
+ * attributes can share a single map, and hence a single list. Common sets are shared
+ * through {@link #classOnly(StringVector)} and {@link #factor(StringVector, boolean)}.
+ */
+public final class AttributeMap {
+
+  /**
+   * The attributes of objects without attributes. Missing values are held as {@code null}
+   * rather than {@code Null.INSTANCE}, so that this map can be created while {@code Null}
+   * itself is initialized.
+   */
+  public static final AttributeMap EMPTY = new AttributeMap(null, null, null, null, null, false);
+
+  /**
+   * The number of distinct {@code class} attributes whose maps are shared
+   */
+  private static final int MAX_SHARED_CLASSES = 256;
+
+  /**
+   * The number of distinct {@code levels} attributes whose maps are shared, for each of
+   * unordered and ordered factors
+   */
+  private static final int MAX_SHARED_FACTORS = 256;
+
+  /**
+   * The number of levels above which the maps of factors are not shared, so that
+   * the shared maps do not hold on to large vectors
+   */
+  private static final int MAX_SHARED_LEVELS = 1000;
+
+  private static final ConcurrentMap<String, AttributeMap> CLASSES = new MapMaker().makeMap();
+
+  /**
+   * The maps of factors, keyed by the contents of their levels, as
+   * {@code StringVector.equals()} compares elements
+   */
+  private static final ConcurrentMap<StringVector, AttributeMap> FACTORS = new MapMaker().makeMap();
+
+  private static final ConcurrentMap<StringVector, AttributeMap> ORDERED_FACTORS = new MapMaker().makeMap();
+
+  private final PairList list;
+  private final SEXP names;
+  private final SEXP dim;
+  private final SEXP dimNames;
+  private final SEXP classes;
+  private final boolean compactRowNames;
+
+  private AttributeMap(PairList list, SEXP names, SEXP dim, SEXP dimNames, SEXP classes,
+                       boolean compactRowNames) {
+    this.list = list;
+    this.names = names;
+    this.dim = dim;
+    this.dimNames = dimNames;
+    this.classes = classes;
+    this.compactRowNames = compactRowNames;
+  }
+
+  /**
+   * @return the map of the attributes in {@code list}, which is kept, and must not be modified
+   */
+  public static AttributeMap fromPairList(PairList list) {
+    if(list == null || list.length() == 0) {
+      return EMPTY;
+    }
+    SEXP names = null;
+    SEXP dim = null;
+    SEXP dimNames = null;
+    SEXP classes = null;
+    boolean compactRowNames = false;
+    for(PairList.Node node : list.nodes()) {
+      SEXP tag = node.getRawTag();
+      if(tag == Symbols.NAMES) {
+        names = node.getValue();
+      } else if(tag == Symbols.DIM) {
+        dim = node.getValue();
+      } else if(tag == Symbols.DIMNAMES) {
+        dimNames = node.getValue();
+      } else if(tag == Symbols.CLASS) {
+        classes = node.getValue();
+      } else if(tag == Symbols.ROW_NAMES) {
+        compactRowNames = Attributes.isCompactRowName(node.getValue());
+      }
+    }
+    return new AttributeMap(list, names, dim, dimNames, classes, compactRowNames);
+  }
+
+  /**
+   * @return the shared map holding only the given {@code class} attribute
+   */
+  public static AttributeMap classOnly(StringVector classes) {
+    String key = classKey(classes);
+    if(key == null) {
+      return EMPTY.build(Symbols.CLASS, classes);
+    }
+    AttributeMap map = CLASSES.get(key);
+    if(map == null) {
+      map = EMPTY.build(Symbols.CLASS, classes);
+      if(CLASSES.size() < MAX_SHARED_CLASSES) {
+        AttributeMap existing = CLASSES.putIfAbsent(key, map);
+        if(existing != null) {
+          map = existing;
+        }
+      }
+    }
+    return map;
+  }
+
+  /**
+   * @return the map of the attributes of a factor with the given {@code levels}, which is
+   * shared by all factors whose levels have the same values
+   */
+  public static AttributeMap factor(StringVector levels, boolean ordered) {
+    if(levels.hasAttributes() || levels.length() > MAX_SHARED_LEVELS) {
+      return newFactor(levels, ordered);
+    }
+    ConcurrentMap<StringVector, AttributeMap> shared = ordered ? ORDERED_FACTORS : FACTORS;
+    AttributeMap map = shared.get(levels);
+    if(map == null) {
+      map = newFactor(levels, ordered);
+      if(shared.size() < MAX_SHARED_FACTORS) {
+        AttributeMap existing = shared.putIfAbsent(levels, map);
+        if(existing != null) {
+          map = existing;
+        }
+      }
+    }
+    return map;
+  }
+
+  private static AttributeMap newFactor(StringVector levels, boolean ordered) {
+    return EMPTY
+        .build(Symbols.LEVELS, levels)
+        .build(Symbols.CLASS, ordered ? new StringVector("ordered", "factor") : new StringVector("factor"));
+  }
+
+  private static String classKey(StringVector classes) {
+    if(classes.length() == 0 || classes.length() > 2) {
+      return null;
+    }
+    StringBuilder key = new StringBuilder();
+    for(int i = 0; i != classes.length(); ++i) {
+      String name = classes.getElementAsString(i);
+      if(name == null) {
+        return null;
+      }
+      key.append(name).append('\0');
+    }
+    return key.toString();
+  }
+
+  public boolean isEmpty() {
+    return list == null;
+  }
+
+  /**
+   * @return the value of the attribute {@code name}, or {@code Null.INSTANCE}
+   * if there is no such attribute
+   */
+  public SEXP get(Symbol name) {
+    if(name == Symbols.NAMES) {
+      return getNames();
+    } else if(name == Symbols.DIM) {
+      return getDim();
+    } else if(name == Symbols.DIMNAMES) {
+      return getDimNames();
+    } else if(name == Symbols.CLASS) {
+      return getClassVector();
+    } else if(list == null) {
+      return Null.INSTANCE;
+    } else {
+      return list.findByTag(name);
+    }
+  }
+
+  public SEXP getNames() {
+    return names == null ? Null.INSTANCE : names;
+  }
+
+  public SEXP getDim() {
+    return dim == null ? Null.INSTANCE : dim;
+  }
+
+  public SEXP getDimNames() {
+    return dimNames == null ? Null.INSTANCE : dimNames;
+  }
+
+  public SEXP getClassVector() {
+    return classes == null ? Null.INSTANCE : classes;
+  }
+
+  public boolean hasClass() {
+    return classes != null && classes.length() > 0;
+  }
+
+  /**
+   * @return true if the {@code class} attribute includes {@code className}
+   */
+  public boolean inherits(String className) {
+    if(classes instanceof StringVector) {
+      StringVector vector = (StringVector) classes;
+      for(int i = 0; i != vector.length(); ++i) {
+        if(className.equals(vector.getElementAsString(i))) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return true if the {@code row.names} attribute is held in the compact form
+   * {@code c(NA, -n)}
+   */
+  public boolean hasCompactRowNames() {
+    return compactRowNames;
+  }
+
+  /**
+   * @return the attributes as a list, as they are held, without expanding
+   * compact row names
+   */
+  public PairList toPairList() {
+    return list == null ? Null.INSTANCE : list;
+  }
+
+  /**
+   * @return a copy of this map in which the attribute {@code name} is set to
+   * {@code value}, or removed if {@code value} is {@code Null.INSTANCE}
+   */
+  public AttributeMap copyWith(Symbol name, SEXP value) {
+    if(list == null && name == Symbols.CLASS && value instanceof StringVector && classKey((StringVector) value) != null) {
+      return classOnly((StringVector) value);
+    }
+    return build(name, value);
+  }
+
+  private AttributeMap build(Symbol name, SEXP value) {
+    boolean remove = value == Null.INSTANCE;
+    PairList.Builder builder = new PairList.Builder();
+    boolean replaced = false;
+    if(list != null) {
+      for(PairList.Node node : list.nodes()) {
+        if(node.getRawTag() == name) {
+          if(!remove) {
+            builder.add(name, value);
+          }
+          replaced = true;
+        } else {
+          builder.add(node.getRawTag(), node.getValue());
+        }
+      }
+    }
+    if(!replaced && !remove) {
+      builder.add(name, value);
+    }
+    PairList newList = builder.build();
+    if(newList.length() == 0) {
+      return EMPTY;
+    }
+    SEXP slot = remove ? null : value;
+    return new AttributeMap(newList,
+        name == Symbols.NAMES ? slot : names,
+        name == Symbols.DIM ? slot : dim,
+        name == Symbols.DIMNAMES ? slot : dimNames,
+        name == Symbols.CLASS ? slot : classes,
+        name == Symbols.ROW_NAMES ? Attributes.isCompactRowName(value) : compactRowNames);
+  }
+}
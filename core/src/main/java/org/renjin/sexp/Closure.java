@@ -63,7 +63,7 @@ public class Closure extends AbstractSEXP implements Function {
 
   @Override
   protected SEXP cloneWithNewAttributes(PairList attributes) {
-    return new Closure(this.enclosingEnvironment, this.formals, this.body, this.attributes);
+    return new Closure(this.enclosingEnvironment, this.formals, this.body, attributes);
   }
 
   @Override
@@ -128,7 +128,7 @@ public class Closure extends AbstractSEXP implements Function {
    * @return
    */
   public Closure setEnclosingEnvironment(Environment env) {
-    return new Closure(env, formals, body, attributes);
+    return new Closure(env, formals, body, attributes.toPairList());
   }
 
   /**
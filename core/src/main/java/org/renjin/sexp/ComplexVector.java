@@ -23,6 +23,7 @@ package org.renjin.sexp;
 
 import com.google.common.collect.Iterators;
 import org.apache.commons.math.complex.Complex;
+import org.renjin.eval.AllocationTracker;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -305,6 +306,7 @@ public class ComplexVector extends AbstractAtomicVector implements Iterable<Comp
 
     @Override
     public ComplexVector build() {
+      AllocationTracker.recordVector(size, 16);
       return new ComplexVector(values, size, buildAttributes());
     }
   }
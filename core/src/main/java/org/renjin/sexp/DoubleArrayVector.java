@@ -24,6 +24,8 @@ package org.renjin.sexp;
 import java.util.Arrays;
 import java.util.Collection;
 
+import org.renjin.eval.AllocationTracker;
+
 
 public final class DoubleArrayVector extends DoubleVector {
 
@@ -33,6 +35,11 @@ public final class DoubleArrayVector extends DoubleVector {
     super(attributes);
   }
 
+  private DoubleArrayVector(double[] values, AttributeMap attributes) {
+    super(attributes);
+    this.values = values;
+  }
+
   public DoubleArrayVector(double... values) {
     this.values = Arrays.copyOf(values, values.length);
   }
@@ -47,6 +54,17 @@ public final class DoubleArrayVector extends DoubleVector {
     this.values = Arrays.copyOf(values, length);
   }
 
+  /**
+   * Creates a new {@code DoubleArrayVector} which uses {@code array} as its storage,
+   * without copying it. Ownership of the array passes to the vector: as R vectors
+   * are immutable, the caller must not modify the array afterwards.
+   */
+  public static DoubleArrayVector unsafe(double[] array) {
+    DoubleArrayVector vector = new DoubleArrayVector(Null.INSTANCE);
+    vector.values = array;
+    return vector;
+  }
+
   public DoubleArrayVector(Collection<Double> values) {
     this.values = new double[values.size()];
     int i = 0;
@@ -62,11 +80,29 @@ public final class DoubleArrayVector extends DoubleVector {
     return clone;
   }
 
+  @Override
+  protected SEXP cloneWithNewAttributes(AttributeMap attributes) {
+    return new DoubleArrayVector(values, attributes);
+  }
+
   @Override
   public double getElementAsDouble(int index) {
     return values[index];
   }
 
+  @Override
+  public double[] toDoubleArray() {
+    return Arrays.copyOf(values, values.length);
+  }
+
+  /**
+   * @return the array which backs this vector, without copying it. The 
+   * array is shared and must not be modified.
+   */
+  public double[] toDoubleArrayUnsafe() {
+    return values;
+  }
+
   @Override
   public int length() {
     return values.length;
@@ -202,6 +238,7 @@ public final class DoubleArrayVector extends DoubleVector {
 
     @Override
     public DoubleVector build() {
+      AllocationTracker.recordVector(size, 8);
       return new DoubleArrayVector(values, size, buildAttributes());
     }
   }
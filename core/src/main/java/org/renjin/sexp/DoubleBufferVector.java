@@ -0,0 +1,55 @@
+package org.renjin.sexp;
+
+import java.nio.DoubleBuffer;
+
+/**
+ * A {@code DoubleVector} which reads its elements from a {@link DoubleBuffer},
+ * such as a view of a direct or memory-mapped {@code ByteBuffer}, so that
+ * off-heap data can be used from R without being copied onto the heap.
+ *
+ * <p>The vector holds a read-only view of the buffer's remaining elements at the
+ * time it is created. As R vectors are immutable, the owner of the buffer must not
+ * change those elements while the vector is in use.
+ */
+public final class DoubleBufferVector extends DoubleVector {
+
+  private final DoubleBuffer buffer;
+
+  public DoubleBufferVector(DoubleBuffer buffer) {
+    this.buffer = buffer.slice().asReadOnlyBuffer();
+  }
+
+  private DoubleBufferVector(DoubleBuffer buffer, PairList attributes) {
+    super(attributes);
+    this.buffer = buffer;
+  }
+
+  @Override
+  protected SEXP cloneWithNewAttributes(PairList attributes) {
+    return new DoubleBufferVector(buffer, attributes);
+  }
+
+  @Override
+  public int length() {
+    return buffer.limit();
+  }
+
+  @Override
+  public double getElementAsDouble(int index) {
+    return buffer.get(index);
+  }
+
+  @Override
+  public double[] toDoubleArray() {
+    double[] array = new double[buffer.limit()];
+    buffer.duplicate().get(array);
+    return array;
+  }
+
+  /**
+   * @return a new read-only view of the buffer backing this vector
+   */
+  public DoubleBuffer getBuffer() {
+    return buffer.duplicate();
+  }
+}
@@ -51,6 +51,10 @@ public abstract class DoubleVector extends AbstractAtomicVector implements Itera
     super(attributes);
   }
 
+  protected DoubleVector(AttributeMap attributes) {
+    super(attributes);
+  }
+
   protected DoubleVector() {
 
   }
@@ -197,7 +197,7 @@ public class Environment extends AbstractSEXP implements Recursive {
 
 
   public String getName() {
-    SEXP nameAttribute = this.attributes.findByTag(Symbols.NAME);
+    SEXP nameAttribute = this.attributes.get(Symbols.NAME);
     if(nameAttribute instanceof StringVector) {
       return ((StringVector) nameAttribute).getElementAsString(0);
     } else if(name == null) {
@@ -406,7 +406,7 @@ public class Environment extends AbstractSEXP implements Recursive {
 
   @Override
   protected SEXP cloneWithNewAttributes(PairList attributes) {
-    this.attributes = attributes;
+    this.attributes = AttributeMap.fromPairList(attributes);
     return this;
   }
 
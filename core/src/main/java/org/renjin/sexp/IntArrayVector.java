@@ -23,10 +23,40 @@ package org.renjin.sexp;
 
 import java.util.Arrays;
 
+import org.renjin.eval.AllocationTracker;
+
 public class IntArrayVector extends IntVector {
 
   private int[] values;
 
+  private IntArrayVector(PairList attributes) {
+    super(attributes);
+  }
+
+  private IntArrayVector(int[] values, AttributeMap attributes) {
+    super(attributes);
+    this.values = values;
+  }
+
+  /**
+   * Creates a new {@code IntArrayVector} which uses {@code array} as its storage,
+   * without copying it. Ownership of the array passes to the vector: as R vectors
+   * are immutable, the caller must not modify the array afterwards.
+   */
+  public static IntArrayVector unsafe(int[] array) {
+    return unsafe(array, Null.INSTANCE);
+  }
+
+  public static IntArrayVector unsafe(int[] array, PairList attributes) {
+    IntArrayVector vector = new IntArrayVector(attributes);
+    vector.values = array;
+    return vector;
+  }
+
+  public static IntArrayVector unsafe(int[] array, AttributeMap attributes) {
+    return new IntArrayVector(array, attributes);
+  }
+
   public IntArrayVector(int... values) {
     this.values = Arrays.copyOf(values, values.length);
   }
@@ -51,9 +81,29 @@ public class IntArrayVector extends IntVector {
     return values[i];
   }
 
+  @Override
+  public int[] toIntArray() {
+    return Arrays.copyOf(values, values.length);
+  }
+
+  /**
+   * @return the array which backs this vector, without copying it. The 
+   * array is shared and must not be modified.
+   */
+  public int[] toIntArrayUnsafe() {
+    return values;
+  }
+
   @Override
   protected SEXP cloneWithNewAttributes(PairList attributes) {
-    return new IntArrayVector(values, values.length, attributes);
+    IntArrayVector clone = new IntArrayVector(attributes);
+    clone.values = values;
+    return clone;
+  }
+
+  @Override
+  protected SEXP cloneWithNewAttributes(AttributeMap attributes) {
+    return new IntArrayVector(values, attributes);
   }
 
   public static class Builder extends AbstractAtomicBuilder {
@@ -136,6 +186,7 @@ public class IntArrayVector extends IntVector {
 
     @Override
     public IntVector build() {
+      AllocationTracker.recordVector(size, 4);
       return new IntArrayVector(values, size, buildAttributes());
     }
   }
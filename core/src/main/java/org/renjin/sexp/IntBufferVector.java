@@ -0,0 +1,55 @@
+package org.renjin.sexp;
+
+import java.nio.IntBuffer;
+
+/**
+ * A {@code IntVector} which reads its elements from a {@link IntBuffer},
+ * such as a view of a direct or memory-mapped {@code ByteBuffer}, so that
+ * off-heap data can be used from R without being copied onto the heap.
+ *
+ * <p>The vector holds a read-only view of the buffer's remaining elements at the
+ * time it is created. As R vectors are immutable, the owner of the buffer must not
+ * change those elements while the vector is in use.
+ */
+public final class IntBufferVector extends IntVector {
+
+  private final IntBuffer buffer;
+
+  public IntBufferVector(IntBuffer buffer) {
+    this.buffer = buffer.slice().asReadOnlyBuffer();
+  }
+
+  private IntBufferVector(IntBuffer buffer, PairList attributes) {
+    super(attributes);
+    this.buffer = buffer;
+  }
+
+  @Override
+  protected SEXP cloneWithNewAttributes(PairList attributes) {
+    return new IntBufferVector(buffer, attributes);
+  }
+
+  @Override
+  public int length() {
+    return buffer.limit();
+  }
+
+  @Override
+  public int getElementAsInt(int index) {
+    return buffer.get(index);
+  }
+
+  @Override
+  public int[] toIntArray() {
+    int[] array = new int[buffer.limit()];
+    buffer.duplicate().get(array);
+    return array;
+  }
+
+  /**
+   * @return a new read-only view of the buffer backing this vector
+   */
+  public IntBuffer getBuffer() {
+    return buffer.duplicate();
+  }
+}
@@ -28,6 +28,10 @@ public abstract class IntVector extends AbstractAtomicVector implements Iterable
     super(attributes);
   }
 
+  protected IntVector(AttributeMap attributes) {
+    super(attributes);
+  }
+
   public static boolean isNA(int value) {
     return value == NA;
   }
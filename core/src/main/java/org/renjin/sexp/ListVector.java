@@ -26,6 +26,7 @@ import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.UnmodifiableIterator;
 import org.apache.commons.math.complex.Complex;
+import org.renjin.eval.AllocationTracker;
 import org.renjin.eval.EvalException;
 import org.renjin.primitives.Deparse;
 import org.renjin.util.NamesBuilder;
@@ -70,6 +71,12 @@ public class ListVector extends AbstractVector implements Iterable<SEXP>, HasNam
     assert checkDims() : "dim do not match length of object";
   }
 
+  private ListVector(AttributeMap attributes, Iterable<? extends SEXP> values) {
+    super(attributes);
+    this.values = new ArrayList<SEXP>();
+    Iterables.addAll(this.values, values);
+  }
+
   public ListVector(SEXP... values) {
     this(values, Null.INSTANCE);
   }
@@ -100,13 +107,9 @@ public class ListVector extends AbstractVector implements Iterable<SEXP>, HasNam
   }
 
   public int indexOfName(String name) {
-    SEXP names = attributes.findByTag(Symbols.NAMES);
+    SEXP names = attributes.getNames();
     if(names instanceof StringVector) {
-      for(int i=0;i!=names.length();++i) {
-        if(((StringVector) names).getElement(i).equals(name)) {
-          return i;
-        }
-      }
+      return ((StringVector) names).indexOf(name);
     }
     return -1;
   }
@@ -346,6 +349,11 @@ public class ListVector extends AbstractVector implements Iterable<SEXP>, HasNam
     return new ListVector(values, attributes);
   }
 
+  @Override
+  protected SEXP cloneWithNewAttributes(AttributeMap attributes) {
+    return new ListVector(attributes, values);
+  }
+
   public static class Builder extends AbstractVector.AbstractBuilder<SEXP> {
     private final List<SEXP> values;
     
@@ -417,6 +425,7 @@ public class ListVector extends AbstractVector implements Iterable<SEXP>, HasNam
     }
     
     public ListVector build() {
+      AllocationTracker.recordVector(values.size(), 8);
       return new ListVector(values, buildAttributes());
     }
 
@@ -21,9 +21,10 @@
 
 package org.renjin.sexp;
 
-
 import java.util.Arrays;
 
+import org.renjin.eval.AllocationTracker;
+
 public class LogicalArrayVector extends LogicalVector {
 
   private int[] values;
@@ -62,6 +63,22 @@ public class LogicalArrayVector extends LogicalVector {
     super(attributes);
     this.values = Arrays.copyOf(values, size);  
   }
+
+  private LogicalArrayVector(AttributeMap attributes, int[] values) {
+    super(attributes);
+    this.values = values;
+  }
+
+  /**
+   * Creates a new {@code LogicalArrayVector} which uses {@code array} as its storage,
+   * without copying it. Ownership of the array passes to the vector: as R vectors
+   * are immutable, the caller must not modify the array afterwards.
+   */
+  public static LogicalArrayVector unsafe(int[] array) {
+    LogicalArrayVector vector = new LogicalArrayVector();
+    vector.values = array;
+    return vector;
+  }
   
   public LogicalArrayVector(int... values) {
     this(values, Null.INSTANCE);
@@ -90,6 +107,11 @@ public class LogicalArrayVector extends LogicalVector {
     return new LogicalArrayVector(values, attributes);
   }
 
+  @Override
+  protected SEXP cloneWithNewAttributes(AttributeMap attributes) {
+    return new LogicalArrayVector(attributes, values);
+  }
+
   public static class Builder
       extends AbstractAtomicBuilder {
     
@@ -186,6 +208,7 @@ public class LogicalArrayVector extends LogicalVector {
     
     @Override
     public LogicalVector build() {
+      AllocationTracker.recordVector(size, 4);
       return new LogicalArrayVector(values, size, buildAttributes());
     }
   }
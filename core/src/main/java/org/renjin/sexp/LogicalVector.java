@@ -19,6 +19,10 @@ public abstract class LogicalVector extends AbstractAtomicVector implements Iter
     super(attributes);
   }
 
+  protected LogicalVector(AttributeMap attributes) {
+    super(attributes);
+  }
+
   protected LogicalVector() {
   }
 
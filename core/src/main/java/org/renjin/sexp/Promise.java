@@ -22,6 +22,7 @@
 package org.renjin.sexp;
 
 import org.renjin.eval.Context;
+import org.renjin.eval.Instrumentation;
 
 /**
  * Promises are the mechanism by which R implements lazy "call-by-need"
@@ -93,6 +94,10 @@ public class Promise extends AbstractSEXP implements Recursive {
     if(Context.PRINT_IR) {
       System.out.println("=== THUNK");
     }
+    Instrumentation instrumentation = this.context.getGlobals().getInstrumentation();
+    if(instrumentation != null) {
+      instrumentation.promiseForced();
+    }
     return this.context.evaluate(expression, environment);
   }
   
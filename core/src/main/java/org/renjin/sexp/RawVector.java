@@ -1,54 +1,93 @@
 package org.renjin.sexp;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Iterator;
 
+import org.renjin.eval.AllocationTracker;
+
 import com.google.common.base.Joiner;
 import com.google.common.collect.UnmodifiableIterator;
+import com.google.common.primitives.UnsignedBytes;
 
 public class RawVector extends AbstractAtomicVector implements Iterable<Raw> {
 
   public static final String TYPE_NAME = "raw";
   public static final Vector.Type VECTOR_TYPE = new RawType();
   public static int NA = IntVector.NA;
-  private Raw[] values;
+  private byte[] values;
+
+  private RawVector(PairList attributes) {
+    super(attributes);
+  }
 
   public RawVector(Raw... values) {
-    this.values = new Raw[values.length];
-    this.values = Arrays.copyOf(values, values.length);
+    this.values = toBytes(values);
   }
   
   
   public RawVector(Raw[] values, PairList attributes) {
     super(attributes);
-    this.values = new Raw[values.length];
-    this.values = Arrays.copyOf(values, values.length);
+    this.values = toBytes(values);
   }
   
   public RawVector(byte[] bytes) {
-    this.values = new Raw[bytes.length];
-    for(int i=0;i!=bytes.length;++i) {
-      this.values[i] = new Raw(bytes[i]);
-    }
+    this.values = Arrays.copyOf(bytes, bytes.length);
   }
 
+  public RawVector(byte[] bytes, PairList attributes) {
+    this(bytes, bytes.length, attributes);
+  }
 
-  public byte[] getAsByteArray(){
-    byte[] bytes = new byte[this.values.length];
-    for (int i=0;i<this.values.length;i++){
-      bytes[i] = this.values[i].getAsByte();
+  public RawVector(byte[] bytes, int length, PairList attributes) {
+    super(attributes);
+    this.values = Arrays.copyOf(bytes, length);
+  }
+
+  private static byte[] toBytes(Raw[] raws) {
+    byte[] bytes = new byte[raws.length];
+    for(int i=0;i!=raws.length;++i) {
+      bytes[i] = raws[i].getAsByte();
     }
-    return(bytes);
+    return bytes;
+  }
+
+  public byte[] getAsByteArray(){
+    return Arrays.copyOf(values, values.length);
   }
   
   public Raw[] getAsRawArray() {
     Raw[] raws = new Raw[this.values.length];
     for (int i = 0; i < raws.length; i++) {
-      raws[i] = new Raw(this.values[i].getValue());
+      raws[i] = new Raw(this.values[i]);
     }
     return (raws);
   }
 
+  /**
+   * Copies {@code length} bytes, starting at {@code sourceIndex}, into
+   * {@code dest} without allocating intermediate {@code Raw} objects.
+   */
+  public void copyTo(int sourceIndex, byte[] dest, int destIndex, int length) {
+    System.arraycopy(values, sourceIndex, dest, destIndex, length);
+  }
+
+  /**
+   * 
+   * @return a read-only {@code ByteBuffer} view of this vector's bytes, 
+   * which shares, rather than copies, its storage.
+   */
+  public ByteBuffer asReadOnlyBuffer() {
+    return ByteBuffer.wrap(values).asReadOnlyBuffer();
+  }
+
+  @Override
+  protected SEXP cloneWithNewAttributes(PairList attributes) {
+    RawVector clone = new RawVector(attributes);
+    clone.values = values;
+    return clone;
+  }
+
   @Override
   public String getTypeName() {
     return ("raw");
@@ -60,32 +99,36 @@ public class RawVector extends AbstractAtomicVector implements Iterable<Raw> {
   }
   
   public Raw getElement(int index){
-    return(this.values[index]);
+    return new Raw(values[index]);
+  }
+
+  public byte getElementAsByte(int index) {
+    return values[index];
   }
 
   @Override
   public double getElementAsDouble(int index) {
-    return ((double) this.values[index].getValue());
+    return UnsignedBytes.toInt(values[index]);
   }
 
   @Override
   public int getElementAsInt(int index) {
-    return (this.values[index].getValue());
+    return UnsignedBytes.toInt(values[index]);
   }
 
   @Override
   public String getElementAsString(int index) {
-    return (this.values[index].toString());
+    return getElement(index).toString();
   }
 
   @Override
   public int getElementAsRawLogical(int index) {
-    return (Logical.valueOf(this.values[index].getValue()).getInternalValue());
+    return (Logical.valueOf(getElementAsInt(index)).getInternalValue());
   }
 
   @Override
   public SEXP getElementAsSEXP(int index) {
-    return new RawVector(this.values[index]);
+    return new RawVector(new byte[] { values[index] });
   }
 
   @Override
@@ -97,12 +140,12 @@ public class RawVector extends AbstractAtomicVector implements Iterable<Raw> {
   public boolean equals(Object o) {
     if (!(o instanceof RawVector)) return (false);
     RawVector rv = (RawVector)o;
-    return (rv.hashCode() == this.hashCode());
+    return Arrays.equals(values, rv.values);
   }
 
   @Override
   public int hashCode() {
-    return Arrays.hashCode(this.getAsByteArray());
+    return Arrays.hashCode(values);
   }
   
   
@@ -116,7 +159,7 @@ public class RawVector extends AbstractAtomicVector implements Iterable<Raw> {
 
   @Override
   public Builder newBuilderWithInitialCapacity(int initialCapacity) {
-    return new RawVector.Builder(0);
+    return new RawVector.Builder(0, initialCapacity);
   }
 
 
@@ -132,12 +175,13 @@ public class RawVector extends AbstractAtomicVector implements Iterable<Raw> {
 
   @Override
   public boolean isElementNA(int index) {
-    return (values[index].getValue() == RawVector.NA);
+    // raw vectors have no NA value
+    return false;
   }
 
   @Override
   public Object getElementAsObject(int index) {
-    return (values[index]);
+    return getElement(index);
   }
 
   @Override
@@ -147,7 +191,7 @@ public class RawVector extends AbstractAtomicVector implements Iterable<Raw> {
 
   @Override
   public int compare(int index1, int index2) {
-    return (values[index1].getValue() - values[index2].getValue());
+    return getElementAsInt(index1) - getElementAsInt(index2);
   }
 
   @Override
@@ -160,40 +204,58 @@ public class RawVector extends AbstractAtomicVector implements Iterable<Raw> {
    */
   public static class Builder extends AbstractAtomicBuilder {
 
-    private Raw[] values;
+    private byte[] values;
+    private int size;
 
     public Builder(int initialSize) {
-      values = new Raw[initialSize];
-      for (int i = 0; i < initialSize; i++) {
-        values[i] = new Raw();
-      }
+      this(initialSize, initialSize);
+    }
+
+    public Builder(int initialSize, int initialCapacity) {
+      values = new byte[Math.max(initialSize, initialCapacity)];
+      size = initialSize;
     }
 
     private Builder(RawVector exp) {
       this.values = Arrays.copyOf(exp.values, exp.values.length);
+      this.size = values.length;
       copyAttributesFrom(exp);
     }
 
     public Builder() {
-      this.values = new Raw[0];
+      this(0, 0);
     }
 
-    /*
-     * ArrayList does the same work, we may change the code
-     * as well as using the Java core library
-     */
-    public Builder set(int index, Raw raw) {
-      if (values.length <= index) {
-        Raw copy[] = Arrays.copyOf(values, index + 1);
-        Arrays.fill(copy, values.length, copy.length, new Raw(0));
-        values = copy;
+    public Builder set(int index, byte value) {
+      ensureCapacity(index + 1);
+      if(index + 1 > size) {
+        size = index + 1;
       }
-      values[index].setValue(raw.getValue());
+      values[index] = value;
       return this;
     }
 
+    public Builder set(int index, Raw raw) {
+      return set(index, raw.getAsByte());
+    }
+
     public Builder add(Raw value) {
-      return set(values.length, value);
+      return set(size, value);
+    }
+
+    public Builder add(byte value) {
+      return set(size, value);
+    }
+
+    /**
+     * Appends {@code length} bytes from {@code bytes}, starting
+     * at {@code offset}, in a single copy.
+     */
+    public Builder addAll(byte[] bytes, int offset, int length) {
+      ensureCapacity(size + length);
+      System.arraycopy(bytes, offset, values, size, length);
+      size += length;
+      return this;
     }
 
     public Builder add(Number value) {
@@ -202,7 +264,7 @@ public class RawVector extends AbstractAtomicVector implements Iterable<Raw> {
     
     @Override
     public Builder setNA(int index) {
-      return set(index, new Raw(RawVector.NA));
+      return set(index, (byte)0);
     }
 
     @Override
@@ -212,12 +274,24 @@ public class RawVector extends AbstractAtomicVector implements Iterable<Raw> {
 
     @Override
     public int length() {
-      return values.length;
+      return size;
+    }
+
+    private void ensureCapacity(int minCapacity) {
+      int oldCapacity = values.length;
+      if (minCapacity > oldCapacity) {
+        int newCapacity = (oldCapacity * 3)/2 + 1;
+        if (newCapacity < minCapacity) {
+          newCapacity = minCapacity;
+        }
+        values = Arrays.copyOf(values, newCapacity);
+      }
     }
 
     @Override
     public RawVector build() {
-      return new RawVector(values, buildAttributes());
+      AllocationTracker.recordVector(size, 1);
+      return new RawVector(values, size, buildAttributes());
     }
   }
 
@@ -242,7 +316,7 @@ public class RawVector extends AbstractAtomicVector implements Iterable<Raw> {
     
     @Override
     public Builder newBuilderWithInitialCapacity(int initialCapacity) {
-      return new RawVector.Builder(0);
+      return new RawVector.Builder(0, initialCapacity);
     }
 
     @Override
@@ -259,7 +333,7 @@ public class RawVector extends AbstractAtomicVector implements Iterable<Raw> {
   @Override
   public String toString() {
     if (values.length == 1) {
-      return values[0].toString();
+      return getElement(0).toString();
     } else {
       StringBuilder sb = new StringBuilder();
       sb.append("c(");
@@ -279,7 +353,7 @@ public class RawVector extends AbstractAtomicVector implements Iterable<Raw> {
 
     @Override
     public Raw next() {
-      return values[i++];
+      return new Raw(values[i++]);
     }
   }
 }
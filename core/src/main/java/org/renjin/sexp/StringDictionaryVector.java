@@ -0,0 +1,246 @@
+package org.renjin.sexp;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import com.google.common.collect.AbstractIterator;
+
+/**
+ * A {@code StringVector} held as a dictionary of its distinct values and, for each
+ * element, the code of its value in the dictionary.
+ *
+ * <p>Codes are 1-based, and {@code NA} elements have the code {@code NA_integer_}, as the
+ * codes of a factor do, so a column of a few thousand distinct values in a table of
+ * millions of rows needs an {@code int} per row rather than a reference per row, and
+ * operations such as {@code match()}, {@code unique()} and {@code ==} need only consider
+ * each distinct value once.
+ */
+public class StringDictionaryVector extends StringVector {
+
+  /**
+   * The length from which {@link #encode(StringVector)} considers encoding a vector
+   */
+  public static final int MIN_ENCODED_LENGTH = 1024;
+
+  private final int[] codes;
+  private final StringVector dictionary;
+
+  /**
+   * The position of the first element with each code, or -1, built on the first search
+   */
+  private transient int[] firstPositions;
+
+  /**
+   * @param codes the 1-based codes of the elements in {@code dictionary}, or
+   * {@code NA_integer_}. The array is kept, and must not be modified afterwards.
+   * @param dictionary the distinct values of the elements, none of which is {@code NA}
+   */
+  public StringDictionaryVector(int[] codes, StringVector dictionary, PairList attributes) {
+    super(attributes, true);
+    for(int i = 0; i != codes.length; ++i) {
+      int code = codes[i];
+      if(code != IntVector.NA && (code < 1 || code > dictionary.length())) {
+        throw new IllegalArgumentException("code " + code + " at " + i + " is outside the dictionary");
+      }
+    }
+    this.codes = codes;
+    this.dictionary = dictionary;
+  }
+
+  public StringDictionaryVector(int[] codes, StringVector dictionary) {
+    this(codes, dictionary, Null.INSTANCE);
+  }
+
+  private StringDictionaryVector(StringDictionaryVector source, AttributeMap attributes) {
+    super(attributes, true);
+    this.codes = source.codes;
+    this.dictionary = source.dictionary;
+    this.firstPositions = source.firstPositions;
+  }
+
+  /**
+   * @return {@code vector} held as a dictionary, if it is long and has few enough distinct
+   * values for the codes to take less memory than the references to its elements, or
+   * {@code vector} itself otherwise
+   */
+  public static StringVector encode(StringVector vector) {
+    if(vector instanceof StringDictionaryVector || vector.length() < MIN_ENCODED_LENGTH) {
+      return vector;
+    }
+    int maxDistinct = vector.length() / 4;
+    Map<String, Integer> seen = new HashMap<String, Integer>();
+    StringVector.Builder dictionary = new StringVector.Builder();
+    int[] codes = new int[vector.length()];
+    for(int i = 0; i != codes.length; ++i) {
+      String value = vector.getElementAsString(i);
+      if(value == null) {
+        codes[i] = IntVector.NA;
+      } else {
+        Integer code = seen.get(value);
+        if(code == null) {
+          if(seen.size() == maxDistinct) {
+            return vector;
+          }
+          code = seen.size() + 1;
+          seen.put(value, code);
+          dictionary.add(value);
+        }
+        codes[i] = code;
+      }
+    }
+    return new StringDictionaryVector(codes, dictionary.build(), vector.getAttributes());
+  }
+
+  /**
+   * @return the 1-based code in the dictionary of the element at {@code index},
+   * or {@code NA_integer_}
+   */
+  public int getCode(int index) {
+    return codes[index];
+  }
+
+  /**
+   * @return the codes of the elements, which are shared and must not be modified
+   */
+  public int[] getCodesUnsafe() {
+    return codes;
+  }
+
+  public StringVector getDictionary() {
+    return dictionary;
+  }
+
+  @Override
+  public int length() {
+    return codes.length;
+  }
+
+  @Override
+  public String getElement(int index) {
+    return getElementAsString(index);
+  }
+
+  @Override
+  public String getElementAsString(int index) {
+    int code = codes[index];
+    if(code == IntVector.NA) {
+      return NA;
+    }
+    return dictionary.getElementAsString(code - 1);
+  }
+
+  @Override
+  public boolean isElementNA(int index) {
+    return codes[index] == IntVector.NA;
+  }
+
+  @Override
+  public Iterator<String> iterator() {
+    return new AbstractIterator<String>() {
+      private int index = 0;
+
+      @Override
+      protected String computeNext() {
+        if(index == codes.length) {
+          return endOfData();
+        }
+        return getElementAsString(index++);
+      }
+    };
+  }
+
+  @Override
+  protected SEXP cloneWithNewAttributes(PairList attributes) {
+    return new StringDictionaryVector(codes, dictionary, attributes);
+  }
+
+  @Override
+  protected SEXP cloneWithNewAttributes(AttributeMap attributes) {
+    return new StringDictionaryVector(this, attributes);
+  }
+
+  @Override
+  public StringVector setLength(int newLength) {
+    if(newLength == codes.length) {
+      return this;
+    }
+    int[] newCodes = Arrays.copyOf(codes, newLength);
+    if(newLength > codes.length) {
+      Arrays.fill(newCodes, codes.length, newLength, IntVector.NA);
+    }
+    return new StringDictionaryVector(newCodes, dictionary);
+  }
+
+  @Override
+  public int compare(int index1, int index2) {
+    return dictionary.compare(codes[index1] - 1, codes[index2] - 1);
+  }
+
+  @Override
+  public int indexOf(AtomicVector vector, int vectorIndex, int startIndex) {
+    if(vector.isElementNA(vectorIndex)) {
+      return indexOfCode(IntVector.NA, startIndex);
+    }
+    return indexOf(vector.getElementAsString(vectorIndex), startIndex);
+  }
+
+  @Override
+  public int indexOf(String value) {
+    return indexOf(value, 0);
+  }
+
+  private int indexOf(String value, int startIndex) {
+    int position = dictionary.indexOf(value);
+    if(position == -1) {
+      return -1;
+    }
+    return indexOfCode(position + 1, startIndex);
+  }
+
+  private int indexOfCode(int code, int startIndex) {
+    if(startIndex == 0 && code != IntVector.NA) {
+      return firstPosition(code);
+    }
+    for(int i = startIndex; i < codes.length; ++i) {
+      if(codes[i] == code) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private int firstPosition(int code) {
+    if(firstPositions == null) {
+      int[] positions = new int[dictionary.length()];
+      Arrays.fill(positions, -1);
+      for(int i = codes.length - 1; i >= 0; --i) {
+        if(codes[i] != IntVector.NA) {
+          positions[codes[i] - 1] = i;
+        }
+      }
+      firstPositions = positions;
+    }
+    return firstPositions[code - 1];
+  }
+
+  @Override
+  public String[] toArray() {
+    String[] array = new String[codes.length];
+    for(int i = 0; i != array.length; ++i) {
+      array[i] = getElementAsString(i);
+    }
+    return array;
+  }
+
+  /**
+   * @return the elements in a new array, as this vector has no array to share. Callers
+   * that only copy elements out should subset the codes or read the elements one at a
+   * time instead, as {@code SubscriptOperation} and {@code Combine} do.
+   */
+  @Override
+  public String[] toArrayUnsafe() {
+    return toArray();
+  }
+}
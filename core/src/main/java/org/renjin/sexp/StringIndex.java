@@ -0,0 +1,69 @@
+package org.renjin.sexp;
+
+import java.util.Arrays;
+
+/**
+ * A hash index from the elements of a {@code StringVector} to the position
+ * of their first occurrence, so that looking up an element by name, as
+ * {@code x$name}, {@code x[["name"]]} and {@code x[c("a", "b")]} do, does not
+ * scan the {@code names} vector.
+ *
+ * <p>The index is an open-addressing table of positions, rather than a
+ * {@code Map<String, Integer>}, so that it needs between two and four {@code int}s per element.
+ * As vectors are immutable, the index never needs to be updated once built.
+ */
+final class StringIndex {
+
+  private static final int EMPTY = -1;
+
+  private final StringVector vector;
+  private final int[] table;
+  private final int mask;
+
+  StringIndex(StringVector vector) {
+    this.vector = vector;
+
+    int capacity = Integer.highestOneBit(Math.max(vector.length(), 2) * 2 - 1) << 1;
+    this.table = new int[capacity];
+    this.mask = capacity - 1;
+    Arrays.fill(table, EMPTY);
+
+    for(int i=0;i!=vector.length();++i) {
+      String element = vector.getElementAsString(i);
+      if(element != null) {
+        int slot = find(element);
+        if(table[slot] == EMPTY) {
+          table[slot] = i;
+        }
+      }
+    }
+  }
+
+  /**
+   * @return the position of the first occurrence of {@code value},
+   * or -1 if the vector does not contain {@code value}
+   */
+  public int indexOf(String value) {
+    if(value == null) {
+      return -1;
+    }
+    return table[find(value)];
+  }
+
+  /**
+   * @return the slot which holds the position of {@code value},
+   * or the empty slot where it would be inserted
+   */
+  private int find(String value) {
+    int slot = spread(value.hashCode()) & mask;
+    while(table[slot] != EMPTY && !value.equals(vector.getElementAsString(table[slot]))) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private static int spread(int hash) {
+    hash ^= (hash >>> 20) ^ (hash >>> 12);
+    return hash ^ (hash >>> 7) ^ (hash >>> 4);
+  }
+}
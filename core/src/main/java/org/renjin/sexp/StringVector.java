@@ -21,19 +21,20 @@
 
 package org.renjin.sexp;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 
+import org.renjin.eval.AllocationTracker;
 import org.renjin.eval.EvalException;
 import org.renjin.parser.ParseUtil;
 
 
 import com.google.common.base.Joiner;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
-import com.google.common.collect.Lists;
 
 public class StringVector extends AbstractAtomicVector implements Iterable<String> {
   public static final String TYPE_NAME = "character";
@@ -42,8 +43,28 @@ public class StringVector extends AbstractAtomicVector implements Iterable<Strin
 
   public static final Vector.Type VECTOR_TYPE = new StringType();
 
+  /**
+   * Vectors shorter than this are searched by scanning them, which is
+   * cheaper than building an index
+   */
+  private static final int MIN_INDEXED_LENGTH = 32;
+
+  /**
+   * Canonical instances of strings read from files and connections, so that
+   * repeated values share a single {@code String}
+   */
+  private static final Interner<String> POOL = Interners.newWeakInterner();
+
+  /**
+   * The elements, or {@code null} if they are held by a subclass in another form
+   */
   private final String values[];
 
+  /**
+   * Index of the elements, built on the first search of a long vector
+   */
+  private transient StringIndex index;
+
   public StringVector(String... values) {
     this.values = Arrays.copyOf(values, values.length, String[].class);
   }
@@ -70,6 +91,63 @@ public class StringVector extends AbstractAtomicVector implements Iterable<Strin
     assert checkDims() : "dim do not match length of object";
   }
 
+  private StringVector(PairList attributes, String[] values) {
+    super(attributes);
+    this.values = values;
+  }
+
+  private StringVector(AttributeMap attributes, String[] values) {
+    super(attributes);
+    this.values = values;
+  }
+
+  /**
+   * Constructs a vector whose elements are held by the subclass, which must override
+   * the methods which read {@code values}.
+   */
+  protected StringVector(PairList attributes, boolean subclass) {
+    super(attributes);
+    this.values = null;
+  }
+
+  protected StringVector(AttributeMap attributes, boolean subclass) {
+    super(attributes);
+    this.values = null;
+  }
+
+  /**
+   * Creates a new {@code StringVector} which uses {@code array} as its storage,
+   * without copying it. Ownership of the array passes to the vector: as R vectors
+   * are immutable, the caller must not modify the array afterwards.
+   */
+  public static StringVector unsafe(String[] array) {
+    return new StringVector(Null.INSTANCE, array);
+  }
+
+  public static StringVector unsafe(String[] array, PairList attributes) {
+    return new StringVector(attributes, array);
+  }
+
+  /**
+   * @return a canonical {@code String} equal to {@code value}, shared by all the
+   * strings deduplicated with this method, or {@code NA} if {@code value} is {@code NA}.
+   * Canonical strings are held weakly, and are discarded once no vector holds them.
+   */
+  public static String dedup(String value) {
+    if(value == null) {
+      return null;
+    }
+    return POOL.intern(value);
+  }
+
+  /**
+   * @return the array which backs this vector, without copying it. The 
+   * array is shared and must not be modified.
+   */
+  public String[] toArrayUnsafe() {
+    return values;
+  }
+
 
 
   @Override
@@ -78,18 +156,19 @@ public class StringVector extends AbstractAtomicVector implements Iterable<Strin
   }
 
   public StringVector setLength(int newLength) {
-    if(newLength == values.length) {
+    int length = length();
+    if(newLength == length) {
       return this;
     }
     String newValues[] = new String[newLength];
     for(int i=0;i!=newValues.length;++i){
-      if(i < this.values.length) {
-        newValues[i] = values[i];
+      if(i < length) {
+        newValues[i] = getElementAsString(i);
       } else {
         newValues[i] = StringVector.NA;
       }
     }
-    return new StringVector(newValues);
+    return unsafe(newValues);
   }
 
   public String getElement(int index) {
@@ -102,7 +181,7 @@ public class StringVector extends AbstractAtomicVector implements Iterable<Strin
 
   @Override
   public int getElementAsRawLogical(int index) {
-    String value = values[index];
+    String value = getElementAsString(index);
     if(isNA(value)) {
       return IntVector.NA;
     } else if(value.equals("T") || value.equals("TRUE")) {
@@ -119,7 +198,7 @@ public class StringVector extends AbstractAtomicVector implements Iterable<Strin
     if(isElementNA(index)) {
       return IntVector.NA;
     } else {
-      return (int)ParseUtil.parseDouble(values[index]);
+      return (int)ParseUtil.parseDouble(getElementAsString(index));
     }
   }
 
@@ -128,7 +207,7 @@ public class StringVector extends AbstractAtomicVector implements Iterable<Strin
     if(isElementNA(index)) {
       return DoubleVector.NA;
     } else {
-      return ParseUtil.parseDouble(values[index]);
+      return ParseUtil.parseDouble(getElementAsString(index));
     }
   }
 
@@ -139,11 +218,11 @@ public class StringVector extends AbstractAtomicVector implements Iterable<Strin
 
   @Override
   public double asReal() {
-    if(values.length > 0 &&
-        values[0] != null &&
-        values[0].length() > 0)
+    if(length() > 0 &&
+        getElementAsString(0) != null &&
+        getElementAsString(0).length() > 0)
     {
-      return ParseUtil.parseDouble(values[0]);
+      return ParseUtil.parseDouble(getElementAsString(0));
     } else {
       return DoubleVector.NA;
     }
@@ -161,8 +240,8 @@ public class StringVector extends AbstractAtomicVector implements Iterable<Strin
 
   @Override
   public String toString() {
-    if (values.length == 1) {
-      return ParseUtil.formatStringLiteral(values[0], "NA_character_");
+    if (length() == 1) {
+      return ParseUtil.formatStringLiteral(getElementAsString(0), "NA_character_");
     } else {
       return "c(" + Joiner.on(", ").join(Iterables.transform(this, new ParseUtil.StringDeparser())) + ")";
     }
@@ -171,18 +250,33 @@ public class StringVector extends AbstractAtomicVector implements Iterable<Strin
   @Override
   public boolean equals(Object o) {
     if (this == o) return true;
-    if (o == null || getClass() != o.getClass()) return false;
+    if (!(o instanceof StringVector)) return false;
 
     StringVector stringExp = (StringVector) o;
 
-    if (!Arrays.equals(values, stringExp.values)) return false;
-
+    if (values != null && stringExp.values != null) {
+      return Arrays.equals(values, stringExp.values);
+    }
+    if (length() != stringExp.length()) return false;
+    for (int i = 0; i != length(); ++i) {
+      String element = getElementAsString(i);
+      String other = stringExp.getElementAsString(i);
+      if (element == null ? other != null : !element.equals(other)) return false;
+    }
     return true;
   }
 
   @Override
   public int hashCode() {
-    return Arrays.hashCode(values);
+    if (values != null) {
+      return Arrays.hashCode(values);
+    }
+    int hash = 1;
+    for (int i = 0; i != length(); ++i) {
+      String element = getElementAsString(i);
+      hash = 31 * hash + (element == null ? 0 : element.hashCode());
+    }
+    return hash;
   }
 
   public static boolean isNA(String s) {
@@ -192,12 +286,12 @@ public class StringVector extends AbstractAtomicVector implements Iterable<Strin
 
   @Override
   public SEXP getElementAsSEXP(int index) {
-    return new StringVector(values[index]);
+    return new StringVector(getElementAsString(index));
   }
 
   @Override
   public String getElementAsObject(int index) {
-    return values[index];
+    return getElementAsString(index);
   }
 
   @Override
@@ -231,7 +325,16 @@ public class StringVector extends AbstractAtomicVector implements Iterable<Strin
 
   @Override
   protected SEXP cloneWithNewAttributes(PairList attributes) {
-    return new StringVector(values, attributes);
+    StringVector clone = new StringVector(attributes, values);
+    clone.index = index;
+    return clone;
+  }
+
+  @Override
+  protected SEXP cloneWithNewAttributes(AttributeMap attributes) {
+    StringVector clone = new StringVector(attributes, values);
+    clone.index = index;
+    return clone;
   }
 
   @Override
@@ -250,6 +353,12 @@ public class StringVector extends AbstractAtomicVector implements Iterable<Strin
   }
 
   private int indexOf(String value, int startIndex) {
+    if(startIndex == 0 && values.length >= MIN_INDEXED_LENGTH) {
+      if(index == null) {
+        index = new StringIndex(this);
+      }
+      return index.indexOf(value);
+    }
     for(int i=startIndex;i<values.length;++i) {
       String value_i = values[i];
       if(value_i != null && value_i.equals(value)) {
@@ -265,42 +374,51 @@ public class StringVector extends AbstractAtomicVector implements Iterable<Strin
 
   public String[] toArray() {
     return values.clone();
-
   }
 
   public static class Builder extends AbstractAtomicBuilder {
-    private ArrayList<String> values;
+    private static final int MIN_INITIAL_CAPACITY = 15;
+    private String values[];
+    private int size;
     private boolean haveNonEmpty = false;
 
+    /**
+     * True if {@code values} has been handed to a vector by {@link #build()},
+     * and must be copied before it is modified again
+     */
+    private boolean shared = false;
+
     public Builder(int initialSize, int initialCapacity) {
-      values = Lists.newArrayListWithCapacity(initialCapacity);
-      for(int i=0;i!=initialSize;++i) {
-        values.add(NA);
+      if(initialCapacity < MIN_INITIAL_CAPACITY) {
+        initialCapacity = MIN_INITIAL_CAPACITY;
+      }
+      if(initialSize > initialCapacity) {
+        initialCapacity = initialSize;
       }
+      values = new String[initialCapacity];
+      size = initialSize;
     }
     
     public Builder() {
-      this(0, 15);
+      this(0, MIN_INITIAL_CAPACITY);
     }
 
     public Builder(StringVector toClone) {
-      values = Lists.newArrayList();
-      Iterables.addAll(values, toClone);
+      values = toClone.toArray();
+      size = values.length;
       copyAttributesFrom(toClone);
     }
 
     public Builder(int initialSize) {
-      values = new ArrayList<String>(initialSize);
-      for(int i=0;i!=initialSize;++i) {
-        values.add(NA);
-      }
+      this(initialSize, initialSize);
     }
 
     public Builder set(int index, String value) {
-      while(values.size() <= index) {
-        values.add(NA);
+      ensureCapacity(index+1);
+      if(index+1 > size) {
+        size = index+1;
       }
-      values.set(index, value);
+      values[index] = value;
       if(value != null && !value.isEmpty()) {
         haveNonEmpty = true;
       }
@@ -308,10 +426,7 @@ public class StringVector extends AbstractAtomicVector implements Iterable<Strin
     }
 
     public void add(String value) {
-      values.add(value);
-      if(value != null && !value.isEmpty()) {
-        haveNonEmpty = true;
-      }
+      set(size, value);
     }
 
     @Override
@@ -342,12 +457,38 @@ public class StringVector extends AbstractAtomicVector implements Iterable<Strin
 
     @Override
     public int length() {
-      return values.size();
+      return size;
     }
 
+    public void ensureCapacity(int minCapacity) {
+      int oldCapacity = values.length;
+      if (minCapacity > oldCapacity) {
+        int newCapacity = (oldCapacity * 3)/2 + 1;
+        if (newCapacity < minCapacity)
+          newCapacity = minCapacity;
+        values = Arrays.copyOf(values, newCapacity);
+        shared = false;
+      } else if (shared) {
+        values = values.clone();
+        shared = false;
+      }
+    }
+
+    /**
+     * Builds the vector. If the builder is full, its array is handed to the
+     * vector without copying; it is copied if the builder is used again.
+     */
     @Override
     public StringVector build() {
-      return new StringVector(values, buildAttributes());
+      AllocationTracker.recordVector(size, 8);
+      String[] array;
+      if(size == values.length) {
+        array = values;
+        shared = true;
+      } else {
+        array = Arrays.copyOf(values, size);
+      }
+      return new StringVector(buildAttributes(), array);
     }
   }
 
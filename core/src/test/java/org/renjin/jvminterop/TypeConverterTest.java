@@ -1,14 +1,24 @@
 package org.renjin.jvminterop;
 
 
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+
 import org.junit.Test;
 import org.renjin.EvalTestCase;
+import org.renjin.jvminterop.converters.DoubleArrayConverter;
+import org.renjin.jvminterop.converters.DoubleBufferConverter;
+import org.renjin.jvminterop.converters.IntBufferConverter;
+import org.renjin.jvminterop.converters.IntegerArrayConverter;
+import org.renjin.jvminterop.converters.StringArrayConverter;
 import org.renjin.sexp.Logical;
 import org.renjin.sexp.LogicalVector;
 import org.renjin.sexp.SEXP;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 import static org.renjin.ExpMatchers.logicalVectorOf;
 
 public class TypeConverterTest extends EvalTestCase {
@@ -83,4 +93,41 @@ public class TypeConverterTest extends EvalTestCase {
     // assertThat(eval("if(instance$cakeConverted==cake) TRUE else FALSE"),logicalVectorOf(Logical.TRUE));
   }
 
+  @Test
+  public void primitiveArraysAreNotCopied() {
+    double[] doubles = { 1, 2, 3 };
+    DoubleArrayConverter doubleConverter = new DoubleArrayConverter(double[].class);
+    SEXP doubleVector = doubleConverter.convertToR(doubles);
+    assertThat(doubleVector, equalTo(c(1, 2, 3)));
+    assertTrue(doubleConverter.convertToJava(doubleVector) == doubles);
+
+    int[] ints = { 4, 5 };
+    IntegerArrayConverter intConverter = new IntegerArrayConverter(int[].class);
+    SEXP intVector = intConverter.convertToR(ints);
+    assertThat(intVector, equalTo(c_i(4, 5)));
+    assertTrue(intConverter.convertToJava(intVector) == ints);
+    assertThat((short[]) new IntegerArrayConverter(short[].class).convertToJava(intVector), 
+        equalTo(new short[] { 4, 5 }));
+
+    String[] strings = { "a", null };
+    SEXP stringVector = StringArrayConverter.INSTANCE.convertToR(strings);
+    assertThat(stringVector, equalTo(c("a", null)));
+    assertTrue(StringArrayConverter.INSTANCE.convertToJava(stringVector) == strings);
+  }
+
+  @Test
+  public void buffers() {
+    IntBuffer ints = IntBuffer.wrap(new int[] { 1, 2, 3, 4 }, 1, 3);
+    SEXP intVector = IntBufferConverter.INSTANCE.convertToR(ints);
+    assertThat(intVector, equalTo(c_i(2, 3, 4)));
+
+    DoubleBuffer doubles = ByteBuffer.allocateDirect(3 * 8).asDoubleBuffer();
+    doubles.put(1.5).put(2.5).put(3.5).flip();
+    SEXP doubleVector = DoubleBufferConverter.INSTANCE.convertToR(doubles);
+    assertThat(doubleVector, equalTo(c(1.5, 2.5, 3.5)));
+
+    DoubleBuffer view = (DoubleBuffer) DoubleBufferConverter.INSTANCE.convertToJava(doubleVector);
+    assertTrue(view.isReadOnly());
+    assertThat(view.get(2), equalTo(3.5));
+  }
 }
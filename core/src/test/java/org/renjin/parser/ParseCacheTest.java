@@ -0,0 +1,117 @@
+package org.renjin.parser;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.renjin.sexp.ExpressionVector;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+public class ParseCacheTest {
+
+  private static final String SOURCE = "f <- function(x, y = 2L) {\n  x[[1]] <- y * 1.5\n  x\n}\nf(list(), 'a')\n";
+
+  private File directory;
+
+  @Before
+  public void createDirectory() {
+    directory = Files.createTempDir();
+  }
+
+  @After
+  public void deleteDirectory() {
+    for(File file : directory.listFiles()) {
+      file.delete();
+    }
+    directory.delete();
+  }
+
+  @Test
+  public void sourceIsParsedOnce() {
+    ParseCache cache = new ParseCache(null, 16);
+    ExpressionVector first = cache.parse(SOURCE);
+    ExpressionVector second = cache.parse(new String(SOURCE));
+
+    assertThat(second, sameInstance(first));
+    assertThat(first, equalTo(RParser.parseSource(SOURCE)));
+    assertThat(cache.getMisses(), equalTo(1L));
+    assertThat(cache.getHits(), equalTo(1L));
+  }
+
+  @Test
+  public void leastRecentlyUsedAreEvicted() {
+    ParseCache cache = new ParseCache(null, 2);
+    cache.parse("a\n");
+    cache.parse("b\n");
+    cache.parse("a\n");
+    cache.parse("c\n");
+    cache.parse("a\n");
+    cache.parse("b\n");
+
+    assertThat(cache.getEntryCount(), equalTo(2));
+    assertThat(cache.getHits(), equalTo(2L));
+    assertThat(cache.getMisses(), equalTo(4L));
+  }
+
+  @Test
+  public void parsedSourceIsReadBackFromDisk() {
+    ExpressionVector parsed = new ParseCache(directory, 16).parse(SOURCE);
+
+    ParseCache later = new ParseCache(directory, 16);
+    ExpressionVector reread = later.parse(SOURCE);
+
+    assertThat(reread, equalTo(parsed));
+    assertThat(later.getDiskHits(), equalTo(1L));
+    assertThat(later.getMisses(), equalTo(0L));
+  }
+
+  @Test
+  public void leastRecentlyUsedFilesAreDeleted() {
+    ParseCache cache = new ParseCache(directory, 16, 4);
+    for(int i = 0; i != 6; ++i) {
+      cache.parse("x" + i + "\n");
+    }
+    assertThat(directory.list().length <= 4, equalTo(true));
+  }
+
+  @Test
+  public void changedFilesAreParsedAgain() throws IOException {
+    File file = new File(directory, "script.R");
+    Files.write(SOURCE, file, Charsets.UTF_8);
+
+    ParseCache cache = new ParseCache(null, 16);
+    ExpressionVector first = cache.parse(file, Charsets.UTF_8);
+    assertThat(cache.parse(file, Charsets.UTF_8), sameInstance(first));
+
+    Files.write(SOURCE + "g <- 1\n", file, Charsets.UTF_8);
+    ExpressionVector changed = cache.parse(file, Charsets.UTF_8);
+
+    assertThat(changed, not(equalTo(first)));
+    assertThat(changed.length(), equalTo(3));
+    assertThat(cache.getMisses(), equalTo(2L));
+  }
+
+  @Test
+  public void parseErrorsAreNotCached() {
+    ParseCache cache = new ParseCache(directory, 16);
+    for(int i = 0; i != 2; ++i) {
+      try {
+        cache.parse("f(1,,\n}\n");
+        throw new AssertionError("expected a parse error");
+      } catch(ParseException e) {
+        // expected
+      }
+    }
+    assertThat(cache.getEntryCount(), equalTo(0));
+    assertThat(directory.list().length, equalTo(0));
+  }
+}
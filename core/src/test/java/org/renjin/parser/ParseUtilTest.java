@@ -61,4 +61,10 @@ public class ParseUtilTest {
   public void integerExponent() {
     assertThat(ParseUtil.parseInt("1e+06"), equalTo((int)1e6));
   }
+
+  @Test
+  public void formatInt() {
+    assertThat(ParseUtil.toString(1234567), equalTo("1234567"));
+    assertThat(ParseUtil.toString(-42), equalTo("-42"));
+  }
 }
@@ -0,0 +1,89 @@
+package org.renjin.primitives;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+import org.renjin.EvalTestCase;
+import org.renjin.sexp.DoubleVector;
+import org.renjin.sexp.IntVector;
+import org.renjin.sexp.Null;
+import org.renjin.sexp.SEXP;
+
+
+public class AggregationTest extends EvalTestCase {
+
+  @Test
+  public void tabulate() {
+    assertThat(eval(".Internal(tabulate(c(2L, 3L, 5L, NA, 9L), 5L))"), equalTo(c_i(0, 1, 1, 0, 1)));
+  }
+
+  @Test
+  public void sums() {
+    eval("g <- c(1L, 2L, 1L, 3L, 1L)");
+    assertThat(eval(".Internal(groupReduce(c(1, 2, 3, 4, 5), g, 4L, 'sum', FALSE))"),
+        equalTo(c(9, 2, 4, DoubleVector.NA)));
+    assertThat(eval(".Internal(groupReduce(1:5, g, 3L, 'sum', FALSE))"), equalTo(c_i(9, 2, 4)));
+    assertThat(eval(".Internal(groupReduce(c(1L, NA, 3L, 4L, 5L), c(1L, 2L, 2L, 3L, 3L), 3L, 'sum', FALSE))"),
+        equalTo(c_i(1, IntVector.NA, 9)));
+    assertThat(eval(".Internal(groupReduce(c(1L, NA, 3L, 4L, 5L), c(1L, 2L, 2L, 3L, 3L), 3L, 'sum', TRUE))"),
+        equalTo(c_i(1, 3, 9)));
+  }
+
+  @Test
+  public void means() {
+    assertThat(eval(".Internal(groupReduce(c(1, 2, NA, 4), c(1L, 1L, 2L, 2L), 2L, 'mean', FALSE))"),
+        equalTo(c(1.5, DoubleVector.NA)));
+    assertThat(eval(".Internal(groupReduce(c(1, 2, NA, 4), c(1L, 1L, 2L, 2L), 2L, 'mean', TRUE))"),
+        equalTo(c(1.5, 4)));
+  }
+
+  @Test
+  public void ranges() {
+    eval("g <- c(1L, 2L, 1L, 2L)");
+    assertThat(eval(".Internal(groupReduce(c(3L, 8L, 1L, 9L), g, 2L, 'min', FALSE))"), equalTo(c_i(1, 8)));
+    assertThat(eval(".Internal(groupReduce(c(3, 8, 1, 9), g, 2L, 'max', FALSE))"), equalTo(c(3, 9)));
+    assertThat(eval(".Internal(groupReduce(c(3L, NA, 1L, NA), g, 2L, 'max', TRUE))"),
+        equalTo((SEXP) Null.INSTANCE));
+    // integer results stay integer when a group is NA or empty
+    assertThat(eval(".Internal(groupReduce(c(3L, NA, 1L, 9L), g, 3L, 'max', FALSE))"),
+        equalTo(c_i(3, IntVector.NA, IntVector.NA)));
+  }
+
+  @Test
+  public void firstAndLast() {
+    eval("g <- c(2L, 1L, 2L, 1L)");
+    assertThat(eval(".Internal(groupReduce(c('a', 'b', 'c', 'd'), g, 3L, 'first', FALSE))"),
+        equalTo(c("b", "a", null)));
+    assertThat(eval(".Internal(groupReduce(c('a', 'b', 'c', 'd'), g, 2L, 'last', FALSE))"),
+        equalTo(c("d", "c")));
+    assertThat(eval(".Internal(groupReduce(c('a', 'b', 'c', 'd'), g, 2L, 'length', FALSE))"),
+        equalTo(c_i(2, 2)));
+  }
+
+  @Test
+  public void rowsumMatrix() {
+    eval("x <- c(1, 2, 3, 4, 10, 20, 30, 40)");
+    eval("attr(x, 'dim') <- c(4L, 2L)");
+
+    eval("s <- .Internal(rowsum_matrix(x, c('b', 'a', 'b', 'a'), c('a', 'b'), FALSE))");
+    assertThat(eval("s[1:4]"), equalTo(c(6, 4, 60, 40)));
+    assertThat(eval("attr(s, 'dim')"), equalTo(c_i(2, 2)));
+
+    eval("s <- .Internal(rowsum_matrix(c(1L, 2L, NA, 4L), c(1.5, 2, 1.5, 2), c(2, 1.5), TRUE))");
+    assertThat(eval("s[1:2]"), equalTo(c_i(6, 1)));
+  }
+
+  @Test
+  public void rowsumDataFrame() {
+    eval("s <- .Internal(rowsum_df(list(a=c(1,2,3), b=4:6), c(1L, 2L, 1L), c(1L, 2L), FALSE))");
+    assertThat(eval("s$a"), equalTo(c(4, 2)));
+    assertThat(eval("s$b"), equalTo(c_i(10, 5)));
+  }
+
+  @Test
+  public void tabulateCodes() {
+    assertThat(eval(".Internal(tabulateCodes(list(c(1L, 2L, 1L, NA, 2L), c(1L, 3L, 1L, 2L, 2L)), c(2L, 3L)))"),
+        equalTo(c_i(2, 0, 0, 1, 0, 1)));
+  }
+}
@@ -26,8 +26,11 @@ import static org.junit.Assert.assertThat;
 import org.junit.Before;
 import org.junit.Test;
 import org.renjin.EvalTestCase;
+import org.renjin.sexp.DoubleVector;
+import org.renjin.sexp.IntVector;
 import org.renjin.sexp.Logical;
 import org.renjin.sexp.SEXP;
+import org.renjin.sexp.StringVector;
 
 
 public class CombineTest extends EvalTestCase {
@@ -212,4 +215,22 @@ public class CombineTest extends EvalTestCase {
     
   }
   
+  @Test
+  public void combineMixedTypesWithNA() {
+    assertThat(eval("c(NA, 1L, 2.5, c(3, 4))"), equalTo(c(DoubleVector.NA, 1, 2.5, 3, 4)));
+    assertThat(eval("c(TRUE, NA, 2L, 1:2)"), equalTo(c_i(1, IntVector.NA, 2, 1, 2)));
+    assertThat(eval("c(TRUE, NA)"), equalTo(c(Logical.TRUE, Logical.NA)));
+    assertThat(eval("c('a', NA, 1L)"), equalTo(c("a", StringVector.NA, "1")));
+    assertThat(eval("names(c(1:3, 4:6))"), equalTo((SEXP) NULL));
+    assertThat(eval("names(c(1:2, b=3L))"), equalTo(c("", "", "b")));
+  }
+
+  @Test
+  public void unlistManySmallVectors() {
+    eval("x <- .Internal(as.vector(1:1000 + 0, 'list'))");
+    assertThat(eval("length(.Internal(unlist(x, TRUE, TRUE)))"), equalTo(c_i(1000)));
+    assertThat(eval(".Internal(unlist(x, TRUE, TRUE))[[1000]]"), equalTo(c(1000)));
+    assertThat(eval("names(.Internal(unlist(x, TRUE, TRUE)))"), equalTo((SEXP) NULL));
+  }
+  
 }
@@ -24,9 +24,12 @@ package org.renjin.primitives;
 import org.junit.Test;
 import org.renjin.EvalTestCase;
 import org.renjin.eval.EvalException;
+import org.renjin.sexp.IntVector;
 import org.renjin.sexp.Logical;
 import org.renjin.sexp.LogicalArrayVector;
 import org.renjin.sexp.SEXP;
+import org.renjin.sexp.StringDictionaryVector;
+import org.renjin.sexp.StringVector;
 
 import java.io.IOException;
 
@@ -296,4 +299,14 @@ public class ComparisonTest extends EvalTestCase {
   public void notEmptyList() {
     assertThat( eval( "!list()"), equalTo( (SEXP)new LogicalArrayVector()));
   }
+
+  @Test
+  public void dictionaryEncodedEquality() {
+    global.setVariable("x", new StringDictionaryVector(new int[] { 2, 1, IntVector.NA, 2 },
+        new StringVector("a", "b")));
+
+    assertThat( eval("x == 'b'"), equalTo(c(FALSE, TRUE, NA, TRUE)));
+    assertThat( eval("'b' != x"), equalTo(c(TRUE, FALSE, NA, FALSE)));
+    assertThat( eval("x == NA_character_"), equalTo(c(NA, NA, NA, NA)));
+  }
 }
@@ -25,6 +25,7 @@ public class DeparseTest extends EvalTestCase {
     assertThat(eval("deparse(c(99L))"), equalTo(c("99L")));
     assertThat(eval("deparse(c(x=99L,y=45L))"), equalTo(c("c(x = 99L, y = 45L)")));
     assertThat(eval("deparse(NA_real_)"), equalTo(c("NA_real_")));
+    assertThat(eval("deparse(c(0.1, 1e5, -1/0))"), equalTo(c("c(0.1, 1e+05, -Inf)")));
     assertThat(eval("deparse(1:10)"), equalTo(c("1:10")));
     assertThat(eval("deparse(5:1)"), equalTo(c("5:1")));
     assertThat(eval("deparse(list(1,'s',3L))"), equalTo(c("list(1, \"s\", 3L)")));
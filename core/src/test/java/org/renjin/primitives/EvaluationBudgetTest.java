@@ -0,0 +1,85 @@
+package org.renjin.primitives;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+import org.renjin.EvalTestCase;
+import org.renjin.eval.EvalException;
+import org.renjin.eval.EvaluationBudget;
+
+
+public class EvaluationBudgetTest extends EvalTestCase {
+
+  @Test
+  public void stepLimit() {
+    EvaluationBudget budget = topLevelContext.getGlobals().getEvaluationBudget();
+    budget.setStepLimit(10000);
+
+    assertStopped("repeat {}", "reached evaluation step limit");
+    assertThat(budget.getStepLimitsReached(), equalTo(1L));
+
+    // the limit applies again to the next computation
+    eval("i <- 0");
+    eval("while(i < 100) i <- i + 1");
+    assertStopped("repeat {}", "reached evaluation step limit");
+    assertThat(budget.getStepLimitsReached(), equalTo(2L));
+  }
+
+  @Test
+  public void elapsedTimeLimit() {
+    assertStopped("{ .Internal(setTimeLimit(Inf, 0.05, TRUE)); repeat {} }", "reached elapsed time limit");
+    assertThat(topLevelContext.getGlobals().getEvaluationBudget().getElapsedLimitsReached(), equalTo(1L));
+
+    // the transient limit has been removed
+    eval("f <- function(n) if(n > 0) f(n - 1) else 0");
+    eval("for(i in 1:1000) f(10)");
+  }
+
+  @Test
+  public void cpuTimeLimit() {
+    assertStopped("{ .Internal(setTimeLimit(0.05, Inf, TRUE)); repeat {} }", "reached CPU time limit");
+  }
+
+  @Test
+  public void interrupt() {
+    final Thread evaluator = Thread.currentThread();
+    new Thread() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep(50);
+        } catch(InterruptedException e) {
+          return;
+        }
+        evaluator.interrupt();
+      }
+    }.start();
+
+    assertStopped("repeat {}", "interrupted");
+    assertThat(topLevelContext.getGlobals().getEvaluationBudget().getInterrupts(), equalTo(1L));
+  }
+
+  @Test
+  public void handlersAreSignalled() {
+    topLevelContext.getGlobals().getEvaluationBudget().setStepLimit(10000);
+    eval("caught <- NULL");
+    eval("f <- function() { " +
+        ".Internal(.addCondHands('evaluationBudgetExceeded', list(function(e) caught <<- e$message), " +
+        "  globalenv(), NULL, TRUE)); " +
+        "repeat {} }");
+
+    assertStopped("f()", "reached evaluation step limit");
+    assertThat(eval("caught"), equalTo(c("reached evaluation step limit")));
+  }
+
+  private void assertStopped(String expression, String message) {
+    try {
+      eval(expression);
+      fail("expected the computation to be stopped");
+    } catch(EvalException e) {
+      assertThat(e.getErrorMessage(), equalTo(message));
+    }
+  }
+}
@@ -671,6 +671,55 @@ public class EvaluationTest extends EvalTestCase {
     eval("f <- function(c) c() ");
     eval("f()");
   }
+
+  @Test
+  public void lapplyMatchesExtraArguments() {
+    eval("lapply <- function(X, FUN, ...) .Internal(lapply(X, FUN))");
+    eval("f <- function(a, x, b = a * 10, ...) c(x, a, b, ...)");
+
+    assertThat(eval("lapply(list(1, 2), f, 100, b = 5)[[2]]"), equalTo(c(100, 2, 5)));
+    assertThat(eval("lapply(1:2, f, a = 3)[[1]]"), equalTo(c(1, 3, 30)));
+    assertThat(eval("lapply(c(1,2), function(...) sum(...), 10)"), equalTo(list(11d, 12d)));
+    assertThat(eval("names(lapply(c(a=1,b=2), sqrt))"), equalTo(c("a", "b")));
+    assertThat(eval("lapply(1:3, function(x) substitute(x))[[3]][[1]]"), equalTo(symbol("[[")));
+    assertThat(eval("lapply(1:3, function(x) substitute(x))[[3]][[3]]"), equalTo(c_i(3)));
+  }
+
+  @Test
+  public void lapplyDispatchesOnClassedVector() {
+    eval("lapply <- function(X, FUN, ...) .Internal(lapply(X, FUN))");
+    eval("`[[.foo` <- function(x, i) 'dispatched'");
+    eval("x <- 1:2");
+    eval("class(x) <- 'foo'");
+
+    assertThat(eval("lapply(x, function(e) e)[[2]]"), equalTo(c("dispatched")));
+  }
+
+  @Test
+  public void eapply() {
+    eval("eapply <- function (env, FUN, ..., all.names = FALSE, USE.NAMES = TRUE) " +
+        ".Internal(eapply(env, FUN, all.names, USE.NAMES))");
+    eval("e <- .Internal(new.env(TRUE, globalenv(), 29L))");
+    eval(".Internal(assign('b', 2, e, FALSE))");
+    eval(".Internal(assign('a', 1, e, FALSE))");
+    eval(".Internal(assign('.c', 3, e, FALSE))");
+
+    assertThat(eval("eapply(e, function(x, y) x + y, 10)"), equalTo(list(11d, 12d)));
+    assertThat(eval("names(eapply(e, sqrt))"), equalTo(c("a", "b")));
+    assertThat(eval("length(eapply(e, sqrt, all.names = TRUE))"), equalTo(c_i(3)));
+  }
+
+  @Test
+  public void rapply() {
+    eval("rapply <- function(object, f, classes = 'ANY', deflt = NULL, how = 'list', ...) " +
+        ".Internal(rapply(object, f, classes, deflt, how))");
+    eval("x <- list(a = 1, b = list(c = 'x', d = 4L))");
+
+    assertThat(eval("rapply(x, function(x, y) x * y, 'numeric', deflt = NA, how = 'list', y = 2)"),
+        equalTo(eval("list(a = 2, b = list(c = NA, d = 8))")));
+    assertThat(eval("rapply(x, function(x) x * 2, 'numeric', how = 'replace')"),
+        equalTo(eval("list(a = 2, b = list(c = 'x', d = 8))")));
+  }
   
 }
 
@@ -0,0 +1,101 @@
+package org.renjin.primitives;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.junit.Assert.assertThat;
+import static org.renjin.sexp.Logical.FALSE;
+import static org.renjin.sexp.Logical.NA;
+import static org.renjin.sexp.Logical.TRUE;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.renjin.EvalTestCase;
+import org.renjin.parser.RParser;
+import org.renjin.sexp.Environment;
+import org.renjin.sexp.IntVector;
+import org.renjin.sexp.SEXP;
+import org.renjin.sexp.StringDictionaryVector;
+import org.renjin.sexp.StringVector;
+
+
+public class FactorsTest extends EvalTestCase {
+
+  @Before
+  public void setUpFactor() {
+    // stand-ins for the methods in base, which the comparisons below must not reach
+    Environment baseNamespace = topLevelContext.getGlobals().baseNamespaceEnv;
+    topLevelContext.evaluate(RParser.parseSource(
+        "Ops.factor <- function(e1, e2) stop('base method called')\n" +
+        "Ops.ordered <- function(e1, e2) stop('base method called')\n"), baseNamespace);
+
+    eval("f <- c(2L, 1L, NA, 3L, 2L)");
+    eval("attr(f, 'levels') <- c('a', 'b', 'c')");
+    eval("attr(f, 'class') <- 'factor'");
+  }
+
+  @Test
+  public void compareWithLevel() {
+    assertThat(eval("f == 'b'"), equalTo(c(TRUE, FALSE, NA, FALSE, TRUE)));
+    assertThat(eval("'b' != f"), equalTo(c(FALSE, TRUE, NA, TRUE, FALSE)));
+    assertThat(eval("f == 'z'"), equalTo(c(FALSE, FALSE, NA, FALSE, FALSE)));
+  }
+
+  @Test
+  public void compareOrdered() {
+    eval("attr(f, 'class') <- c('ordered', 'factor')");
+    assertThat(eval("f < 'b'"), equalTo(c(FALSE, TRUE, NA, FALSE, FALSE)));
+    assertThat(eval("'b' <= f"), equalTo(c(TRUE, FALSE, NA, TRUE, TRUE)));
+    assertThat(eval("f >= 'z'"), equalTo(c(NA, NA, NA, NA, NA)));
+  }
+
+  @Test
+  public void compareFactors() {
+    eval("g <- f");
+    eval("attr(g, 'class') <- NULL");
+    eval("g[1] <- 3L");
+    eval("attr(g, 'class') <- 'factor'");
+    assertThat(eval("f == g"), equalTo(c(FALSE, TRUE, NA, TRUE, TRUE)));
+  }
+
+  @Test
+  public void userMethodsTakePrecedence() {
+    eval("Ops.factor <- function(e1, e2) 'user method'");
+    assertThat(eval("f == 'b'"), equalTo(c("user method")));
+  }
+
+  @Test
+  public void asCharacter() {
+    SEXP result = eval(".Internal(asCharacterFactor(f))");
+    assertThat(result, instanceOf(StringDictionaryVector.class));
+    assertThat(result, equalTo(c("b", "a", StringVector.NA, "c", "b")));
+  }
+
+  @Test
+  public void dropLevels() {
+    eval("h <- c(a = 3L, b = 1L, c = NA, d = 3L)");
+    eval("attr(h, 'levels') <- c('x', 'y', 'z')");
+    eval("attr(h, 'class') <- c('ordered', 'factor')");
+    eval("g <- .Internal(droplevelsFactor(h))");
+
+    assertThat(eval("attr(g, 'levels')"), equalTo(c("x", "z")));
+    assertThat(eval("attr(g, 'class')"), equalTo(c("ordered", "factor")));
+    assertThat(eval("names(g)"), equalTo(c("a", "b", "c", "d")));
+    assertThat(eval("g"), equalTo(c_i(2, 1, IntVector.NA, 2)));
+  }
+
+  @Test
+  public void recode() {
+    assertThat(eval(".Internal(recodeFactor(f, c(2L, 1L, 1L)))"), equalTo(c_i(1, 2, IntVector.NA, 1, 1)));
+  }
+
+  @Test
+  public void interaction() {
+    eval("g <- c(1L, 1L, 2L, 2L, 1L)");
+    eval("attr(g, 'levels') <- c('x', 'y')");
+    eval("attr(g, 'class') <- 'factor'");
+    eval("i <- .Internal(interaction(list(f, g), TRUE, '.', FALSE))");
+
+    assertThat(eval("attr(i, 'levels')"), equalTo(c("a.x", "b.x", "c.y")));
+    assertThat(eval("i"), equalTo(c_i(2, 1, IntVector.NA, 3, 2)));
+  }
+}
@@ -0,0 +1,97 @@
+package org.renjin.primitives;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.renjin.EvalTestCase;
+import org.renjin.eval.EvalException;
+import org.renjin.eval.Instrumentation;
+
+
+public class InstrumentationTest extends EvalTestCase {
+
+  private Instrumentation instrumentation;
+
+  @Before
+  public void enable() {
+    instrumentation = topLevelContext.getGlobals().enableInstrumentation();
+  }
+
+  @Test
+  public void closureCalls() {
+    eval("f <- function(n) if(n == 0) 0 else f(n - 1)");
+    instrumentation.reset();
+    eval("f(3)");
+
+    assertThat(instrumentation.getClosureCalls(), equalTo(4L));
+    assertTrue(instrumentation.getMaxClosureDepth() >= 4);
+    assertThat(instrumentation.getCallsByPrimitive().get("=="), equalTo(4L));
+    assertThat(instrumentation.getCallsByPrimitive().get("-"), equalTo(3L));
+    assertTrue(instrumentation.getPromisesForced() >= 4);
+  }
+
+  @Test
+  public void primitivesAreTimed() {
+    eval("x <- sum(1:1000)");
+
+    assertTrue(instrumentation.getTopPrimitivesByTime().containsKey("sum"));
+  }
+
+  @Test
+  public void samplingInterval() {
+    instrumentation.setSamplingInterval(0);
+    eval("x <- sum(1:1000)");
+
+    assertThat(instrumentation.getCallsByPrimitive().get("sum"), equalTo(1L));
+    assertTrue(instrumentation.getTopPrimitivesByTime().isEmpty());
+  }
+
+  @Test
+  public void errorsAreCountedOnce() {
+    eval("g <- function() .Internal(stop(FALSE, 'failed'))");
+    eval("f <- function() g()");
+    try {
+      eval("f()");
+    } catch(EvalException e) {
+      // expected
+    }
+    assertThat(instrumentation.getEvalExceptions(), equalTo(1L));
+  }
+
+  @Test
+  public void s3Dispatch() {
+    eval("print.foo <- function(x) 'foo'");
+    eval("print <- function(x) UseMethod('print')");
+    eval("print(structure(1, class='foo'))");
+
+    assertThat(instrumentation.getS3Dispatches(), equalTo(1L));
+  }
+
+  @Test
+  public void connectionChars() {
+    eval("con <- .Internal(textConnection('x', c('abc', 'de'), 'r', globalenv(), 0L))");
+    eval(".Internal(readLines(con, -1L, TRUE, FALSE, 'unknown'))");
+
+    assertThat(instrumentation.getConnectionCharsRead(), equalTo(7L));
+    assertThat(instrumentation.getConnectionBytesRead(), equalTo(0L));
+  }
+
+  @Test
+  public void mbeanIsUnregisteredOnClose() {
+    ObjectName name = instrumentation.registerMBean();
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    assertTrue(server.isRegistered(name));
+
+    topLevelContext.getGlobals().close();
+    assertFalse(server.isRegistered(name));
+  }
+}
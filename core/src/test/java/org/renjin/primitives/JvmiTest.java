@@ -7,6 +7,7 @@ import java.io.IOException;
 
 import org.junit.Test;
 import org.renjin.EvalTestCase;
+import org.renjin.jvminterop.FunctionBinding;
 import org.renjin.jvminterop.ObjectFrame;
 import org.renjin.sexp.Environment;
 import org.renjin.sexp.Symbol;
@@ -111,6 +112,23 @@ public class JvmiTest extends EvalTestCase {
     eval("x$methodWithContext('hello!')");
   }
   
+  @Test
+  public void repeatedCallsThroughGeneratedInvokers() {
+    eval("import(org.renjin.primitives.MyBean)");
+    eval("import(java.lang.Math)");
+    eval("x <- MyBean$new()");
+    
+    // enough calls to switch each overload from reflection to a generated invoker
+    for(int i=0;i!=FunctionBinding.INVOKER_THRESHOLD * 2;++i) {
+      assertThat(eval("x$sayHello('fred')"), equalTo(c("Hello fred")));
+      assertThat(eval("x$sayHello(as.integer(2))"), equalTo(c("HelloHello")));
+      assertThat(eval("x$sayHelloToEveryone(c('Bob', 'Ted'))"), equalTo(c("Hello Bob, Ted")));
+      assertThat(eval("x$compute()"), equalTo(c(1,2,3)));
+      assertThat(eval("Math$hypot(3, 4)"), equalTo(c(5)));
+      eval("x$methodWithContext('hello!')");
+    }
+  }
+  
   @Test
   public void sapplyOnLists() throws IOException {
     assumingBasePackagesLoad();
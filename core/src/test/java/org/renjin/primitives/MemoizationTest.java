@@ -0,0 +1,115 @@
+package org.renjin.primitives;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.renjin.EvalTestCase;
+import org.renjin.eval.EvalException;
+import org.renjin.eval.MemoCache;
+
+
+public class MemoizationTest extends EvalTestCase {
+
+  private MemoCache cache;
+
+  @Before
+  public void setUpFunction() {
+    cache = topLevelContext.getGlobals().getMemoCache();
+    eval("calls <- 0");
+    eval("f <- function(x, y = 1) { calls <<- calls + 1; x * y }");
+    eval("g <- function(...) .Internal(memoCall(f, list(...)))");
+  }
+
+  @Test
+  public void resultsAreCached() {
+    assertThat(eval("g(2)"), equalTo(c(2)));
+    assertThat(eval("g(2)"), equalTo(c(2)));
+    assertThat(eval("calls"), equalTo(c(1)));
+
+    assertThat(eval("g(3)"), equalTo(c(3)));
+    assertThat(eval("g(2, y = 4)"), equalTo(c(8)));
+    assertThat(eval("calls"), equalTo(c(3)));
+
+    assertThat(cache.getHits(), equalTo(1L));
+    assertThat(cache.getMisses(), equalTo(3L));
+    assertThat(cache.getEntryCount(), equalTo(3));
+  }
+
+  @Test
+  public void argumentsAreComparedByContent() {
+    eval("a <- c(1, 2, 3) + 0");
+    eval("b <- c(1, 2, 3) + 0");
+    eval("g(a)");
+    eval("g(b)");
+    assertThat(eval("calls"), equalTo(c(1)));
+
+    // attributes are part of the value
+    eval("attr(b, 'foo') <- 'bar'");
+    eval("g(b)");
+    assertThat(eval("calls"), equalTo(c(2)));
+  }
+
+  @Test
+  public void longVectorsAreHashedByContent() {
+    eval("g(1:1000 + 0)");
+    eval("g(1:1000 + 0)");
+    eval("g(c(1:999, 0) + 0)");
+    assertThat(eval("calls"), equalTo(c(2)));
+  }
+
+  @Test
+  public void errorsAreNotCached() {
+    eval("h <- function(x) { calls <<- calls + 1; .Internal(stop(FALSE, 'failed')) }");
+    for(int i = 0; i != 2; ++i) {
+      try {
+        eval(".Internal(memoCall(h, list(1)))");
+        fail("expected an error");
+      } catch(EvalException e) {
+        assertThat(e.getErrorMessage(), equalTo("failed"));
+      }
+    }
+    assertThat(eval("calls"), equalTo(c(2)));
+    assertThat(cache.getEntryCount(), equalTo(0));
+  }
+
+  @Test
+  public void leastRecentlyUsedAreEvicted() {
+    eval("g(1); g(2)");
+    long entryBytes = cache.getBytes() / 2;
+    cache.setLimit(entryBytes * 2);
+
+    eval("g(1)");
+    eval("g(3)");
+    assertThat(cache.getEvictions(), equalTo(1L));
+    assertThat(cache.getEntryCount(), equalTo(2));
+
+    // 2 was evicted, 1 was not
+    eval("g(1)");
+    assertThat(eval("calls"), equalTo(c(3)));
+    eval("g(2)");
+    assertThat(eval("calls"), equalTo(c(4)));
+    assertTrue(cache.getBytes() <= cache.getLimit());
+  }
+
+  @Test
+  public void oversizedResultsAreNotCached() {
+    eval(".Internal(memoLimit(100))");
+    eval("g(1:1000 + 0)");
+    assertThat(cache.getEntryCount(), equalTo(0));
+    assertThat(cache.getRejections(), equalTo(1L));
+  }
+
+  @Test
+  public void forget() {
+    eval("g(1); g(2)");
+    eval(".Internal(memoForget(f))");
+    assertThat(cache.getEntryCount(), equalTo(0));
+    assertThat(cache.getBytes(), equalTo(0L));
+    eval("g(1)");
+    assertThat(eval("calls"), equalTo(c(3)));
+  }
+}
@@ -0,0 +1,116 @@
+package org.renjin.primitives;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Test;
+import org.renjin.EvalTestCase;
+import org.renjin.eval.AllocationTracker;
+import org.renjin.eval.EvalException;
+import org.renjin.sexp.DoubleArrayVector;
+import org.renjin.sexp.DoubleVector;
+import org.renjin.sexp.SEXP;
+
+
+public class MemoryTest extends EvalTestCase {
+
+  @After
+  public void unbindTracker() {
+    AllocationTracker.bind(null);
+  }
+
+  @Test
+  public void objectSizeGrowsWithLength() {
+    double small = sizeOf("as.double(1:10)");
+    double large = sizeOf("as.double(1:10000)");
+
+    assertTrue(large - small >= 8 * 9990);
+    assertTrue(large - small < 8 * 10000);
+  }
+
+  @Test
+  public void sequencesAreCompact() {
+    assertTrue(sizeOf("1:1000000") < 100);
+  }
+
+  @Test
+  public void sharedElementsAreCountedOnce() {
+    eval("x <- as.double(1:10000)");
+    double single = sizeOf("x");
+
+    assertTrue(sizeOf("list(x, x)") < 1.5 * single);
+    assertTrue(sizeOf("list(x, x + 1)") > 2 * single);
+  }
+
+  @Test
+  public void globalSingletons() {
+    assertThat(sizeOf("NULL"), equalTo(0d));
+    assertThat(sizeOf("quote(x)"), equalTo(0d));
+  }
+
+  @Test
+  public void gc() {
+    SEXP result = eval(".Internal(gc(FALSE, TRUE))");
+    assertThat(result.length(), equalTo(14));
+
+    DoubleVector vector = (DoubleVector) result;
+    assertTrue(vector.getElementAsDouble(1) > 0);
+    assertTrue(vector.isElementNA(9));
+  }
+
+  @Test
+  public void memLimits() {
+    assertThat(eval(".Internal(mem.limits(NA, NA))"), equalTo(c(DoubleVector.NA, DoubleVector.NA)));
+    assertThat(eval(".Internal(mem.limits(NA, 1e6))"), equalTo(c(DoubleVector.NA, 1e6)));
+    assertThat(eval(".Internal(mem.limits(NA, Inf))"), equalTo(c(DoubleVector.NA, DoubleVector.NA)));
+  }
+
+  @Test
+  public void allocationLimit() {
+    AllocationTracker tracker = topLevelContext.getGlobals().trackAllocations();
+    tracker.setSoftLimit(1000);
+    eval("1");
+
+    new DoubleArrayVector.Builder(100).build();
+    assertThat(tracker.getAllocatedBytes(), equalTo(800L));
+
+    try {
+      new DoubleArrayVector.Builder(100).build();
+      fail("expected the limit to be exceeded");
+    } catch(EvalException e) {
+      assertThat(tracker.getAllocatedBytes(), equalTo(0L));
+    }
+  }
+
+  @Test
+  public void subsettingCountsTowardsLimit() {
+    global.setVariable("x", DoubleArrayVector.unsafe(new double[1000]));
+    topLevelContext.getGlobals().trackAllocations().setSoftLimit(1000);
+
+    assertLimitExceeded("x[1:900]");
+  }
+
+  @Test
+  public void combiningCountsTowardsLimit() {
+    global.setVariable("x", DoubleArrayVector.unsafe(new double[1000]));
+    topLevelContext.getGlobals().trackAllocations().setSoftLimit(1000);
+
+    assertLimitExceeded("c(x, x)");
+  }
+
+  private void assertLimitExceeded(String expression) {
+    try {
+      eval(expression);
+      fail("expected the limit to be exceeded by " + expression);
+    } catch(EvalException e) {
+      assertTrue(e.getMessage().contains("exceeds the limit"));
+    }
+  }
+
+  private double sizeOf(String expression) {
+    return eval(".Internal(object.size(" + expression + "))").asReal();
+  }
+}
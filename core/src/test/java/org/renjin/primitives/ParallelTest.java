@@ -0,0 +1,80 @@
+package org.renjin.primitives;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.renjin.EvalTestCase;
+import org.renjin.sexp.ListVector;
+import org.renjin.sexp.SEXP;
+import org.renjin.sexp.Symbol;
+
+
+public class ParallelTest extends EvalTestCase {
+
+  @Before
+  public void defineMclapply() {
+    eval("mclapply <- function(X, FUN, ..., mc.cores = 2L, mc.preschedule = TRUE) " +
+        " .Internal(mclapply(X, FUN, mc.cores, mc.preschedule))");
+  }
+
+  @Test
+  public void results() {
+    eval("x <- mclapply(c(a=1,b=2,c=3,d=4,e=5), function(x) x * 10, mc.cores = 3L)");
+    assertThat(eval("x[[1]]"), equalTo(c(10)));
+    assertThat(eval("x[[5]]"), equalTo(c(50)));
+    assertThat(eval("names(x)"), equalTo(c("a", "b", "c", "d", "e")));
+
+    eval("y <- mclapply(1:5, function(x, y) x + y, 100L, mc.preschedule = FALSE)");
+    assertThat(eval("y[[3]]"), equalTo(c_i(103)));
+  }
+
+  @Test
+  public void randomStreamsAreReproducible() {
+    eval(".Internal(set.seed(42L, 7L, 4L))");
+    eval("x <- mclapply(1:4, function(i) .Internal(runif(2L, 0, 1)))");
+    eval(".Internal(set.seed(42L, 7L, 4L))");
+    eval("y <- mclapply(1:4, function(i) .Internal(runif(2L, 0, 1)))");
+
+    assertThat(eval("x"), equalTo(eval("y")));
+    assertThat(eval("x[[1]]"), not(equalTo(eval("x[[2]]"))));
+  }
+
+  @Test
+  public void nextRNGStream() {
+    eval(".Internal(set.seed(123L, 7L, 4L))");
+    assertThat(eval(".Internal(runif(1L, 0, 1))"), closeTo(c(0.1663742), 0.0000001));
+
+    // values from GNU R's parallel::nextRNGStream(.Random.seed)
+    assertThat(eval(".Internal(nextRNGStream(c(10407L, 1806547166L, -983674937L, 643431772L, " +
+        "1162448557L, -959247990L, -133913213L)))"),
+        equalTo(c_i(10407, 1801422725, -2057975723, 1156894209, 1595475487, 210384600, -1655729657)));
+  }
+
+  @Test
+  public void warningsAreCollected() {
+    eval("mclapply(1:3, function(i) .Internal(warning(FALSE, FALSE, 'careful')), mc.cores = 3L)");
+
+    ListVector warnings = (ListVector) base.getVariable(Warning.LAST_WARNING);
+    assertThat(warnings.length(), equalTo(3));
+    assertThat(warnings.getName(0), equalTo("careful"));
+  }
+
+  @Test
+  public void workersHaveTheirOwnGlobalEnvironment() {
+    eval("x <- mclapply(1:2, function(i) .Internal(assign('z', i, globalenv(), FALSE)))");
+    assertThat(global.getVariable(Symbol.get("z")), equalTo((SEXP) Symbol.UNBOUND_VALUE));
+  }
+
+  @Test
+  public void errors() {
+    eval("x <- mclapply(1:4, function(i) if(i == 3) .Internal(stop(FALSE, 'boom')) else i)");
+
+    assertThat(eval("x[[2]]"), equalTo(c_i(2)));
+    assertThat(eval("x[[4]]"), equalTo(c_i(4)));
+    assertThat(eval("class(x[[3]])"), equalTo(c("try-error")));
+    assertThat(eval(".Internal(as.vector(x[[3]], 'character'))"), equalTo(c("Error : boom\n")));
+  }
+}
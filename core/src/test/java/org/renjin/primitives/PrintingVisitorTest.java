@@ -25,7 +25,12 @@ import org.junit.Test;
 import org.renjin.sexp.DoubleArrayVector;
 import org.renjin.sexp.IntArrayVector;
 import org.renjin.sexp.ListVector;
+import org.renjin.sexp.SEXP;
 import org.renjin.sexp.StringVector;
+import org.renjin.sexp.Symbols;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.junit.Assert.assertThat;
@@ -38,6 +43,14 @@ public class PrintingVisitorTest {
         equalTo("[1]  1 99  3\n"));                                                
   }
 
+  @Test
+  public void realVectorWithCommonDecimals() {
+    assertThat(new Print.PrintingVisitor().print(new DoubleArrayVector(1, 2.5, Math.PI)),
+        equalTo("[1] 1.000000 2.500000 3.141593\n"));
+    assertThat(new Print.PrintingVisitor().setDigits(3).print(new DoubleArrayVector(1e-10, 1)),
+        equalTo("[1] 1e-10 1e+00\n"));
+  }
+
   @Test
   public void stringVector() {
     assertThat(new Print.PrintingVisitor().print(new StringVector("abcdef", "a", "b")),
@@ -59,4 +72,44 @@ public class PrintingVisitorTest {
                 "\n"));
   }
 
+  @Test
+  public void maxPrint() {
+    assertThat(new Print.PrintingVisitor().setMaxPrint(3).print(new IntArrayVector(1, 2, 3, 4, 5)),
+        equalTo("[1] 1 2 3\n" +
+                " [ reached getOption(\"max.print\") -- omitted 2 entries ]\n"));
+
+    assertThat(new Print.PrintingVisitor().setMaxPrint(1).print(
+        new ListVector(new DoubleArrayVector(1), new DoubleArrayVector(2))),
+        equalTo("[[1]]\n" +
+                "[1] 1\n" +
+                "\n" +
+                " [ reached getOption(\"max.print\") -- omitted 1 entries ]\n"));
+  }
+
+  @Test
+  public void maxPrintOmitsMatrixRows() {
+    SEXP matrix = new IntArrayVector(1, 2, 3, 4, 5, 6).setAttribute(Symbols.DIM, new IntArrayVector(3, 2));
+    assertThat(new Print.PrintingVisitor().setMaxPrint(4).print(matrix),
+        equalTo("     [,1] [,2]\n" +
+                "[1,]    1    4\n" +
+                "[2,]    2    5\n" +
+                " [ reached getOption(\"max.print\") -- omitted 1 rows ]\n"));
+  }
+
+  @Test
+  public void streamsToWriter() {
+    int[] values = new int[10000];
+    for(int i = 0; i != values.length; ++i) {
+      values[i] = i;
+    }
+    IntArrayVector vector = new IntArrayVector(values);
+
+    StringWriter writer = new StringWriter();
+    Print.PrintingVisitor visitor = new Print.PrintingVisitor(new PrintWriter(writer));
+    vector.accept(visitor);
+    visitor.flush();
+
+    assertThat(writer.toString(), equalTo(new Print.PrintingVisitor().print(vector)));
+  }
+
 }
@@ -21,6 +21,17 @@ public class SplitTest extends EvalTestCase {
     assertThat(eval("x$`2`"), equalTo(c_i(9,7,5,3)));
     assertThat(eval("x$`3`"), equalTo(c_i(2,1)));
   }
+
+  @Test
+  public void splitByLevels() {
+    eval("f <- c(2L, 1L, 2L, NA)");
+    eval("attr(f, 'levels') <- c('a', 'b', 'c')");
+    eval("x <- .Internal(split(c(p=1, q=2, r=3, s=4), f))");
+
+    assertThat(eval("names(x)"), equalTo(c("a", "b", "c")));
+    assertThat(eval("x$b"), equalTo(eval("c(p=1, r=3)")));
+    assertThat(eval("length(x$c)"), equalTo(c_i(0)));
+  }
   
   
 }
@@ -690,4 +690,89 @@ public class SubsettingTest extends EvalTestCase {
     
   }
   
+  @Test
+  public void rangeOfLongVector() {
+    eval("x <- 1:5000 + 0");
+    eval("y <- x[1001:5000]");
+    assertThat(eval("y[1]"), equalTo(c(1001)));
+    assertThat(eval("length(y)"), equalTo(c_i(4000)));
+    assertThat(topLevelContext.getGlobalEnvironment().getVariable("y"), 
+        Matchers.instanceOf(DoubleBufferVector.class));
+    
+    // modifying the range copies it
+    eval("y[1] <- 0");
+    assertThat(eval("y[1:2]"), equalTo(c(0, 1002)));
+    assertThat(eval("x[1001]"), equalTo(c(1001)));
+    
+    // ranges beyond the end are padded with NA
+    assertThat(eval("x[4999:5001]"), equalTo(c(4999, 5000, DoubleVector.NA)));
+  }
+  
+  @Test
+  public void matrixBlocks() {
+    eval("m <- 1:12");
+    eval("dim(m) <- c(3,4)");
+    assertThat(eval("c(m[,2:3])"), equalTo(c_i(4,5,6,7,8,9)));
+    assertThat(eval("c(m[2:3,c(1,4)])"), equalTo(c_i(2,3,11,12)));
+    assertThat(eval("m[c(1,NA),2]"), equalTo(c_i(4, IntVector.NA)));
+    assertThat(eval("c(m[c(3,1),c(TRUE,FALSE)])"), equalTo(c_i(3,1,9,7)));
+    
+    eval("a <- 1:24 + 0");
+    eval("dim(a) <- c(2,3,4)");
+    assertThat(eval("c(a[,,3])"), equalTo(c(13,14,15,16,17,18)));
+    assertThat(eval("a[2,3,]"), equalTo(c(6,12,18,24)));
+  }
+  
+  @Test
+  public void logicalMaskRuns() {
+    eval("x <- c('a','b','c','d','e')");
+    eval("names(x) <- c('A','B','C','D','E')");
+    eval("y <- x[c(TRUE,TRUE,FALSE,TRUE,NA)]");
+    assertThat(eval("y"), equalTo(c("a","b","d",StringVector.NA)));
+    assertThat(eval("names(y)"), equalTo(c("A","B","D",StringVector.NA)));
+  }
+  
+  @Test
+  public void namesOfLongVector() {
+    eval("x <- 1:100 + 0");
+    eval("names(x) <- as.character(1:100)");
+    eval("names(x)[[50]] <- '7'");
+    eval("names(x)[[60]] <- NA");
+    
+    eval("y <- x[c('100', '7', '50', 'foo')]");
+    assertThat(eval("c(y[[1]], y[[2]], y[[3]], y[[4]])"), equalTo(c(100, 7, DoubleVector.NA, DoubleVector.NA)));
+    assertThat(eval("names(y)"), equalTo(c("100", "7", StringVector.NA, StringVector.NA)));
+    assertThat(eval("x[['99']]"), equalTo(c(99)));
+  }
+  
+  @Test
+  public void dollarOnLongList() {
+    eval("l <- .Internal(as.vector(1:100 + 0, 'list'))");
+    eval("names(l) <- as.character(1:100)");
+    eval("names(l)[[2]] <- 'abc'");
+    eval("names(l)[[3]] <- 'abcd'");
+    eval("names(l)[[4]] <- 'xyz1'");
+    
+    assertThat(eval("l$abc"), equalTo(c(2)));
+    assertThat(eval("l$xy"), equalTo(c(4)));
+    assertThat(eval("l$ab"), equalTo((SEXP) Null.INSTANCE));
+    assertThat(eval("l$`100`"), equalTo(c(100)));
+  }
+  
+  @Test
+  public void subsetDictionaryEncodedVector() {
+    String[] values = new String[2000];
+    for(int i = 0; i != values.length; ++i) {
+      values[i] = "v" + (i % 3);
+    }
+    StringVector column = StringDictionaryVector.encode(StringVector.unsafe(values));
+    assertThat(column, Matchers.instanceOf(StringDictionaryVector.class));
+    global.setVariable("x", column);
+
+    SEXP result = eval("x[c(2:4, NA, 3000)]");
+    assertThat(result, Matchers.instanceOf(StringDictionaryVector.class));
+    assertThat(result, equalTo(c("v1", "v2", "v0", StringVector.NA, StringVector.NA)));
+    assertThat(eval("c(x[1:2], 'w')"), equalTo(c("v0", "v1", "w")));
+  }
+
 }
\ No newline at end of file
@@ -208,6 +208,11 @@ public class TextTest extends EvalTestCase {
     
     assertThat( eval("format(c(1,10,1000))"), equalTo(c("   1", "  10", "1000")));
     assertThat( eval("format(c(1,10,1000),trim=T)"), equalTo(c("1", "10", "1000")));
+    assertThat( eval("format(c(1.5,10,-1))"), equalTo(c(" 1.5", "10.0", "-1.0")));
+    assertThat( eval("format(pi, digits=3)"), equalTo(c("3.14")));
+    assertThat( eval("format(2, nsmall=2)"), equalTo(c("2.00")));
+    assertThat( eval("format(1e5)"), equalTo(c("1e+05")));
+    assertThat( eval("format(1e5, scientific=FALSE)"), equalTo(c("100000")));
 
   }
 
@@ -46,6 +46,8 @@ public strictfp class TypesTest extends EvalTestCase {
     assertThat( eval("as.character(1L)"), equalTo( c("1") ));
     assertThat( eval("as.character(1.3333333333333333333333333333333333)"),
         equalTo(c("1.33333333333333")));
+    assertThat( eval("as.character(c(123456, 1e5, 0.0001, 0.1+0.2))"),
+        equalTo(c("123456", "1e+05", "1e-04", "0.3")));
     assertThat( eval("as.character(TRUE)"), equalTo( c("TRUE") ));
   }
   
@@ -0,0 +1,114 @@
+package org.renjin.primitives.io.compress;
+
+import org.junit.Test;
+import org.renjin.EvalTestCase;
+import org.renjin.eval.EvalException;
+import org.renjin.sexp.Null;
+import org.renjin.sexp.RawVector;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class CodecsTest extends EvalTestCase {
+
+  @Test
+  public void roundTrip() throws IOException {
+    byte[] bytes = sampleBytes(3 * 1024 * 1024);
+    for(Codec codec : new Codec[] { Codecs.GZIP, Codecs.BZIP2, Codecs.LZMA }) {
+      byte[] compressed = Codecs.compress(codec, bytes, 0, bytes.length, 6);
+      assertThat(codec.getName(), Codecs.detect(compressed, compressed.length), equalTo(codec));
+      assertTrue(codec.getName(), Arrays.equals(Codecs.decompress(codec, compressed, 0, compressed.length), bytes));
+    }
+  }
+  
+  @Test
+  public void parallelBlocksAreConcatenatedStreams() throws IOException {
+    byte[] bytes = sampleBytes(5 * 1024 * 1024);
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    for(Codec codec : new Codec[] { Codecs.GZIP, Codecs.BZIP2 }) {
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      OutputStream out = new BlockParallelOutputStream(baos, codec, 9, executor, 3);
+      out.write(bytes);
+      out.close();
+      
+      InputStream in = Codecs.decompressIfCompressed(
+          new BufferedInputStream(new ByteArrayInputStream(baos.toByteArray())));
+      assertTrue(codec.getName(), Arrays.equals(readAll(in), bytes));
+    }
+    executor.shutdown();
+  }
+  
+  @Test
+  public void emptyStreams() throws IOException {
+    for(Codec codec : new Codec[] { Codecs.GZIP, Codecs.BZIP2, Codecs.LZMA }) {
+      byte[] compressed = Codecs.compress(codec, new byte[0], 0, 0, 6);
+      assertThat(codec.getName(), Codecs.decompress(codec, compressed, 0, compressed.length).length, equalTo(0));
+    }
+  }
+  
+  @Test
+  public void memCompress() {
+    eval("x <- .Internal(vector('raw', 10000L))");
+    for(int type = 2; type <= 3; ++type) {
+      eval("z <- .Internal(memCompress(x, " + type + "L))");
+      assertThat(eval("length(z) < 1000"), equalTo(c(true)));
+      assertThat(eval(".Internal(memDecompress(z, 5L))"), equalTo(eval("x")));
+    }
+  }
+
+  @Test
+  public void lzmaDetectionIgnoresOrdinaryData() throws IOException {
+    byte[] header = "]\0 is not lzma data".getBytes("UTF-8");
+    assertThat(Codecs.detect(header, header.length), nullValue());
+  }
+  
+  @Test(expected = IOException.class)
+  public void xzIsNotSupported() throws IOException {
+    byte[] header = { (byte)0xFD, '7', 'z', 'X', 'Z', 0, 0, 4, (byte)0xE6, (byte)0xD6, (byte)0xB4, 0x46 };
+    Codecs.detect(header, header.length);
+  }
+  
+  @Test(expected = EvalException.class)
+  public void memCompressXzIsNotSupported() {
+    eval(".Internal(memCompress(.Internal(vector('raw', 10L)), 4L))");
+  }
+  
+  @Test
+  public void memDecompressLzma() throws IOException {
+    byte[] bytes = sampleBytes(10000);
+    byte[] compressed = Codecs.compress(Codecs.LZMA, bytes, 0, bytes.length, 6);
+    global.setVariable("z", new RawVector(compressed, compressed.length, Null.INSTANCE));
+    global.setVariable("x", new RawVector(bytes, bytes.length, Null.INSTANCE));
+    assertThat(eval(".Internal(memDecompress(z, 4L))"), equalTo(eval("x")));
+  }
+
+  private byte[] sampleBytes(int length) {
+    byte[] bytes = new byte[length];
+    for(int i=0;i!=length;++i) {
+      bytes[i] = (byte)("the quick brown fox ".charAt(i % 20) + (i / 997) % 3);
+    }
+    return bytes;
+  }
+  
+  private byte[] readAll(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    int count;
+    while((count = in.read(buffer)) != -1) {
+      out.write(buffer, 0, count);
+    }
+    return out.toByteArray();
+  }
+}
@@ -2,6 +2,13 @@ package org.renjin.primitives.io.connections;
 
 import org.junit.Test;
 import org.renjin.EvalTestCase;
+import org.renjin.sexp.DoubleVector;
+import org.renjin.sexp.StringVector;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.junit.Assert.assertThat;
@@ -29,6 +36,157 @@ public class ConnectionsTest extends EvalTestCase {
   }
  
   
+  @Test
+  public void writeBinToRawVector() {
+    eval("x <- .Internal(writeBin(c(1.5, -2, NA), .Internal(vector('raw', 0L)), NA_integer_, TRUE, FALSE))");
+    assertThat(eval("length(x)"), equalTo(c_i(24)));
+    assertThat(eval(".Internal(readBin(x, 'double', 10L, NA_integer_, TRUE, TRUE))"), 
+        equalTo(c(1.5, -2, DoubleVector.NA)));
+    
+    eval("y <- .Internal(writeBin(c(1L, 256L), .Internal(vector('raw', 0L)), 2L, FALSE, FALSE))");
+    assertThat(eval("as.integer(y)"), equalTo(c_i(0, 1, 1, 0)));
+  }
+  
+  @Test
+  public void readBinFromFile() throws IOException {
+    File file = File.createTempFile("readBin", ".bin");
+    file.deleteOnExit();
+    topLevelContext.getGlobalEnvironment().setVariable("path", new StringVector(file.getAbsolutePath()));
+
+    eval("con <- .Internal(file(path, 'wb', TRUE, ''))");
+    eval(".Internal(writeBin(c(1, 2, 3, 4), con, 4L, TRUE, FALSE))");
+    eval(".Internal(writeBin(c(255L, 65535L), con, 2L, TRUE, FALSE))");
+    eval(".Internal(close(con, 'rw'))");
+    
+    eval("con <- .Internal(file(path, 'rb', TRUE, ''))");
+    assertThat(eval(".Internal(isSeekable(con))"), equalTo(c(true)));
+    assertThat(eval(".Internal(readBin(con, 'double', 4L, 4L, TRUE, TRUE))"), equalTo(c(1, 2, 3, 4)));
+    assertThat(eval(".Internal(readBin(con, 'integer', 5L, 2L, FALSE, TRUE))"), equalTo(c_i(255, 65535)));
+    
+    assertThat(eval(".Internal(seek(con, 4, 1L, 0L))"), equalTo(c(20)));
+    assertThat(eval(".Internal(readBin(con, 'double', 1L, 4L, TRUE, TRUE))"), equalTo(c(2)));
+    eval(".Internal(close(con, 'rw'))");
+  }
+  
+  @Test
+  public void writeAndReadLinesWithEncoding() throws IOException {
+    File file = File.createTempFile("writeLines", ".txt");
+    file.deleteOnExit();
+    topLevelContext.getGlobalEnvironment().setVariable("path", new StringVector(file.getAbsolutePath()));
+
+    eval("con <- .Internal(file(path, 'w', TRUE, 'latin1'))");
+    eval(".Internal(writeLines(c('caf\u00e9', NA, 'na\u00efve'), con, '\\r\\n', FALSE))");
+    eval(".Internal(close(con, 'rw'))");
+    
+    assertThat(file.length(), equalTo(17L));
+    
+    eval("con <- .Internal(file(path, 'r', TRUE, 'latin1'))");
+    assertThat(eval(".Internal(readLines(con, -1, TRUE, FALSE, 'unknown'))"), 
+        equalTo(c("caf\u00e9", "NA", "na\u00efve")));
+    eval(".Internal(close(con, 'rw'))");
+    
+    eval("con <- .Internal(file(path, 'r', TRUE, 'latin1'))");
+    assertThat(eval(".Internal(readChar(con, 4L, FALSE))"), equalTo(c("caf\u00e9")));
+    eval(".Internal(close(con, 'rw'))");
+  }
+  
+  @Test
+  public void readTextConnection() {
+    eval("con <- .Internal(textConnection('x', c('a,b', NA, 'c'), 'r', globalenv(), 1L))");
+    assertThat(eval(".Internal(readLines(con, 2L, TRUE, FALSE, 'unknown'))"), equalTo(c("a,b", "NA")));
+    assertThat(eval(".Internal(readChar(con, 1L, FALSE))"), equalTo(c("c")));
+    assertThat(eval(".Internal(readLines(con, -1L, TRUE, FALSE, 'unknown'))"), equalTo(c("")));
+    eval(".Internal(close(con, 'rw'))");
+  }
+  
+  @Test
+  public void writeTextConnection() {
+    eval("con <- .Internal(textConnection('out', 'out', 'w', globalenv(), 1L))");
+    eval(".Internal(writeLines(c('one', 'two'), con, '\\n', FALSE))");
+    assertThat(eval("out"), equalTo(c("one", "two")));
+
+    eval(".Internal(cat(list('three', 'four'), con, ' ', FALSE, NULL, FALSE))");
+    assertThat(eval(".Internal(textConnectionValue(con))"), equalTo(c("one", "two")));
+    
+    eval(".Internal(close(con, 'rw'))");
+    assertThat(eval("out"), equalTo(c("one", "two", "three four")));
+  }
+  
+  @Test
+  public void writeLinesToStdout() {
+    StringWriter out = new StringWriter();
+    topLevelContext.getGlobals().setStdOut(new PrintWriter(out));
+    eval(".Internal(writeLines(c('a', NA), .Internal(stdout()), '\\n', FALSE))");
+    assertThat(out.toString(), equalTo("a\nNA\n"));
+  }
+
+  @Test
+  public void writeTable() {
+    eval("f <- c(2L, 1L, NA)");
+    eval("attr(f, 'levels') <- c('lo', 'hi')");
+    eval("class(f) <- 'factor'");
+    eval("df <- list(x = c(1.5, NA, 1e5), s = c('a\"b', NA, 'c'), f = f, b = c(TRUE, FALSE, NA))");
+
+    eval("con <- .Internal(textConnection('out', 'out', 'w', globalenv(), 1L))");
+    eval(".Internal(write.table(df, con, 3L, 4L, c('1', '2', '3'), ',', '\\n', 'NA', '.', c(0L, 2L, 3L), TRUE))");
+    eval(".Internal(close(con, 'rw'))");
+
+    assertThat(eval("out"), equalTo(c(
+        "\"1\",1.5,\"a\\\"b\",\"hi\",TRUE",
+        "\"2\",NA,NA,\"lo\",FALSE",
+        "\"3\",1e+05,\"c\",NA,NA")));
+  }
+
+  @Test
+  public void seekInFileWithSpaceInName() throws IOException {
+    File file = File.createTempFile("seek with sp\u00e4ce", ".bin");
+    file.deleteOnExit();
+    topLevelContext.getGlobalEnvironment().setVariable("path", new StringVector(file.getAbsolutePath()));
+
+    eval("con <- .Internal(file(path, 'wb', TRUE, ''))");
+    eval(".Internal(writeBin(c(1, 2, 3), con, 8L, TRUE, FALSE))");
+    eval(".Internal(close(con, 'rw'))");
+    assertThat(file.length(), equalTo(24L));
+
+    eval("con <- .Internal(file(path, 'rb', TRUE, ''))");
+    assertThat(eval(".Internal(isSeekable(con))"), equalTo(c(true)));
+    assertThat(eval(".Internal(seek(con, 16, 1L, 0L))"), equalTo(c(0)));
+    assertThat(eval(".Internal(readBin(con, 'double', 1L, 8L, TRUE, TRUE))"), equalTo(c(3)));
+    eval(".Internal(close(con, 'rw'))");
+  }
+
+  @Test
+  public void writeTableMatrixToFile() throws IOException {
+    File file = File.createTempFile("writeTable", ".txt");
+    file.deleteOnExit();
+    topLevelContext.getGlobalEnvironment().setVariable("path", new StringVector(file.getAbsolutePath()));
+
+    eval("m <- c(0.5, 2, 3.25, NaN)");
+    eval("dim(m) <- c(2L, 2L)");
+    eval("con <- .Internal(file(path, 'w', TRUE, ''))");
+    eval(".Internal(write.table(m, con, 2L, 2L, NULL, ';', '\\n', '-', ',', integer(0), FALSE))");
+    eval(".Internal(close(con, 'rw'))");
+
+    eval("con <- .Internal(file(path, 'r', TRUE, ''))");
+    assertThat(eval(".Internal(readLines(con, -1, TRUE, FALSE, 'unknown'))"),
+        equalTo(c("0,5;3,25", "2;-")));
+    eval(".Internal(close(con, 'rw'))");
+  }
+
+  @Test
+  public void rawConnection() {
+    eval("con <- .Internal(rawConnection('x', .Internal(vector('raw', 0L)), 'w'))");
+    eval(".Internal(writeBin(c(1L, 2L), con, NA_integer_, FALSE, FALSE))");
+    eval("x <- .Internal(rawConnectionValue(con))");
+    eval(".Internal(close(con, 'rw'))");
+    assertThat(eval("length(x)"), equalTo(c_i(8)));
+    
+    eval("con <- .Internal(rawConnection('x', x, 'r'))");
+    assertThat(eval(".Internal(readBin(con, 'integer', 1L, NA_integer_, TRUE, FALSE))"), equalTo(c_i(1)));
+    assertThat(eval(".Internal(readBin(con, 'integer', 5L, NA_integer_, TRUE, FALSE))"), equalTo(c_i(2)));
+    eval(".Internal(close(con, 'rw'))");
+  }
+  
   @Test
   public void url() {
     assumingBasePackagesLoad();
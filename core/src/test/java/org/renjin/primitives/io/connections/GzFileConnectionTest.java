@@ -25,14 +25,21 @@ import org.apache.commons.vfs.FileObject;
 import org.apache.commons.vfs.VFS;
 import org.junit.Test;
 import org.renjin.EvalTestCase;
+import org.renjin.primitives.io.compress.Codecs;
 import org.renjin.sexp.SEXP;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.Arrays;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 
 public class GzFileConnectionTest extends EvalTestCase {
 
@@ -69,4 +76,41 @@ public class GzFileConnectionTest extends EvalTestCase {
     assertThat(reader.readLine(), equalTo("Hello again, dear world"));
   }
 
+  @Test
+  public void roundTripParallelBlocks() throws IOException {
+
+    byte[] bytes = new byte[3 * 1024 * 1024];
+    for(int i=0;i!=bytes.length;++i) {
+      bytes[i] = (byte)(i % 251);
+    }
+    
+    File tempFile = File.createTempFile("parallel", ".gz");
+    tempFile.deleteOnExit();
+    FileObject file = VFS.getManager().resolveFile(tempFile.getAbsolutePath());
+    
+    // write several gzip members, which GZIPInputStream on Java 6 stops reading after the first
+    int parallelism = Codecs.getParallelism();
+    Codecs.setParallelism(2);
+    try {
+      GzFileConnection out = new GzFileConnection(file);
+      OutputStream os = out.getOutputStream();
+      os.write(bytes);
+      out.close();
+    } finally {
+      Codecs.setParallelism(parallelism);
+    }
+
+    GzFileConnection in = new GzFileConnection(file);
+    InputStream is = in.getInputStream();
+    ByteArrayOutputStream read = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    int count;
+    while((count = is.read(buffer)) != -1) {
+      read.write(buffer, 0, count);
+    }
+    in.close();
+    
+    assertTrue(Arrays.equals(read.toByteArray(), bytes));
+  }
+
 }
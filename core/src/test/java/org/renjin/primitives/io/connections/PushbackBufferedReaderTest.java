@@ -1,11 +1,14 @@
 package org.renjin.primitives.io.connections;
 
+import com.google.common.base.Charsets;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.StringReader;
 
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 
 public class PushbackBufferedReaderTest {
@@ -22,5 +25,24 @@ public class PushbackBufferedReaderTest {
     assertThat(reader.readLine(), equalTo("foo"));
     assertThat(reader.readLine(), equalTo("second line"));
   }
+  
+  @Test
+  public void decodeLongLines() throws IOException {
+    StringBuilder text = new StringBuilder();
+    text.append("na\u00efve\r\n");
+    for(int i=0;i!=100000;++i) {
+      text.append('x');
+    }
+    text.append("\r\n\u20ac\rlast");
+    
+    PushbackBufferedReader reader = new PushbackBufferedReader(
+        new ByteArrayInputStream(text.toString().getBytes("UTF-8")), Charsets.UTF_8);
+    
+    assertThat(reader.readLine(), equalTo("na\u00efve"));
+    assertThat(reader.readLine().length(), equalTo(100000));
+    assertThat(reader.readLine(), equalTo("\u20ac"));
+    assertThat(reader.readLine(), equalTo("last"));
+    assertNull(reader.readLine());
+  }
 
 }
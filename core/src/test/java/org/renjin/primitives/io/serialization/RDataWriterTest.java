@@ -23,6 +23,7 @@ package org.renjin.primitives.io.serialization;
 
 import org.junit.Test;
 import org.renjin.EvalTestCase;
+import org.renjin.parser.RParser;
 import org.renjin.sexp.*;
 import org.renjin.sexp.PairList.Builder;
 
@@ -33,6 +34,7 @@ import java.io.IOException;
 import java.util.zip.GZIPOutputStream;
 
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.junit.Assert.assertThat;
 
 
@@ -104,6 +106,16 @@ public class RDataWriterTest extends EvalTestCase {
     assertReRead(topLevelContext.getEnvironment().getVariable("f"));
   } 
 
+  @Test
+  public void expressionVector() throws IOException {
+    ExpressionVector exprs = RParser.parseSource("f <- function(x, ...) { x[[1L]] + 2.5 }\nf('a', b = TRUE)\n");
+    assertReRead(exprs);
+
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    new RDataWriter(topLevelContext, baos).writeFile(exprs);
+    SEXP reread = new RDataReader(topLevelContext, new ByteArrayInputStream(baos.toByteArray())).readFile();
+    assertThat(reread, instanceOf(ExpressionVector.class));
+  }
   
   private void write(String fileName, SEXP exp) throws IOException {
     FileOutputStream fos = new FileOutputStream(fileName);
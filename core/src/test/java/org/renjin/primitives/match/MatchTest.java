@@ -24,6 +24,8 @@ package org.renjin.primitives.match;
 import org.junit.Test;
 import org.renjin.EvalTestCase;
 import org.renjin.sexp.IntVector;
+import org.renjin.sexp.StringDictionaryVector;
+import org.renjin.sexp.StringVector;
 
 
 import static org.hamcrest.CoreMatchers.equalTo;
@@ -84,5 +86,22 @@ public class MatchTest extends EvalTestCase {
     assertThat( eval(" .Internal(duplicated(c(1,2,3,3), FALSE, FALSE)) "), equalTo( c(false,false,false,true)) );
     assertThat( eval(" .Internal(duplicated(c(2,2,3,3), FALSE, TRUE)) "), equalTo( c(true, false,true,false) ));
   }
-  
+
+  @Test
+  public void matchDictionaryEncoded() {
+    global.setVariable("x", new StringDictionaryVector(new int[] { 2, 1, IntVector.NA, 2, 3 },
+        new StringVector("a", "b", "c")));
+
+    assertThat( eval(" .Internal(match(x, c('c', NA, 'b'), 0L, NULL))"), equalTo( c_i(3, 0, 2, 3, 1) ));
+    assertThat( eval(" .Internal(match(c('c', 'b', 'z'), x, NA_integer_, NULL))"), equalTo( c_i(5, 1, IntVector.NA) ));
+  }
+
+  @Test
+  public void duplicatedDictionaryEncoded() {
+    global.setVariable("x", new StringDictionaryVector(new int[] { 2, 1, IntVector.NA, 2, IntVector.NA },
+        new StringVector("a", "b")));
+
+    assertThat( eval(" .Internal(duplicated(x, FALSE, FALSE)) "), equalTo( c(false,false,false,true,true) ));
+    assertThat( eval(" .Internal(unique(x, FALSE, TRUE)) "), equalTo( c("a", "b", StringVector.NA) ));
+  }
 }
@@ -0,0 +1,145 @@
+package org.renjin.primitives.text;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import org.junit.Test;
+import org.renjin.sexp.DoubleArrayVector;
+import org.renjin.sexp.DoubleVector;
+
+public class DoubleFormatterTest {
+
+  @Test
+  public void asCharacter() {
+    assertThat(DoubleFormatter.toString(1), equalTo("1"));
+    assertThat(DoubleFormatter.toString(-1.5), equalTo("-1.5"));
+    assertThat(DoubleFormatter.toString(0), equalTo("0"));
+    assertThat(DoubleFormatter.toString(-0.0), equalTo("0"));
+    assertThat(DoubleFormatter.toString(0.1), equalTo("0.1"));
+    assertThat(DoubleFormatter.toString(0.1 + 0.2), equalTo("0.3"));
+    assertThat(DoubleFormatter.toString(1d / 3), equalTo("0.333333333333333"));
+    assertThat(DoubleFormatter.toString(2d / 3), equalTo("0.666666666666667"));
+    assertThat(DoubleFormatter.toString(123456), equalTo("123456"));
+    assertThat(DoubleFormatter.toString(100000.5), equalTo("100000.5"));
+    assertThat(DoubleFormatter.toString(0.000123), equalTo("0.000123"));
+    assertThat(DoubleFormatter.toString(1234567890123456.0), equalTo("1234567890123456"));
+  }
+
+  @Test
+  public void asCharacterScientific() {
+    assertThat(DoubleFormatter.toString(1e5), equalTo("1e+05"));
+    assertThat(DoubleFormatter.toString(0.0001), equalTo("1e-04"));
+    assertThat(DoubleFormatter.toString(1e15), equalTo("1e+15"));
+    assertThat(DoubleFormatter.toString(-2.5e-10), equalTo("-2.5e-10"));
+    assertThat(DoubleFormatter.toString(1e100), equalTo("1e+100"));
+    assertThat(DoubleFormatter.toString(1e-300), equalTo("1e-300"));
+    assertThat(DoubleFormatter.toString(Double.MAX_VALUE), equalTo("1.79769313486232e+308"));
+    assertThat(DoubleFormatter.toString(Double.MIN_VALUE), equalTo("4.94065645841247e-324"));
+  }
+
+  @Test
+  public void nonFinite() {
+    assertThat(DoubleFormatter.toString(DoubleVector.NA), equalTo("NA"));
+    assertThat(DoubleFormatter.toString(Double.NaN), equalTo("NaN"));
+    assertThat(DoubleFormatter.toString(Double.POSITIVE_INFINITY), equalTo("Inf"));
+    assertThat(DoubleFormatter.toString(Double.NEGATIVE_INFINITY), equalTo("-Inf"));
+  }
+
+  @Test
+  public void commonLayout() {
+    assertThat(format(7, 0, 1, 99, 3), equalTo("1 99 3"));
+    assertThat(format(7, 0, 1, 2.5), equalTo("1.0 2.5"));
+    assertThat(format(7, 0, Math.PI), equalTo("3.141593"));
+    assertThat(format(7, 0, 1.123456789, 100.1234567), equalTo("1.123457 100.123457"));
+    assertThat(format(7, 0, 123456789), equalTo("123456789"));
+    assertThat(format(7, 0, 0.1, 123456.7), equalTo("0.1 123456.7"));
+    assertThat(format(7, 0, 1e-10, 1), equalTo("1e-10 1e+00"));
+    assertThat(format(7, 0, 0, 1e-20), equalTo("0e+00 1e-20"));
+    assertThat(format(7, 0, 1.5, 1e-120), equalTo("1.5e+00 1.0e-120"));
+    assertThat(format(3, 0, Math.PI, Math.E), equalTo("3.14 2.72"));
+    assertThat(format(7, 2, 1, 10), equalTo("1.00 10.00"));
+    assertThat(format(7, 0, 1, DoubleVector.NA, -Math.PI), equalTo("1.000000 NA -3.141593"));
+  }
+
+  @Test
+  public void width() {
+    DoubleFormatter formatter = new DoubleFormatter(7);
+    formatter.accept(new DoubleArrayVector(-1.5, 10, Double.NEGATIVE_INFINITY));
+    formatter.layout(0);
+    assertThat(formatter.isFixed(), equalTo(true));
+    assertThat(formatter.getDecimals(), equalTo(1));
+    assertThat(formatter.getWidth(), equalTo(4));
+  }
+
+  @Test
+  public void scipen() {
+    DoubleFormatter formatter = new DoubleFormatter(7).setScipen(100);
+    formatter.accept(1e10);
+    formatter.layout(0);
+    assertThat(formatter.format(1e10), equalTo("10000000000"));
+
+    formatter = new DoubleFormatter(7).setScipen(-100);
+    formatter.accept(123);
+    formatter.layout(0);
+    assertThat(formatter.format(123), equalTo("1.23e+02"));
+  }
+
+  /**
+   * The digits written must be those of the exact binary value, correctly rounded
+   */
+  @Test
+  public void roundsCorrectly() {
+    Random random = new Random(42);
+    for(int i = 0; i != 200000; ++i) {
+      double x;
+      switch(i % 3) {
+        case 0:
+          x = Double.longBitsToDouble(random.nextLong());
+          break;
+        case 1:
+          x = random.nextDouble() * Math.pow(10, random.nextInt(40) - 20);
+          break;
+        default:
+          // many ties in decimal
+          x = (random.nextInt(2000000) - 1000000) / 2.0 * Math.pow(10, random.nextInt(10) - 5);
+          break;
+      }
+      if(Double.isNaN(x) || Double.isInfinite(x)) {
+        continue;
+      }
+      String formatted = DoubleFormatter.toString(x);
+      BigDecimal actual = new BigDecimal(formatted.replace("e+", "e"));
+      BigDecimal expected;
+      if(formatted.indexOf('e') == -1 && Math.abs(x) >= 1e15) {
+        // large values in fixed notation show all their integer digits
+        expected = new BigDecimal(x).setScale(0, RoundingMode.HALF_EVEN);
+      } else {
+        expected = new BigDecimal(x).round(new MathContext(15, RoundingMode.HALF_EVEN));
+      }
+      if(actual.compareTo(expected) != 0) {
+        throw new AssertionError(x + " was formatted as " + formatted + ", expected " + expected);
+      }
+    }
+  }
+
+  private static String format(int digits, int nsmall, double... values) {
+    DoubleFormatter formatter = new DoubleFormatter(digits);
+    for(double value : values) {
+      formatter.accept(value);
+    }
+    formatter.layout(nsmall);
+    StringBuilder out = new StringBuilder();
+    for(double value : values) {
+      if(out.length() > 0) {
+        out.append(' ');
+      }
+      formatter.append(out, value);
+    }
+    return out.toString();
+  }
+}
@@ -1,9 +1,12 @@
 package org.renjin.primitives.time;
 
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 
 import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 import org.joda.time.format.DateTimeFormatter;
 import org.junit.Test;
 import org.renjin.primitives.time.DateTimeFormat;
@@ -16,6 +19,27 @@ public class DateTimeFormatTest {
   }
 
 
+  @Test
+  public void formattersAreCached() {
+    assertThat(DateTimeFormat.forPattern("%Y-%m-%d", DateTimeZone.UTC, false), 
+        sameInstance(DateTimeFormat.forPattern("%Y-%m-%d", DateTimeZone.UTC, false)));
+  }
+
+  @Test
+  public void fixedWidthFormats() {
+    assertNull(DateTimeFormat.forFixedWidthPattern("%d %B %Y"));
+    assertNull(DateTimeFormat.forFixedWidthPattern("%H:%M"));
+
+    FixedWidthDateTimeFormat format = DateTimeFormat.forFixedWidthPattern("%Y%m%dT%H%M%OS");
+    int[] fields = new int[FixedWidthDateTimeFormat.FIELD_COUNT];
+    assertThat(format.parse("20090701T181405", fields), equalTo(true));
+    assertThat(format.parse("20090701T18140", fields), equalTo(true));
+    assertThat(format.parse("20090701T181405Z", fields), equalTo(false));
+    assertThat(format.parse("20090230T000000", fields), equalTo(false));
+
+    verifyFormat("2009-07-01 18:14:05", "%Y-%m-%d %H:%M:%S", new DateTime(2009,7,1,18,14,5,0));
+  }
+
   private void verifyFormat(String x, String format, DateTime dateTime) {
     DateTimeFormatter formatter = DateTimeFormat.forPattern(format);
     assertThat(formatter.print(dateTime), equalTo(x));
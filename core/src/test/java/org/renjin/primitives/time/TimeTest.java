@@ -11,6 +11,7 @@ import org.joda.time.DateTime;
 import org.junit.Ignore;
 import org.junit.Test;
 import org.renjin.EvalTestCase;
+import org.renjin.sexp.IntVector;
 
 
 public class TimeTest extends EvalTestCase {
@@ -38,6 +39,33 @@ public class TimeTest extends EvalTestCase {
 //    assertThat(eval("t$isdst"), equalTo(c_i(1)));
   }
   
+  @Test
+  public void strptimeFixedWidth() {
+    eval("t <- .Internal(strptime(c('2012-01-05 10:20:30', NA, '2012-02-30 00:00:00', '2012-1-5 1:2:3'), '%Y-%m-%d %H:%M:%S', 'GMT'))");
+
+    assertThat(eval("t$sec"), equalTo(c_i(30, IntVector.NA, IntVector.NA, 3)));
+    assertThat(eval("t$min"), equalTo(c_i(20, IntVector.NA, IntVector.NA, 2)));
+    assertThat(eval("t$hour"), equalTo(c_i(10, IntVector.NA, IntVector.NA, 1)));
+    assertThat(eval("t$mday"), equalTo(c_i(5, IntVector.NA, IntVector.NA, 5)));
+    assertThat(eval("t$wday"), equalTo(c_i(4, IntVector.NA, IntVector.NA, 4)));
+    assertThat(eval("t$yday"), equalTo(c_i(4, IntVector.NA, IntVector.NA, 4)));
+    assertThat(eval("t$isdst"), equalTo(c_i(0, -1, -1, 0)));
+    assertThat(eval(".Internal(as.POSIXct(t, 'GMT'))[1]"), equalTo(c(1325758830d)));
+  }
+
+  @Test
+  public void strptimeInDaylightSavingsGap() {
+    eval("t <- .Internal(strptime('2011-03-13 02:30:00', '%Y-%m-%d %H:%M:%S', 'America/New_York'))");
+    assertThat(eval("is.na(t$hour)"), equalTo(c(true)));
+  }
+
+  @Test
+  public void formatFixedWidth() {
+    eval("t <- .Internal(strptime(c('2009-07-01 18:14:05', NA), '%Y-%m-%d %H:%M:%S', ''))");
+    assertThat(eval(".Internal(format.POSIXlt(t, '%d/%m/%Y %H:%M', FALSE))"), equalTo(c("01/07/2009 18:14", null)));
+    assertThat(eval(".Internal(format.POSIXlt(t, '%Y-%m-%d', FALSE))"), equalTo(c("2009-07-01", null)));
+  }
+
   @Test
   public void timeZones() {
     eval("t <- .Internal(strptime('2011-11-06 09:27', '%Y-%m-%d %H:%M', tz='HST'))");
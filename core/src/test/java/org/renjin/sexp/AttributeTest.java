@@ -25,6 +25,7 @@ import org.junit.Test;
 import org.renjin.EvalTestCase;
 
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.junit.Assert.assertThat;
 
 public class AttributeTest extends EvalTestCase {
@@ -37,4 +38,65 @@ public class AttributeTest extends EvalTestCase {
     assertThat( eval("p$x"), equalTo(c(1)));
   }
 
+  @Test
+  public void specialAttributesAreHeldApart() {
+    SEXP x = new DoubleArrayVector(1, 2, 3, 4)
+        .setAttribute(Symbols.DIM, new IntArrayVector(2, 2))
+        .setAttribute(Symbol.get("foo"), new StringVector("bar"))
+        .setAttribute(Symbols.CLASS, new StringVector("baz"));
+
+    assertThat(x.getAttribute(Symbols.DIM), equalTo((SEXP) new IntArrayVector(2, 2)));
+    assertThat(x.getAttribute(Symbol.get("foo")), equalTo((SEXP) new StringVector("bar")));
+    assertThat(x.inherits("baz"), equalTo(true));
+    assertThat(x.isObject(), equalTo(true));
+
+    PairList attributes = x.getAttributes();
+    assertThat(attributes.length(), equalTo(3));
+    assertThat(((PairList.Node) attributes).getTag(), equalTo(Symbols.DIM));
+
+    SEXP y = x.setAttribute(Symbols.DIM, Null.INSTANCE);
+    assertThat(y.getAttribute(Symbols.DIM), equalTo((SEXP) Null.INSTANCE));
+    assertThat(y.getAttributes().length(), equalTo(2));
+    assertThat(x.getAttributes().length(), equalTo(3));
+  }
+
+  @Test
+  public void commonAttributesAreShared() {
+    AttributeMap dataFrame = AttributeMap.EMPTY.copyWith(Symbols.CLASS, new StringVector("data.frame"));
+    assertThat(AttributeMap.classOnly(new StringVector("data.frame")), sameInstance(dataFrame));
+
+    StringVector levels = new StringVector("a", "b");
+    AttributeMap factor = AttributeMap.factor(levels, false);
+    assertThat(AttributeMap.factor(levels, false), sameInstance(factor));
+    assertThat(factor.inherits("factor"), equalTo(true));
+    assertThat(factor.get(Symbols.LEVELS), equalTo((SEXP) levels));
+    assertThat(AttributeMap.factor(levels, true).inherits("ordered"), equalTo(true));
+
+    // factors built separately with the same levels share the map
+    assertThat(AttributeMap.factor(new StringVector("a", "b"), false), sameInstance(factor));
+  }
+
+  @Test
+  public void setAttributeKeepsSharedMap() {
+    AttributeMap dataFrame = AttributeMap.classOnly(new StringVector("data.frame"));
+    AbstractSEXP x = (AbstractSEXP) new IntArrayVector(1, 2, 3).setAttribute(Symbols.CLASS, new StringVector("data.frame"));
+    assertThat(x.getAttributeMap(), sameInstance(dataFrame));
+  }
+
+  @Test
+  public void attributesAreCopied() {
+    AbstractSEXP x = (AbstractSEXP) new IntArrayVector(1, 2).setAttribute(Symbols.NAMES, new StringVector("a", "b"));
+    PairList attributes = x.getAttributes();
+    ((PairList.Node) attributes).setValue(new StringVector("c", "d"));
+    assertThat(x.getAttribute(Symbols.NAMES), equalTo((SEXP) new StringVector("a", "b")));
+  }
+
+  @Test
+  public void compactRowNamesAreExpanded() {
+    eval("df <- list(a = c(1, 2, 3))");
+    eval("attr(df, 'row.names') <- c(NA_integer_, -3L)");
+    assertThat(eval("attributes(df)$row.names"), equalTo(c_i(1, 2, 3)));
+    assertThat(eval("attr(df, 'row.names')"), equalTo(c_i(1, 2, 3)));
+  }
+
 }